@@ -0,0 +1,19 @@
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+dependencies {
+    jmh(project(":jlayer"))
+    jmh(project(":testing"))
+}
+
+// Results are reported per decoded frame; the gc profiler adds
+// gc.alloc.rate.norm, i.e. bytes allocated per frame.
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    profilers.add("gc")
+    // for the vectorized SynthesisFilter
+    jvmArgsAppend.add("--add-modules=jdk.incubator.vector")
+    resultFormat.set("JSON")
+}
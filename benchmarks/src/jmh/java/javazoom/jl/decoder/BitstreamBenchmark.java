@@ -0,0 +1,92 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import javazoom.jl.testing.MpegFixtures;
+import javazoom.jl.testing.MpegFixtures.Fixture;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Frame sync and header parsing cost of {@link Bitstream#readFrame()},
+ * in ns per frame, reading from a stream and from a buffer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BitstreamBenchmark {
+
+    @Param
+    public Fixture fixture;
+
+    private byte[] data;
+
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setUp() {
+        data = fixture.generate();
+        buffer = ByteBuffer.allocateDirect(data.length);
+        buffer.put(data).flip();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MpegFixtures.FRAMES)
+    public int readFrame() throws BitstreamException {
+        Bitstream stream = new Bitstream(new ByteArrayInputStream(data));
+        int frames = 0;
+        while (stream.readFrame() != null) {
+            stream.closeFrame();
+            frames++;
+        }
+        stream.close();
+        return frames;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MpegFixtures.FRAMES)
+    public int readFrameFromBuffer() throws BitstreamException {
+        Bitstream stream = new Bitstream(buffer);
+        int frames = 0;
+        while (stream.readFrame() != null) {
+            stream.closeFrame();
+            frames++;
+        }
+        stream.close();
+        return frames;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import javazoom.jl.testing.MpegFixtures;
+import javazoom.jl.testing.MpegFixtures.Fixture;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * End to end decoding through {@link Decoder#decodeFrame(Header, Bitstream)}
+ * into a {@link SampleBuffer}, as players and the SPI do it.
+ * <p>
+ * A new decoder is set up for every pass over the fixture; its allocations
+ * are spread over {@link MpegFixtures#FRAMES} frames.
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecoderBenchmark {
+
+    @Param
+    public Fixture fixture;
+
+    private byte[] data;
+
+    @Setup
+    public void setUp() {
+        data = fixture.generate();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(MpegFixtures.FRAMES)
+    public int framesPerSecond() throws JavaLayerException {
+        return decode();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(MpegFixtures.FRAMES)
+    public int decodeFrame() throws JavaLayerException {
+        return decode();
+    }
+
+    private int decode() throws JavaLayerException {
+        Bitstream stream = new Bitstream(new ByteArrayInputStream(data));
+        Decoder decoder = new Decoder();
+        int frames = 0;
+        Header header;
+        while ((header = stream.readFrame()) != null) {
+            decoder.decodeFrame(header, stream);
+            stream.closeFrame();
+            frames++;
+        }
+        stream.close();
+        return frames;
+    }
+}
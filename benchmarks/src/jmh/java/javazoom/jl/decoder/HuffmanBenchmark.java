@@ -0,0 +1,102 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Layer III Huffman decoding, tree walk against lookup tables, in ns per
+ * codeword. Tables 1 to 24 are big_values tables (16 and 24 with
+ * linbits), 32 and 33 the count1 tables. Random bits give each codeword
+ * the probability its length was designed for.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HuffmanBenchmark {
+
+    /**
+     * Codewords per invocation, the big_values pairs of a full granule.
+     */
+    private static final int CODEWORDS = 288;
+
+    @Param({"1", "7", "13", "15", "16", "24", "32", "33"})
+    public int table;
+
+    private final int[] x = new int[1];
+    private final int[] y = new int[1];
+    private final int[] v = new int[1];
+    private final int[] w = new int[1];
+    private huffcodetab h;
+    private BitReserve br;
+
+    @Setup
+    public void setUp() {
+        huffcodetab.initHuff();
+        h = huffcodetab.ht[table];
+        br = new BitReserve();
+        Random random = new Random(table);
+        for (int i = 0; i < 4096; i++)
+            br.hputbuf(random.nextInt(256));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CODEWORDS)
+    public int treeDecoder() {
+        int start = br.hsstell();
+        int sum = 0;
+        for (int i = 0; i < CODEWORDS; i++) {
+            huffcodetab.huffman_decoder(h, x, y, v, w, br);
+            sum += x[0] + y[0] + v[0] + w[0];
+        }
+        br.rewindNbits(br.hsstell() - start);
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CODEWORDS)
+    public int lookupDecoder() {
+        int start = br.hsstell();
+        int sum = 0;
+        for (int i = 0; i < CODEWORDS; i++) {
+            huffcodetab.huffman_decoder_lookup(h, x, y, v, w, br);
+            sum += x[0] + y[0] + v[0] + w[0];
+        }
+        br.rewindNbits(br.hsstell() - start);
+        return sum;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javazoom.jl.testing.MpegFixtures.Fixture;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * The Layer III hybrid filter bank over one granule of one channel, in
+ * ns per granule: {@link LayerIIIDecoder#inv_mdct(float[], float[], int)}
+ * on a copy of each subband followed by the overlap addition, against
+ * the fused IMDCT the decoder uses. <code>sblimit</code> is the number
+ * of subbands with nonzero lines; the fused variant skips the others as
+ * the decoder does, the reference transforms all 32.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HybridBenchmark {
+
+    @Param({"0", "2"})
+    public int blockType;
+
+    @Param({"32", "16"})
+    public int sblimit;
+
+    private final float[] lines = new float[576];
+    private final float[] xr = new float[576];
+    private final float[] prev = new float[576];
+    private final float[] in = new float[18];
+    private final float[] out = new float[36];
+    private LayerIIIDecoder decoder;
+
+    @Setup
+    public void setUp() throws BitstreamException {
+        Bitstream stream = new Bitstream(new ByteArrayInputStream(Fixture.MPEG1_L3_MONO.generate()));
+        Header header = stream.readFrame();
+        decoder = new LayerIIIDecoder(stream, header,
+                new SynthesisFilter(0, 32700.0f, null), null,
+                new SampleBuffer(header.frequency(), 1), OutputChannels.LEFT_CHANNEL);
+        stream.close();
+
+        Random random = new Random(blockType);
+        for (int i = 0; i < sblimit * 18; i++)
+            lines[i] = (float) (random.nextGaussian() / (1 + i / 18));
+    }
+
+    @Benchmark
+    public float[] reference() {
+        System.arraycopy(lines, 0, xr, 0, 576);
+        for (int sb18 = 0; sb18 < 576; sb18 += 18) {
+            System.arraycopy(xr, sb18, in, 0, 18);
+            decoder.inv_mdct(in, out, blockType);
+            for (int i = 0; i < 18; i++) {
+                xr[sb18 + i] = out[i] + prev[sb18 + i];
+                prev[sb18 + i] = out[18 + i];
+            }
+        }
+        return xr;
+    }
+
+    @Benchmark
+    public float[] fused() {
+        System.arraycopy(lines, 0, xr, 0, 576);
+        int sb18lim = sblimit * 18;
+        for (int sb18 = 0; sb18 < sb18lim; sb18 += 18) {
+            if (blockType == 2)
+                LayerIIIDecoder.imdct12(xr, prev, sb18, out);
+            else
+                LayerIIIDecoder.imdct36(xr, prev, sb18, LayerIIIDecoder.win[blockType]);
+        }
+        return xr;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import javazoom.jl.testing.MpegFixtures;
+import javazoom.jl.testing.MpegFixtures.Fixture;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Drives {@link LayerIIIDecoder}, {@link LayerIIDecoder} and
+ * {@link LayerIDecoder} directly, without the {@link Decoder} facade.
+ * <p>
+ * Each frame still goes through {@link Bitstream#readFrame()}; subtract
+ * {@link BitstreamBenchmark} for the decode cost alone.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LayerDecoderBenchmark {
+
+    @Param
+    public Fixture fixture;
+
+    private byte[] data;
+    private SynthesisFilter filter1, filter2;
+    private SampleBuffer output;
+
+    @Setup
+    public void setUp() {
+        data = fixture.generate();
+        filter1 = new SynthesisFilter(0, 32700.0f, null);
+        filter2 = new SynthesisFilter(1, 32700.0f, null);
+        output = new SampleBuffer(fixture.sampleRate(), fixture.channels());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MpegFixtures.FRAMES)
+    public int decodeFrame() throws JavaLayerException {
+        Bitstream stream = new Bitstream(new ByteArrayInputStream(data));
+        Header header = stream.readFrame();
+        filter1.reset();
+        filter2.reset();
+        FrameDecoder decoder = create(stream, header);
+        int frames = 0;
+        do {
+            output.clear_buffer();
+            decoder.decodeFrame();
+            stream.closeFrame();
+            frames++;
+        } while ((header = stream.readFrame()) != null);
+        stream.close();
+        return frames;
+    }
+
+    private FrameDecoder create(Bitstream stream, Header header) {
+        switch (header.layer()) {
+        case 3:
+            return new LayerIIIDecoder(stream, header, filter1, filter2,
+                    output, OutputChannels.BOTH_CHANNELS);
+        case 2:
+            LayerIIDecoder l2decoder = new LayerIIDecoder();
+            l2decoder.create(stream, header, filter1, filter2,
+                    output, OutputChannels.BOTH_CHANNELS);
+            return l2decoder;
+        default:
+            LayerIDecoder l1decoder = new LayerIDecoder();
+            l1decoder.create(stream, header, filter1, filter2,
+                    output, OutputChannels.BOTH_CHANNELS);
+            return l1decoder;
+        }
+    }
+}
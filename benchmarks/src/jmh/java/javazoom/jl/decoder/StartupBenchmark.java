@@ -0,0 +1,72 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import javazoom.jl.testing.MpegFixtures.Fixture;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Time to the first decoded frame in a fresh JVM, including the class
+ * initialization of the decoder and its tables.
+ * <p>
+ * Each fork measures a single shot, so the result is the average cold
+ * start over all forks. The fixture is generated in the setup, which
+ * loads none of the decoder classes.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class StartupBenchmark {
+
+    @Param({"MPEG1_L3_JOINT_STEREO", "MPEG1_L2_MONO"})
+    public Fixture fixture;
+
+    private byte[] data;
+
+    @Setup
+    public void setUp() {
+        data = fixture.generate();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Obuffer firstFrame() throws JavaLayerException {
+        Bitstream stream = new Bitstream(new ByteArrayInputStream(data));
+        Header header = stream.readFrame();
+        Obuffer output = new Decoder().decodeFrame(header, stream);
+        stream.closeFrame();
+        return output;
+    }
+}
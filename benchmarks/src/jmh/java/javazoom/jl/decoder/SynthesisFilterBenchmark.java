@@ -0,0 +1,84 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * {@link SynthesisFilter#calculate_pcm_samples(Obuffer)} over one channel
+ * of a Layer III frame, i.e. 36 blocks of 32 subband samples, for the
+ * scalar filter and the one built on jdk.incubator.vector.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SynthesisFilterBenchmark {
+
+    private static final int BLOCKS = 36;
+
+    @Param({"scalar", "vector"})
+    public String filterType;
+
+    private final float[][] subbands = new float[BLOCKS][32];
+    private SynthesisFilter filter;
+    private SampleBuffer output;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(32);
+        for (float[] block : subbands)
+            for (int sb = 0; sb < 32; sb++)
+                block[sb] = (float) (random.nextGaussian() * 0.1 / (1 + sb));
+        if (filterType.equals("vector")) {
+            if (!SynthesisFilter.isVectorized())
+                throw new IllegalStateException("jdk.incubator.vector is not available");
+            filter = SynthesisFilter.create(0, 32700.0f, null);
+        } else {
+            filter = new SynthesisFilter(0, 32700.0f, null);
+        }
+        output = new SampleBuffer(44100, 1);
+    }
+
+    @Benchmark
+    public SampleBuffer calculatePcmSamples() {
+        output.clear_buffer();
+        for (int i = 0; i < BLOCKS; i++) {
+            filter.input_samples(subbands[i]);
+            filter.calculate_pcm_samples(output);
+        }
+        return output;
+    }
+}
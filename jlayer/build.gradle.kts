@@ -2,6 +2,34 @@ plugins {
     id("com.nickrobison.audio.library-conventions")
 }
 
+// SynthesisFilter implementation on jdk.incubator.vector. It is packaged
+// with the main classes and only used if the module is present at runtime,
+// so the library itself does not require it.
+val vector: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+}
+
+tasks.named<JavaCompile>(vector.compileJavaTaskName) {
+    options.compilerArgs.addAll(listOf("--add-modules", "jdk.incubator.vector"))
+}
+
+tasks.jar {
+    from(vector.output)
+}
+
+sourceSets.test {
+    compileClasspath += vector.output
+    runtimeClasspath += vector.output
+}
+
+tasks.named<JavaCompile>("compileTestJava") {
+    options.compilerArgs.addAll(listOf("--add-modules", "jdk.incubator.vector"))
+}
+
+tasks.test {
+    jvmArgs("--add-modules", "jdk.incubator.vector")
+}
+
 dependencies {
     testImplementation(project(":testing"))
-}
\ No newline at end of file
+}
@@ -0,0 +1,345 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.converter;
+
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.Obuffer;
+
+
+/**
+ * The <code>BatchConverter</code> class converts many MPEG audio
+ * files to .WAV files in parallel. Each <code>Job</code> is converted
+ * by a <code>Converter</code> on one of a fixed number of worker
+ * threads. At most <code>threads + queueSize</code> jobs are pending
+ * at any time; <code>convert()</code> blocks the submitting thread
+ * until a worker is free, so a long list of jobs does not build up
+ * in memory ahead of the workers.
+ * <p>
+ * Each job is converted on a single thread, which both decodes
+ * and does the file I/O of that job.
+ */
+public class BatchConverter {
+
+    private final int threads;
+
+    private final int queueSize;
+
+    private Decoder.Params decoderParams;
+
+    /**
+     * Creates a new batch converter with one worker thread per
+     * available processor.
+     */
+    public BatchConverter() {
+        this(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threads   The number of jobs converted at the same time.
+     * @param queueSize The number of jobs waiting for a worker thread
+     *                  before <code>convert()</code> blocks.
+     */
+    public BatchConverter(int threads, int queueSize) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads: " + threads);
+        if (queueSize < 1)
+            throw new IllegalArgumentException("queueSize: " + queueSize);
+        this.threads = threads;
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * Sets the decoder parameters used for every job, or <code>null</code>
+     * for the defaults.
+     */
+    public void setDecoderParams(Decoder.Params decoderParams) {
+        this.decoderParams = decoderParams;
+    }
+
+    public Decoder.Params getDecoderParams() {
+        return decoderParams;
+    }
+
+    public Summary convert(List<Job> jobs) throws InterruptedException {
+        return convert(jobs, null);
+    }
+
+    /**
+     * Converts all jobs and waits for them to complete. A job that
+     * fails does not stop the other jobs; its exception is available
+     * from <code>Job.getException()</code>.
+     *
+     * @param jobs     The jobs to convert.
+     * @param listener Notified on the worker threads as each job
+     *                 completes, or <code>null</code>.
+     * @return The throughput of the batch.
+     * @throws InterruptedException if the calling thread is interrupted.
+     *                              Pending jobs are cancelled and running
+     *                              jobs are interrupted.
+     */
+    public Summary convert(List<Job> jobs, Listener listener) throws InterruptedException {
+        // the semaphore bounds the queue, a worker releases its permit
+        // before taking the next job off the queue
+        int permits = threads + queueSize;
+        Semaphore pending = new Semaphore(permits);
+        AtomicInteger completed = new AtomicInteger();
+        int total = jobs.size();
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new WorkerFactory());
+        long startTime = System.currentTimeMillis();
+        try {
+            for (Job job : jobs) {
+                pending.acquire();
+                executor.execute(() -> {
+                    try {
+                        job.run(decoderParams);
+                        int n = completed.incrementAndGet();
+                        if (listener != null)
+                            listener.jobComplete(job, n, total);
+                    } finally {
+                        pending.release();
+                    }
+                });
+            }
+            pending.acquire(permits);
+            pending.release(permits);
+        } finally {
+            executor.shutdownNow();
+        }
+        long time = System.currentTimeMillis() - startTime;
+
+        int failed = 0;
+        long frames = 0;
+        long audioMillis = 0;
+        for (Job job : jobs) {
+            if (job.getException() != null)
+                failed++;
+            frames += job.getFrames();
+            audioMillis += job.getAudioMillis();
+        }
+        return new Summary(total, failed, frames, audioMillis, time);
+    }
+
+    /**
+     * This interface is used by the BatchConverter to provide
+     * notification of completed jobs.
+     */
+    public interface Listener {
+
+        /**
+         * Called on the worker thread after a job has been converted,
+         * successfully or not.
+         *
+         * @param job       The completed job.
+         * @param completed The number of jobs completed so far.
+         * @param total     The number of jobs in the batch.
+         */
+        void jobComplete(Job job, int completed, int total);
+    }
+
+    /**
+     * The conversion of one source file to one destination file. The
+     * <code>ProgressListener</code> events of the conversion are
+     * aggregated into the counters of the job.
+     */
+    public static class Job implements Converter.ProgressListener {
+
+        private final String sourceName;
+
+        private final String destName;
+
+        private volatile int frames;
+
+        private volatile float audioMillis;
+
+        private volatile int convertMillis;
+
+        private volatile Throwable exception;
+
+        public Job(String sourceName, String destName) {
+            if (sourceName == null)
+                throw new NullPointerException("sourceName");
+            if (destName == null)
+                throw new NullPointerException("destName");
+            this.sourceName = sourceName;
+            this.destName = destName;
+        }
+
+        public String getSourceName() {
+            return sourceName;
+        }
+
+        public String getDestName() {
+            return destName;
+        }
+
+        /**
+         * @return the number of MPEG audio frames decoded.
+         */
+        public int getFrames() {
+            return frames;
+        }
+
+        /**
+         * @return the playing time of the decoded frames in milliseconds.
+         */
+        public long getAudioMillis() {
+            return (long) audioMillis;
+        }
+
+        /**
+         * @return the time taken to convert the file in milliseconds.
+         */
+        public int getConvertMillis() {
+            return convertMillis;
+        }
+
+        /**
+         * @return the exception that stopped the conversion, or <code>null</code>.
+         */
+        public Throwable getException() {
+            return exception;
+        }
+
+        void run(Decoder.Params decoderParams) {
+            try {
+                new Converter().convert(sourceName, destName, this, decoderParams);
+            } catch (Exception ex) {
+                if (exception == null)
+                    exception = ex;
+            }
+        }
+
+        public void converterUpdate(int updateID, int param1, int param2) {
+            if (updateID == UPDATE_CONVERT_COMPLETE)
+                convertMillis = param1;
+        }
+
+        public void parsedFrame(int frameNo, Header header) {
+        }
+
+        public void readFrame(int frameNo, Header header) {
+        }
+
+        public void decodedFrame(int frameNo, Header header, Obuffer o) {
+            frames = frameNo + 1;
+            audioMillis += header.ms_per_frame();
+        }
+
+        public boolean converterException(Throwable t) {
+            exception = t;
+            return false;
+        }
+
+        public String toString() {
+            return sourceName + " -> " + destName;
+        }
+    }
+
+    /**
+     * Throughput of a completed batch.
+     */
+    public static class Summary {
+
+        private final int files;
+
+        private final int failed;
+
+        private final long frames;
+
+        private final long audioMillis;
+
+        private final long elapsedMillis;
+
+        Summary(int files, int failed, long frames, long audioMillis, long elapsedMillis) {
+            this.files = files;
+            this.failed = failed;
+            this.frames = frames;
+            this.audioMillis = audioMillis;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public int getFiles() {
+            return files;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+
+        public long getFrames() {
+            return frames;
+        }
+
+        /**
+         * @return the total playing time of the converted files in milliseconds.
+         */
+        public long getAudioMillis() {
+            return audioMillis;
+        }
+
+        /**
+         * @return the wall clock time of the batch in milliseconds.
+         */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public double getFilesPerSecond() {
+            return files * 1000.0 / Math.max(elapsedMillis, 1);
+        }
+
+        /**
+         * @return the playing time converted per unit of wall clock time.
+         */
+        public double getRealtimeFactor() {
+            return (double) audioMillis / Math.max(elapsedMillis, 1);
+        }
+
+        public String toString() {
+            return String.format("Converted %d files (%d failed, %d frames) in %d ms: %.1f files/s, %.1fx realtime",
+                    files, failed, frames, elapsedMillis, getFilesPerSecond(), getRealtimeFactor());
+        }
+    }
+
+    private static class WorkerFactory implements ThreadFactory {
+
+        private static final AtomicInteger batch = new AtomicInteger();
+
+        private final int id = batch.incrementAndGet();
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "BatchConverter-" + id + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -73,6 +73,8 @@ public class RiffFile {
     protected int fmode;
     /** I/O stream to use */
     protected RandomAccessFile file;
+    /** reused by Write(short[], int) */
+    private byte[] shortBytes = new byte[0];
 
     /**
      * Dummy Constructor
@@ -110,6 +112,7 @@ public class RiffFile {
                     file = new RandomAccessFile(Filename, "rw");
 
                     try {
+                        file.setLength(0);
                         // Write the RIFF header...
                         // We will have to come back later and patch it!
                         byte[] br = new byte[8];
@@ -188,7 +191,9 @@ public class RiffFile {
      * Write NumBytes data.
      */
     public int Write(short[] Data, int NumBytes) {
-        byte[] theData = new byte[NumBytes];
+        if (shortBytes.length < NumBytes)
+            shortBytes = new byte[NumBytes];
+        byte[] theData = shortBytes;
         int yc = 0;
         for (int y = 0; y < NumBytes; y = y + 2) {
             theData[y] = (byte) (Data[yc] & 0x00FF);
@@ -25,12 +25,16 @@
 
 package javazoom.jl.converter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 import javazoom.jl.decoder.Obuffer;
 
 
 /**
  * Implements an Obuffer by writing the data to
- * a file in RIFF WAVE format.
+ * a file in RIFF WAVE format. I/O errors are thrown as
+ * <code>UncheckedIOException</code>.
  *
  * @since 0.0
  */
@@ -40,7 +44,7 @@ public class WaveFileObuffer extends Obuffer {
     private short[] buffer;
     private short[] bufferp;
     private int channels;
-    private WaveFile outWave;
+    private WaveFileWriter outWave;
 
     /**
      * Creates a new WareFileObuffer instance.
@@ -61,9 +65,11 @@ public class WaveFileObuffer extends Obuffer {
         for (int i = 0; i < number_of_channels; ++i)
             bufferp[i] = (short) i;
 
-        outWave = new WaveFile();
-
-        int rc = outWave.OpenForWrite(fileName, freq, (short) 16, (short) channels);
+        try {
+            outWave = new WaveFileWriter(fileName, freq, channels);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
     }
 
     /**
@@ -80,17 +86,20 @@ public class WaveFileObuffer extends Obuffer {
     short[] myBuffer = new short[2];
 
     public void write_buffer(int val) {
-
-        int k = 0;
-        int rc = 0;
-
-        rc = outWave.WriteData(buffer, bufferp[0]);
-        // REVIEW: handle RiffFile errors.
+        try {
+            outWave.write(buffer, 0, bufferp[0]);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
         for (int i = 0; i < channels; ++i) bufferp[i] = (short) i;
     }
 
     public void close() {
-        outWave.Close();
+        try {
+            outWave.close();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
     }
 
     /**
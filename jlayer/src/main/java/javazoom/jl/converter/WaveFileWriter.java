@@ -0,0 +1,156 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.converter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * Writes 16 bit PCM samples to a file in RIFF WAVE format.
+ * <p>
+ * Samples are copied in bulk into a direct little-endian buffer
+ * that is written to a <code>FileChannel</code> when full. The
+ * header is written with zero chunk sizes when the file is opened
+ * and the RIFF and data chunk sizes are patched on close.
+ *
+ * @see WaveFileObuffer
+ */
+public class WaveFileWriter {
+
+    /**
+     * Size in bytes of the RIFF, fmt and data chunk headers.
+     */
+    public static final int HEADER_SIZE = 44;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer;
+
+    private final ShortBuffer shorts;
+
+    private long dataSize;
+
+    /**
+     * @param fileName   The file to write. An existing file is truncated.
+     * @param frequency  The sample frequency in Hz.
+     * @param channels   The number of interleaved channels, 1 or 2.
+     */
+    public WaveFileWriter(String fileName, int frequency, int channels) throws IOException {
+        this(Paths.get(fileName), frequency, channels);
+    }
+
+    public WaveFileWriter(Path path, int frequency, int channels) throws IOException {
+        if (channels < 1 || channels > WaveFile.MAX_WAVE_CHANNELS)
+            throw new IllegalArgumentException("channels: " + channels);
+
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        shorts = buffer.asShortBuffer();
+
+        int blockAlign = channels * 2;
+        putFourCC("RIFF");
+        buffer.putInt(0);
+        putFourCC("WAVE");
+        putFourCC("fmt ");
+        buffer.putInt(16)
+                .putShort((short) 1) // PCM
+                .putShort((short) channels)
+                .putInt(frequency)
+                .putInt(frequency * blockAlign)
+                .putShort((short) blockAlign)
+                .putShort((short) 16);
+        putFourCC("data");
+        buffer.putInt(0);
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Writes <code>count</code> interleaved samples.
+     */
+    public void write(short[] samples, int offset, int count) throws IOException {
+        dataSize += count * 2L;
+        while (count > 0) {
+            // the short view shares the content but not the position
+            shorts.position(buffer.position() >> 1);
+            int n = Math.min(count, shorts.remaining());
+            shorts.put(samples, offset, n);
+            buffer.position(shorts.position() << 1);
+            offset += n;
+            count -= n;
+            if (!buffer.hasRemaining())
+                flush();
+        }
+    }
+
+    /**
+     * @return the number of bytes of sample data written.
+     */
+    public long getDataSize() {
+        return dataSize;
+    }
+
+    /**
+     * Writes the buffered samples and the chunk sizes, and closes the file.
+     */
+    public void close() throws IOException {
+        if (!channel.isOpen())
+            return;
+        try {
+            flush();
+            buffer.putInt(0, (int) (dataSize + HEADER_SIZE - 8));
+            writeFully(4, 4);
+            buffer.putInt(0, (int) dataSize);
+            writeFully(4, 40);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    private void putFourCC(String id) {
+        for (int i = 0; i < 4; i++)
+            buffer.put((byte) id.charAt(i));
+    }
+
+    /**
+     * Writes the first <code>length</code> bytes of the buffer at <code>position</code>.
+     */
+    private void writeFully(int length, long position) throws IOException {
+        buffer.clear();
+        buffer.limit(length);
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+}
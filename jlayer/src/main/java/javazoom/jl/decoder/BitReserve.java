@@ -30,11 +30,10 @@ package javazoom.jl.decoder;
 /**
  * Implementation of Bit Reservoir for Layer III.
  * <p>
- * The implementation stores single bits as a word in the buffer. If
- * a bit is set, the corresponding word in the buffer will be non-zero.
- * If a bit is clear, the corresponding word is zero. Although this
- * may seem waseful, this can be a factor of two quicker than
- * packing 8 bits to a byte and extracting.
+ * The implementation stores the reserved bytes in a circular buffer and
+ * serves reads from a 64-bit cache holding the next bits, refilled from
+ * the buffer at the current bit position. Rewinding moves the bit
+ * position back and empties the cache.
  * <p>
  * REVIEW: there is no range checking, so buffer underflow or overflow
  * can silently occur.
@@ -42,11 +41,10 @@ package javazoom.jl.decoder;
 final class BitReserve {
 
     /**
-     * Size of the internal buffer to store the reserved bits.
-     * Must be a power of 2. And x8, as each bit is stored as a single
-     * entry.
+     * Size of the internal buffer to store the reserved bytes.
+     * Must be a power of 2.
      */
-    private static final int BUFSIZE = 4096 * 8;
+    private static final int BUFSIZE = 4096;
 
     /**
      * Mask that can be used to quickly implement the
@@ -54,15 +52,25 @@ final class BitReserve {
      */
     private static final int BUFSIZE_MASK = BUFSIZE - 1;
 
-    private int offset, totbit, buf_byte_idx;
-    private final int[] buf = new int[BUFSIZE];
-    @SuppressWarnings("unused")
-    private int buf_bit_idx;
+    /**
+     * Same for the bit position, which runs over BUFSIZE * 8 bits.
+     */
+    private static final int BITSIZE_MASK = (BUFSIZE << 3) - 1;
+
+    private int offset, totbit, buf_bit_idx;
+    private final byte[] buf = new byte[BUFSIZE];
+
+    /**
+     * The next <code>cache_bits</code> bits from <code>buf_bit_idx</code>
+     * on, left aligned.
+     */
+    private long cache;
+    private int cache_bits;
 
     BitReserve() {
         offset = 0;
         totbit = 0;
-        buf_byte_idx = 0;
+        buf_bit_idx = 0;
     }
 
     /**
@@ -78,25 +86,41 @@ final class BitReserve {
      * @param N the number of
      */
     public int hgetbits(int N) {
+        if (N <= 0)
+            return 0;
+        if (N > 32) {
+            // only the last 32 bits fit in the result
+            skip(N - 32);
+            N = 32;
+        }
+        if (cache_bits < N)
+            refill();
+        int val = (int) (cache >>> (64 - N));
+        cache <<= N;
+        cache_bits -= N;
         totbit += N;
+        buf_bit_idx = (buf_bit_idx + N) & BITSIZE_MASK;
+        return val;
+    }
 
-        int val = 0;
+    /**
+     * Returns the next N bits without reading them (1 <= N <= 32).
+     */
+    public int hpeekbits(int N) {
+        if (cache_bits < N)
+            refill();
+        return (int) (cache >>> (64 - N));
+    }
 
-        int pos = buf_byte_idx;
-        if (pos + N < BUFSIZE) {
-            while (N-- > 0) {
-                val <<= 1;
-                val |= ((buf[pos++] != 0) ? 1 : 0);
-            }
-        } else {
-            while (N-- > 0) {
-                val <<= 1;
-                val |= ((buf[pos] != 0) ? 1 : 0);
-                pos = (pos + 1) & BUFSIZE_MASK;
-            }
-        }
-        buf_byte_idx = pos;
-        return val;
+    /**
+     * Reads N bits just returned by {@link #hpeekbits(int)}, N not
+     * more than were peeked.
+     */
+    public void hskipbits(int N) {
+        cache <<= N;
+        cache_bits -= N;
+        totbit += N;
+        buf_bit_idx = (buf_bit_idx + N) & BITSIZE_MASK;
     }
 
     /**
@@ -105,9 +129,13 @@ final class BitReserve {
      * @return 0 if next bit is reset, or 1 if next bit is set.
      */
     public int hget1bit() {
+        if (cache_bits == 0)
+            refill();
+        int val = (int) (cache >>> 63);
+        cache <<= 1;
+        cache_bits--;
         totbit++;
-        int val = buf[buf_byte_idx];
-        buf_byte_idx = (buf_byte_idx + 1) & BUFSIZE_MASK;
+        buf_bit_idx = (buf_bit_idx + 1) & BITSIZE_MASK;
         return val;
     }
 
@@ -115,40 +143,54 @@ final class BitReserve {
      * Write 8 bits into the bit stream.
      */
     public void hputbuf(int val) {
-        int ofs = offset;
-        buf[ofs++] = val & 0x80;
-        buf[ofs++] = val & 0x40;
-        buf[ofs++] = val & 0x20;
-        buf[ofs++] = val & 0x10;
-        buf[ofs++] = val & 0x08;
-        buf[ofs++] = val & 0x04;
-        buf[ofs++] = val & 0x02;
-        buf[ofs++] = val & 0x01;
-
-        if (ofs == BUFSIZE)
-            offset = 0;
-        else
-            offset = ofs;
+        buf[offset] = (byte) val;
+        offset = (offset + 1) & BUFSIZE_MASK;
+        // the cache may hold the byte just overwritten
+        cache_bits = 0;
     }
 
     /**
      * Rewind N bits in Stream.
      */
     public void rewindNbits(int N) {
-        totbit -= N;
-        buf_byte_idx -= N;
-        if (buf_byte_idx < 0)
-            buf_byte_idx += BUFSIZE;
+        skip(-N);
     }
 
     /**
      * Rewind N bytes in Stream.
      */
     public void rewindNbytes(int N) {
-        int bits = (N << 3);
-        totbit -= bits;
-        buf_byte_idx -= bits;
-        if (buf_byte_idx < 0)
-            buf_byte_idx += BUFSIZE;
+        skip(-(N << 3));
+    }
+
+    /**
+     * Moves the bit position by N bits, forward or back.
+     */
+    private void skip(int N) {
+        totbit += N;
+        buf_bit_idx = (buf_bit_idx + N) & BITSIZE_MASK;
+        cache_bits = 0;
+    }
+
+    /**
+     * Loads the 8 bytes from the current bit position on into the cache,
+     * for at least 57 valid bits.
+     */
+    private void refill() {
+        int pos = buf_bit_idx >>> 3;
+        long bits;
+        if (pos + 8 <= BUFSIZE) {
+            bits = ((long) (buf[pos] & 0xFF) << 56) | ((long) (buf[pos + 1] & 0xFF) << 48)
+                    | ((long) (buf[pos + 2] & 0xFF) << 40) | ((long) (buf[pos + 3] & 0xFF) << 32)
+                    | ((long) (buf[pos + 4] & 0xFF) << 24) | ((buf[pos + 5] & 0xFF) << 16)
+                    | ((buf[pos + 6] & 0xFF) << 8) | (buf[pos + 7] & 0xFF);
+        } else {
+            bits = 0;
+            for (int i = 0; i < 8; i++)
+                bits = (bits << 8) | (buf[(pos + i) & BUFSIZE_MASK] & 0xFF);
+        }
+        int skip = buf_bit_idx & 7;
+        cache = bits << skip;
+        cache_bits = 64 - skip;
     }
 }
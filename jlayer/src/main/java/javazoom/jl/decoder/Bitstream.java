@@ -36,6 +36,10 @@
 package javazoom.jl.decoder;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
 
 
 /**
@@ -67,6 +71,17 @@ public final class Bitstream implements BitstreamErrors {
      */
     private static final int BUFFER_INT_SIZE = 433;
 
+    /**
+     * Size of the window searched for a frame header at a time.
+     */
+    private static final int SCAN_SIZE = 1024;
+
+    /**
+     * Number of frames in a row that may be rejected for their CRC alone
+     * before the checksums of the stream are not trusted any more.
+     */
+    private static final int MAX_CRC_REJECTS = 3;
+
     /**
      * The frame buffer that holds the data for the current frame.
      */
@@ -82,6 +97,14 @@ public final class Bitstream implements BitstreamErrors {
      */
     private byte[] frame_bytes = new byte[BUFFER_INT_SIZE * 4];
 
+    /**
+     * Position in <code>buffer</code> of the current frame data, and how
+     * much of it was actually available.
+     */
+    private int frame_start;
+
+    private int frame_read;
+
     /**
      * Index into <code>framebuffer</code> where the next bits are
      * retrieved.
@@ -114,16 +137,52 @@ public final class Bitstream implements BitstreamErrors {
             0x000007FF, 0x00000FFF, 0x00001FFF, 0x00003FFF, 0x00007FFF, 0x0000FFFF, 0x0001FFFF
     };
 
+    /**
+     * The input, either a stream or a buffer; the other one is null.
+     */
     private final PushbackInputStream source;
 
+    private final ByteBuffer buffer;
+
     private final Header header = new Header();
 
     private final byte[] syncBuf = new byte[4];
 
+    private final byte[] scanBuf = new byte[SCAN_SIZE];
+
+    /**
+     * True if bytes were skipped to find the current header.
+     */
+    private boolean resync;
+
+    /**
+     * True if the input is positioned right after the last frame parsed.
+     */
+    private boolean frame_boundary;
+
+    private boolean crc_trusted = true;
+
+    private int crc_rejects;
+
+    private final Crc16 candidate_crc = new Crc16();
+
     private Crc16[] crc = new Crc16[1];
 
     private byte[] rawid3v2 = null;
 
+    /**
+     * The ID3v2 tag, not copied yet: the bytes of the tag still to be
+     * read from the stream, or the tag in the buffer.
+     */
+    private int id3v2_unread;
+    private ByteBuffer id3v2_buffer;
+
+    /**
+     * Whether the ID3v2 tag of a stream is kept when a frame is read
+     * before {@link #getRawID3v2()} is called.
+     */
+    private boolean keep_id3v2 = true;
+
     private boolean firstframe = true;
 
     /**
@@ -138,11 +197,46 @@ public final class Bitstream implements BitstreamErrors {
         in = new BufferedInputStream(in);
         loadID3v2(in);
         firstframe = true;
-        source = new PushbackInputStream(in, BUFFER_INT_SIZE * 4);
+        // a frame, its header and the next header can be pushed back
+        source = new PushbackInputStream(in, BUFFER_INT_SIZE * 4 + 8);
+        buffer = null;
+
+        closeFrame();
+    }
+
+    /**
+     * Construct a IBitstream that reads data from the remaining bytes
+     * of a buffer. Frames are parsed in place, without going through
+     * intermediate copies, and {@link #skipBytes(long)} is a position
+     * change. The position of the given buffer is not modified.
+     *
+     * @param in The buffer to read from.
+     */
+    public Bitstream(ByteBuffer in) {
+        if (in == null)
+            throw new NullPointerException("in");
+        source = null;
+        buffer = in.slice().order(ByteOrder.BIG_ENDIAN);
+        loadID3v2(buffer);
+        firstframe = true;
 
         closeFrame();
     }
 
+    /**
+     * Construct a IBitstream that reads data from a file channel, from its
+     * current position on. The file is memory-mapped, see
+     * {@link #Bitstream(ByteBuffer)}; the channel can be closed once the
+     * Bitstream is constructed.
+     *
+     * @param channel The channel to read from.
+     * @throws IOException if the file cannot be mapped.
+     */
+    public Bitstream(FileChannel channel) throws IOException {
+        this(channel.map(FileChannel.MapMode.READ_ONLY, channel.position(),
+                channel.size() - channel.position()));
+    }
+
     /**
      * Return position of the first audio header.
      *
@@ -153,7 +247,8 @@ public final class Bitstream implements BitstreamErrors {
     }
 
     /**
-     * Load ID3v2 frames.
+     * Load ID3v2 frames. Only the size of the tag is read, the tag is
+     * read by {@link #getRawID3v2()} or before the first frame.
      *
      * @param in MP3 InputStream.
      * @author JavaZOOM
@@ -173,13 +268,50 @@ public final class Bitstream implements BitstreamErrors {
             } catch (IOException e) {
             }
         }
-        // Load ID3v2 tags.
-        try {
-            if (size > 0) {
-                rawid3v2 = new byte[size];
-                in.read(rawid3v2, 0, rawid3v2.length);
+        if (size > 0)
+            id3v2_unread = size;
+    }
+
+    /**
+     * Reads the ID3v2 tag if it was not read, before the first read of
+     * the stream. The tag is kept, or skipped if it is not to be kept.
+     */
+    private void skipID3v2() throws BitstreamException {
+        if (id3v2_unread > 0) {
+            if (keep_id3v2) {
+                readID3v2();
+            } else {
+                int n = id3v2_unread;
+                id3v2_unread = 0;
+                skipSource(n);
             }
-        } catch (IOException e) {
+        }
+    }
+
+    private void readID3v2() {
+        byte[] b = new byte[id3v2_unread];
+        id3v2_unread = 0;
+        try {
+            rawid3v2 = Arrays.copyOf(b, readBytes(b, 0, b.length));
+        } catch (BitstreamException e) {
+        }
+    }
+
+    /**
+     * Load ID3v2 frames from a buffer.
+     *
+     * @param in MP3 buffer.
+     */
+    private void loadID3v2(ByteBuffer in) {
+        if (in.remaining() < 10 || in.get(0) != 'I' || in.get(1) != 'D' || in.get(2) != '3')
+            return;
+        int size = (in.get(6) << 21) + (in.get(7) << 14) + (in.get(8) << 7) + in.get(9) + 10;
+        header_pos = size;
+        if (size > 0) {
+            int length = Math.min(size, in.remaining());
+            id3v2_buffer = in.slice();
+            id3v2_buffer.limit(length);
+            in.position(in.position() + length);
         }
     }
 
@@ -209,11 +341,33 @@ public final class Bitstream implements BitstreamErrors {
     }
 
     /**
-     * Return raw ID3v2 frames + header.
+     * Sets whether the ID3v2 tag of an InputStream is kept for
+     * {@link #getRawID3v2()} when a frame is read first, which it is by
+     * default. A caller that never asks for the tag can have it skipped
+     * instead, so that the pictures it holds are not copied. It has no
+     * effect once the tag was read.
+     *
+     * @param keep false to skip the tag.
+     */
+    public void setKeepRawID3v2(boolean keep) {
+        keep_id3v2 = keep;
+    }
+
+    /**
+     * Return raw ID3v2 frames + header. The tag is copied on the first
+     * call, or when the first frame is read, see
+     * {@link #setKeepRawID3v2(boolean)}.
      *
      * @return ID3v2 InputStream or null if ID3v2 frames are not available.
      */
     public InputStream getRawID3v2() {
+        if (id3v2_buffer != null) {
+            rawid3v2 = new byte[id3v2_buffer.remaining()];
+            id3v2_buffer.get(rawid3v2);
+            id3v2_buffer = null;
+        } else if (id3v2_unread > 0) {
+            readID3v2();
+        }
         if (rawid3v2 == null)
             return null;
         else {
@@ -228,6 +382,8 @@ public final class Bitstream implements BitstreamErrors {
      * @throws BitstreamException
      */
     public void close() throws BitstreamException {
+        if (buffer != null)
+            return;
         try {
             source.close();
         } catch (IOException ex) {
@@ -244,9 +400,14 @@ public final class Bitstream implements BitstreamErrors {
     public Header readFrame() throws BitstreamException {
         Header result = null;
         try {
+            skipID3v2();
             result = readNextFrame();
             // E.B, Parse VBR (if any) first frame.
             if (firstframe) {
+                if (buffer != null) {
+                    buffer.position(frame_start);
+                    buffer.get(frame_bytes, 0, frame_read);
+                }
                 result.parseVBR(frame_bytes);
                 firstframe = false;
             }
@@ -294,6 +455,45 @@ public final class Bitstream implements BitstreamErrors {
         header.read_header(this, crc);
     }
 
+    /**
+     * Skips over bytes of the input without looking for frames, e.g. to
+     * jump to an offset taken from a {@link MpegFrameIndex}. The next
+     * {@link #readFrame()} synchronizes on the first header found from there.
+     * Call between frames only, after {@link #closeFrame()}.
+     *
+     * @param n number of bytes to skip.
+     * @return the number of bytes skipped, less than <code>n</code> only
+     * at the end of the stream.
+     */
+    public long skipBytes(long n) throws BitstreamException {
+        frame_boundary = false;
+        if (buffer != null) {
+            int skipped = (int) Math.min(Math.max(n, 0), buffer.remaining());
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+        skipID3v2();
+        return skipSource(n);
+    }
+
+    private long skipSource(long n) throws BitstreamException {
+        long skipped = 0;
+        try {
+            while (skipped < n) {
+                long s = source.skip(n - skipped);
+                if (s <= 0) {
+                    if (source.read() == -1)
+                        break;
+                    s = 1;
+                }
+                skipped += s;
+            }
+        } catch (IOException ex) {
+            throw newBitstreamException(STREAM_ERROR, ex);
+        }
+        return skipped;
+    }
+
     /**
      * Unreads the bytes read from the frame.
      *
@@ -302,6 +502,10 @@ public final class Bitstream implements BitstreamErrors {
     // REVIEW: add new error codes for this.
     public void unreadFrame() throws BitstreamException {
         if (wordpointer == -1 && bitindex == -1 && (framesize > 0)) {
+            if (buffer != null) {
+                buffer.position(frame_start);
+                return;
+            }
             try {
                 source.unread(frame_bytes, 0, framesize);
             } catch (IOException ex) {
@@ -310,6 +514,27 @@ public final class Bitstream implements BitstreamErrors {
         }
     }
 
+    /**
+     * Unreads the last three bytes of a header, after
+     * {@link #unreadFrame()}, to search for the next header from the
+     * second byte of this one.
+     */
+    void unreadHeader(int headerString) throws BitstreamException {
+        frame_boundary = false;
+        if (buffer != null) {
+            buffer.position(buffer.position() - 3);
+            return;
+        }
+        syncBuf[0] = (byte) (headerString >>> 16);
+        syncBuf[1] = (byte) (headerString >>> 8);
+        syncBuf[2] = (byte) headerString;
+        try {
+            source.unread(syncBuf, 0, 3);
+        } catch (IOException ex) {
+            throw newBitstreamException(STREAM_ERROR, ex);
+        }
+    }
+
     /**
      * Close MP3 frame.
      */
@@ -324,13 +549,18 @@ public final class Bitstream implements BitstreamErrors {
      * frame header.
      */
     public boolean isSyncCurrentPosition(int syncmode) throws BitstreamException {
+        skipID3v2();
         int read = readBytes(syncBuf, 0, 4);
         int headerString = ((syncBuf[0] << 24) & 0xFF000000) | ((syncBuf[1] << 16) & 0x00FF0000)
                 | ((syncBuf[2] << 8) & 0x0000FF00) | ((syncBuf[3] << 0) & 0x000000FF);
 
-        try {
-            source.unread(syncBuf, 0, read);
-        } catch (IOException ex) {
+        if (buffer != null) {
+            buffer.position(buffer.position() - read);
+        } else {
+            try {
+                source.unread(syncBuf, 0, read);
+            } catch (IOException ex) {
+            }
         }
 
         boolean sync = false;
@@ -371,30 +601,142 @@ public final class Bitstream implements BitstreamErrors {
      * They are stored in the headerString.
      * syncMode allows Synchro flag ID
      * The returned value is False at the end of stream.
+     * <p>
+     * If the next 4 bytes are not a header, the input is searched a
+     * window of bytes at a time for the <code>0xFFE</code> sync bits,
+     * and the bytes after the header found are put back.
      */
     int syncHeader(byte syncMode) throws BitstreamException {
-        boolean sync;
-        int headerString;
-        // read additional 2 bytes
-        int bytesRead = readBytes(syncBuf, 0, 3);
+        resync = false;
+        if (buffer != null)
+            return syncHeaderInPlace(syncMode);
 
-        if (bytesRead != 3)
+        byte[] b = scanBuf;
+        int len = readBytes(b, 0, 4);
+        if (len != 4)
             throw newBitstreamException(STREAM_EOF, null);
 
-        headerString = ((syncBuf[0] << 16) & 0x00FF0000) | ((syncBuf[1] << 8) & 0x0000FF00) | ((syncBuf[2] << 0) & 0x000000FF);
-
-        do {
-            headerString <<= 8;
+        int headerString = ((b[0] << 24) & 0xFF000000) | ((b[1] << 16) & 0x00FF0000)
+                | ((b[2] << 8) & 0x0000FF00) | (b[3] & 0x000000FF);
+        if (isSyncMark(headerString, syncMode, syncword))
+            return headerString;
+
+        resync = true;
+        int i = 1;
+        for (; ; ) {
+            for (int end = len - 3; i < end; i++) {
+                if ((b[i] != (byte) 0xFF) || ((b[i + 1] & 0xE0) != 0xE0))
+                    continue;
+                headerString = ((b[i] << 24) & 0xFF000000) | ((b[i + 1] << 16) & 0x00FF0000)
+                        | ((b[i + 2] << 8) & 0x0000FF00) | (b[i + 3] & 0x000000FF);
+                if (isSyncMark(headerString, syncMode, syncword)) {
+                    try {
+                        source.unread(b, i + 4, len - i - 4);
+                    } catch (IOException ex) {
+                        throw newBitstreamException(STREAM_ERROR, ex);
+                    }
+                    return headerString;
+                }
+            }
 
-            if (readBytes(syncBuf, 3, 1) != 1)
+            // keep the last 3 bytes, they may start a header
+            len -= i;
+            System.arraycopy(b, i, b, 0, len);
+            i = 0;
+            int bytesread;
+            try {
+                bytesread = source.read(b, len, SCAN_SIZE - len);
+            } catch (IOException ex) {
+                throw newBitstreamException(STREAM_ERROR, ex);
+            }
+            if (bytesread == -1)
                 throw newBitstreamException(STREAM_EOF, null);
+            len += bytesread;
+        }
+    }
+
+    /**
+     * {@link #syncHeader(byte)} on <code>buffer</code>.
+     */
+    private int syncHeaderInPlace(byte syncMode) throws BitstreamException {
+        ByteBuffer b = buffer;
+        int start = b.position();
+        for (int pos = start, end = b.limit() - 3; pos < end; pos++) {
+            if ((b.get(pos) != (byte) 0xFF) || ((b.get(pos + 1) & 0xE0) != 0xE0))
+                continue;
+            int headerString = b.getInt(pos);
+            if (isSyncMark(headerString, syncMode, syncword)) {
+                resync = pos != start;
+                b.position(pos + 4);
+                return headerString;
+            }
+        }
+        b.position(b.limit());
+        throw newBitstreamException(STREAM_EOF, null);
+    }
+
+    /**
+     * Returns true if the current header was found right after the last
+     * frame, where the next header was expected, rather than by skipping
+     * bytes.
+     */
+    boolean isInSequence() {
+        return frame_boundary && !resync;
+    }
 
-            headerString |= (syncBuf[3] & 0x000000FF);
+    /**
+     * Returns true if bytes were skipped to find the header of the
+     * current frame.
+     */
+    boolean isResync() {
+        return resync;
+    }
 
-            sync = isSyncMark(headerString, syncMode, syncword);
-        } while (!sync);
+    /**
+     * Returns false if the header of the frame just read was found by
+     * skipping bytes and the frame fails its CRC check. Only Layer III
+     * frames are checked here, the CRC of Layer I and II covers the bit
+     * allocation, which their decoders check.
+     * <p>
+     * Some encoders write wrong checksums, so after a few frames in a
+     * row are rejected for their CRC alone, checksums are not trusted
+     * for the rest of the stream.
+     */
+    boolean candidateCrcOk(Header header, int headerString) {
+        if (!resync || !crc_trusted || !header.checksums() || (header.layer() != 3)
+                || layer3CrcOk(header, headerString)) {
+            crc_rejects = 0;
+            return true;
+        }
+        if (++crc_rejects > MAX_CRC_REJECTS) {
+            crc_trusted = false;
+            crc_rejects = 0;
+            return true;
+        }
+        return false;
+    }
 
-        return headerString;
+    /**
+     * Checks the CRC of the current Layer III frame, which covers the
+     * last 16 bits of the header and the side information.
+     */
+    private boolean layer3CrcOk(Header header, int headerString) {
+        int side_info = (header.version() == Header.MPEG1)
+                ? (header.mode() == Header.SINGLE_CHANNEL ? 17 : 32)
+                : (header.mode() == Header.SINGLE_CHANNEL ? 9 : 17);
+        byte[] b = frame_bytes;
+        if (buffer != null) {
+            if (frame_read < side_info + 2)
+                return false;
+            buffer.position(frame_start);
+            buffer.get(b, 0, side_info + 2);
+            buffer.position(frame_start + frame_read);
+        }
+        Crc16 crc = candidate_crc;
+        crc.add_bits(headerString, 16);
+        crc.add_bytes(b, 2, side_info);
+        short checksum = (short) (((b[0] & 0xFF) << 8) | (b[1] & 0xFF));
+        return crc.checksum() == checksum;
     }
 
     public boolean isSyncMark(int headerstring, int syncmode, int word) {
@@ -416,6 +758,9 @@ public final class Bitstream implements BitstreamErrors {
         // filter out invalid version
         if (sync)
             sync = (((headerstring >>> 19) & 3) != 1);
+        // filter out invalid bitrate
+        if (sync)
+            sync = (((headerstring >>> 12) & 0xF) != 0xF);
 
         return sync;
     }
@@ -426,7 +771,15 @@ public final class Bitstream implements BitstreamErrors {
      */
     int read_frame_data(int bytesize) throws BitstreamException {
         int numread = 0;
-        numread = readFully(frame_bytes, 0, bytesize);
+        if (buffer != null) {
+            // left in place, parse_frame() reads it from the buffer
+            numread = Math.min(Math.max(bytesize, 0), buffer.remaining());
+            frame_start = buffer.position();
+            frame_read = numread;
+            buffer.position(frame_start + numread);
+        } else {
+            numread = readFully(frame_bytes, 0, bytesize);
+        }
         framesize = bytesize;
         wordpointer = -1;
         bitindex = -1;
@@ -437,6 +790,11 @@ public final class Bitstream implements BitstreamErrors {
      * Parses the data previously read with read_frame_data().
      */
     void parse_frame() throws BitstreamException {
+        frame_boundary = true;
+        if (buffer != null) {
+            parse_frame_in_place();
+            return;
+        }
         // Convert Bytes read to int
         int b = 0;
         byte[] byteread = frame_bytes;
@@ -465,6 +823,31 @@ public final class Bitstream implements BitstreamErrors {
         bitindex = 0;
     }
 
+    /**
+     * Parses the current frame straight from <code>buffer</code>. Bytes
+     * missing at the end of the stream read as zero, as with readFully().
+     */
+    private void parse_frame_in_place() {
+        ByteBuffer byteread = buffer;
+        int bytesize = framesize;
+        int start = frame_start;
+        int words = frame_read >>> 2;
+        int b = 0;
+        for (; b < words; b++)
+            framebuffer[b] = byteread.getInt(start + (b << 2));
+        for (int k = b << 2; k < bytesize; k = k + 4) {
+            int word = 0;
+            for (int i = 0; i < 4; i++) {
+                word <<= 8;
+                if (k + i < frame_read)
+                    word |= byteread.get(start + k + i) & 0x000000FF;
+            }
+            framebuffer[b++] = word;
+        }
+        wordpointer = 0;
+        bitindex = 0;
+    }
+
     /**
      * Read bits from buffer into the lower bits of an unsigned int.
      * The LSB contains the latest read bit of the stream.
@@ -549,6 +932,11 @@ public final class Bitstream implements BitstreamErrors {
      * EOF is reached.
      */
     private int readBytes(byte[] b, int offs, int len) throws BitstreamException {
+        if (buffer != null) {
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, offs, n);
+            return n;
+        }
         int totalBytesRead = 0;
         try {
             while (len > 0) {
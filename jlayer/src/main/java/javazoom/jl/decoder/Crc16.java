@@ -31,6 +31,21 @@ package javazoom.jl.decoder;
 public final class Crc16 {
 
     private static final short polynomial = (short) 0x8005;
+
+    /**
+     * The CRC register after shifting in each byte value from zero.
+     */
+    private static final short[] table = new short[256];
+
+    static {
+        for (int v = 0; v < 256; v++) {
+            int c = v << 8;
+            for (int i = 0; i < 8; i++)
+                c = ((c & 0x8000) != 0) ? (c << 1) ^ polynomial : c << 1;
+            table[v] = (short) c;
+        }
+    }
+
     private short crc;
 
     /**
@@ -44,14 +59,32 @@ public final class Crc16 {
      * Feed a bitstring to the crc calculation (0 < length <= 32).
      */
     public void add_bits(int bitstring, int length) {
-        int bitmask = 1 << (length - 1);
-        do
-            if (((crc & 0x8000) == 0) ^ ((bitstring & bitmask) == 0)) {
-                crc <<= 1;
-                crc ^= polynomial;
-            } else
-                crc <<= 1;
-        while ((bitmask >>>= 1) != 0);
+        int c = crc & 0xFFFF;
+        // whole bytes through the table, the remaining bits one by one
+        while (length >= 8) {
+            length -= 8;
+            c = ((c << 8) & 0xFFFF) ^ (table[((c >>> 8) ^ (bitstring >>> length)) & 0xFF] & 0xFFFF);
+        }
+        if (length > 0) {
+            int bitmask = 1 << (length - 1);
+            do
+                if (((c & 0x8000) == 0) ^ ((bitstring & bitmask) == 0))
+                    c = (c << 1) ^ polynomial;
+                else
+                    c <<= 1;
+            while ((bitmask >>>= 1) != 0);
+        }
+        crc = (short) c;
+    }
+
+    /**
+     * Feed <code>len</code> bytes to the crc calculation.
+     */
+    public void add_bytes(byte[] b, int off, int len) {
+        int c = crc & 0xFFFF;
+        for (int end = off + len; off < end; off++)
+            c = ((c << 8) & 0xFFFF) ^ (table[((c >>> 8) ^ b[off]) & 0xFF] & 0xFFFF);
+        crc = (short) c;
     }
 
     /**
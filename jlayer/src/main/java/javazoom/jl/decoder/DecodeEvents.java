@@ -0,0 +1,165 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+
+/**
+ * The Flight Recorder events of {@link DecodeProfile}. Only loaded if
+ * the <code>jdk.jfr</code> module is present.
+ */
+final class DecodeEvents {
+
+    private DecodeEvents() {
+    }
+
+    static void commitFrame(int layer, int bytes, boolean resync, long nanos, long[] stageNanos) {
+        FrameEvent e = new FrameEvent();
+        if (!e.isEnabled())
+            return;
+        e.layer = layer;
+        e.bytes = bytes;
+        e.resync = resync;
+        e.decode = nanos;
+        e.sideInfo = stageNanos[0];
+        e.scaleFactors = stageNanos[1];
+        e.huffman = stageNanos[2];
+        e.dequantize = stageNanos[3];
+        e.stereo = stageNanos[4];
+        e.antialias = stageNanos[5];
+        e.hybrid = stageNanos[6];
+        e.synthesis = stageNanos[7];
+        e.commit();
+    }
+
+    static void commitStream(long frames, long bytes, int resyncs, long nanos, long[] stageNanos) {
+        StreamEvent e = new StreamEvent();
+        if (!e.isEnabled())
+            return;
+        e.frames = frames;
+        e.bytes = bytes;
+        e.resyncs = resyncs;
+        e.decode = nanos;
+        e.microsPerFrame = frames == 0 ? 0 : nanos / 1000.0 / frames;
+        e.sideInfo = stageNanos[0];
+        e.scaleFactors = stageNanos[1];
+        e.huffman = stageNanos[2];
+        e.dequantize = stageNanos[3];
+        e.stereo = stageNanos[4];
+        e.antialias = stageNanos[5];
+        e.hybrid = stageNanos[6];
+        e.synthesis = stageNanos[7];
+        e.commit();
+    }
+
+    @Name("javazoom.jl.DecodeFrame")
+    @Label("Decode Frame")
+    @Category({"JLayer", "Decoder"})
+    @Description("One MPEG audio frame decoded, with the time of each Layer III stage")
+    @StackTrace(false)
+    static class FrameEvent extends Event {
+        @Label("Layer")
+        int layer;
+        @Label("Bytes")
+        @DataAmount
+        int bytes;
+        @Label("Resync")
+        @Description("The frame was found by skipping bytes")
+        boolean resync;
+        @Label("Decode")
+        @Timespan
+        long decode;
+        @Label("Side Info")
+        @Timespan
+        long sideInfo;
+        @Label("Scale Factors")
+        @Timespan
+        long scaleFactors;
+        @Label("Huffman")
+        @Timespan
+        long huffman;
+        @Label("Dequantize")
+        @Timespan
+        long dequantize;
+        @Label("Stereo")
+        @Timespan
+        long stereo;
+        @Label("Antialias")
+        @Timespan
+        long antialias;
+        @Label("Hybrid")
+        @Timespan
+        long hybrid;
+        @Label("Synthesis")
+        @Timespan
+        long synthesis;
+    }
+
+    @Name("javazoom.jl.DecodeStream")
+    @Label("Decode Stream")
+    @Category({"JLayer", "Decoder"})
+    @Description("Summary of the frames decoded from a stream")
+    @StackTrace(false)
+    static class StreamEvent extends Event {
+        @Label("Frames")
+        long frames;
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+        @Label("Resyncs")
+        int resyncs;
+        @Label("Decode")
+        @Timespan
+        long decode;
+        @Label("Microseconds per Frame")
+        double microsPerFrame;
+        @Label("Side Info")
+        @Timespan
+        long sideInfo;
+        @Label("Scale Factors")
+        @Timespan
+        long scaleFactors;
+        @Label("Huffman")
+        @Timespan
+        long huffman;
+        @Label("Dequantize")
+        @Timespan
+        long dequantize;
+        @Label("Stereo")
+        @Timespan
+        long stereo;
+        @Label("Antialias")
+        @Timespan
+        long antialias;
+        @Label("Hybrid")
+        @Timespan
+        long hybrid;
+        @Label("Synthesis")
+        @Timespan
+        long synthesis;
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.util.Arrays;
+
+
+/**
+ * Time spent in each stage of decoding, and a summary of the stream:
+ * frames, bytes, decode time per frame and the number of times the
+ * bitstream lost sync and searched for the next header.
+ * <p>
+ * Profiling is switched on and off for all decoders at runtime with
+ * {@link #setEnabled(boolean)}, or from startup with the system property
+ * <code>javazoom.jl.decoder.profile=true</code>. While it is off,
+ * a <code>Decoder</code> checks the switch once per frame and takes no
+ * timestamps. While it is on, each decoder keeps its own profile, see
+ * {@link Decoder#getProfile()}; the counters are not synchronized and
+ * are read by the decoding thread, or after decoding.
+ * <p>
+ * The stages are timed for Layer III only; Layer I and II frames count
+ * towards the totals. If the <code>jdk.jfr</code> module is present,
+ * each frame is also committed as a <code>javazoom.jl.DecodeFrame</code>
+ * Flight Recorder event when that event is enabled in a recording, and
+ * {@link #commitSummary()} commits a <code>javazoom.jl.DecodeStream</code>
+ * event.
+ */
+public final class DecodeProfile {
+
+    /**
+     * The system property that switches profiling on at startup.
+     */
+    public static final String ENABLED_PROPERTY = "javazoom.jl.decoder.profile";
+
+    /**
+     * The stages of Layer III decoding.
+     */
+    public enum Stage {
+        /** Side information, and copying the main data to the bit reservoir. */
+        SIDE_INFO,
+        SCALE_FACTORS,
+        HUFFMAN,
+        DEQUANTIZE,
+        STEREO,
+        /** Reordering of short blocks and alias reduction. */
+        ANTIALIAS,
+        /** IMDCT, windowing, overlap addition and frequency inversion. */
+        HYBRID,
+        /** Polyphase synthesis, including downmixing, and output. */
+        SYNTHESIS
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private static final boolean JFR = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+
+    private static volatile boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+
+    private final long[] stageNanos = new long[STAGES.length];
+
+    /**
+     * The stage times of the frame being decoded.
+     */
+    final long[] frameNanos = new long[STAGES.length];
+
+    private long frames;
+    private long bytes;
+    private long decodeNanos;
+    private int resyncs;
+
+    /**
+     * Switches profiling on or off for all decoders, from their next frame.
+     */
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Adds the time since <code>start</code> to a stage of the current frame.
+     *
+     * @return the current time, the start of the next stage.
+     */
+    long lap(Stage stage, long start) {
+        long now = System.nanoTime();
+        frameNanos[stage.ordinal()] += now - start;
+        return now;
+    }
+
+    /**
+     * Adds a decoded frame to the totals.
+     *
+     * @param start  The time decoding of the frame started.
+     * @param resync True if the frame was found by skipping bytes.
+     */
+    void endFrame(Header header, long start, boolean resync) {
+        long nanos = System.nanoTime() - start;
+        int size = header.framesize + 4;
+        frames++;
+        bytes += size;
+        decodeNanos += nanos;
+        if (resync)
+            resyncs++;
+        for (int i = 0; i < frameNanos.length; i++)
+            stageNanos[i] += frameNanos[i];
+        if (JFR)
+            DecodeEvents.commitFrame(header.layer(), size, resync, nanos, frameNanos);
+        Arrays.fill(frameNanos, 0);
+    }
+
+    /**
+     * Returns the number of frames decoded.
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Returns the number of bytes of the frames decoded, headers included.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the number of frames found by skipping bytes after the
+     * previous one, rather than right after it.
+     */
+    public int getResyncs() {
+        return resyncs;
+    }
+
+    /**
+     * Returns the time spent decoding frames, in nanoseconds.
+     */
+    public long getDecodeNanos() {
+        return decodeNanos;
+    }
+
+    /**
+     * Returns the time spent in a stage of Layer III decoding, in nanoseconds.
+     */
+    public long getStageNanos(Stage stage) {
+        return stageNanos[stage.ordinal()];
+    }
+
+    /**
+     * Returns the mean decode time of a frame in microseconds.
+     */
+    public double getMicrosPerFrame() {
+        return frames == 0 ? 0 : decodeNanos / 1000.0 / frames;
+    }
+
+    /**
+     * Sets all counters to zero.
+     */
+    public void clear() {
+        frames = 0;
+        bytes = 0;
+        decodeNanos = 0;
+        resyncs = 0;
+        Arrays.fill(stageNanos, 0);
+        Arrays.fill(frameNanos, 0);
+    }
+
+    /**
+     * Returns a copy of the counters.
+     */
+    public DecodeProfile copy() {
+        DecodeProfile p = new DecodeProfile();
+        p.frames = frames;
+        p.bytes = bytes;
+        p.decodeNanos = decodeNanos;
+        p.resyncs = resyncs;
+        System.arraycopy(stageNanos, 0, p.stageNanos, 0, stageNanos.length);
+        return p;
+    }
+
+    /**
+     * Commits the totals as a <code>javazoom.jl.DecodeStream</code> Flight
+     * Recorder event, if the <code>jdk.jfr</code> module is present and the
+     * event is enabled in a recording.
+     */
+    public void commitSummary() {
+        if (JFR)
+            DecodeEvents.commitStream(frames, bytes, resyncs, decodeNanos, stageNanos);
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(frames).append(" frames, ").append(bytes).append(" bytes, ")
+                .append(String.format("%.1f", getMicrosPerFrame())).append(" us/frame, ")
+                .append(resyncs).append(" resyncs");
+        if (frames > 0) {
+            for (Stage stage : STAGES) {
+                sb.append(", ").append(stage.name().toLowerCase()).append(' ')
+                        .append(String.format("%.1f", stageNanos[stage.ordinal()] / 1000.0 / frames));
+            }
+        }
+        return sb.toString();
+    }
+}
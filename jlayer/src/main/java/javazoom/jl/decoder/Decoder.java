@@ -57,12 +57,54 @@ public class Decoder implements DecoderErrors {
     private int outputFrequency;
     private int outputChannels;
 
+    /**
+     * The OutputChannels code the layer decoders are created with.
+     */
+    private int whichChannels;
+
     private Equalizer equalizer = new Equalizer();
 
     private Params params;
 
     private boolean initialized;
 
+    /**
+     * True if the output buffer was created by the decoder rather than
+     * set by the client.
+     */
+    private boolean defaultOutput;
+
+    /**
+     * The sample rate and channels of the stream the decoder was
+     * initialized for.
+     */
+    private int streamFrequency;
+    private int streamChannels;
+
+    /**
+     * True after reset(), until the next frame is checked against the
+     * stream the decoder was initialized for.
+     */
+    private boolean checkFormat;
+
+    /**
+     * The bitstream, header and output buffer the layer decoders read
+     * from and write to.
+     */
+    private Bitstream boundStream;
+    private Header boundHeader;
+    private Obuffer boundOutput;
+
+    /**
+     * The counters of this decoder, created when profiling is first enabled.
+     */
+    private DecodeProfile profile;
+
+    /**
+     * Set while the decoder is borrowed from a DecoderPool.
+     */
+    DecoderPool.Key poolKey;
+
     /**
      * Creates a new <code>Decoder</code> instance with default
      * parameters.
@@ -118,8 +160,31 @@ public class Decoder implements DecoderErrors {
      */
     public Obuffer decodeFrame(Header header, Bitstream stream)
             throws DecoderException {
+        if (checkFormat) {
+            checkFormat = false;
+            if (initialized && ((header.frequency() != streamFrequency)
+                    || (channels(header) != streamChannels))) {
+                l3decoder = null;
+                l2decoder = null;
+                l1decoder = null;
+                filter2 = null;
+                initialized = false;
+            }
+        }
         if (!initialized) {
             initialize(header);
+        } else if (output == null) {
+            output = new SampleBuffer(outputFrequency, outputChannels);
+            defaultOutput = true;
+        }
+
+        DecodeProfile p = null;
+        long start = 0;
+        if (DecodeProfile.isEnabled()) {
+            if (profile == null)
+                profile = new DecodeProfile();
+            p = profile;
+            start = System.nanoTime();
         }
 
         int layer = header.layer();
@@ -127,11 +192,16 @@ public class Decoder implements DecoderErrors {
         output.clear_buffer();
 
         FrameDecoder decoder = retrieveDecoder(header, stream, layer);
+        if (l3decoder != null)
+            l3decoder.profile = p;
 
         decoder.decodeFrame();
 
         output.write_buffer(1);
 
+        if (p != null)
+            p.endFrame(header, start, stream.isResync());
+
         return output;
     }
 
@@ -141,12 +211,58 @@ public class Decoder implements DecoderErrors {
      */
     public void setOutputBuffer(Obuffer out) {
         output = out;
+        defaultOutput = false;
+    }
+
+    /**
+     * Prepares the decoder for the next stream. The state the synthesis
+     * filters and the Layer III decoder carry from one frame to the next
+     * is cleared, but they are kept, and used again if the next stream
+     * has the same sample rate and channels; otherwise they are created
+     * anew with its first frame. The equalizer and output buffer are
+     * not changed. The profile, if any, is cleared.
+     * <p>
+     * The layer decoders let go of the bitstream, header and output
+     * buffer of the last stream, so that an idle decoder keeps none of
+     * them reachable; the next frame decoded binds them again.
+     */
+    public void reset() {
+        if (filter1 != null)
+            filter1.reset();
+        if (filter2 != null)
+            filter2.reset();
+        if (l3decoder != null) {
+            l3decoder.reset();
+            l3decoder.rebind(null, null, null);
+        }
+        if (l2decoder != null)
+            l2decoder.create(null, null, filter1, filter2, null, whichChannels);
+        if (l1decoder != null)
+            l1decoder.create(null, null, filter1, filter2, null, whichChannels);
+        boundStream = null;
+        boundHeader = null;
+        boundOutput = null;
+        if (profile != null)
+            profile.clear();
+        checkFormat = true;
+    }
+
+    /**
+     * Returns the decode times and frame counts of this decoder since it
+     * was created or last reset, or null if it has not decoded a frame
+     * while profiling was enabled.
+     *
+     * @see DecodeProfile#setEnabled(boolean)
+     */
+    public DecodeProfile getProfile() {
+        return profile;
     }
 
     /**
      * Retrieves the sample frequency of the PCM samples output
      * by this decoder. This typically corresponds to the sample
-     * rate encoded in the MPEG audio stream.
+     * rate encoded in the MPEG audio stream, divided by the
+     * downsampling factor of the <code>Params</code>.
      *
      * @return the sample rate (in Hz) of the samples written to the
      * output buffer when decoding.
@@ -158,7 +274,10 @@ public class Decoder implements DecoderErrors {
     /**
      * Retrieves the number of channels of PCM samples output by
      * this decoder. This usually corresponds to the number of
-     * channels in the MPEG audio stream, although it may differ.
+     * channels in the MPEG audio stream, although it may differ:
+     * a stereo stream is decoded to one channel if the
+     * <code>OutputChannels</code> of the <code>Params</code> are
+     * LEFT, RIGHT or DOWNMIX.
      *
      * @return The number of output channels in the decoded samples: 1
      * for mono, or 2 for stereo.
@@ -194,14 +313,25 @@ public class Decoder implements DecoderErrors {
             throws DecoderException {
         FrameDecoder decoder = null;
 
-        // REVIEW: allow channel output selection type
-        // (LEFT, RIGHT, BOTH, DOWNMIX)
+        if ((stream != boundStream) || (header != boundHeader) || (output != boundOutput)) {
+            // the layer decoders keep the stream they were created with
+            if (l3decoder != null)
+                l3decoder.rebind(stream, header, output);
+            if (l2decoder != null)
+                l2decoder.create(stream, header, filter1, filter2, output, whichChannels);
+            if (l1decoder != null)
+                l1decoder.create(stream, header, filter1, filter2, output, whichChannels);
+            boundStream = stream;
+            boundHeader = header;
+            boundOutput = output;
+        }
+
         switch (layer) {
         case 3:
             if (l3decoder == null) {
                 l3decoder = new LayerIIIDecoder(stream,
                         header, filter1, filter2,
-                        output, OutputChannels.BOTH_CHANNELS);
+                        output, whichChannels);
             }
 
             decoder = l3decoder;
@@ -211,7 +341,7 @@ public class Decoder implements DecoderErrors {
                 l2decoder = new LayerIIDecoder();
                 l2decoder.create(stream,
                         header, filter1, filter2,
-                        output, OutputChannels.BOTH_CHANNELS);
+                        output, whichChannels);
             }
             decoder = l2decoder;
             break;
@@ -220,7 +350,7 @@ public class Decoder implements DecoderErrors {
                 l1decoder = new LayerIDecoder();
                 l1decoder.create(stream,
                         header, filter1, filter2,
-                        output, OutputChannels.BOTH_CHANNELS);
+                        output, whichChannels);
             }
             decoder = l1decoder;
             break;
@@ -239,29 +369,45 @@ public class Decoder implements DecoderErrors {
         // REVIEW: allow customizable scale factor
         float scalefactor = 32700.0f;
 
-        int mode = header.mode();
-        @SuppressWarnings("unused")
-        int layer = header.layer();
-        int channels = mode == Header.SINGLE_CHANNEL ? 1 : 2;
+        int channels = channels(header);
+        streamFrequency = header.frequency();
+        streamChannels = channels;
 
+        // LEFT, RIGHT and DOWNMIX output one channel through filter1,
+        // the channels of a mono stream are all the same
+        whichChannels = params.getOutputChannels().getChannelsOutputCode();
+        if (channels == 1)
+            whichChannels = OutputChannels.BOTH_CHANNELS;
+        else if (whichChannels != OutputChannels.BOTH_CHANNELS)
+            channels = 1;
+
+        int downsampling = params.getDownsamplingFactor();
+        outputFrequency = header.frequency() / downsampling;
 
         // set up output buffer if not set up by client.
-        if (output == null)
-            output = new SampleBuffer(header.frequency(), channels);
+        if ((output == null) || defaultOutput) {
+            output = new SampleBuffer(outputFrequency, channels);
+            defaultOutput = true;
+        }
 
         float[] factors = equalizer.getBandFactors();
-        filter1 = new SynthesisFilter(0, scalefactor, factors);
+        filter1 = SynthesisFilter.create(0, scalefactor, factors);
+        filter1.setDownsamplingFactor(downsampling);
 
-        // REVIEW: allow mono output for stereo
-        if (channels == 2)
-            filter2 = new SynthesisFilter(1, scalefactor, factors);
+        if (channels == 2) {
+            filter2 = SynthesisFilter.create(1, scalefactor, factors);
+            filter2.setDownsamplingFactor(downsampling);
+        }
 
         outputChannels = channels;
-        outputFrequency = header.frequency();
 
         initialized = true;
     }
 
+    private static int channels(Header header) {
+        return header.mode() == Header.SINGLE_CHANNEL ? 1 : 2;
+    }
+
     /**
      * The <code>Params</code> class presents the customizable
      * aspects of the decoder.
@@ -271,6 +417,8 @@ public class Decoder implements DecoderErrors {
     public static class Params implements Cloneable {
         private OutputChannels outputChannels = OutputChannels.BOTH;
 
+        private int downsamplingFactor = 1;
+
         private Equalizer equalizer = new Equalizer();
 
         public Params() {
@@ -295,6 +443,27 @@ public class Decoder implements DecoderErrors {
             return outputChannels;
         }
 
+        /**
+         * Sets the reduced rate decoding: with a factor of 2 or 4,
+         * only the lowest 16 or 8 subbands are synthesized, and the
+         * PCM samples are output at 1/2 or 1/4 of the sample rate of
+         * the stream. This is much cheaper than decoding at the full
+         * rate and resampling, when the upper part of the spectrum is
+         * not needed.
+         *
+         * @param factor 1 (the default), 2 or 4.
+         */
+        public void setDownsamplingFactor(int factor) {
+            if ((factor != 1) && (factor != 2) && (factor != 4))
+                throw new IllegalArgumentException("factor");
+
+            downsamplingFactor = factor;
+        }
+
+        public int getDownsamplingFactor() {
+            return downsamplingFactor;
+        }
+
         /**
          * Retrieves the equalizer settings that the decoder's equalizer
          * will be initialized from.
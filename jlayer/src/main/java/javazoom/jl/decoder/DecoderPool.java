@@ -0,0 +1,150 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.util.Objects;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingDeque;
+
+
+/**
+ * A thread safe pool of <code>Decoder</code> instances, so that many
+ * short streams do not each build their own synthesis filters, Layer III
+ * decoder tables and buffers.
+ * <p>
+ * Decoders are pooled by the layer, channels and sample rate of the
+ * stream, and by the downsampling factor and output channels of their
+ * <code>Params</code>. A borrowed decoder is used by one thread at a
+ * time, like any other <code>Decoder</code>; {@link #release(Decoder)}
+ * resets it and makes it available to the next stream of the same kind.
+ */
+public final class DecoderPool {
+
+    private static final DecoderPool DEFAULT = new DecoderPool(8);
+
+    private final int maxIdle;
+
+    private final ConcurrentMap<Key, BlockingDeque<Decoder>> idle = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxIdle The number of idle decoders kept of each kind;
+     *                decoders released beyond that are dropped.
+     */
+    public DecoderPool(int maxIdle) {
+        if (maxIdle < 0)
+            throw new IllegalArgumentException("maxIdle: " + maxIdle);
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Returns the pool shared by the MP3 SPI streams.
+     */
+    public static DecoderPool getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns an idle decoder for streams like the one of
+     * <code>header</code>, or a new one.
+     *
+     * @param header The first header of the stream.
+     * @param params The decoder parameters, or null for the defaults.
+     *               Only the downsampling factor and output channels
+     *               are used; the equalizer of a borrowed decoder is flat.
+     */
+    public Decoder borrow(Header header, Decoder.Params params) {
+        if (params == null)
+            params = Decoder.getDefaultParams();
+        Key key = new Key(header, params);
+        BlockingDeque<Decoder> decoders = idle.get(key);
+        Decoder decoder = decoders != null ? decoders.pollFirst() : null;
+        if (decoder == null) {
+            Decoder.Params p = new Decoder.Params();
+            p.setDownsamplingFactor(key.downsampling);
+            p.setOutputChannels(OutputChannels.fromInt(key.outputChannels));
+            decoder = new Decoder(p);
+        }
+        decoder.poolKey = key;
+        return decoder;
+    }
+
+    /**
+     * Resets a decoder borrowed from this pool and makes it available
+     * again. It must not be used by the caller any more. Decoders not
+     * borrowed from the pool, or already released, are ignored.
+     */
+    public void release(Decoder decoder) {
+        Key key = decoder.poolKey;
+        if (key == null)
+            return;
+        decoder.poolKey = null;
+        decoder.reset();
+        decoder.setEqualizer(null);
+        decoder.setOutputBuffer(null);
+        if (maxIdle > 0)
+            idle.computeIfAbsent(key, k -> new LinkedBlockingDeque<>(maxIdle)).offerFirst(decoder);
+    }
+
+    /**
+     * Returns the number of idle decoders of all kinds.
+     */
+    public int getIdleCount() {
+        int count = 0;
+        for (BlockingDeque<Decoder> decoders : idle.values())
+            count += decoders.size();
+        return count;
+    }
+
+    /**
+     * Drops all idle decoders.
+     */
+    public void clear() {
+        idle.clear();
+    }
+
+    static final class Key {
+        final int layer;
+        final int channels;
+        final int frequency;
+        final int downsampling;
+        final int outputChannels;
+
+        Key(Header header, Decoder.Params params) {
+            layer = header.layer();
+            channels = header.mode() == Header.SINGLE_CHANNEL ? 1 : 2;
+            frequency = header.frequency();
+            downsampling = params.getDownsamplingFactor();
+            outputChannels = params.getOutputChannels().getChannelsOutputCode();
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key k = (Key) o;
+            return (layer == k.layer) && (channels == k.channels) && (frequency == k.frequency)
+                    && (downsampling == k.downsampling) && (outputChannels == k.outputChannels);
+        }
+
+        public int hashCode() {
+            return Objects.hash(layer, channels, frequency, downsampling, outputChannels);
+        }
+    }
+}
@@ -32,6 +32,8 @@
 
 package javazoom.jl.decoder;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * Class for extracting information from a frame header.
  */
@@ -76,6 +78,9 @@ public final class Header {
     private int h_vbr_scale;
     private int h_vbr_bytes;
     private byte[] h_vbr_toc;
+    private boolean h_info_frame;
+    private int h_encoder_delay = -1, h_encoder_padding = -1;
+    private int h_info_frames = -1;
 
     private byte syncmode = Bitstream.INITIAL_SYNC;
     private Crc16 crc;
@@ -176,14 +181,19 @@ public final class Header {
                 // it might be an ID3v1 TAG. (Fix 11/17/04).
                 throw stream.newBitstreamException(Bitstream.INVALIDFRAME);
             }
-            if (stream.isSyncCurrentPosition(syncmode)) {
+            // a header where it was expected is taken as is, one found by
+            // searching is only if the next header follows it
+            if (((syncmode == Bitstream.STRICT_SYNC) && stream.isInSequence())
+                    || (stream.isSyncCurrentPosition(syncmode) && stream.candidateCrcOk(this, headerString))) {
                 if (syncmode == Bitstream.INITIAL_SYNC) {
                     syncmode = Bitstream.STRICT_SYNC;
                     stream.set_syncword(headerString & 0xFFF80CC0);
                 }
                 sync = true;
             } else {
+                // search on from the second byte of this header
                 stream.unreadFrame();
+                stream.unreadHeader(headerString);
             }
         }
         while (!sync);
@@ -220,6 +230,7 @@ public final class Header {
             if (h_mode == SINGLE_CHANNEL) offset = 13 - 4;
             else offset = 21 - 4;
         }
+        parseLAME(firstFrame, offset);
         try {
             System.arraycopy(firstFrame, offset, tmp, 0, 4);
             // Is "Xing" ?
@@ -229,7 +240,7 @@ public final class Header {
                 h_vbr_frames = -1;
                 h_vbr_bytes = -1;
                 h_vbr_scale = -1;
-                h_vbr_toc = new byte[100];
+                h_vbr_toc = null;
 
                 int length = 4;
                 // Read flags.
@@ -250,6 +261,7 @@ public final class Header {
                 }
                 // Read TOC (if available).
                 if ((flags[3] & (byte) (1 << 2)) != 0) {
+                    h_vbr_toc = new byte[100];
                     System.arraycopy(firstFrame, offset + length, h_vbr_toc, 0, h_vbr_toc.length);
                     length += h_vbr_toc.length;
                 }
@@ -274,6 +286,7 @@ public final class Header {
             if (vbri.equals(new String(tmp))) {
                 //Yes.
                 h_vbr = true;
+                h_info_frame = true;
                 h_vbr_frames = -1;
                 h_vbr_bytes = -1;
                 h_vbr_scale = -1;
@@ -286,16 +299,79 @@ public final class Header {
                 // Frames.
                 System.arraycopy(firstFrame, offset + length, tmp, 0, tmp.length);
                 h_vbr_frames = (tmp[0] << 24) & 0xFF000000 | (tmp[1] << 16) & 0x00FF0000 | (tmp[2] << 8) & 0x0000FF00 | tmp[3] & 0x000000FF;
+                h_info_frames = h_vbr_frames;
                 length += 4;
                 //System.out.println("VBR:"+vbri+" Frames:"+ h_vbr_frames +" Size:"+h_vbr_bytes);
-                // TOC
-                // TODO
+                // TOC, resampled to the 100 entries of a Xing TOC.
+                int entries = ((firstFrame[offset + length] & 0xFF) << 8) | (firstFrame[offset + length + 1] & 0xFF);
+                int scale = ((firstFrame[offset + length + 2] & 0xFF) << 8) | (firstFrame[offset + length + 3] & 0xFF);
+                int entrySize = ((firstFrame[offset + length + 4] & 0xFF) << 8) | (firstFrame[offset + length + 5] & 0xFF);
+                int framesPerEntry = ((firstFrame[offset + length + 6] & 0xFF) << 8) | (firstFrame[offset + length + 7] & 0xFF);
+                length += 8;
+                if (entries > 0 && entrySize > 0 && entrySize <= 4 && framesPerEntry > 0
+                        && h_vbr_bytes > 0 && h_vbr_frames > 0
+                        && offset + length + entries * entrySize <= firstFrame.length) {
+                    long[] positions = new long[entries + 1];
+                    for (int i = 0; i < entries; i++) {
+                        int size = 0;
+                        for (int j = 0; j < entrySize; j++)
+                            size = (size << 8) | (firstFrame[offset + length++] & 0xFF);
+                        positions[i + 1] = positions[i] + (long) size * scale;
+                    }
+                    for (int i = 0; i < 100; i++) {
+                        double frame = (double) i * h_vbr_frames / 100 / framesPerEntry;
+                        int entry = Math.min((int) frame, entries - 1);
+                        double position = positions[entry] + (frame - entry) * (positions[entry + 1] - positions[entry]);
+                        h_vbr_toc[i] = (byte) Math.min(255, (int) (position * 256 / h_vbr_bytes));
+                    }
+                } else {
+                    h_vbr_toc = null;
+                }
             }
         } catch (ArrayIndexOutOfBoundsException e) {
             throw new BitstreamException("VBRIVBRHeader Corrupted", e);
         }
     }
 
+    /**
+     * Parse the LAME tag following the fields of a Xing or Info header.
+     * LAME writes an Info header, with the same layout, into CBR files.
+     *
+     * @param firstFrame first frame, without its 4 header bytes
+     * @param offset     offset of the Xing header in <code>firstFrame</code>
+     */
+    private void parseLAME(byte[] firstFrame, int offset) {
+        h_info_frame = false;
+        h_info_frames = -1;
+        h_encoder_delay = h_encoder_padding = -1;
+        if (offset + 8 > firstFrame.length)
+            return;
+        String tag = new String(firstFrame, offset, 4, StandardCharsets.ISO_8859_1);
+        if (!tag.equals("Xing") && !tag.equals("Info"))
+            return;
+        h_info_frame = true;
+        int flags = firstFrame[offset + 7];
+        if (((flags & 1) != 0) && (offset + 12 <= firstFrame.length))
+            h_info_frames = ((firstFrame[offset + 8] & 0xFF) << 24) | ((firstFrame[offset + 9] & 0xFF) << 16)
+                    | ((firstFrame[offset + 10] & 0xFF) << 8) | (firstFrame[offset + 11] & 0xFF);
+        int lame = offset + 8;
+        if ((flags & 1) != 0) lame += 4;
+        if ((flags & 2) != 0) lame += 4;
+        if ((flags & 4) != 0) lame += 100;
+        if ((flags & 8) != 0) lame += 4;
+        if (lame + 24 > firstFrame.length)
+            return;
+        // FFmpeg writes the same tag as Lavc or Lavf.
+        String encoder = new String(firstFrame, lame, 4, StandardCharsets.ISO_8859_1);
+        if (!encoder.equals("LAME") && !encoder.equals("Lavc") && !encoder.equals("Lavf"))
+            return;
+        // 9 bytes encoder version, 12 bytes of VBR method, lowpass,
+        // replay gain, flags and bitrate, then 12 bits each of delay and padding.
+        int b0 = firstFrame[lame + 21] & 0xFF, b1 = firstFrame[lame + 22] & 0xFF, b2 = firstFrame[lame + 23] & 0xFF;
+        h_encoder_delay = (b0 << 4) | (b1 >>> 4);
+        h_encoder_padding = ((b1 & 0x0F) << 8) | b2;
+    }
+
     // Functions to query header contents:
 
     /**
@@ -388,6 +464,64 @@ public final class Header {
         return h_vbr_toc;
     }
 
+    /**
+     * Return VBR frames.
+     *
+     * @return number of frames or -1 if not available
+     */
+    public int vbr_frames() {
+        return h_vbr_frames;
+    }
+
+    /**
+     * Return VBR bytes.
+     *
+     * @return stream size in bytes or -1 if not available
+     */
+    public int vbr_bytes() {
+        return h_vbr_bytes;
+    }
+
+    /**
+     * Return whether the first frame is a Xing, Info or VBRI frame
+     * rather than audio.
+     */
+    public boolean info_frame() {
+        return h_info_frame;
+    }
+
+    /**
+     * Return the number of audio frames from a Xing, Info or VBRI header.
+     * Unlike {@link #vbr_frames()}, this is also read from the Info
+     * header LAME writes into CBR files.
+     *
+     * @return the number of frames after the info frame, or -1 if not
+     * available
+     */
+    public int info_frames() {
+        return h_info_frames;
+    }
+
+    /**
+     * Return encoder delay from the LAME tag.
+     *
+     * @return samples to drop from the start of the decoded audio,
+     * or -1 if not available
+     */
+    public int encoder_delay() {
+        return h_encoder_delay;
+    }
+
+    /**
+     * Return encoder padding from the LAME tag.
+     *
+     * @return samples to drop from the end of the decoded audio,
+     * or -1 if not available
+     */
+    public int encoder_padding() {
+        return h_encoder_padding;
+    }
+
     /**
      * Returns Checksum flag.
      * Compares computed checksum with stream checksum.
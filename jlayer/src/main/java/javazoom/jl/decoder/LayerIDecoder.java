@@ -309,6 +309,10 @@ class LayerIDecoder implements FrameDecoder {
                 } else if (channels == OutputChannels.LEFT_CHANNEL) {
                     float sample1 = sample * scalefactor;
                     filter1.input_sample(sample1, subbandnumber);
+                } else if (channels == OutputChannels.DOWNMIX_CHANNELS) {
+                    float sample1 = sample * scalefactor,
+                            sample2 = sample * channel2_scalefactor;
+                    filter1.input_sample((sample1 + sample2) * 0.5f, subbandnumber);
                 } else {
                     float sample2 = sample * channel2_scalefactor;
                     filter1.input_sample(sample2, subbandnumber);
@@ -381,6 +385,16 @@ class LayerIDecoder implements FrameDecoder {
          *
          */
         public boolean put_next_sample(int channels, SynthesisFilter filter1, SynthesisFilter filter2) {
+            if (channels == OutputChannels.DOWNMIX_CHANNELS) {
+                float sample1 = 0.0f, sample2 = 0.0f;
+                if (allocation != 0)
+                    sample1 = (sample * factor + offset) * scalefactor;
+                if (channel2_allocation != 0)
+                    sample2 = (channel2_sample * channel2_factor + channel2_offset) * channel2_scalefactor;
+                filter1.input_sample((sample1 + sample2) * 0.5f, subbandnumber);
+                return true;
+            }
+
             super.put_next_sample(channels, filter1, filter2);
             if ((channel2_allocation != 0) && (channels != OutputChannels.LEFT_CHANNEL)) {
                 float sample2 = (channel2_sample * channel2_factor + channel2_offset) *
@@ -681,22 +681,28 @@ class LayerIIDecoder extends LayerIDecoder implements FrameDecoder {
          *
          */
         public boolean put_next_sample(int channels, SynthesisFilter filter1, SynthesisFilter filter2) {
-            if ((allocation != 0) && (channels != OutputChannels.RIGHT_CHANNEL)) {
-                float sample = samples[sampleNumber];
-
-                if (groupingtable[0] == null)
-                    sample = (sample + d[0]) * c[0];
-                if (groupNumber <= 4)
-                    sample *= scaleFactor1;
-                else if (groupNumber <= 8)
-                    sample *= scaleFactor2;
-                else
-                    sample *= scaleFactor3;
-                filter1.input_sample(sample, subbandNumber);
-            }
+            if ((allocation != 0) && (channels != OutputChannels.RIGHT_CHANNEL))
+                filter1.input_sample(channel1_sample(), subbandNumber);
 
             return ++sampleNumber == 3;
         }
+
+        /**
+         * Returns the current sample of the first channel, requantized and scaled.
+         */
+        protected float channel1_sample() {
+            float sample = samples[sampleNumber];
+
+            if (groupingtable[0] == null)
+                sample = (sample + d[0]) * c[0];
+            if (groupNumber <= 4)
+                sample *= scaleFactor1;
+            else if (groupNumber <= 8)
+                sample *= scaleFactor2;
+            else
+                sample *= scaleFactor3;
+            return sample;
+        }
     }
 
     /**
@@ -803,6 +809,19 @@ class LayerIIDecoder extends LayerIDecoder implements FrameDecoder {
                     else
                         sample *= scaleFactor3;
                     filter1.input_sample(sample, subbandNumber);
+                } else if (channels == OutputChannels.DOWNMIX_CHANNELS) {
+                    float sample2 = sample;
+                    if (groupNumber <= 4) {
+                        sample *= scaleFactor1;
+                        sample2 *= channel2_scalefactor1;
+                    } else if (groupNumber <= 8) {
+                        sample *= scaleFactor2;
+                        sample2 *= channel2_scalefactor2;
+                    } else {
+                        sample *= scaleFactor3;
+                        sample2 *= channel2_scalefactor3;
+                    }
+                    filter1.input_sample((sample + sample2) * 0.5f, subbandNumber);
                 } else {
                     if (groupNumber <= 4)
                         sample *= channel2_scalefactor1;
@@ -944,19 +963,16 @@ class LayerIIDecoder extends LayerIDecoder implements FrameDecoder {
          *
          */
         public boolean put_next_sample(int channels, SynthesisFilter filter1, SynthesisFilter filter2) {
+            if (channels == OutputChannels.DOWNMIX_CHANNELS) {
+                float sample1 = (allocation != 0) ? channel1_sample() : 0.0f;
+                float sample2 = (channel2Allocation != 0) ? channel2_sample(sampleNumber) : 0.0f;
+                filter1.input_sample((sample1 + sample2) * 0.5f, subbandNumber);
+                return ++sampleNumber == 3;
+            }
+
             boolean returnValue = super.put_next_sample(channels, filter1, filter2);
             if ((channel2Allocation != 0) && (channels != OutputChannels.LEFT_CHANNEL)) {
-                float sample = channel2_samples[sampleNumber - 1];
-
-                if (groupingtable[1] == null)
-                    sample = (sample + channel2_d[0]) * channel2_c[0];
-
-                if (groupNumber <= 4)
-                    sample *= channel2ScaleFactor1;
-                else if (groupNumber <= 8)
-                    sample *= channel2ScaleFactor2;
-                else
-                    sample *= channel2_scalefactor3;
+                float sample = channel2_sample(sampleNumber - 1);
                 if (channels == OutputChannels.BOTH_CHANNELS)
                     filter2.input_sample(sample, subbandNumber);
                 else
@@ -964,5 +980,23 @@ class LayerIIDecoder extends LayerIDecoder implements FrameDecoder {
             }
             return returnValue;
         }
+
+        /**
+         * Returns sample n of the second channel, requantized and scaled.
+         */
+        private float channel2_sample(int n) {
+            float sample = channel2_samples[n];
+
+            if (groupingtable[1] == null)
+                sample = (sample + channel2_d[0]) * channel2_c[0];
+
+            if (groupNumber <= 4)
+                sample *= channel2ScaleFactor1;
+            else if (groupNumber <= 8)
+                sample *= channel2ScaleFactor2;
+            else
+                sample *= channel2_scalefactor3;
+            return sample;
+        }
     }
 }
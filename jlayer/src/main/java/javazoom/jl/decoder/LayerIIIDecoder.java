@@ -34,6 +34,9 @@
 
 package javazoom.jl.decoder;
 
+import java.util.Arrays;
+
+
 /**
  * Class Implementing Layer 3 Decoder.
  *
@@ -47,9 +50,17 @@ final class LayerIIIDecoder implements FrameDecoder {
 
     private int checkSumHuff = 0;
     private int[] is_1d;
-    private float[][][] ro;
-    private float[][][] lr;
-    private float[] out_1d;
+    /**
+     * Granule lines per channel, 576 each, line sb * 18 + ss of subband sb.
+     */
+    private float[][] ro;
+    private float[][] lr;
+    private float[][] out_1d;
+    /**
+     * True if the lines of a channel in ro were stored in the order of
+     * the short block reordering already.
+     */
+    private boolean[] reordered;
     private float[][] prevblck;
     private float[][] k;
     private int[] nonzero;
@@ -67,11 +78,17 @@ final class LayerIIIDecoder implements FrameDecoder {
     private int max_gr;
     private int frame_start;
     private int part2_start;
+    private int skip_channel; // channel not decoded in this frame, or -1
     private int channels;
     private int first_channel;
     private int last_channel;
     private int sfreq;
 
+    /**
+     * The profile the stages of the next frame are timed in, or null.
+     */
+    DecodeProfile profile;
+
     /**
      * Constructor.
      * <p>
@@ -83,9 +100,10 @@ final class LayerIIIDecoder implements FrameDecoder {
                            Obuffer buffer0, int which_ch0) {
         huffcodetab.initHuff();
         is_1d = new int[SBLIMIT * SSLIMIT + 4];
-        ro = new float[2][SBLIMIT][SSLIMIT];
-        lr = new float[2][SBLIMIT][SSLIMIT];
-        out_1d = new float[SBLIMIT * SSLIMIT];
+        ro = new float[2][SBLIMIT * SSLIMIT];
+        lr = new float[2][SBLIMIT * SSLIMIT];
+        out_1d = new float[2][SBLIMIT * SSLIMIT];
+        reordered = new boolean[2];
         prevblck = new float[2][SBLIMIT * SSLIMIT];
         k = new float[2][SBLIMIT * SSLIMIT];
         nonzero = new int[2];
@@ -134,11 +152,7 @@ final class LayerIIIDecoder implements FrameDecoder {
 
         // END OF L3TABLE INIT
 
-        if (reorder_table == null) { // SZD: generate LUT
-            reorder_table = new int[9][];
-            for (int i = 0; i < 9; i++)
-                reorder_table[i] = reorder(sfBandIndex[i].s);
-        }
+        init_reorder(sfBandIndex);
 
         // Sftable
         int[] ll0 = {0, 6, 11, 16, 21};
@@ -168,7 +182,6 @@ final class LayerIIIDecoder implements FrameDecoder {
         if (channels == 2) {
             switch (which_channels) {
             case OutputChannels.LEFT_CHANNEL:
-            case OutputChannels.DOWNMIX_CHANNELS:
                 first_channel = last_channel = 0;
                 break;
 
@@ -176,6 +189,7 @@ final class LayerIIIDecoder implements FrameDecoder {
                 first_channel = last_channel = 1;
                 break;
 
+            case OutputChannels.DOWNMIX_CHANNELS: // mixed before the synthesis
             case OutputChannels.BOTH_CHANNELS:
             default:
                 first_channel = 0;
@@ -204,9 +218,42 @@ final class LayerIIIDecoder implements FrameDecoder {
         for (int ch = 0; ch < 2; ch++)
             for (int j = 0; j < 576; j++)
                 prevblck[ch][j] = 0.0f;
+        prev_sblimit[0] = prev_sblimit[1] = 0;
         br = new BitReserve();
     }
 
+    /**
+     * Clears all state left by the last stream, as well as the state
+     * seek_notify() clears: lines beyond the nonzero ones of a granule
+     * are not always written, and a new decoder starts with them zero.
+     */
+    void reset() {
+        seek_notify();
+        si = new III_side_info_t();
+        Arrays.fill(is_1d, 0);
+        for (int ch = 0; ch < 2; ch++) {
+            Arrays.fill(ro[ch], 0.0f);
+            Arrays.fill(lr[ch], 0.0f);
+            Arrays.fill(out_1d[ch], 0.0f);
+            Arrays.fill(k[ch], 0.0f);
+            Arrays.fill(scalefac[ch].l, 0);
+            for (int[] window : scalefac[ch].s)
+                Arrays.fill(window, 0);
+            reordered[ch] = false;
+            nonzero[ch] = 576;
+        }
+    }
+
+    /**
+     * Sets the bitstream, header and output buffer to use from the next
+     * frame on, for a stream of the same sample rate and channels.
+     */
+    void rebind(Bitstream stream0, Header header0, Obuffer buffer0) {
+        stream = stream0;
+        header = header0;
+        buffer = buffer0;
+    }
+
     public void decodeFrame() {
         decode();
     }
@@ -226,11 +273,23 @@ final class LayerIIIDecoder implements FrameDecoder {
         int main_data_end;
         int bytes_to_discard;
         int i;
+        DecodeProfile prof = profile;
+        long t = prof != null ? System.nanoTime() : 0;
 
         get_side_info();
 
         for (i = 0; i < nSlots; i++)
             br.hputbuf(stream.get_bits(8));
+        if (prof != null)
+            t = prof.lap(DecodeProfile.Stage.SIDE_INFO, t);
+
+        // Without ms or intensity stereo, a channel that is not output
+        // does not need to be decoded at all.
+        skip_channel = -1;
+        if ((channels == 2) && (first_channel == last_channel)) {
+            if ((header.mode() != Header.JOINT_STEREO) || (header.mode_extension() == 0))
+                skip_channel = 1 - first_channel;
+        }
 
         main_data_end = br.hsstell() >>> 3; // of previous frame
 
@@ -264,32 +323,69 @@ final class LayerIIIDecoder implements FrameDecoder {
                     get_scale_factors(ch, gr);
                 else // MPEG-2 LSF, SZD: MPEG-2.5 LSF
                     get_LSF_scale_factors(ch, gr);
+                if (prof != null)
+                    t = prof.lap(DecodeProfile.Stage.SCALE_FACTORS, t);
+
+                if (ch == skip_channel) {
+                    // the scale factors are read still, the next granule
+                    // may reuse them; skip the Huffman coded part
+                    int num_bits = part2_start + si.ch[ch].gr[gr].part2_3_length - br.hsstell();
+                    if (num_bits > 0)
+                        br.hgetbits(num_bits);
+                    else if (num_bits < 0)
+                        br.rewindNbits(-num_bits);
+                    if (prof != null)
+                        t = prof.lap(DecodeProfile.Stage.HUFFMAN, t);
+                    continue;
+                }
 
                 huffman_decode(ch, gr);
+                if (prof != null)
+                    t = prof.lap(DecodeProfile.Stage.HUFFMAN, t);
                 dequantize_sample(ro[ch], ch, gr);
+                if (prof != null)
+                    t = prof.lap(DecodeProfile.Stage.DEQUANTIZE, t);
             }
 
-            stereo(gr);
-
-            if ((which_channels == OutputChannels.DOWNMIX_CHANNELS) && (channels > 1))
-                do_downmix();
+            if (skip_channel >= 0)
+                System.arraycopy(ro[first_channel], 0, lr[first_channel], 0, SBLIMIT * SSLIMIT);
+            else
+                stereo(gr);
+            if (prof != null)
+                t = prof.lap(DecodeProfile.Stage.STEREO, t);
 
+            float[] xr0 = null;
             for (ch = first_channel; ch <= last_channel; ch++) {
 
-                reorder(lr[ch], ch, gr);
-                antialias(ch, gr);
+                float[] xr = reorder(lr[ch], ch, gr);
+                antialias(xr, ch, gr);
+                if (prof != null)
+                    t = prof.lap(DecodeProfile.Stage.ANTIALIAS, t);
 
-                hybrid(ch, gr);
+                hybrid(xr, ch, gr);
 
                 for (sb18 = 18; sb18 < 576; sb18 += 36) // Frequency inversion
                     for (ss = 1; ss < SSLIMIT; ss += 2)
-                        out_1d[sb18 + ss] = -out_1d[sb18 + ss];
+                        xr[sb18 + ss] = -xr[sb18 + ss];
+                if (prof != null)
+                    t = prof.lap(DecodeProfile.Stage.HYBRID, t);
+
+                if ((which_channels == OutputChannels.DOWNMIX_CHANNELS) && (channels == 2)) {
+                    // the synthesis is linear, mix the subband samples
+                    // and run only the first filter
+                    if (ch == 0) {
+                        xr0 = xr;
+                        continue;
+                    }
+                    for (i = 0; i < SBLIMIT * SSLIMIT; i++)
+                        xr[i] = (xr0[i] + xr[i]) * 0.5f;
+                }
 
-                if ((ch == 0) || (which_channels == OutputChannels.RIGHT_CHANNEL)) {
+                if ((ch == 0) || (which_channels != OutputChannels.BOTH_CHANNELS)) {
                     for (ss = 0; ss < SSLIMIT; ss++) { // Polyphase synthesis
                         sb = 0;
                         for (sb18 = 0; sb18 < 576; sb18 += 18) {
-                            samples1[sb] = out_1d[sb18 + ss];
+                            samples1[sb] = xr[sb18 + ss];
                             sb++;
                         }
                         filter1.input_samples(samples1);
@@ -299,7 +395,7 @@ final class LayerIIIDecoder implements FrameDecoder {
                     for (ss = 0; ss < SSLIMIT; ss++) { // Polyphase synthesis
                         sb = 0;
                         for (sb18 = 0; sb18 < 576; sb18 += 18) {
-                            samples2[sb] = out_1d[sb18 + ss];
+                            samples2[sb] = xr[sb18 + ss];
                             sb++;
                         }
                         filter2.input_samples(samples2);
@@ -307,6 +403,8 @@ final class LayerIIIDecoder implements FrameDecoder {
                     }
 
                 }
+                if (prof != null)
+                    t = prof.lap(DecodeProfile.Stage.SYNTHESIS, t);
             }
         }
 
@@ -739,27 +837,37 @@ final class LayerIIIDecoder implements FrameDecoder {
         }
 
         index = 0;
-        // Read big values area
-        for (int i = 0; i < (si.ch[ch].gr[gr].big_values << 1); i += 2) {
-            if (i < region1Start) h = huffcodetab.ht[si.ch[ch].gr[gr].table_select[0]];
-            else if (i < region2Start) h = huffcodetab.ht[si.ch[ch].gr[gr].table_select[1]];
-            else h = huffcodetab.ht[si.ch[ch].gr[gr].table_select[2]];
-
-            huffcodetab.huffman_decoder(h, x, y, v, w, br);
-
-            is_1d[index++] = x[0];
-            is_1d[index++] = y[0];
-
-            checkSumHuff = checkSumHuff + x[0] + y[0];
+        // Read big values area, region by region, with the lookup
+        // decoder for the tables that have one
+        int big_values_end = si.ch[ch].gr[gr].big_values << 1;
+        int i = 0;
+        for (int region = 0; region < 3; region++) {
+            int region_end = big_values_end;
+            if (region == 0) region_end = Math.min(region_end, region1Start);
+            else if (region == 1) region_end = Math.min(region_end, region2Start);
+            h = huffcodetab.ht[si.ch[ch].gr[gr].table_select[region]];
+            boolean lookup = h.has_lookup();
+
+            for (; i < region_end; i += 2) {
+                if (lookup) huffcodetab.huffman_decoder_lookup(h, x, y, v, w, br);
+                else huffcodetab.huffman_decoder(h, x, y, v, w, br);
+
+                is_1d[index++] = x[0];
+                is_1d[index++] = y[0];
+
+                checkSumHuff = checkSumHuff + x[0] + y[0];
+            }
         }
 
         // Read count1 area
         h = huffcodetab.ht[si.ch[ch].gr[gr].count1table_select + 32];
+        boolean lookup = h.has_lookup();
         num_bits = br.hsstell();
 
         while ((num_bits < part2_3_end) && (index < 576)) {
 
-            huffcodetab.huffman_decoder(h, x, y, v, w, br);
+            if (lookup) huffcodetab.huffman_decoder_lookup(h, x, y, v, w, br);
+            else huffcodetab.huffman_decoder(h, x, y, v, w, br);
 
             is_1d[index++] = v[0];
             is_1d[index++] = w[0];
@@ -808,17 +916,20 @@ final class LayerIIIDecoder implements FrameDecoder {
     }
 
     /**
-     *
+     * Dequantizes the Huffman decoded lines of a channel into xr and
+     * applies the scalefactors, in one pass. Pure short blocks are stored
+     * in their reordered positions right away when nothing in between
+     * depends on the line order, see reorder().
      */
-    private void dequantize_sample(float[][] xr, int ch, int gr) {
+    private void dequantize_sample(float[] xr, int ch, int gr) {
         gr_info_s gr_info = (si.ch[ch].gr[gr]);
         int cb = 0;
         int next_cb_boundary;
         int cb_begin = 0;
         int cb_width = 0;
-        int index = 0, t_index, j;
+        int t_index, j;
         float g_gain;
-        float[][] xr_1d = xr;
+        int[] dest = null;
 
         // choose correct scalefactor band per block type, initalize boundary
 
@@ -829,47 +940,29 @@ final class LayerIIIDecoder implements FrameDecoder {
                 cb_width = sfBandIndex[sfreq].s[1];
                 next_cb_boundary = (cb_width << 2) - cb_width;
                 cb_begin = 0;
+                if (can_reorder_early(gr))
+                    dest = reorder_dest[sfreq];
             }
         } else {
             next_cb_boundary = sfBandIndex[sfreq].l[1]; // LONG blocks: 0,1,3
         }
+        reordered[ch] = dest != null;
 
         // Compute overall (global) scaling.
 
-        g_gain = (float) Math.pow(2.0, (0.25 * (gr_info.global_gain - 210.0)));
+        g_gain = global_gain_pow[gr_info.global_gain];
 
-        for (j = 0; j < nonzero[ch]; j++) {
-            // Modif E.B 02/22/99
-            int reste = j % SSLIMIT;
-            int quotien = (j - reste) / SSLIMIT;
-            if (is_1d[j] == 0) xr_1d[quotien][reste] = 0.0f;
-            else {
-                int abv = is_1d[j];
-                // Pow Array fix (11/17/04)
-                if (abv < t_43.length) {
-                    if (is_1d[j] > 0) xr_1d[quotien][reste] = g_gain * t_43[abv];
-                    else {
-                        if (-abv < t_43.length) xr_1d[quotien][reste] = -g_gain * t_43[-abv];
-                        else xr_1d[quotien][reste] = -g_gain * (float) Math.pow(-abv, d43);
-                    }
-                } else {
-                    if (is_1d[j] > 0) xr_1d[quotien][reste] = g_gain * (float) Math.pow(abv, d43);
-                    else xr_1d[quotien][reste] = -g_gain * (float) Math.pow(-abv, d43);
-                }
-            }
-        }
+        boolean short_blocks = (gr_info.window_switching_flag != 0) && (gr_info.block_type == 2);
+        int short_start = (gr_info.mixed_block_flag != 0) ? 36 : 0;
+        int long_cb = -1;
+        float long_scale = 0.0f;
 
-        // apply formula per block type
         for (j = 0; j < nonzero[ch]; j++) {
-            // Modif E.B 02/22/99
-            int reste = j % SSLIMIT;
-            int quotien = (j - reste) / SSLIMIT;
-
-            if (index == next_cb_boundary) { /* Adjust critical band boundary */
-                if ((gr_info.window_switching_flag != 0) && (gr_info.block_type == 2)) {
+            if (j == next_cb_boundary) { /* Adjust critical band boundary */
+                if (short_blocks) {
                     if (gr_info.mixed_block_flag != 0) {
 
-                        if (index == sfBandIndex[sfreq].l[8]) {
+                        if (j == sfBandIndex[sfreq].l[8]) {
                             next_cb_boundary = sfBandIndex[sfreq].s[4];
                             next_cb_boundary = (next_cb_boundary << 2) -
                                     next_cb_boundary;
@@ -880,7 +973,7 @@ final class LayerIIIDecoder implements FrameDecoder {
                             cb_begin = sfBandIndex[sfreq].s[3];
                             cb_begin = (cb_begin << 2) - cb_begin;
 
-                        } else if (index < sfBandIndex[sfreq].l[8]) {
+                        } else if (j < sfBandIndex[sfreq].l[8]) {
 
                             next_cb_boundary = sfBandIndex[sfreq].l[(++cb) + 1];
 
@@ -916,112 +1009,127 @@ final class LayerIIIDecoder implements FrameDecoder {
 
             // Do long/short dependent scaling operations
 
-            if ((gr_info.window_switching_flag != 0) &&
-                    (((gr_info.block_type == 2) && (gr_info.mixed_block_flag == 0)) ||
-                            ((gr_info.block_type == 2) && (gr_info.mixed_block_flag != 0) && (j >= 36)))) {
+            float scale;
+            if (short_blocks && j >= short_start) {
 
-                t_index = (index - cb_begin) / cb_width;
+                t_index = (j - cb_begin) / cb_width;
                 int idx = scalefac[ch].s[t_index][cb]
                         << gr_info.scalefac_scale;
                 idx += (gr_info.subblock_gain[t_index] << 2);
 
-                xr_1d[quotien][reste] *= two_to_negative_half_pow[idx];
+                scale = two_to_negative_half_pow[idx];
 
             } else {   // LONG block types 0,1,3 & 1st 2 subbands of switched blocks
-                int idx = scalefac[ch].l[cb];
+                if (cb != long_cb) {
+                    int idx = scalefac[ch].l[cb];
 
-                if (gr_info.preflag != 0)
-                    idx += pretab[cb];
+                    if (gr_info.preflag != 0)
+                        idx += pretab[cb];
 
-                idx = idx << gr_info.scalefac_scale;
-                xr_1d[quotien][reste] *= two_to_negative_half_pow[idx];
+                    idx = idx << gr_info.scalefac_scale;
+                    long_scale = two_to_negative_half_pow[idx];
+                    long_cb = cb;
+                }
+                scale = long_scale;
             }
-            index++;
+
+            // Same operations, in the same order, as dequantizing into
+            // xr first and scaling in a second pass.
+            float value;
+            int abv = is_1d[j];
+            if (abv == 0) value = 0.0f;
+            else {
+                // Pow Array fix (11/17/04)
+                if (abv < t_43.length) {
+                    if (abv > 0) value = g_gain * t_43[abv];
+                    else {
+                        if (-abv < t_43.length) value = -g_gain * t_43[-abv];
+                        else value = -g_gain * (float) Math.pow(-abv, d43);
+                    }
+                } else {
+                    value = g_gain * (float) Math.pow(abv, d43);
+                }
+            }
+            xr[dest == null ? j : dest[j]] = value * scale;
         }
 
-        for (j = nonzero[ch]; j < 576; j++) {
-            // Modif E.B 02/22/99
-            int reste = j % SSLIMIT;
-            int quotien = (j - reste) / SSLIMIT;
-            if (reste < 0) reste = 0;
-            if (quotien < 0) quotien = 0;
-            xr_1d[quotien][reste] = 0.0f;
+        for (; j < 576; j++)
+            xr[dest == null ? j : dest[j]] = 0.0f;
+    }
+
+    /**
+     * Returns true if the short block lines of granule gr can be reordered
+     * while dequantizing: that is when only one channel is decoded, or no
+     * stereo processing pairs lines of two channels in different orders
+     * and intensity stereo, which looks at lines by their position in the
+     * bitstream, is not used.
+     */
+    private boolean can_reorder_early(int gr) {
+        if ((channels == 1) || (skip_channel >= 0))
+            return true;
+        boolean i_stereo = (header.mode() == Header.JOINT_STEREO) && ((header.mode_extension() & 0x1) != 0);
+        if (i_stereo)
+            return false;
+        for (int ch = 0; ch < 2; ch++) {
+            gr_info_s gr_info = si.ch[ch].gr[gr];
+            if ((gr_info.window_switching_flag == 0) || (gr_info.block_type != 2) || (gr_info.mixed_block_flag != 0))
+                return false;
         }
+        return true;
     }
 
     /**
-     *
+     * Returns the lines of a channel in the order the hybrid filter bank
+     * takes them: xr itself for long blocks and lines already reordered
+     * by dequantize_sample(), out_1d[ch] otherwise.
      */
-    private void reorder(float[][] xr, int ch, int gr) {
+    private float[] reorder(float[] xr, int ch, int gr) {
         gr_info_s gr_info = (si.ch[ch].gr[gr]);
         int freq, freq3;
         int index;
         int sfb, sfb_start, sfb_lines;
         int src_line, des_line;
-        float[][] xr_1d = xr;
 
-        if ((gr_info.window_switching_flag != 0) && (gr_info.block_type == 2)) {
+        if ((gr_info.window_switching_flag == 0) || (gr_info.block_type != 2) || reordered[ch])
+            return xr;
 
-            for (index = 0; index < 576; index++)
+        float[] out_1d = this.out_1d[ch];
+        if (gr_info.mixed_block_flag != 0) {
+            for (index = 36; index < 576; index++)
                 out_1d[index] = 0.0f;
 
-            if (gr_info.mixed_block_flag != 0) {
-                // NO REORDER FOR LOW 2 SUBBANDS
-                for (index = 0; index < 36; index++) {
-                    // Modif E.B 02/22/99
-                    int reste = index % SSLIMIT;
-                    int quotien = (index - reste) / SSLIMIT;
-                    out_1d[index] = xr_1d[quotien][reste];
-                }
-                for (sfb = 3; sfb < 13; sfb++) {
-                    sfb_start = sfBandIndex[sfreq].s[sfb];
-                    sfb_lines = sfBandIndex[sfreq].s[sfb + 1] - sfb_start;
+            // NO REORDER FOR LOW 2 SUBBANDS
+            System.arraycopy(xr, 0, out_1d, 0, 36);
+            for (sfb = 3; sfb < 13; sfb++) {
+                sfb_start = sfBandIndex[sfreq].s[sfb];
+                sfb_lines = sfBandIndex[sfreq].s[sfb + 1] - sfb_start;
 
-                    int sfb_start3 = (sfb_start << 2) - sfb_start;
+                int sfb_start3 = (sfb_start << 2) - sfb_start;
 
-                    for (freq = 0, freq3 = 0; freq < sfb_lines;
-                         freq++, freq3 += 3) {
+                for (freq = 0, freq3 = 0; freq < sfb_lines;
+                     freq++, freq3 += 3) {
 
-                        src_line = sfb_start3 + freq;
-                        des_line = sfb_start3 + freq3;
-                        // Modif E.B 02/22/99
-                        int reste = src_line % SSLIMIT;
-                        int quotien = (src_line - reste) / SSLIMIT;
+                    src_line = sfb_start3 + freq;
+                    des_line = sfb_start3 + freq3;
 
-                        out_1d[des_line] = xr_1d[quotien][reste];
-                        src_line += sfb_lines;
-                        des_line++;
+                    out_1d[des_line] = xr[src_line];
+                    src_line += sfb_lines;
+                    des_line++;
 
-                        reste = src_line % SSLIMIT;
-                        quotien = (src_line - reste) / SSLIMIT;
+                    out_1d[des_line] = xr[src_line];
+                    src_line += sfb_lines;
+                    des_line++;
 
-                        out_1d[des_line] = xr_1d[quotien][reste];
-                        src_line += sfb_lines;
-                        des_line++;
-
-                        reste = src_line % SSLIMIT;
-                        quotien = (src_line - reste) / SSLIMIT;
-
-                        out_1d[des_line] = xr_1d[quotien][reste];
-                    }
+                    out_1d[des_line] = xr[src_line];
                 }
-
-            } else { // pure short
-                for (index = 0; index < 576; index++) {
-                    int j = reorder_table[sfreq][index];
-                    int reste = j % SSLIMIT;
-                    int quotien = (j - reste) / SSLIMIT;
-                    out_1d[index] = xr_1d[quotien][reste];
-                }
-            }
-        } else { // long blocks
-            for (index = 0; index < 576; index++) {
-                // Modif E.B 02/22/99
-                int reste = index % SSLIMIT;
-                int quotien = (index - reste) / SSLIMIT;
-                out_1d[index] = xr_1d[quotien][reste];
             }
+
+        } else { // pure short
+            int[] table = reorder_table[sfreq];
+            for (index = 0; index < 576; index++)
+                out_1d[index] = xr[table[index]];
         }
+        return out_1d;
     }
 
     int[] is_pos = new int[576];
@@ -1035,12 +1143,7 @@ final class LayerIIIDecoder implements FrameDecoder {
 
         if (channels == 1) { // mono , bypass xr[0][][] to lr[0][][]
 
-            for (sb = 0; sb < SBLIMIT; sb++)
-                for (ss = 0; ss < SSLIMIT; ss += 3) {
-                    lr[0][sb][ss] = ro[0][sb][ss];
-                    lr[0][sb][ss + 1] = ro[0][sb][ss + 1];
-                    lr[0][sb][ss + 2] = ro[0][sb][ss + 2];
-                }
+            System.arraycopy(ro[0], 0, lr[0], 0, SBLIMIT * SSLIMIT);
 
         } else {
 
@@ -1079,10 +1182,7 @@ final class LayerIIIDecoder implements FrameDecoder {
                                 i = (i << 2) - i + (j + 1) * lines - 1;
 
                                 while (lines > 0) {
-                                    if (ro[1][i / 18][i % 18] != 0.0f) {
-                                        // MDM: in java, array access is very slow.
-                                        // Is quicker to compute div and mod values.
-                                        //if (ro[1][ss_div[i]][ss_mod[i]] != 0.0f) {
+                                    if (ro[1][i] != 0.0f) {
                                         sfbcnt = sfb;
                                         sfb = -10;
                                         lines = -10;
@@ -1140,7 +1240,7 @@ final class LayerIIIDecoder implements FrameDecoder {
                             ss = 17;
                             sb = -1;
                             while (i >= 0) {
-                                if (ro[1][i][ss] != 0.0f) {
+                                if (ro[1][i * SSLIMIT + ss] != 0.0f) {
                                     sb = (i << 4) + (i << 1) + ss;
                                     i = -1;
                                 } else {
@@ -1179,9 +1279,7 @@ final class LayerIIIDecoder implements FrameDecoder {
                                 i = (temp << 2) - temp + (j + 1) * lines - 1;
 
                                 while (lines > 0) {
-                                    if (ro[1][i / 18][i % 18] != 0.0f) {
-                                        // MDM: in java, array access is very slow.
-                                        // Is quicker to compute div and mod values.
+                                    if (ro[1][i] != 0.0f) {
                                         sfbcnt = sfb;
                                         sfb = -10;
                                         lines = -10;
@@ -1233,7 +1331,7 @@ final class LayerIIIDecoder implements FrameDecoder {
                     ss = 17;
                     sb = 0;
                     while (i >= 0) {
-                        if (ro[1][i][ss] != 0.0f) {
+                        if (ro[1][i * SSLIMIT + ss] != 0.0f) {
                             sb = (i << 4) + (i << 1) + ss;
                             i = -1;
                         } else {
@@ -1277,36 +1375,35 @@ final class LayerIIIDecoder implements FrameDecoder {
                 } // if (gr_info.window_switching_flag ...
             } // if (i_stereo)
 
-            i = 0;
-            for (sb = 0; sb < SBLIMIT; sb++)
-                for (ss = 0; ss < SSLIMIT; ss++) {
-                    if (is_pos[i] == 7) {
-                        if (ms_stereo) {
-                            lr[0][sb][ss] = (ro[0][sb][ss] + ro[1][sb][ss]) * 0.707106781f;
-                            lr[1][sb][ss] = (ro[0][sb][ss] - ro[1][sb][ss]) * 0.707106781f;
-                        } else {
-                            lr[0][sb][ss] = ro[0][sb][ss];
-                            lr[1][sb][ss] = ro[1][sb][ss];
-                        }
-                    } else if (i_stereo) {
+            float[] ro0 = ro[0], ro1 = ro[1];
+            float[] lr0 = lr[0], lr1 = lr[1];
+            for (i = 0; i < SBLIMIT * SSLIMIT; i++) {
+                if (is_pos[i] == 7) {
+                    if (ms_stereo) {
+                        lr0[i] = (ro0[i] + ro1[i]) * 0.707106781f;
+                        lr1[i] = (ro0[i] - ro1[i]) * 0.707106781f;
+                    } else {
+                        lr0[i] = ro0[i];
+                        lr1[i] = ro1[i];
+                    }
+                } else if (i_stereo) {
 
-                        if (lsf) {
-                            lr[0][sb][ss] = ro[0][sb][ss] * k[0][i];
-                            lr[1][sb][ss] = ro[0][sb][ss] * k[1][i];
-                        } else {
-                            lr[1][sb][ss] = ro[0][sb][ss] / (1 + is_ratio[i]);
-                            lr[0][sb][ss] = lr[1][sb][ss] * is_ratio[i];
-                        }
+                    if (lsf) {
+                        lr0[i] = ro0[i] * k[0][i];
+                        lr1[i] = ro0[i] * k[1][i];
+                    } else {
+                        lr1[i] = ro0[i] / (1 + is_ratio[i]);
+                        lr0[i] = lr1[i] * is_ratio[i];
                     }
-                    i++;
                 }
+            }
         } // channels == 2
     }
 
     /**
      *
      */
-    private void antialias(int ch, int gr) {
+    private void antialias(float[] xr, int ch, int gr) {
         int sb18, ss, sb18lim;
         gr_info_s gr_info = (si.ch[ch].gr[gr]);
         // 31 alias-reduction operations between each pair of sub-bands
@@ -1327,96 +1424,333 @@ final class LayerIIIDecoder implements FrameDecoder {
             for (ss = 0; ss < 8; ss++) {
                 int src_idx1 = sb18 + 17 - ss;
                 int src_idx2 = sb18 + 18 + ss;
-                float bu = out_1d[src_idx1];
-                float bd = out_1d[src_idx2];
-                out_1d[src_idx1] = (bu * cs[ss]) - (bd * ca[ss]);
-                out_1d[src_idx2] = (bd * cs[ss]) + (bu * ca[ss]);
+                float bu = xr[src_idx1];
+                float bd = xr[src_idx2];
+                xr[src_idx1] = (bu * cs[ss]) - (bd * ca[ss]);
+                xr[src_idx2] = (bd * cs[ss]) + (bu * ca[ss]);
             }
         }
     }
 
-    // MDM: tsOutCopy and rawout do not need initializing, so the arrays
-    // can be reused.
-    float[] tsOutCopy = new float[18];
+    // MDM: rawout does not need initializing, so the array can be reused.
     float[] rawout = new float[36];
 
     /**
-     *
+     * Number of subbands of each channel whose prevblck may be nonzero.
      */
-    private void hybrid(int ch, int gr) {
-        int bt;
-        int sb18;
+    private final int[] prev_sblimit = new int[2];
+
+    /**
+     * IMDCT, windowing and overlap addition, in place in xr.
+     * <p>
+     * Only the subbands up to the last nonzero line of the granule are
+     * transformed. Above them xr is zero, so the output is the overlap
+     * of the previous granule alone, and above the limit of the previous
+     * granule as well nothing is left to do.
+     */
+    private void hybrid(float[] xr, int ch, int gr) {
         gr_info_s gr_info = (si.ch[ch].gr[gr]);
-        float[] tsOut;
-
-        float[][] prvblk;
-
-        for (sb18 = 0; sb18 < 576; sb18 += 18) {
-            bt = ((gr_info.window_switching_flag != 0) && (gr_info.mixed_block_flag != 0) &&
-                    (sb18 < 36)) ? 0 : gr_info.block_type;
-
-            tsOut = out_1d;
-            // Modif E.B 02/22/99
-            System.arraycopy(tsOut, 0 + sb18, tsOutCopy, 0, 18);
-
-            inv_mdct(tsOutCopy, rawout, bt);
-
-
-            System.arraycopy(tsOutCopy, 0, tsOut, 0 + sb18, 18);
-            // Fin Modif
-
-            // overlap addition
-            prvblk = prevblck;
-
-            tsOut[0 + sb18] = rawout[0] + prvblk[ch][sb18 + 0];
-            prvblk[ch][sb18 + 0] = rawout[18];
-            tsOut[1 + sb18] = rawout[1] + prvblk[ch][sb18 + 1];
-            prvblk[ch][sb18 + 1] = rawout[19];
-            tsOut[2 + sb18] = rawout[2] + prvblk[ch][sb18 + 2];
-            prvblk[ch][sb18 + 2] = rawout[20];
-            tsOut[3 + sb18] = rawout[3] + prvblk[ch][sb18 + 3];
-            prvblk[ch][sb18 + 3] = rawout[21];
-            tsOut[4 + sb18] = rawout[4] + prvblk[ch][sb18 + 4];
-            prvblk[ch][sb18 + 4] = rawout[22];
-            tsOut[5 + sb18] = rawout[5] + prvblk[ch][sb18 + 5];
-            prvblk[ch][sb18 + 5] = rawout[23];
-            tsOut[6 + sb18] = rawout[6] + prvblk[ch][sb18 + 6];
-            prvblk[ch][sb18 + 6] = rawout[24];
-            tsOut[7 + sb18] = rawout[7] + prvblk[ch][sb18 + 7];
-            prvblk[ch][sb18 + 7] = rawout[25];
-            tsOut[8 + sb18] = rawout[8] + prvblk[ch][sb18 + 8];
-            prvblk[ch][sb18 + 8] = rawout[26];
-            tsOut[9 + sb18] = rawout[9] + prvblk[ch][sb18 + 9];
-            prvblk[ch][sb18 + 9] = rawout[27];
-            tsOut[10 + sb18] = rawout[10] + prvblk[ch][sb18 + 10];
-            prvblk[ch][sb18 + 10] = rawout[28];
-            tsOut[11 + sb18] = rawout[11] + prvblk[ch][sb18 + 11];
-            prvblk[ch][sb18 + 11] = rawout[29];
-            tsOut[12 + sb18] = rawout[12] + prvblk[ch][sb18 + 12];
-            prvblk[ch][sb18 + 12] = rawout[30];
-            tsOut[13 + sb18] = rawout[13] + prvblk[ch][sb18 + 13];
-            prvblk[ch][sb18 + 13] = rawout[31];
-            tsOut[14 + sb18] = rawout[14] + prvblk[ch][sb18 + 14];
-            prvblk[ch][sb18 + 14] = rawout[32];
-            tsOut[15 + sb18] = rawout[15] + prvblk[ch][sb18 + 15];
-            prvblk[ch][sb18 + 15] = rawout[33];
-            tsOut[16 + sb18] = rawout[16] + prvblk[ch][sb18 + 16];
-            prvblk[ch][sb18 + 16] = rawout[34];
-            tsOut[17 + sb18] = rawout[17] + prvblk[ch][sb18 + 17];
-            prvblk[ch][sb18 + 17] = rawout[35];
+        float[] prev = prevblck[ch];
+
+        int sblimit = nonzero_sblimit(ch, gr_info);
+        // the subbands above those synthesized are not used
+        int sbcount = filter1.getSubbandCount();
+        if (sblimit > sbcount)
+            sblimit = sbcount;
+
+        boolean mixed = (gr_info.window_switching_flag != 0) && (gr_info.mixed_block_flag != 0);
+        int sb18lim = sblimit * 18;
+        for (int sb18 = 0; sb18 < sb18lim; sb18 += 18) {
+            int bt = (mixed && (sb18 < 36)) ? 0 : gr_info.block_type;
+            if (bt == 2)
+                imdct12(xr, prev, sb18, rawout);
+            else
+                imdct36(xr, prev, sb18, win[bt]);
+        }
+
+        int prev_lim = Math.min(prev_sblimit[ch], sbcount) * 18;
+        for (int i = sb18lim; i < prev_lim; i++) {
+            xr[i] = prev[i];
+            prev[i] = 0.0f;
         }
+        prev_sblimit[ch] = sblimit;
     }
 
     /**
+     * Returns the number of subbands of channel ch that may hold nonzero
+     * lines after stereo processing, reordering and alias reduction.
+     */
+    private int nonzero_sblimit(int ch, gr_info_s gr_info) {
+        int lines = nonzero[ch];
+        // stereo processing fills both channels up to the longer one
+        if ((channels == 2) && (skip_channel < 0))
+            lines = Math.max(nonzero[0], nonzero[1]);
+
+        boolean short_blocks = (gr_info.window_switching_flag != 0) && (gr_info.block_type == 2);
+        if (short_blocks) {
+            // reordering moves lines within their scale factor band
+            int[] s = sfBandIndex[sfreq].s;
+            int sfb = 0;
+            while ((sfb < 13) && (s[sfb] * 3 < lines))
+                sfb++;
+            lines = s[sfb] * 3;
+        }
+
+        int sblimit = (lines + 17) / 18;
+        // alias reduction spreads a subband into the next one
+        if (!short_blocks || (gr_info.mixed_block_flag != 0))
+            sblimit++;
+        return Math.min(sblimit, SBLIMIT);
+    }
+
+    /**
+     * 36 point IMDCT of the subband at sb18 with window win_bt, added to
+     * the overlap of the previous granule. The arithmetic is that of
+     * {@link #inv_mdct(float[], float[], int)}, on local variables.
+     */
+    static void imdct36(float[] xr, float[] prev, int sb18, float[] win_bt) {
+        // input aliasing for 36 point IDCT
+        float in0 = xr[sb18];
+        float in1 = xr[sb18 + 1] + in0;
+        float in2 = xr[sb18 + 2] + xr[sb18 + 1];
+        float in3 = xr[sb18 + 3] + xr[sb18 + 2];
+        float in4 = xr[sb18 + 4] + xr[sb18 + 3];
+        float in5 = xr[sb18 + 5] + xr[sb18 + 4];
+        float in6 = xr[sb18 + 6] + xr[sb18 + 5];
+        float in7 = xr[sb18 + 7] + xr[sb18 + 6];
+        float in8 = xr[sb18 + 8] + xr[sb18 + 7];
+        float in9 = xr[sb18 + 9] + xr[sb18 + 8];
+        float in10 = xr[sb18 + 10] + xr[sb18 + 9];
+        float in11 = xr[sb18 + 11] + xr[sb18 + 10];
+        float in12 = xr[sb18 + 12] + xr[sb18 + 11];
+        float in13 = xr[sb18 + 13] + xr[sb18 + 12];
+        float in14 = xr[sb18 + 14] + xr[sb18 + 13];
+        float in15 = xr[sb18 + 15] + xr[sb18 + 14];
+        float in16 = xr[sb18 + 16] + xr[sb18 + 15];
+        float in17 = xr[sb18 + 17] + xr[sb18 + 16];
+
+        // input aliasing for 18 point IDCT
+        in17 += in15;
+        in15 += in13;
+        in13 += in11;
+        in11 += in9;
+        in9 += in7;
+        in7 += in5;
+        in5 += in3;
+        in3 += in1;
+
+        // 9 point IDCT on even indices
+        float i00 = in0 + in0;
+        float iip12 = i00 + in12;
+
+        float tmp0 = iip12 + in4 * 1.8793852415718f + in8 * 1.532088886238f + in16 * 0.34729635533386f;
+        float tmp1 = i00 + in4 - in8 - in12 - in12 - in16;
+        float tmp2 = iip12 - in4 * 0.34729635533386f - in8 * 1.8793852415718f + in16 * 1.532088886238f;
+        float tmp3 = iip12 - in4 * 1.532088886238f + in8 * 0.34729635533386f - in16 * 1.8793852415718f;
+        float tmp4 = in0 - in4 + in8 - in12 + in16;
+
+        float i66_ = in6 * 1.732050808f;
+
+        float tmp0_ = in2 * 1.9696155060244f + i66_ + in10 * 1.2855752193731f + in14 * 0.68404028665134f;
+        float tmp1_ = (in2 - in10 - in14) * 1.732050808f;
+        float tmp2_ = in2 * 1.2855752193731f - i66_ - in10 * 0.68404028665134f + in14 * 1.9696155060244f;
+        float tmp3_ = in2 * 0.68404028665134f - i66_ + in10 * 1.9696155060244f - in14 * 1.2855752193731f;
+
+        // 9 point IDCT on odd indices
+        float i0 = in1 + in1;
+        float i0p12 = i0 + in13;
+
+        float tmp0o = i0p12 + in5 * 1.8793852415718f + in9 * 1.532088886238f + in17 * 0.34729635533386f;
+        float tmp1o = i0 + in5 - in9 - in13 - in13 - in17;
+        float tmp2o = i0p12 - in5 * 0.34729635533386f - in9 * 1.8793852415718f + in17 * 1.532088886238f;
+        float tmp3o = i0p12 - in5 * 1.532088886238f + in9 * 0.34729635533386f - in17 * 1.8793852415718f;
+        float tmp4o = (in1 - in5 + in9 - in13 + in17) * 0.707106781f;
+
+        float i6_ = in7 * 1.732050808f;
+
+        float tmp0_o = in3 * 1.9696155060244f + i6_ + in11 * 1.2855752193731f + in15 * 0.68404028665134f;
+        float tmp1_o = (in3 - in11 - in15) * 1.732050808f;
+        float tmp2_o = in3 * 1.2855752193731f - i6_ - in11 * 0.68404028665134f + in15 * 1.9696155060244f;
+        float tmp3_o = in3 * 0.68404028665134f - i6_ + in11 * 1.9696155060244f - in15 * 1.2855752193731f;
+
+        // butterflies and twiddle factors for 36 point IDCT
+        float e, o;
+        e = tmp0 + tmp0_;
+        o = (tmp0o + tmp0_o) * 0.501909918f;
+        float tmpf_0 = e + o;
+        float tmpf_17 = e - o;
+        e = tmp1 + tmp1_;
+        o = (tmp1o + tmp1_o) * 0.517638090f;
+        float tmpf_1 = e + o;
+        float tmpf_16 = e - o;
+        e = tmp2 + tmp2_;
+        o = (tmp2o + tmp2_o) * 0.551688959f;
+        float tmpf_2 = e + o;
+        float tmpf_15 = e - o;
+        e = tmp3 + tmp3_;
+        o = (tmp3o + tmp3_o) * 0.610387294f;
+        float tmpf_3 = e + o;
+        float tmpf_14 = e - o;
+        float tmpf_4 = tmp4 + tmp4o;
+        float tmpf_13 = tmp4 - tmp4o;
+        e = tmp3 - tmp3_;
+        o = (tmp3o - tmp3_o) * 0.871723397f;
+        float tmpf_5 = e + o;
+        float tmpf_12 = e - o;
+        e = tmp2 - tmp2_;
+        o = (tmp2o - tmp2_o) * 1.183100792f;
+        float tmpf_6 = e + o;
+        float tmpf_11 = e - o;
+        e = tmp1 - tmp1_;
+        o = (tmp1o - tmp1_o) * 1.931851653f;
+        float tmpf_7 = e + o;
+        float tmpf_10 = e - o;
+        e = tmp0 - tmp0_;
+        o = (tmp0o - tmp0_o) * 5.736856623f;
+        float tmpf_8 = e + o;
+        float tmpf_9 = e - o;
+
+        // window and overlap addition
+        xr[sb18] = -tmpf_9 * win_bt[0] + prev[sb18];
+        xr[sb18 + 1] = -tmpf_10 * win_bt[1] + prev[sb18 + 1];
+        xr[sb18 + 2] = -tmpf_11 * win_bt[2] + prev[sb18 + 2];
+        xr[sb18 + 3] = -tmpf_12 * win_bt[3] + prev[sb18 + 3];
+        xr[sb18 + 4] = -tmpf_13 * win_bt[4] + prev[sb18 + 4];
+        xr[sb18 + 5] = -tmpf_14 * win_bt[5] + prev[sb18 + 5];
+        xr[sb18 + 6] = -tmpf_15 * win_bt[6] + prev[sb18 + 6];
+        xr[sb18 + 7] = -tmpf_16 * win_bt[7] + prev[sb18 + 7];
+        xr[sb18 + 8] = -tmpf_17 * win_bt[8] + prev[sb18 + 8];
+        xr[sb18 + 9] = tmpf_17 * win_bt[9] + prev[sb18 + 9];
+        xr[sb18 + 10] = tmpf_16 * win_bt[10] + prev[sb18 + 10];
+        xr[sb18 + 11] = tmpf_15 * win_bt[11] + prev[sb18 + 11];
+        xr[sb18 + 12] = tmpf_14 * win_bt[12] + prev[sb18 + 12];
+        xr[sb18 + 13] = tmpf_13 * win_bt[13] + prev[sb18 + 13];
+        xr[sb18 + 14] = tmpf_12 * win_bt[14] + prev[sb18 + 14];
+        xr[sb18 + 15] = tmpf_11 * win_bt[15] + prev[sb18 + 15];
+        xr[sb18 + 16] = tmpf_10 * win_bt[16] + prev[sb18 + 16];
+        xr[sb18 + 17] = tmpf_9 * win_bt[17] + prev[sb18 + 17];
+
+        prev[sb18] = tmpf_8 * win_bt[18];
+        prev[sb18 + 1] = tmpf_7 * win_bt[19];
+        prev[sb18 + 2] = tmpf_6 * win_bt[20];
+        prev[sb18 + 3] = tmpf_5 * win_bt[21];
+        prev[sb18 + 4] = tmpf_4 * win_bt[22];
+        prev[sb18 + 5] = tmpf_3 * win_bt[23];
+        prev[sb18 + 6] = tmpf_2 * win_bt[24];
+        prev[sb18 + 7] = tmpf_1 * win_bt[25];
+        prev[sb18 + 8] = tmpf_0 * win_bt[26];
+        prev[sb18 + 9] = tmpf_0 * win_bt[27];
+        prev[sb18 + 10] = tmpf_1 * win_bt[28];
+        prev[sb18 + 11] = tmpf_2 * win_bt[29];
+        prev[sb18 + 12] = tmpf_3 * win_bt[30];
+        prev[sb18 + 13] = tmpf_4 * win_bt[31];
+        prev[sb18 + 14] = tmpf_5 * win_bt[32];
+        prev[sb18 + 15] = tmpf_6 * win_bt[33];
+        prev[sb18 + 16] = tmpf_7 * win_bt[34];
+        prev[sb18 + 17] = tmpf_8 * win_bt[35];
+    }
+
+    /**
+     * Three 12 point IMDCTs of the short block subband at sb18, overlapped
+     * in out and added to the overlap of the previous granule. The
+     * arithmetic is that of {@link #inv_mdct(float[], float[], int)}.
      *
+     * @param out 36 floats of scratch space.
      */
-    private void do_downmix() {
-        for (int sb = 0; sb < SSLIMIT; sb++) {
-            for (int ss = 0; ss < SSLIMIT; ss += 3) {
-                lr[0][sb][ss] = (lr[0][sb][ss] + lr[1][sb][ss]) * 0.5f;
-                lr[0][sb][ss + 1] = (lr[0][sb][ss + 1] + lr[1][sb][ss + 1]) * 0.5f;
-                lr[0][sb][ss + 2] = (lr[0][sb][ss + 2] + lr[1][sb][ss + 2]) * 0.5f;
-            }
+    static void imdct12(float[] xr, float[] prev, int sb18, float[] out) {
+        for (int i = 0; i < 36; i++)
+            out[i] = 0.0f;
+
+        for (int i = 0, six_i = 0; i < 3; i++, six_i += 6) {
+            int j = sb18 + i;
+            // input aliasing for 12 point IDCT
+            float in0 = xr[j];
+            float in3 = xr[j + 3] + in0;
+            float in6 = xr[j + 6] + xr[j + 3];
+            float in9 = xr[j + 9] + xr[j + 6];
+            float in12 = xr[j + 12] + xr[j + 9];
+            float in15 = xr[j + 15] + xr[j + 12];
+
+            // input aliasing on odd indices (for 6 point IDCT)
+            in15 += in9;
+            in9 += in3;
+
+            // 3 point IDCT on even indices
+            float pp2 = in12 * 0.500000000f;
+            float pp1 = in6 * 0.866025403f;
+            float sum = in0 + pp2;
+            float tmpf_1 = in0 - in12;
+            float tmpf_0 = sum + pp1;
+            float tmpf_2 = sum - pp1;
+
+            // 3 point IDCT on odd indices (for 6 point IDCT)
+            pp2 = in15 * 0.500000000f;
+            pp1 = in9 * 0.866025403f;
+            sum = in3 + pp2;
+            float tmpf_4 = in3 - in15;
+            float tmpf_5 = sum + pp1;
+            float tmpf_3 = sum - pp1;
+
+            // twiddle factors on odd indices (for 6 point IDCT)
+            tmpf_3 *= 1.931851653f;
+            tmpf_4 *= 0.707106781f;
+            tmpf_5 *= 0.517638090f;
+
+            // output butterflies on 2 3 point IDCTs (for 6 point IDCT)
+            float save = tmpf_0;
+            tmpf_0 += tmpf_5;
+            tmpf_5 = save - tmpf_5;
+            save = tmpf_1;
+            tmpf_1 += tmpf_4;
+            tmpf_4 = save - tmpf_4;
+            save = tmpf_2;
+            tmpf_2 += tmpf_3;
+            tmpf_3 = save - tmpf_3;
+
+            // twiddle factors on indices (for 12 point IDCT)
+            tmpf_0 *= 0.504314480f;
+            tmpf_1 *= 0.541196100f;
+            tmpf_2 *= 0.630236207f;
+            tmpf_3 *= 0.821339815f;
+            tmpf_4 *= 1.306562965f;
+            tmpf_5 *= 3.830648788f;
+
+            // shift to 12 point modified IDCT, multiply by window type 2
+            float tmpf_8 = -tmpf_0 * 0.793353340f;
+            float tmpf_9 = -tmpf_0 * 0.608761429f;
+            float tmpf_7 = -tmpf_1 * 0.923879532f;
+            float tmpf_10 = -tmpf_1 * 0.382683432f;
+            float tmpf_6 = -tmpf_2 * 0.991444861f;
+            float tmpf_11 = -tmpf_2 * 0.130526192f;
+
+            tmpf_0 = tmpf_3;
+            tmpf_1 = tmpf_4 * 0.382683432f;
+            tmpf_2 = tmpf_5 * 0.608761429f;
+
+            tmpf_3 = -tmpf_5 * 0.793353340f;
+            tmpf_4 = -tmpf_4 * 0.923879532f;
+            tmpf_5 = -tmpf_0 * 0.991444861f;
+
+            tmpf_0 *= 0.130526192f;
+
+            out[six_i + 6] += tmpf_0;
+            out[six_i + 7] += tmpf_1;
+            out[six_i + 8] += tmpf_2;
+            out[six_i + 9] += tmpf_3;
+            out[six_i + 10] += tmpf_4;
+            out[six_i + 11] += tmpf_5;
+            out[six_i + 12] += tmpf_6;
+            out[six_i + 13] += tmpf_7;
+            out[six_i + 14] += tmpf_8;
+            out[six_i + 15] += tmpf_9;
+            out[six_i + 16] += tmpf_10;
+            out[six_i + 17] += tmpf_11;
+        }
+
+        // overlap addition
+        for (int i = 0; i < 18; i++) {
+            xr[sb18 + i] = out[i] + prev[sb18 + i];
+            prev[sb18 + i] = out[18 + i];
         }
     }
 
@@ -1865,6 +2199,18 @@ final class LayerIIIDecoder implements FrameDecoder {
 
     public static final float[] t_43 = create_t_43();
 
+    /**
+     * Global gain factors, 2^((global_gain - 210) / 4), by global_gain.
+     */
+    private static final float[] global_gain_pow = create_global_gain_pow();
+
+    private static float[] create_global_gain_pow() {
+        float[] gain = new float[256];
+        for (int i = 0; i < 256; i++)
+            gain[i] = (float) Math.pow(2.0, (0.25 * (i - 210.0)));
+        return gain;
+    }
+
     static private float[] create_t_43() {
         float[] t43 = new float[8192];
         final double d43 = (4.0 / 3.0);
@@ -1909,6 +2255,25 @@ final class LayerIIIDecoder implements FrameDecoder {
     // the actual calculation
     // 576 / 18
     private static int[][] reorder_table; // SZD: will be generated on demand
+    private static int[][] reorder_dest; // inverse of reorder_table
+
+    /**
+     * Generates the reorder LUTs once, for decoders created on any thread.
+     */
+    private static synchronized void init_reorder(SBI[] sfBandIndex) {
+        if (reorder_table == null) { // SZD: generate LUT
+            int[][] table = new int[9][];
+            int[][] dest = new int[9][];
+            for (int i = 0; i < 9; i++) {
+                table[i] = reorder(sfBandIndex[i].s);
+                dest[i] = new int[576];
+                for (int j = 0; j < 576; j++)
+                    dest[i][table[i][j]] = j;
+            }
+            reorder_dest = dest;
+            reorder_table = table;
+        }
+    }
 
     /**
      * Loads the data for the reorder
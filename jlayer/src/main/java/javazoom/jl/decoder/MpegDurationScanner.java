@@ -0,0 +1,179 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * Exact duration and bitrate of an MPEG audio file, from its frame
+ * headers alone.
+ * <p>
+ * {@link Header#total_ms(int)} extrapolates from the first frame, which
+ * is wrong for VBR files without a Xing header. This scanner instead
+ * walks every frame header with positional reads, skipping the frame
+ * bodies, so it costs one small read per frame and no decoding. The
+ * {@link MpegFrameIndex} it builds on the way is kept as a seek table.
+ */
+public final class MpegDurationScanner {
+
+    private MpegDurationScanner() {
+    }
+
+    /**
+     * Scans a file.
+     *
+     * @return the result, or null if the file has no MPEG audio frame.
+     */
+    public static Result scan(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return scan(channel);
+        }
+    }
+
+    /**
+     * Scans a file from offset 0, without changing the position of the channel.
+     *
+     * @return the result, or null if the file has no MPEG audio frame.
+     */
+    public static Result scan(FileChannel channel) throws IOException {
+        MpegFrameIndex.ChannelScanner scanner = new MpegFrameIndex.ChannelScanner(channel);
+        MpegFrameIndex index = scanner.scan();
+        if (index == null)
+            return null;
+
+        // the first frame, for its Xing/Info and LAME tags
+        int length = (int) index.offsetForFrame(1);
+        ByteBuffer first = ByteBuffer.allocate(length);
+        while (first.hasRemaining()) {
+            if (channel.read(first, scanner.start + first.position()) < 0)
+                break;
+        }
+        first.flip();
+        Header header;
+        try {
+            Bitstream stream = new Bitstream(first);
+            header = stream.readFrame();
+        } catch (BitstreamException ex) {
+            header = null;
+        }
+        return new Result(index, scanner.start, header);
+    }
+
+    /**
+     * Duration, bitrate and seek table of a scanned file.
+     */
+    public static final class Result {
+        private final MpegFrameIndex index;
+        private final long firstFrameOffset;
+        private final boolean infoFrame;
+        private final int encoderDelay;
+        private final int encoderPadding;
+
+        Result(MpegFrameIndex index, long firstFrameOffset, Header header) {
+            this.index = index;
+            this.firstFrameOffset = firstFrameOffset;
+            this.infoFrame = header != null && header.info_frame();
+            this.encoderDelay = header != null ? header.encoder_delay() : -1;
+            this.encoderPadding = header != null ? header.encoder_padding() : -1;
+        }
+
+        /**
+         * Returns the seek table. Its frame 0 is the Xing/Info/VBRI frame,
+         * if there is one, and its offsets are relative to
+         * {@link #getFirstFrameOffset()}.
+         */
+        public MpegFrameIndex getIndex() {
+            return index;
+        }
+
+        /**
+         * Returns the file offset of the first frame, after any ID3v2 tag.
+         */
+        public long getFirstFrameOffset() {
+            return firstFrameOffset;
+        }
+
+        /**
+         * Returns whether the first frame is a Xing/Info/VBRI frame
+         * rather than audio.
+         */
+        public boolean hasInfoFrame() {
+            return infoFrame;
+        }
+
+        /**
+         * Returns the number of audio frames, not counting an info frame.
+         */
+        public int getFrameCount() {
+            return index.frameCount() - (infoFrame ? 1 : 0);
+        }
+
+        /**
+         * Returns the encoder delay from the LAME tag, or -1.
+         */
+        public int getEncoderDelay() {
+            return encoderDelay;
+        }
+
+        /**
+         * Returns the encoder padding from the LAME tag, or -1.
+         */
+        public int getEncoderPadding() {
+            return encoderPadding;
+        }
+
+        /**
+         * Returns the number of samples per channel of the audio frames,
+         * less the encoder delay and padding if they are known.
+         */
+        public long getSampleCount() {
+            long samples = (long) getFrameCount() * samplesPerFrame();
+            if (encoderDelay >= 0 && encoderPadding >= 0)
+                samples = Math.max(0, samples - encoderDelay - encoderPadding);
+            return samples;
+        }
+
+        /**
+         * Returns the playing time in milliseconds.
+         */
+        public long getDurationMs() {
+            return getSampleCount() * 1000 / index.frequency();
+        }
+
+        /**
+         * Returns the average bitrate of the audio frames in bits per second.
+         */
+        public int getAverageBitrate() {
+            long frames = getFrameCount();
+            if (frames == 0)
+                return 0;
+            long bytes = index.totalBytes() - index.offsetForFrame(infoFrame ? 1 : 0);
+            return (int) Math.round((double) bytes * 8 * index.frequency() / (frames * samplesPerFrame()));
+        }
+
+        private int samplesPerFrame() {
+            return index.samplesPerFrame();
+        }
+    }
+}
@@ -0,0 +1,552 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+
+/**
+ * Maps time, frame numbers and byte offsets of an MPEG audio stream
+ * onto each other, so that a seek can jump straight to a frame instead of
+ * parsing every header on the way.
+ * <p>
+ * Frames are numbered the way {@link Bitstream#readFrame()} returns them,
+ * starting at 0 with the first frame (which may be a Xing/VBRI info frame).
+ * Byte offsets are relative to the start of that first frame.
+ * <p>
+ * An index is either exact, built by {@link #scan(InputStream)} from every
+ * frame header, or estimated from the first header by
+ * {@link #fromHeader(Header, long)}: a Xing/VBRI TOC for VBR streams, the
+ * nominal frame size for CBR streams. Seeking with an estimated index lands
+ * near the requested frame; {@link Bitstream} resynchronizes from there.
+ */
+public final class MpegFrameIndex {
+
+    /**
+     * Most bytes of bit reservoir a Layer III frame may refer back to.
+     */
+    private static final int[] MAX_MAIN_DATA_BEGIN = {255, 511, 255};
+
+    private final int version;
+    private final int layer;
+    private final int frequency;
+    private final int frameCount;
+    private final boolean exact;
+
+    /**
+     * Index points; frame <code>pointFrames[i]</code> starts at byte
+     * <code>pointOffsets[i]</code>. The last point is the end of the stream.
+     */
+    private final int[] pointFrames;
+    private final long[] pointOffsets;
+
+    /**
+     * Layer III main_data_begin of each frame, exact indices only.
+     */
+    private final short[] mainDataBegin;
+
+    /**
+     * Header, CRC and side info bytes in front of the main data.
+     */
+    private final int overhead;
+
+    private MpegFrameIndex(int version, int layer, int frequency, int overhead, boolean exact,
+                           int[] pointFrames, long[] pointOffsets, short[] mainDataBegin) {
+        this.version = version;
+        this.layer = layer;
+        this.frequency = frequency;
+        this.overhead = overhead;
+        this.exact = exact;
+        this.pointFrames = pointFrames;
+        this.pointOffsets = pointOffsets;
+        this.mainDataBegin = mainDataBegin;
+        this.frameCount = pointFrames[pointFrames.length - 1];
+    }
+
+    /**
+     * Estimates an index from the first frame header of a stream.
+     *
+     * @param header     the header returned by the first
+     *                   {@link Bitstream#readFrame()}.
+     * @param streamSize stream size in bytes, from the first frame on,
+     *                   or -1 if unknown.
+     * @return the index, or null if neither a VBR TOC nor a usable stream
+     * size is available.
+     */
+    public static MpegFrameIndex fromHeader(Header header, long streamSize) {
+        int layer = header.layer();
+        int version = header.version();
+        int overhead = overhead(version, layer, header.mode(), header.checksums());
+
+        byte[] toc = header.vbr_toc();
+        if (header.vbr()) {
+            int frames = header.vbr_frames();
+            long bytes = header.vbr_bytes() > 0 ? header.vbr_bytes() : streamSize;
+            if (toc == null || frames <= 0 || bytes <= 0)
+                return null;
+            // The info frame itself is frame 0, but is not counted by the encoder.
+            int[] pointFrames = new int[101];
+            long[] pointOffsets = new long[101];
+            for (int i = 0; i < 100; i++) {
+                pointFrames[i] = i == 0 ? 0 : 1 + (int) ((long) i * frames / 100);
+                pointOffsets[i] = (toc[i] & 0xFF) * bytes / 256;
+                if (i > 0 && pointOffsets[i] < pointOffsets[i - 1])
+                    pointOffsets[i] = pointOffsets[i - 1];
+            }
+            pointFrames[100] = frames + 1;
+            pointOffsets[100] = Math.max(bytes, pointOffsets[99]);
+            return new MpegFrameIndex(version, layer, header.frequency(), overhead, false,
+                    pointFrames, pointOffsets, null);
+        }
+
+        if (streamSize <= 0)
+            return null;
+        double frameSize = (double) header.bitrate_instant() * samplesPerFrame(version, layer)
+                / 8 / header.frequency();
+        int frames = (int) Math.round(streamSize / frameSize);
+        return new MpegFrameIndex(version, layer, header.frequency(), overhead, false,
+                new int[] {0, frames}, new long[] {0, (long) (frames * frameSize)}, null);
+    }
+
+    /**
+     * Builds an exact index by walking the frame headers of a stream,
+     * skipping over frame bodies. A leading ID3v2 tag is skipped; the
+     * stream is read to its end but not closed.
+     *
+     * @param in the stream, positioned at its start.
+     * @return the index, or null if no frame was found.
+     */
+    public static MpegFrameIndex scan(InputStream in) throws IOException {
+        Scanner scanner = new StreamScanner(in);
+        return scanner.scan();
+    }
+
+    /**
+     * Builds an exact index from the frame headers of a file, with
+     * positional reads of the header bytes only. The position of the
+     * channel is not changed.
+     *
+     * @param channel the file, with the stream starting at offset 0.
+     * @return the index, or null if no frame was found.
+     */
+    public static MpegFrameIndex scan(FileChannel channel) throws IOException {
+        Scanner scanner = new ChannelScanner(channel);
+        return scanner.scan();
+    }
+
+    /**
+     * Returns the number of frames in the stream.
+     */
+    public int frameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Returns true if every frame offset is known exactly.
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    int frequency() {
+        return frequency;
+    }
+
+    int samplesPerFrame() {
+        return samplesPerFrame(version, layer);
+    }
+
+    /**
+     * Returns the duration of one frame in milliseconds.
+     */
+    public float msPerFrame() {
+        return samplesPerFrame(version, layer) * 1000.0f / frequency;
+    }
+
+    /**
+     * Returns the stream duration in milliseconds.
+     */
+    public long totalMs() {
+        return timeForFrame(frameCount);
+    }
+
+    /**
+     * Returns the stream size in bytes, from the first frame on.
+     */
+    public long totalBytes() {
+        return pointOffsets[pointOffsets.length - 1];
+    }
+
+    /**
+     * Returns the frame playing at the given time.
+     */
+    public int frameForTime(long ms) {
+        if (ms <= 0)
+            return 0;
+        return (int) Math.min(frameCount, (long) (ms * frequency / (1000.0 * samplesPerFrame(version, layer))));
+    }
+
+    /**
+     * Returns the start time of a frame in milliseconds, rounded up so that
+     * <code>frameForTime(timeForFrame(frame)) == frame</code>.
+     */
+    public long timeForFrame(int frame) {
+        return ((long) frame * samplesPerFrame(version, layer) * 1000L + frequency - 1) / frequency;
+    }
+
+    /**
+     * Returns the byte offset a frame starts at; <code>frameCount()</code>
+     * gives the end of the stream.
+     */
+    public long offsetForFrame(int frame) {
+        if (frame <= 0)
+            return 0;
+        if (frame >= frameCount)
+            return totalBytes();
+        if (exact)
+            return pointOffsets[frame];
+        int i = Arrays.binarySearch(pointFrames, frame);
+        if (i >= 0) {
+            // first of several points on the same frame
+            while (i > 0 && pointFrames[i - 1] == frame)
+                i--;
+            return pointOffsets[i];
+        }
+        i = -i - 2;
+        return pointOffsets[i] + (pointOffsets[i + 1] - pointOffsets[i])
+                * (frame - pointFrames[i]) / (pointFrames[i + 1] - pointFrames[i]);
+    }
+
+    /**
+     * Returns the byte offset to jump to in order to read <code>frame</code>
+     * next. For an estimated index this is half a frame in front of the
+     * estimate, so that resynchronizing picks up the frame itself rather
+     * than the one after it.
+     */
+    public long seekOffset(int frame) {
+        long offset = offsetForFrame(frame);
+        if (exact || frame <= 0)
+            return offset;
+        return Math.max(0, offset - (offset - offsetForFrame(frame - 1)) / 2);
+    }
+
+    /**
+     * Returns the frame containing the given byte offset.
+     */
+    public int frameForOffset(long offset) {
+        if (offset <= 0)
+            return 0;
+        if (offset >= totalBytes())
+            return frameCount;
+        int i = Arrays.binarySearch(pointOffsets, offset);
+        if (i >= 0) {
+            while (i < pointOffsets.length - 1 && pointOffsets[i + 1] == offset)
+                i++;
+            return pointFrames[i];
+        }
+        i = -i - 2;
+        return pointFrames[i] + (int) ((pointFrames[i + 1] - pointFrames[i])
+                * (offset - pointOffsets[i]) / (pointOffsets[i + 1] - pointOffsets[i]));
+    }
+
+    /**
+     * Returns how many frames in front of <code>frame</code> have to be
+     * decoded, and their output discarded, before <code>frame</code>
+     * decodes exactly as it would have when played from the start.
+     * <p>
+     * A Layer III frame takes its main data from up to
+     * <code>main_data_begin</code> bytes of the preceding frames (the bit
+     * reservoir), and its output overlaps with the two frames before it
+     * through the hybrid and polyphase filter banks; so the reservoir of
+     * those two frames has to be filled as well. Layer I and II frames only
+     * need the polyphase filter history.
+     */
+    public int primingFrames(int frame) {
+        if (frame <= 0)
+            return 0;
+        if (layer != 3)
+            return Math.min(frame, layer == 1 ? 2 : 1);
+        if (mainDataBegin != null) {
+            int start = frame;
+            for (int f = Math.max(0, frame - 2); f <= frame; f++)
+                start = Math.min(start, reservoirStart(f));
+            return frame - start;
+        }
+        int mainData = Math.max(1, (int) (totalBytes() / Math.max(1, frameCount)) - overhead);
+        return Math.min(frame, (MAX_MAIN_DATA_BEGIN[version] + mainData - 1) / mainData + 2);
+    }
+
+    /**
+     * Returns the first frame whose main data the given frame refers to.
+     */
+    private int reservoirStart(int frame) {
+        int need = mainDataBegin[Math.min(frame, frameCount - 1)];
+        int k = frame;
+        while (need > 0 && k > 0) {
+            k--;
+            need -= (int) (pointOffsets[k + 1] - pointOffsets[k]) - overhead;
+        }
+        return k;
+    }
+
+    private static int samplesPerFrame(int version, int layer) {
+        if (layer == 1)
+            return 384;
+        if (layer == 3 && version != Header.MPEG1)
+            return 576;
+        return 1152;
+    }
+
+    private static int overhead(int version, int layer, int mode, boolean checksums) {
+        int overhead = 4 + (checksums ? 2 : 0);
+        if (layer == 3) {
+            if (version == Header.MPEG1)
+                overhead += (mode == Header.SINGLE_CHANNEL) ? 17 : 32;
+            else
+                overhead += (mode == Header.SINGLE_CHANNEL) ? 9 : 17;
+        }
+        return overhead;
+    }
+
+    /**
+     * Header only walk over a stream.
+     */
+    static abstract class Scanner {
+        private final byte[] buf = new byte[10];
+
+        /**
+         * Stream position of the next byte to read.
+         */
+        long position;
+
+        /**
+         * Stream position of the first frame.
+         */
+        long start;
+
+        private int[] frames = new int[1024];
+        private long[] offsets = new long[1024];
+        private short[] mainDataBegin = new short[1024];
+        private int count;
+        private long end;
+
+        MpegFrameIndex scan() throws IOException {
+            if (!read(buf, 0, 4))
+                return null;
+            // ID3v2 tag
+            if (buf[0] == 'I' && buf[1] == 'D' && buf[2] == '3') {
+                if (!read(buf, 4, 6))
+                    return null;
+                long size = ((buf[6] & 0x7f) << 21) | ((buf[7] & 0x7f) << 14) | ((buf[8] & 0x7f) << 7) | (buf[9] & 0x7f);
+                if ((buf[5] & 0x10) != 0)
+                    size += 10; // footer
+                if (!skip(size) || !read(buf, 0, 4))
+                    return null;
+            }
+
+            int first = 0;
+            int header = ((buf[0] & 0xff) << 24) | ((buf[1] & 0xff) << 16) | ((buf[2] & 0xff) << 8) | (buf[3] & 0xff);
+            while (true) {
+                int length = frameLength(header);
+                if (length > 0 && (first == 0 || (header & 0xfffe0c00) == (first & 0xfffe0c00))) {
+                    int version = version(header);
+                    int layer = 4 - ((header >>> 17) & 3);
+                    int mdb = 0;
+                    int head = 4;
+                    if (layer == 3) {
+                        int crc = ((header >>> 16) & 1) == 0 ? 2 : 0;
+                        if (!read(buf, 0, crc + 2))
+                            break;
+                        head += crc + 2;
+                        int bits = ((buf[crc] & 0xff) << 8) | (buf[crc + 1] & 0xff);
+                        mdb = version == Header.MPEG1 ? bits >>> 7 : bits >>> 8;
+                    }
+                    if (!skip(length - head))
+                        break; // truncated last frame
+                    if (first == 0) {
+                        first = header;
+                        start = position - length;
+                    }
+                    add(position - length - start, mdb);
+                    end = position - start;
+                    if (!read(buf, 0, 4))
+                        break;
+                    header = ((buf[0] & 0xff) << 24) | ((buf[1] & 0xff) << 16) | ((buf[2] & 0xff) << 8) | (buf[3] & 0xff);
+                } else {
+                    // lost sync, or an ID3v1 tag: slide by one byte
+                    if (!read(buf, 0, 1))
+                        break;
+                    header = (header << 8) | (buf[0] & 0xff);
+                }
+            }
+            if (first == 0)
+                return null;
+
+            int[] pointFrames = Arrays.copyOf(frames, count + 1);
+            long[] pointOffsets = Arrays.copyOf(offsets, count + 1);
+            pointFrames[count] = count;
+            pointOffsets[count] = end;
+            int version = version(first);
+            int layer = 4 - ((first >>> 17) & 3);
+            return new MpegFrameIndex(version, layer, Header.frequencies[version][(first >>> 10) & 3],
+                    overhead(version, layer, (first >>> 6) & 3, ((first >>> 16) & 1) == 0), true,
+                    pointFrames, pointOffsets, layer == 3 ? Arrays.copyOf(mainDataBegin, count) : null);
+        }
+
+        private void add(long offset, int mdb) {
+            if (count == frames.length) {
+                frames = Arrays.copyOf(frames, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2);
+                mainDataBegin = Arrays.copyOf(mainDataBegin, count * 2);
+            }
+            frames[count] = count;
+            offsets[count] = offset;
+            mainDataBegin[count] = (short) mdb;
+            count++;
+        }
+
+        /**
+         * Reads <code>len</code> bytes, or returns false at the end of the stream.
+         */
+        abstract boolean read(byte[] b, int off, int len) throws IOException;
+
+        /**
+         * Skips <code>n</code> bytes, or returns false at the end of the stream.
+         */
+        abstract boolean skip(long n) throws IOException;
+    }
+
+    private static final class StreamScanner extends Scanner {
+        private final InputStream in;
+
+        StreamScanner(InputStream in) {
+            this.in = in;
+        }
+
+        boolean read(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = in.read(b, off, len);
+                if (n < 0)
+                    return false;
+                position += n;
+                off += n;
+                len -= n;
+            }
+            return true;
+        }
+
+        boolean skip(long n) throws IOException {
+            while (n > 0) {
+                long s = in.skip(n);
+                if (s <= 0) {
+                    if (in.read() < 0)
+                        return false;
+                    s = 1;
+                }
+                position += s;
+                n -= s;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Reads a small window at each frame header, large enough for the
+     * header and the start of the side info, and skips frame bodies by
+     * moving the read position.
+     */
+    static final class ChannelScanner extends Scanner {
+        private final FileChannel channel;
+        private final long size;
+        private final ByteBuffer window = ByteBuffer.allocate(16);
+        private long windowStart;
+
+        ChannelScanner(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            window.limit(0);
+        }
+
+        boolean read(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int at = (int) (position - windowStart);
+                if (position < windowStart || at >= window.limit()) {
+                    window.clear();
+                    windowStart = position;
+                    int n = channel.read(window, position);
+                    window.flip();
+                    if (n <= 0)
+                        return false;
+                    at = 0;
+                }
+                int n = Math.min(len, window.limit() - at);
+                System.arraycopy(window.array(), at, b, off, n);
+                position += n;
+                off += n;
+                len -= n;
+            }
+            return true;
+        }
+
+        boolean skip(long n) throws IOException {
+            if (position + n > size) {
+                position = size;
+                return false;
+            }
+            position += n;
+            return true;
+        }
+    }
+
+    private static int version(int header) {
+        if (((header >>> 20) & 1) == 0)
+            return Header.MPEG25_LSF;
+        return (header >>> 19) & 1;
+    }
+
+    /**
+     * Returns the length of the frame starting with the given header,
+     * or -1 if it is not a valid header.
+     */
+    static int frameLength(int header) {
+        if ((header & 0xffe00000) != 0xffe00000)
+            return -1;
+        if (((header >>> 19) & 3) == 1)
+            return -1; // reserved version
+        int layer = 4 - ((header >>> 17) & 3);
+        int bitrateIndex = (header >>> 12) & 0xf;
+        int frequencyIndex = (header >>> 10) & 3;
+        if (layer == 4 || bitrateIndex == 0 || bitrateIndex == 15 || frequencyIndex == 3)
+            return -1;
+        int version = version(header);
+        int bitrate = Header.bitrates[version][layer - 1][bitrateIndex];
+        int frequency = Header.frequencies[version][frequencyIndex];
+        int padding = (header >>> 9) & 1;
+        if (layer == 1)
+            return (12 * bitrate / frequency + padding) * 4;
+        int length = 144 * bitrate / frequency;
+        if (version != Header.MPEG1)
+            length >>= 1; // as Header.calculate_framesize()
+        return length + padding;
+    }
+}
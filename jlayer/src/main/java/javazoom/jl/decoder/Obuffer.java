@@ -58,6 +58,18 @@ public abstract class Obuffer {
         }
     }
 
+    /**
+     * Accepts the first <code>count</code> of new PCM samples, for the
+     * reduced rate decoding.
+     */
+    public void appendSamples(int channel, float[] f, int count) {
+        short s;
+        for (int i = 0; i < count; ) {
+            s = clip(f[i++]);
+            append(channel, s);
+        }
+    }
+
     /**
      * Clip Sample to 16 Bits
      */
@@ -0,0 +1,204 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.util.Arrays;
+
+
+/**
+ * The <code>PeakObuffer</code> class implements an output buffer
+ * that keeps the minimum, maximum and RMS of every block of
+ * <code>samplesPerBucket</code> samples of each channel, for drawing
+ * waveforms. The float samples of the synthesis filter are aggregated
+ * as they are appended, without clipping, conversion to short or
+ * interleaving.
+ * <p>
+ * Set it on a <code>Decoder</code> with <code>setOutputBuffer()</code>
+ * before the first frame is decoded, and call <code>close()</code> after
+ * the last one to complete the final, partial bucket. Decoding at a
+ * reduced rate with <code>Decoder.Params.setDownsamplingFactor()</code>
+ * makes this faster still; <code>samplesPerBucket</code> then counts
+ * samples at the reduced rate.
+ * <p>
+ * Values are scaled to [-1.0, 1.0] for full scale 16 bit samples, and
+ * may exceed that range where the decoded signal clips.
+ */
+public class PeakObuffer extends Obuffer {
+
+    private static final float SCALE = 1.0f / 32768.0f;
+
+    private final int samplesPerBucket;
+
+    private int channels;
+
+    private final float[] bucketMin = new float[MAXCHANNELS];
+    private final float[] bucketMax = new float[MAXCHANNELS];
+    private final double[] bucketSquares = new double[MAXCHANNELS];
+    private final int[] bucketSamples = new int[MAXCHANNELS];
+
+    private final float[][] min = new float[MAXCHANNELS][];
+    private final float[][] max = new float[MAXCHANNELS][];
+    private final float[][] rms = new float[MAXCHANNELS][];
+    private final int[] buckets = new int[MAXCHANNELS];
+
+    /**
+     * @param samplesPerBucket The number of samples of one channel
+     *                         aggregated into each bucket.
+     */
+    public PeakObuffer(int samplesPerBucket) {
+        if (samplesPerBucket < 1)
+            throw new IllegalArgumentException("samplesPerBucket: " + samplesPerBucket);
+        this.samplesPerBucket = samplesPerBucket;
+        for (int ch = 0; ch < MAXCHANNELS; ch++) {
+            min[ch] = new float[256];
+            max[ch] = new float[256];
+            rms[ch] = new float[256];
+            bucketMin[ch] = Float.POSITIVE_INFINITY;
+            bucketMax[ch] = Float.NEGATIVE_INFINITY;
+        }
+    }
+
+    public int getSamplesPerBucket() {
+        return samplesPerBucket;
+    }
+
+    /**
+     * Returns the number of channels samples were appended to.
+     */
+    public int getChannelCount() {
+        return channels;
+    }
+
+    /**
+     * Returns the number of completed buckets of a channel.
+     */
+    public int getBucketCount(int channel) {
+        return buckets[channel];
+    }
+
+    /**
+     * Returns the minimum sample of each completed bucket of a channel.
+     */
+    public float[] getMin(int channel) {
+        return Arrays.copyOf(min[channel], buckets[channel]);
+    }
+
+    /**
+     * Returns the maximum sample of each completed bucket of a channel.
+     */
+    public float[] getMax(int channel) {
+        return Arrays.copyOf(max[channel], buckets[channel]);
+    }
+
+    /**
+     * Returns the RMS of each completed bucket of a channel.
+     */
+    public float[] getRms(int channel) {
+        return Arrays.copyOf(rms[channel], buckets[channel]);
+    }
+
+    /**
+     * Takes a 16 Bit PCM sample.
+     */
+    public void append(int channel, short value) {
+        add(channel, value);
+        if (bucketSamples[channel] == samplesPerBucket)
+            completeBucket(channel);
+    }
+
+    public void appendSamples(int channel, float[] f) {
+        appendSamples(channel, f, 32);
+    }
+
+    public void appendSamples(int channel, float[] f, int count) {
+        int i = 0;
+        while (i < count) {
+            int n = Math.min(count - i, samplesPerBucket - bucketSamples[channel]);
+            float lo = bucketMin[channel], hi = bucketMax[channel];
+            // at most 32 samples, summed in float and added to the double total
+            float squares = 0;
+            for (int end = i + n; i < end; i++) {
+                float s = f[i];
+                lo = Math.min(lo, s);
+                hi = Math.max(hi, s);
+                squares += s * s;
+            }
+            bucketMin[channel] = lo;
+            bucketMax[channel] = hi;
+            bucketSquares[channel] += squares;
+            bucketSamples[channel] += n;
+            if (bucketSamples[channel] == samplesPerBucket)
+                completeBucket(channel);
+        }
+        if (channel >= channels)
+            channels = channel + 1;
+    }
+
+    private void add(int channel, float s) {
+        if (s < bucketMin[channel])
+            bucketMin[channel] = s;
+        if (s > bucketMax[channel])
+            bucketMax[channel] = s;
+        bucketSquares[channel] += s * s;
+        bucketSamples[channel]++;
+        if (channel >= channels)
+            channels = channel + 1;
+    }
+
+    private void completeBucket(int channel) {
+        int n = buckets[channel];
+        if (n == min[channel].length) {
+            min[channel] = Arrays.copyOf(min[channel], n * 2);
+            max[channel] = Arrays.copyOf(max[channel], n * 2);
+            rms[channel] = Arrays.copyOf(rms[channel], n * 2);
+        }
+        min[channel][n] = bucketMin[channel] * SCALE;
+        max[channel][n] = bucketMax[channel] * SCALE;
+        rms[channel][n] = (float) Math.sqrt(bucketSquares[channel] / bucketSamples[channel]) * SCALE;
+        buckets[channel] = n + 1;
+
+        bucketMin[channel] = Float.POSITIVE_INFINITY;
+        bucketMax[channel] = Float.NEGATIVE_INFINITY;
+        bucketSquares[channel] = 0;
+        bucketSamples[channel] = 0;
+    }
+
+    public void write_buffer(int val) {
+    }
+
+    /**
+     * Completes the last bucket of each channel, if it is partially filled.
+     */
+    public void close() {
+        for (int ch = 0; ch < channels; ch++) {
+            if (bucketSamples[ch] > 0)
+                completeBucket(ch);
+        }
+    }
+
+    /**
+     * Called before each frame is decoded; the buckets span frames, so
+     * nothing is cleared.
+     */
+    public void clear_buffer() {
+    }
+
+    public void set_stop_flag() {
+    }
+}
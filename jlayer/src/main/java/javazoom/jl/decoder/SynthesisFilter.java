@@ -31,7 +31,7 @@
 
 package javazoom.jl.decoder;
 
-import java.io.IOException;
+import java.lang.reflect.Constructor;
 
 
 /**
@@ -39,15 +39,68 @@ import java.io.IOException;
  * This class does a fast downsampling from 32, 44.1 or 48 kHz to 8 kHz, if ULAW is defined.
  * Frequencies above 4 kHz are removed by ignoring higher subbands.
  */
-final class SynthesisFilter {
-    private float[] v1;
-    private float[] v2;
-    private float[] actual_v;            // v1 or v2
-    private int actual_write_pos;    // 0-15
+class SynthesisFilter {
+
+    /**
+     * Set to <code>false</code> to always use the scalar filter.
+     */
+    private static final String VECTOR_PROPERTY = "javazoom.jl.decoder.vector";
+
+    private static final String VECTOR_CLASS = "javazoom.jl.decoder.VectorSynthesisFilter";
+
+    /**
+     * Constructor of the filter built on jdk.incubator.vector, or null if
+     * that module or the class is not available.
+     */
+    private static final Constructor<? extends SynthesisFilter> vector_filter = find_vector_filter();
+
+    float[] v1;
+    float[] v2;
+    float[] actual_v;            // v1 or v2
+    int actual_write_pos;    // 0-15
     private float[] samples;            // 32 new subband samples
-    private int channel;
-    private float scalefactor;
+    final int channel;
+    final float scalefactor;
     private float[] eq;
+    private int subbands = 32;           // 32, 16 or 8
+    private int down_sample = 0;         // log2 of 32 / subbands
+
+    /**
+     * Creates a synthesis filter for a decoder: the vectorized filter if
+     * the jdk.incubator.vector module is present, the scalar one
+     * otherwise. Both compute the same samples.
+     */
+    static SynthesisFilter create(int channelnumber, float factor, float[] eq0) {
+        if (vector_filter != null) {
+            try {
+                return vector_filter.newInstance(channelnumber, factor, eq0);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // fall back to the scalar filter
+            }
+        }
+        return new SynthesisFilter(channelnumber, factor, eq0);
+    }
+
+    /**
+     * Returns true if {@link #create(int, float, float[])} returns the
+     * vectorized filter.
+     */
+    static boolean isVectorized() {
+        return vector_filter != null;
+    }
+
+    private static Constructor<? extends SynthesisFilter> find_vector_filter() {
+        if (!Boolean.parseBoolean(System.getProperty(VECTOR_PROPERTY, "true")))
+            return null;
+        try {
+            // initializing the class fails if the module was not added to the boot layer
+            Class<? extends SynthesisFilter> c = Class.forName(VECTOR_CLASS, true, SynthesisFilter.class.getClassLoader())
+                    .asSubclass(SynthesisFilter.class);
+            return c.getDeclaredConstructor(int.class, float.class, float[].class);
+        } catch (ReflectiveOperationException | LinkageError | SecurityException e) {
+            return null;
+        }
+    }
 
     /**
      * Contructor.
@@ -55,11 +108,6 @@ final class SynthesisFilter {
      * (raw pcm samples are in [-1.0, 1.0], if no violations occur).
      */
     public SynthesisFilter(int channelnumber, float factor, float[] eq0) {
-        if (d == null) {
-            d = load_d();
-            d16 = splitArray(d, 16);
-        }
-
         v1 = new float[512];
         v2 = new float[512];
         samples = new float[32];
@@ -84,6 +132,37 @@ final class SynthesisFilter {
 
     }
 
+    /**
+     * Sets the decimation of the output: with a factor of 2 or 4, only the
+     * lowest 16 or 8 subbands are synthesized, to 16 or 8 PCM samples per
+     * 32 subband samples, i.e. at 1/2 or 1/4 of the sample rate.
+     *
+     * @param factor 1, 2 or 4.
+     */
+    public void setDownsamplingFactor(int factor) {
+        switch (factor) {
+        case 1:
+            down_sample = 0;
+            break;
+        case 2:
+            down_sample = 1;
+            break;
+        case 4:
+            down_sample = 2;
+            break;
+        default:
+            throw new IllegalArgumentException("factor");
+        }
+        subbands = 32 >> down_sample;
+    }
+
+    /**
+     * Returns the number of subbands that are synthesized.
+     */
+    public int getSubbandCount() {
+        return subbands;
+    }
+
     /**
      * Reset the synthesis filter.
      */
@@ -112,11 +191,12 @@ final class SynthesisFilter {
      * Inject Sample.
      */
     public void input_sample(float sample, int subbandnumber) {
-        samples[subbandnumber] = eq[subbandnumber] * sample;
+        if (subbandnumber < subbands)
+            samples[subbandnumber] = eq[subbandnumber] * sample;
     }
 
     public void input_samples(float[] s) {
-        for (int i = 31; i >= 0; i--) {
+        for (int i = subbands - 1; i >= 0; i--) {
             samples[i] = s[i] * eq[i];
         }
     }
@@ -124,7 +204,7 @@ final class SynthesisFilter {
     /**
      * Compute new values via a fast cosine transform.
      */
-    private void compute_new_v() {
+    void compute_new_v() {
         // p is fully initialized from x1
         //float[] p = _p;
         // pp is fully initialized from p
@@ -781,7 +861,7 @@ final class SynthesisFilter {
      * Compute PCM Samples.
      */
 
-    private float[] _tmpOut = new float[32];
+    final float[] _tmpOut = new float[32];
 
 
     private void compute_pcm_samples0(Obuffer buffer) {
@@ -1354,7 +1434,7 @@ final class SynthesisFilter {
         } // for
     }
 
-    private void compute_pcm_samples(Obuffer buffer) {
+    void compute_pcm_samples(Obuffer buffer) {
 
         switch (actual_write_pos) {
         case 0:
@@ -1413,13 +1493,44 @@ final class SynthesisFilter {
 
     }
 
+    /**
+     * Computes every 2nd or 4th of the 32 PCM samples, with the same sums
+     * as compute_pcm_samples0-15, and puts them into the Obuffer-object.
+     * The subbands above the output's Nyquist frequency are not input, so
+     * the decimation does not alias.
+     */
+    private void compute_pcm_samples_decimated(Obuffer buffer) {
+        final float[] vp = actual_v;
+        final float[] tmpOut = _tmpOut;
+        final int pos = actual_write_pos;
+        final int step = 1 << down_sample;
+        int count = 0;
+
+        for (int i = 0; i < 32; i += step) {
+            final float[] dp = d16[i];
+            final int dvp = i << 4;
+            float pcm_sample = vp[dvp + pos] * dp[0];
+            for (int k = 1; k < 16; k++)
+                pcm_sample += vp[dvp + ((pos - k) & 0xf)] * dp[k];
+
+            tmpOut[count++] = pcm_sample * scalefactor;
+        }
+
+        if (buffer != null) {
+            buffer.appendSamples(channel, tmpOut, count);
+        }
+    }
+
     /**
      * Calculate 32 PCM samples and put the into the Obuffer-object.
      */
 
     public void calculate_pcm_samples(Obuffer buffer) {
         compute_new_v();
-        compute_pcm_samples(buffer);
+        if (down_sample == 0)
+            compute_pcm_samples(buffer);
+        else
+            compute_pcm_samples_decimated(buffer);
 
         actual_write_pos = (actual_write_pos + 1) & 0xf;
         actual_v = (actual_v == v1) ? v2 : v1;
@@ -1472,29 +1583,144 @@ final class SynthesisFilter {
     // as in Annex 3-B.3 of the ISO/IEC DIS 11172-3
     // private float d[] = {0.000000000, -4.000442505};
 
-    private static float[] d = null;
+    private static final float[] d = {
+            0.000000000f, -0.000442505f, 0.003250122f, -0.007003784f,
+            0.031082153f, -0.078628540f, 0.100311279f, -0.572036743f,
+            1.144989014f, 0.572036743f, 0.100311279f, 0.078628540f,
+            0.031082153f, 0.007003784f, 0.003250122f, 0.000442505f,
+            -0.000015259f, -0.000473022f, 0.003326416f, -0.007919312f,
+            0.030517578f, -0.084182739f, 0.090927124f, -0.600219727f,
+            1.144287109f, 0.543823242f, 0.108856201f, 0.073059082f,
+            0.031478882f, 0.006118774f, 0.003173828f, 0.000396729f,
+            -0.000015259f, -0.000534058f, 0.003387451f, -0.008865356f,
+            0.029785156f, -0.089706421f, 0.080688477f, -0.628295898f,
+            1.142211914f, 0.515609741f, 0.116577148f, 0.067520142f,
+            0.031738281f, 0.005294800f, 0.003082275f, 0.000366211f,
+            -0.000015259f, -0.000579834f, 0.003433228f, -0.009841919f,
+            0.028884888f, -0.095169067f, 0.069595337f, -0.656219482f,
+            1.138763428f, 0.487472534f, 0.123474121f, 0.061996460f,
+            0.031845093f, 0.004486084f, 0.002990723f, 0.000320435f,
+            -0.000015259f, -0.000625610f, 0.003463745f, -0.010848999f,
+            0.027801514f, -0.100540161f, 0.057617188f, -0.683914185f,
+            1.133926392f, 0.459472656f, 0.129577637f, 0.056533813f,
+            0.031814575f, 0.003723145f, 0.002899170f, 0.000289917f,
+            -0.000015259f, -0.000686646f, 0.003479004f, -0.011886597f,
+            0.026535034f, -0.105819702f, 0.044784546f, -0.711318970f,
+            1.127746582f, 0.431655884f, 0.134887695f, 0.051132202f,
+            0.031661987f, 0.003005981f, 0.002792358f, 0.000259399f,
+            -0.000015259f, -0.000747681f, 0.003479004f, -0.012939453f,
+            0.025085449f, -0.110946655f, 0.031082153f, -0.738372803f,
+            1.120223999f, 0.404083252f, 0.139450073f, 0.045837402f,
+            0.031387329f, 0.002334595f, 0.002685547f, 0.000244141f,
+            -0.000030518f, -0.000808716f, 0.003463745f, -0.014022827f,
+            0.023422241f, -0.115921021f, 0.016510010f, -0.765029907f,
+            1.111373901f, 0.376800537f, 0.143264771f, 0.040634155f,
+            0.031005859f, 0.001693726f, 0.002578735f, 0.000213623f,
+            -0.000030518f, -0.000885010f, 0.003417969f, -0.015121460f,
+            0.021575928f, -0.120697021f, 0.001068115f, -0.791213989f,
+            1.101211548f, 0.349868774f, 0.146362305f, 0.035552979f,
+            0.030532837f, 0.001098633f, 0.002456665f, 0.000198364f,
+            -0.000030518f, -0.000961304f, 0.003372192f, -0.016235352f,
+            0.019531250f, -0.125259399f, -0.015228271f, -0.816864014f,
+            1.089782715f, 0.323318481f, 0.148773193f, 0.030609131f,
+            0.029937744f, 0.000549316f, 0.002349854f, 0.000167847f,
+            -0.000030518f, -0.001037598f, 0.003280640f, -0.017349243f,
+            0.017257690f, -0.129562378f, -0.032379150f, -0.841949463f,
+            1.077117920f, 0.297210693f, 0.150497437f, 0.025817871f,
+            0.029281616f, 0.000030518f, 0.002243042f, 0.000152588f,
+            -0.000045776f, -0.001113892f, 0.003173828f, -0.018463135f,
+            0.014801025f, -0.133590698f, -0.050354004f, -0.866363525f,
+            1.063217163f, 0.271591187f, 0.151596069f, 0.021179199f,
+            0.028533936f, -0.000442505f, 0.002120972f, 0.000137329f,
+            -0.000045776f, -0.001205444f, 0.003051758f, -0.019577026f,
+            0.012115479f, -0.137298584f, -0.069168091f, -0.890090942f,
+            1.048156738f, 0.246505737f, 0.152069092f, 0.016708374f,
+            0.027725220f, -0.000869751f, 0.002014160f, 0.000122070f,
+            -0.000061035f, -0.001296997f, 0.002883911f, -0.020690918f,
+            0.009231567f, -0.140670776f, -0.088775635f, -0.913055420f,
+            1.031936646f, 0.221984863f, 0.151962280f, 0.012420654f,
+            0.026840210f, -0.001266479f, 0.001907349f, 0.000106812f,
+            -0.000061035f, -0.001388550f, 0.002700806f, -0.021789551f,
+            0.006134033f, -0.143676758f, -0.109161377f, -0.935195923f,
+            1.014617920f, 0.198059082f, 0.151306152f, 0.008316040f,
+            0.025909424f, -0.001617432f, 0.001785278f, 0.000106812f,
+            -0.000076294f, -0.001480103f, 0.002487183f, -0.022857666f,
+            0.002822876f, -0.146255493f, -0.130310059f, -0.956481934f,
+            0.996246338f, 0.174789429f, 0.150115967f, 0.004394531f,
+            0.024932861f, -0.001937866f, 0.001693726f, 0.000091553f,
+            -0.000076294f, -0.001586914f, 0.002227783f, -0.023910522f,
+            -0.000686646f, -0.148422241f, -0.152206421f, -0.976852417f,
+            0.976852417f, 0.152206421f, 0.148422241f, 0.000686646f,
+            0.023910522f, -0.002227783f, 0.001586914f, 0.000076294f,
+            -0.000091553f, -0.001693726f, 0.001937866f, -0.024932861f,
+            -0.004394531f, -0.150115967f, -0.174789429f, -0.996246338f,
+            0.956481934f, 0.130310059f, 0.146255493f, -0.002822876f,
+            0.022857666f, -0.002487183f, 0.001480103f, 0.000076294f,
+            -0.000106812f, -0.001785278f, 0.001617432f, -0.025909424f,
+            -0.008316040f, -0.151306152f, -0.198059082f, -1.014617920f,
+            0.935195923f, 0.109161377f, 0.143676758f, -0.006134033f,
+            0.021789551f, -0.002700806f, 0.001388550f, 0.000061035f,
+            -0.000106812f, -0.001907349f, 0.001266479f, -0.026840210f,
+            -0.012420654f, -0.151962280f, -0.221984863f, -1.031936646f,
+            0.913055420f, 0.088775635f, 0.140670776f, -0.009231567f,
+            0.020690918f, -0.002883911f, 0.001296997f, 0.000061035f,
+            -0.000122070f, -0.002014160f, 0.000869751f, -0.027725220f,
+            -0.016708374f, -0.152069092f, -0.246505737f, -1.048156738f,
+            0.890090942f, 0.069168091f, 0.137298584f, -0.012115479f,
+            0.019577026f, -0.003051758f, 0.001205444f, 0.000045776f,
+            -0.000137329f, -0.002120972f, 0.000442505f, -0.028533936f,
+            -0.021179199f, -0.151596069f, -0.271591187f, -1.063217163f,
+            0.866363525f, 0.050354004f, 0.133590698f, -0.014801025f,
+            0.018463135f, -0.003173828f, 0.001113892f, 0.000045776f,
+            -0.000152588f, -0.002243042f, -0.000030518f, -0.029281616f,
+            -0.025817871f, -0.150497437f, -0.297210693f, -1.077117920f,
+            0.841949463f, 0.032379150f, 0.129562378f, -0.017257690f,
+            0.017349243f, -0.003280640f, 0.001037598f, 0.000030518f,
+            -0.000167847f, -0.002349854f, -0.000549316f, -0.029937744f,
+            -0.030609131f, -0.148773193f, -0.323318481f, -1.089782715f,
+            0.816864014f, 0.015228271f, 0.125259399f, -0.019531250f,
+            0.016235352f, -0.003372192f, 0.000961304f, 0.000030518f,
+            -0.000198364f, -0.002456665f, -0.001098633f, -0.030532837f,
+            -0.035552979f, -0.146362305f, -0.349868774f, -1.101211548f,
+            0.791213989f, -0.001068115f, 0.120697021f, -0.021575928f,
+            0.015121460f, -0.003417969f, 0.000885010f, 0.000030518f,
+            -0.000213623f, -0.002578735f, -0.001693726f, -0.031005859f,
+            -0.040634155f, -0.143264771f, -0.376800537f, -1.111373901f,
+            0.765029907f, -0.016510010f, 0.115921021f, -0.023422241f,
+            0.014022827f, -0.003463745f, 0.000808716f, 0.000030518f,
+            -0.000244141f, -0.002685547f, -0.002334595f, -0.031387329f,
+            -0.045837402f, -0.139450073f, -0.404083252f, -1.120223999f,
+            0.738372803f, -0.031082153f, 0.110946655f, -0.025085449f,
+            0.012939453f, -0.003479004f, 0.000747681f, 0.000015259f,
+            -0.000259399f, -0.002792358f, -0.003005981f, -0.031661987f,
+            -0.051132202f, -0.134887695f, -0.431655884f, -1.127746582f,
+            0.711318970f, -0.044784546f, 0.105819702f, -0.026535034f,
+            0.011886597f, -0.003479004f, 0.000686646f, 0.000015259f,
+            -0.000289917f, -0.002899170f, -0.003723145f, -0.031814575f,
+            -0.056533813f, -0.129577637f, -0.459472656f, -1.133926392f,
+            0.683914185f, -0.057617188f, 0.100540161f, -0.027801514f,
+            0.010848999f, -0.003463745f, 0.000625610f, 0.000015259f,
+            -0.000320435f, -0.002990723f, -0.004486084f, -0.031845093f,
+            -0.061996460f, -0.123474121f, -0.487472534f, -1.138763428f,
+            0.656219482f, -0.069595337f, 0.095169067f, -0.028884888f,
+            0.009841919f, -0.003433228f, 0.000579834f, 0.000015259f,
+            -0.000366211f, -0.003082275f, -0.005294800f, -0.031738281f,
+            -0.067520142f, -0.116577148f, -0.515609741f, -1.142211914f,
+            0.628295898f, -0.080688477f, 0.089706421f, -0.029785156f,
+            0.008865356f, -0.003387451f, 0.000534058f, 0.000015259f,
+            -0.000396729f, -0.003173828f, -0.006118774f, -0.031478882f,
+            -0.073059082f, -0.108856201f, -0.543823242f, -1.144287109f,
+            0.600219727f, -0.090927124f, 0.084182739f, -0.030517578f,
+            0.007919312f, -0.003326416f, 0.000473022f, 0.000015259f
+            
+    };
 
     /**
      * d[] split into subarrays of length 16. This provides for
      * more faster access by allowing a block of 16 to be addressed
      * with constant offset.
      **/
-    private static float[][] d16 = null;
-
-    /**
-     * Loads the data for the d[] from the resource SFd.ser.
-     *
-     * @return the loaded values for d[].
-     */
-    static private float[] load_d() {
-        try {
-            Class<?> elemType = Float.TYPE;
-            Object o = JavaLayerUtils.deserializeArrayResource("sfd.ser", elemType, 512);
-            return (float[]) o;
-        } catch (IOException ex) {
-            throw new ExceptionInInitializerError(ex);
-        }
-    }
+    static final float[][] d16 = splitArray(d, 16);
 
     /**
      * Converts a 1D array into a number of smaller arrays. This is used
@@ -1540,139 +1766,4 @@ final class SynthesisFilter {
 
         return subarray;
     }
-
-    // The original data for d[]. This data is loaded from a file
-    // to reduce the overall package size and to improve performance.
-/*
-  static final float d_data[] = {
-      0.000000000f, -0.000442505f,  0.003250122f, -0.007003784f,
-      0.031082153f, -0.078628540f,  0.100311279f, -0.572036743f,
-      1.144989014f,  0.572036743f,  0.100311279f,  0.078628540f,
-      0.031082153f,  0.007003784f,  0.003250122f,  0.000442505f,
-   -0.000015259f, -0.000473022f,  0.003326416f, -0.007919312f,
-      0.030517578f, -0.084182739f,  0.090927124f, -0.600219727f,
-      1.144287109f,  0.543823242f,  0.108856201f,  0.073059082f,
-      0.031478882f,  0.006118774f,  0.003173828f,  0.000396729f,
-   -0.000015259f, -0.000534058f,  0.003387451f, -0.008865356f,
-      0.029785156f, -0.089706421f,  0.080688477f, -0.628295898f,
-      1.142211914f,  0.515609741f,  0.116577148f,  0.067520142f,
-    0.031738281f,  0.005294800f,  0.003082275f,  0.000366211f,
-   -0.000015259f, -0.000579834f,  0.003433228f, -0.009841919f,
-    0.028884888f, -0.095169067f,  0.069595337f, -0.656219482f,
-      1.138763428f,  0.487472534f,  0.123474121f,  0.061996460f,
-    0.031845093f,  0.004486084f,  0.002990723f,  0.000320435f,
-   -0.000015259f, -0.000625610f,  0.003463745f, -0.010848999f,
-    0.027801514f, -0.100540161f,  0.057617188f, -0.683914185f,
-      1.133926392f,  0.459472656f,  0.129577637f,  0.056533813f,
-      0.031814575f,  0.003723145f,  0.002899170f,  0.000289917f,
-   -0.000015259f, -0.000686646f,  0.003479004f, -0.011886597f,
-      0.026535034f, -0.105819702f,  0.044784546f, -0.711318970f,
-      1.127746582f,  0.431655884f,  0.134887695f,  0.051132202f,
-      0.031661987f,  0.003005981f,  0.002792358f,  0.000259399f,
-   -0.000015259f, -0.000747681f,  0.003479004f, -0.012939453f,
-      0.025085449f, -0.110946655f,  0.031082153f, -0.738372803f,
-    1.120223999f,  0.404083252f,  0.139450073f,  0.045837402f,
-    0.031387329f,  0.002334595f,  0.002685547f,  0.000244141f,
-   -0.000030518f, -0.000808716f,  0.003463745f, -0.014022827f,
-    0.023422241f, -0.115921021f,  0.016510010f, -0.765029907f,
-      1.111373901f,  0.376800537f,  0.143264771f,  0.040634155f,
-    0.031005859f,  0.001693726f,  0.002578735f,  0.000213623f,
-   -0.000030518f, -0.000885010f,  0.003417969f, -0.015121460f,
-      0.021575928f, -0.120697021f,  0.001068115f, -0.791213989f,
-    1.101211548f,  0.349868774f,  0.146362305f,  0.035552979f,
-      0.030532837f,  0.001098633f,  0.002456665f,  0.000198364f,
-   -0.000030518f, -0.000961304f,  0.003372192f, -0.016235352f,
-    0.019531250f, -0.125259399f, -0.015228271f, -0.816864014f,
-      1.089782715f,  0.323318481f,  0.148773193f,  0.030609131f,
-      0.029937744f,  0.000549316f,  0.002349854f,  0.000167847f,
-   -0.000030518f, -0.001037598f,  0.003280640f, -0.017349243f,
-      0.017257690f, -0.129562378f, -0.032379150f, -0.841949463f,
-    1.077117920f,  0.297210693f,  0.150497437f,  0.025817871f,
-    0.029281616f,  0.000030518f,  0.002243042f,  0.000152588f,
-   -0.000045776f, -0.001113892f,  0.003173828f, -0.018463135f,
-      0.014801025f, -0.133590698f, -0.050354004f, -0.866363525f,
-      1.063217163f,  0.271591187f,  0.151596069f,  0.021179199f,
-      0.028533936f, -0.000442505f,  0.002120972f,  0.000137329f,
-   -0.000045776f, -0.001205444f,  0.003051758f, -0.019577026f,
-      0.012115479f, -0.137298584f, -0.069168091f, -0.890090942f,
-      1.048156738f,  0.246505737f,  0.152069092f,  0.016708374f,
-      0.027725220f, -0.000869751f,  0.002014160f,  0.000122070f,
-   -0.000061035f, -0.001296997f,  0.002883911f, -0.020690918f,
-    0.009231567f, -0.140670776f, -0.088775635f, -0.913055420f,
-      1.031936646f,  0.221984863f,  0.151962280f,  0.012420654f,
-    0.026840210f, -0.001266479f,  0.001907349f,  0.000106812f,
-   -0.000061035f, -0.001388550f,  0.002700806f, -0.021789551f,
-      0.006134033f, -0.143676758f, -0.109161377f, -0.935195923f,
-    1.014617920f,  0.198059082f,  0.151306152f,  0.008316040f,
-      0.025909424f, -0.001617432f,  0.001785278f,  0.000106812f,
-   -0.000076294f, -0.001480103f,  0.002487183f, -0.022857666f,
-      0.002822876f, -0.146255493f, -0.130310059f, -0.956481934f,
-      0.996246338f,  0.174789429f,  0.150115967f,  0.004394531f,
-    0.024932861f, -0.001937866f,  0.001693726f,  0.000091553f,
-   -0.000076294f, -0.001586914f,  0.002227783f, -0.023910522f,
-   -0.000686646f, -0.148422241f, -0.152206421f, -0.976852417f,
-    0.976852417f,  0.152206421f,  0.148422241f,  0.000686646f,
-      0.023910522f, -0.002227783f,  0.001586914f,  0.000076294f,
-   -0.000091553f, -0.001693726f,  0.001937866f, -0.024932861f,
-   -0.004394531f, -0.150115967f, -0.174789429f, -0.996246338f,
-    0.956481934f,  0.130310059f,  0.146255493f, -0.002822876f,
-    0.022857666f, -0.002487183f,  0.001480103f,  0.000076294f,
-   -0.000106812f, -0.001785278f,  0.001617432f, -0.025909424f,
-   -0.008316040f, -0.151306152f, -0.198059082f, -1.014617920f,
-    0.935195923f,  0.109161377f,  0.143676758f, -0.006134033f,
-    0.021789551f, -0.002700806f,  0.001388550f,  0.000061035f,
-   -0.000106812f, -0.001907349f,  0.001266479f, -0.026840210f,
-   -0.012420654f, -0.151962280f, -0.221984863f, -1.031936646f,
-      0.913055420f,  0.088775635f,  0.140670776f, -0.009231567f,
-      0.020690918f, -0.002883911f,  0.001296997f,  0.000061035f,
-   -0.000122070f, -0.002014160f,  0.000869751f, -0.027725220f,
-   -0.016708374f, -0.152069092f, -0.246505737f, -1.048156738f,
-    0.890090942f,  0.069168091f,  0.137298584f, -0.012115479f,
-      0.019577026f, -0.003051758f,  0.001205444f,  0.000045776f,
-   -0.000137329f, -0.002120972f,  0.000442505f, -0.028533936f,
-   -0.021179199f, -0.151596069f, -0.271591187f, -1.063217163f,
-    0.866363525f,  0.050354004f,  0.133590698f, -0.014801025f,
-    0.018463135f, -0.003173828f,  0.001113892f,  0.000045776f,
-   -0.000152588f, -0.002243042f, -0.000030518f, -0.029281616f,
-   -0.025817871f, -0.150497437f, -0.297210693f, -1.077117920f,
-      0.841949463f,  0.032379150f,  0.129562378f, -0.017257690f,
-      0.017349243f, -0.003280640f,  0.001037598f,  0.000030518f,
-   -0.000167847f, -0.002349854f, -0.000549316f, -0.029937744f,
-   -0.030609131f, -0.148773193f, -0.323318481f, -1.089782715f,
-      0.816864014f,  0.015228271f,  0.125259399f, -0.019531250f,
-    0.016235352f, -0.003372192f,  0.000961304f,  0.000030518f,
-   -0.000198364f, -0.002456665f, -0.001098633f, -0.030532837f,
-   -0.035552979f, -0.146362305f, -0.349868774f, -1.101211548f,
-      0.791213989f, -0.001068115f,  0.120697021f, -0.021575928f,
-      0.015121460f, -0.003417969f,  0.000885010f,  0.000030518f,
-   -0.000213623f, -0.002578735f, -0.001693726f, -0.031005859f,
-   -0.040634155f, -0.143264771f, -0.376800537f, -1.111373901f,
-    0.765029907f, -0.016510010f,  0.115921021f, -0.023422241f,
-    0.014022827f, -0.003463745f,  0.000808716f,  0.000030518f,
-   -0.000244141f, -0.002685547f, -0.002334595f, -0.031387329f,
-   -0.045837402f, -0.139450073f, -0.404083252f, -1.120223999f,
-    0.738372803f, -0.031082153f,  0.110946655f, -0.025085449f,
-      0.012939453f, -0.003479004f,  0.000747681f,  0.000015259f,
-   -0.000259399f, -0.002792358f, -0.003005981f, -0.031661987f,
-   -0.051132202f, -0.134887695f, -0.431655884f, -1.127746582f,
-      0.711318970f, -0.044784546f,  0.105819702f, -0.026535034f,
-    0.011886597f, -0.003479004f,  0.000686646f,  0.000015259f,
-   -0.000289917f, -0.002899170f, -0.003723145f, -0.031814575f,
-   -0.056533813f, -0.129577637f, -0.459472656f, -1.133926392f,
-    0.683914185f, -0.057617188f,  0.100540161f, -0.027801514f,
-      0.010848999f, -0.003463745f,  0.000625610f,  0.000015259f,
-   -0.000320435f, -0.002990723f, -0.004486084f, -0.031845093f,
-   -0.061996460f, -0.123474121f, -0.487472534f, -1.138763428f,
-      0.656219482f, -0.069595337f,  0.095169067f, -0.028884888f,
-      0.009841919f, -0.003433228f,  0.000579834f,  0.000015259f,
-   -0.000366211f, -0.003082275f, -0.005294800f, -0.031738281f,
-   -0.067520142f, -0.116577148f, -0.515609741f, -1.142211914f,
-      0.628295898f, -0.080688477f,  0.089706421f, -0.029785156f,
-      0.008865356f, -0.003387451f,  0.000534058f,  0.000015259f,
-   -0.000396729f, -0.003173828f, -0.006118774f, -0.031478882f,
-   -0.073059082f, -0.108856201f, -0.543823242f, -1.144287109f,
-      0.600219727f, -0.090927124f,  0.084182739f, -0.030517578f,
-    0.007919312f, -0.003326416f,  0.000473022f,  0.000015259f
-    };
-  */
 }
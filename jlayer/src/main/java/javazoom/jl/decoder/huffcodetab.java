@@ -39,6 +39,8 @@
 
 package javazoom.jl.decoder;
 
+import java.util.Arrays;
+
 /**
  * Class to implements Huffman decoder.
  */
@@ -46,6 +48,11 @@ final class huffcodetab {
     private static final int MXOFF = 250;
     private static final int HTN = 34;
 
+    /**
+     * Number of bits resolved by the first level of the lookup tables.
+     */
+    private static final int LOOKUP_BITS = 8;
+
     /** string, containing table_description */
     private char tablename0 = ' ';
     /** string, containing table_description */
@@ -76,6 +83,16 @@ final class huffcodetab {
     private int[][] val = null;
     /** length of decoder tree */
     private int treelen;
+    /**
+     * lookup tables, null to walk the decoder tree instead: 2^LOOKUP_BITS
+     * entries for the first bits of a codeword, followed by the second
+     * level tables for longer codewords. A leaf entry is the number of
+     * bits of the codeword << 8 | the value; a negative entry ~(offset << 5
+     * | bits) points to the second level table indexed by the next bits.
+     */
+    private int[] lookup = null;
+    /** number of bits looked at to resolve any codeword */
+    private int peekbits;
 
     private static final int[][] ValTab0 = {
             {0, 0} // dummy
@@ -502,6 +519,42 @@ final class huffcodetab {
             // MDM: ht[0] is always 0;
         } while ((level != 0) || (point < 0));
 
+        read_signs(h, x, y, v, w, br);
+        return error;
+    }
+
+    /**
+     * Do the huffman-decoding with the lookup tables, which must be
+     * available. Same results as huffman_decoder.
+     */
+    public static int huffman_decoder_lookup(huffcodetab h, int[] x, int[] y, int[] v, int[] w, BitReserve br) {
+        int peekbits = h.peekbits;
+        int window = br.hpeekbits(peekbits);
+        int entry = h.lookup[window >>> (peekbits - LOOKUP_BITS)];
+        if (entry < 0) {
+            entry = ~entry;
+            int bits = entry & 31;
+            entry = h.lookup[(entry >>> 5) + ((window >>> (peekbits - LOOKUP_BITS - bits)) & ((1 << bits) - 1))];
+        }
+        br.hskipbits(entry >>> 8);
+        x[0] = (entry >>> 4) & 0xf;
+        y[0] = entry & 0xf;
+
+        read_signs(h, x, y, v, w, br);
+        return 0;
+    }
+
+    /**
+     * Returns true if huffman_decoder_lookup can be used for this table.
+     */
+    boolean has_lookup() {
+        return lookup != null;
+    }
+
+    /**
+     * Reads the sign bits and linbits following a codeword.
+     */
+    private static void read_signs(huffcodetab h, int[] x, int[] y, int[] v, int[] w, BitReserve br) {
         // Process sign encodings for quadruples tables.
         if (h.tablename0 == '3' && (h.tablename1 == '2' || h.tablename1 == '3')) {
             v[0] = (y[0] >> 3) & 1;
@@ -536,10 +589,63 @@ final class huffcodetab {
             if (y[0] != 0)
                 if (br.hget1bit() != 0) y[0] = -y[0];
         }
-        return error;
     }
 
-    public static void initHuff() {
+    /**
+     * Builds the lookup tables from the decoder tree.
+     */
+    private void build_lookup() {
+        int size = 1 << LOOKUP_BITS;
+        int[] tables = new int[size];
+        int maxbits = 0;
+        for (int i = 0; i < (1 << LOOKUP_BITS); i++) {
+            int point = 0;
+            int n = 0;
+            while (val[point][0] != 0 && n < LOOKUP_BITS)
+                point = next(val, point, (i >>> (LOOKUP_BITS - 1 - n++)) & 1);
+            if (val[point][0] == 0) {
+                tables[i] = (n << 8) | val[point][1];
+                continue;
+            }
+            // codeword longer than LOOKUP_BITS: second level table
+            int bits = depth(val, point);
+            if (LOOKUP_BITS + bits > 32)
+                return;
+            maxbits = Math.max(maxbits, bits);
+            tables[i] = ~((size << 5) | bits);
+            tables = Arrays.copyOf(tables, size + (1 << bits));
+            for (int j = 0; j < (1 << bits); j++) {
+                int p = point;
+                int m = 0;
+                while (val[p][0] != 0)
+                    p = next(val, p, (j >>> (bits - 1 - m++)) & 1);
+                tables[size + j] = ((LOOKUP_BITS + m) << 8) | val[p][1];
+            }
+            size += 1 << bits;
+        }
+        lookup = tables;
+        peekbits = LOOKUP_BITS + maxbits;
+    }
+
+    /**
+     * Returns the node of the decoder tree following <code>point</code>
+     * for the given bit, as the tree walk of huffman_decoder does.
+     */
+    private static int next(int[][] val, int point, int bit) {
+        while (val[point][bit] >= MXOFF) point += val[point][bit];
+        return point + val[point][bit];
+    }
+
+    /**
+     * Returns the length of the longest codeword below a node.
+     */
+    private static int depth(int[][] val, int point) {
+        if (val[point][0] == 0)
+            return 0;
+        return 1 + Math.max(depth(val, next(val, point, 0)), depth(val, next(val, point, 1)));
+    }
+
+    public static synchronized void initHuff() {
         if (ht != null)
             return;
 
@@ -578,5 +684,19 @@ final class huffcodetab {
         ht[31] = new huffcodetab("31 ", 16, 16, 13, 8191, 24, null, null, ValTab24, 512);
         ht[32] = new huffcodetab("32 ", 1, 16, 0, 0, -1, null, null, ValTab32, 31);
         ht[33] = new huffcodetab("33 ", 1, 16, 0, 0, -1, null, null, ValTab33, 31);
+
+        for (int i = 0; i < HTN; i++) {
+            if (ht[i].treelen == 0)
+                continue;
+            // tables 17-23 and 25-31 share the tree of 16 and 24
+            for (int j = 0; j < i && ht[i].lookup == null; j++) {
+                if (ht[j].val == ht[i].val) {
+                    ht[i].lookup = ht[j].lookup;
+                    ht[i].peekbits = ht[j].peekbits;
+                }
+            }
+            if (ht[i].lookup == null)
+                ht[i].build_lookup();
+        }
     }
 }
@@ -0,0 +1,235 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.player;
+
+import javazoom.jl.decoder.JavaLayerException;
+
+
+/**
+ * A bounded queue of PCM buffers between a decoding thread and an
+ * output thread that writes them to an <code>AudioDevice</code>, so
+ * that a slow frame or a garbage collection pause on the decoding side
+ * is covered by the samples queued, and a blocking device write does
+ * not hold up decoding.
+ * <p>
+ * The buffers are allocated once; {@link #write(short[], int, int)}
+ * copies the samples of a frame into the next free one and blocks
+ * while all are full. The output thread starts writing once the queue
+ * is full, or the input is finished. After that, each time it finds the
+ * queue empty it counts an underrun and calls {@link #underrun(int)}.
+ *
+ * @see Player#setDecodeAhead(int)
+ */
+public class BufferedOutput implements Runnable {
+
+    private final AudioDevice device;
+
+    private final short[][] buffers;
+
+    private final int[] lengths;
+
+    /**
+     * The index of the oldest buffer queued, and the number queued.
+     */
+    private int head;
+    private int count;
+
+    private boolean started;
+    private boolean finished;
+    private boolean closed;
+
+    private int underruns;
+
+    private Throwable error;
+
+    private Thread thread;
+
+    /**
+     * @param device     The device the samples are written to.
+     * @param capacity   The number of buffers.
+     * @param bufferSize The maximum number of samples of one write.
+     */
+    public BufferedOutput(AudioDevice device, int capacity, int bufferSize) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity: " + capacity);
+        this.device = device;
+        buffers = new short[capacity][bufferSize];
+        lengths = new int[capacity];
+    }
+
+    /**
+     * Returns the number of buffers of <code>samplesPerBuffer</code>
+     * samples per channel that hold <code>millis</code> milliseconds
+     * of audio, at least 2.
+     */
+    public static int buffersFor(int millis, int frequency, int samplesPerBuffer) {
+        long samples = (long) millis * frequency / 1000;
+        return (int) Math.max(2, (samples + samplesPerBuffer - 1) / samplesPerBuffer);
+    }
+
+    /**
+     * Starts the output thread.
+     */
+    public synchronized void start() {
+        if (thread != null)
+            return;
+        thread = new Thread(this, "JLayer output");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Queues a copy of a number of samples, blocking while the queue is full.
+     *
+     * @return false if the output was closed.
+     * @throws JavaLayerException if the output thread failed to write
+     *                            to the device.
+     */
+    public synchronized boolean write(short[] samples, int offs, int len) throws JavaLayerException {
+        try {
+            while ((count == buffers.length) && !closed)
+                wait();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new JavaLayerException("Interrupted writing audio frame", ex);
+        }
+        checkError();
+        if (closed)
+            return false;
+        int tail = (head + count) % buffers.length;
+        if (buffers[tail].length < len)
+            buffers[tail] = new short[len];
+        System.arraycopy(samples, offs, buffers[tail], 0, len);
+        lengths[tail] = len;
+        count++;
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Marks the end of the input, and waits for the output thread to
+     * write the buffers queued.
+     */
+    public void finish() throws JavaLayerException {
+        Thread t;
+        synchronized (this) {
+            finished = true;
+            notifyAll();
+            t = thread;
+        }
+        if (t != null) {
+            try {
+                t.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new JavaLayerException("Interrupted waiting for audio output", ex);
+            }
+        }
+        synchronized (this) {
+            checkError();
+        }
+    }
+
+    /**
+     * Discards the buffers queued and stops the output thread after
+     * its current write.
+     */
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    /**
+     * Returns the number of times the output thread found the queue empty.
+     */
+    public synchronized int getUnderruns() {
+        return underruns;
+    }
+
+    /**
+     * Returns the number of buffers the queue holds.
+     */
+    public int getCapacity() {
+        return buffers.length;
+    }
+
+    /**
+     * Returns the number of buffers queued.
+     */
+    public synchronized int getQueued() {
+        return count;
+    }
+
+    /**
+     * Called on the output thread when it finds the queue empty.
+     *
+     * @param underruns The number of underruns so far.
+     */
+    protected void underrun(int underruns) {
+    }
+
+    public void run() {
+        try {
+            for (; ; ) {
+                int slot;
+                int n = 0;
+                synchronized (this) {
+                    while (!started && (count < buffers.length) && !finished && !closed)
+                        wait();
+                    started = true;
+                    if ((count == 0) && !finished && !closed)
+                        n = ++underruns;
+                }
+                if (n > 0)
+                    underrun(n);
+                synchronized (this) {
+                    while ((count == 0) && !finished && !closed)
+                        wait();
+                    if (closed || (count == 0))
+                        return;
+                    slot = head;
+                }
+                // the slot is not reused until it is released below
+                device.write(buffers[slot], 0, lengths[slot]);
+                synchronized (this) {
+                    head = (head + 1) % buffers.length;
+                    count--;
+                    notifyAll();
+                }
+            }
+        } catch (InterruptedException ex) {
+            synchronized (this) {
+                closed = true;
+                notifyAll();
+            }
+        } catch (JavaLayerException | RuntimeException ex) {
+            synchronized (this) {
+                error = ex;
+                closed = true;
+                notifyAll();
+            }
+        }
+    }
+
+    private void checkError() throws JavaLayerException {
+        if (error != null)
+            throw new JavaLayerException("Exception writing audio frame", error);
+    }
+}
@@ -70,6 +70,19 @@ public class Player {
 
     private int lastPosition = 0;
 
+    /**
+     * The milliseconds of audio decoded ahead of the device, or 0 to
+     * write each frame to the device as it is decoded.
+     */
+    private int decodeAhead = 0;
+
+    /**
+     * The queue to the output thread, while decoding ahead.
+     */
+    private BufferedOutput buffered;
+
+    private int lastUnderruns = 0;
+
     /**
      * Creates a new <code>Player</code> instance.
      */
@@ -94,6 +107,34 @@ public class Player {
         play(Integer.MAX_VALUE);
     }
 
+    /**
+     * Sets the playback mode from the next frame decoded. With a positive
+     * number of milliseconds, the frames are decoded on the thread that
+     * calls <code>play()</code> into a queue that holds that much audio,
+     * and written to the audio device by a separate output thread.
+     *
+     * @param millis The length of the queue in milliseconds, or 0 to
+     *               decode and write each frame on the calling thread.
+     * @see #getUnderrunCount()
+     */
+    public synchronized void setDecodeAhead(int millis) {
+        if (millis < 0)
+            throw new IllegalArgumentException("millis: " + millis);
+        decodeAhead = millis;
+    }
+
+    public synchronized int getDecodeAhead() {
+        return decodeAhead;
+    }
+
+    /**
+     * Returns the number of times the output thread ran out of decoded
+     * frames while decoding ahead.
+     */
+    public synchronized int getUnderrunCount() {
+        return buffered != null ? buffered.getUnderruns() : lastUnderruns;
+    }
+
     /**
      * Plays a number of MPEG audio frames.
      *
@@ -110,6 +151,7 @@ public class Player {
 
         if (!ret) {
             // last frame, ensure all data flushed to the audio device.
+            finishOutput();
             AudioDevice out = audio;
             if (out != null) {
                 out.flush();
@@ -131,6 +173,11 @@ public class Player {
         if (out != null) {
             closed = true;
             audio = null;
+            if (buffered != null) {
+                buffered.close();
+                lastUnderruns = buffered.getUnderruns();
+                buffered = null;
+            }
             // this may fail, so ensure object state is set up before
             // calling this method.
             out.close();
@@ -187,10 +234,18 @@ public class Player {
             // sample buffer set when decoder constructed
             SampleBuffer output = (SampleBuffer) decoder.decodeFrame(h, bitstream);
 
-            synchronized (this) {
-                out = audio;
-                if (out != null) {
-                    out.write(output.getBuffer(), 0, output.getBufferLength());
+            BufferedOutput queue = output(output);
+            if (queue != null) {
+                // blocks while the queue is full, outside the lock so
+                // that close() can stop it
+                if (!queue.write(output.getBuffer(), 0, output.getBufferLength()))
+                    return false;
+            } else {
+                synchronized (this) {
+                    out = audio;
+                    if (out != null) {
+                        out.write(output.getBuffer(), 0, output.getBufferLength());
+                    }
                 }
             }
 
@@ -201,4 +256,39 @@ public class Player {
 
         return true;
     }
+
+    /**
+     * Returns the queue to the output thread, started with the first
+     * frame decoded ahead, or null to write to the device directly.
+     */
+    private synchronized BufferedOutput output(SampleBuffer output) {
+        if ((buffered == null) && (decodeAhead > 0) && (audio != null)) {
+            int channels = decoder.getOutputChannels();
+            buffered = new BufferedOutput(audio,
+                    BufferedOutput.buffersFor(decodeAhead, decoder.getOutputFrequency(),
+                            output.getBufferLength() / channels),
+                    decoder.getOutputBlockSize());
+            buffered.start();
+        }
+        return buffered;
+    }
+
+    /**
+     * Waits for the output thread to write the frames decoded ahead.
+     */
+    private void finishOutput() throws JavaLayerException {
+        BufferedOutput queue;
+        synchronized (this) {
+            queue = buffered;
+        }
+        if (queue != null) {
+            queue.finish();
+            synchronized (this) {
+                if (buffered == queue) {
+                    lastUnderruns = queue.getUnderruns();
+                    buffered = null;
+                }
+            }
+        }
+    }
 }
@@ -21,21 +21,40 @@ package javazoom.jl.player.advanced;
 
 import javazoom.jl.decoder.*;
 import javazoom.jl.player.AudioDevice;
+import javazoom.jl.player.BufferedOutput;
 import javazoom.jl.player.FactoryRegistry;
 
 import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 
 /**
  * a hybrid of javazoom.jl.player.Player tweeked to include <code>play(startFrame, endFrame)</code>
  * hopefully this will be included in the api
+ * <p>
+ * Further streams can be queued with {@link #enqueue(InputStream)} to
+ * play as a playlist on the same audio device. Each next track is
+ * opened, and its first frames decoded, on a separate thread while
+ * the current one plays; with {@link #setGapless(boolean)} the tracks
+ * join without the encoder delay and padding in between.
  */
 public class AdvancedPlayer {
 
-    /** The MPEG audio bitstream. */
-    private Bitstream bitstream;
-    /** The MPEG audio decoder. */
+    /** The track being played. */
+    private Track track;
+    /** The decoder the audio device was opened with. */
     private Decoder decoder;
+    /** The streams to play after the current track, not yet opened. */
+    private final Deque<InputStream> playlist = new ArrayDeque<>();
+    /** The next track, being opened. */
+    private FutureTask<Track> next;
+    /** Trim encoder delay and padding of tracks opened from now on. */
+    private boolean gapless = false;
+    /** The number of frames of the next track decoded ahead. */
+    private int lookAhead = 8;
     /** The AudioDevice the audio samples are written to. */
     private AudioDevice audio;
     /** Has the player been closed? */
@@ -45,6 +64,11 @@ public class AdvancedPlayer {
     private int lastPosition = 0;
     /** Listener for the playback process */
     private PlaybackListener listener;
+    /** The milliseconds of audio decoded ahead of the device, or 0. */
+    private int decodeAhead = 0;
+    /** The queue to the output thread, while decoding ahead. */
+    private BufferedOutput buffered;
+    private int lastUnderruns = 0;
 
     /**
      * Creates a new <code>Player</code> instance.
@@ -54,17 +78,92 @@ public class AdvancedPlayer {
     }
 
     public AdvancedPlayer(InputStream stream, AudioDevice device) throws JavaLayerException {
-        bitstream = new Bitstream(stream);
+        track = new Track(stream, decoder = new Decoder(), gapless);
 
         if (device != null) audio = device;
         else audio = FactoryRegistry.systemRegistry().createAudioDevice();
-        audio.open(decoder = new Decoder());
+        audio.open(decoder);
+    }
+
+    /**
+     * Adds a stream to play after the current track and those enqueued
+     * before. The first one is opened and decoded ahead right away.
+     * <p>
+     * Tracks of the same sample rate and channels as the first are played
+     * on the same audio device without a break. For a track of another
+     * format, the device is drained and a new one is created from the
+     * system registry.
+     */
+    public void enqueue(InputStream stream) {
+        synchronized (this) {
+            if (closed) return;
+            playlist.add(stream);
+        }
+        prepareNext();
+    }
+
+    /**
+     * Sets whether the Xing/Info frame is skipped, and the encoder delay
+     * and padding of the LAME tag are trimmed, so that tracks join sample
+     * accurately. Applies to the current track if it has not started,
+     * and to the tracks enqueued afterwards.
+     */
+    public synchronized void setGapless(boolean gapless) {
+        this.gapless = gapless;
+        track.setGapless(gapless);
+    }
+
+    public synchronized boolean isGapless() {
+        return gapless;
+    }
+
+    /**
+     * Sets the number of frames of the next track decoded ahead while the
+     * current one plays, at least one. Applies to the tracks enqueued
+     * afterwards.
+     */
+    public synchronized void setLookAhead(int frames) {
+        if (frames < 1)
+            throw new IllegalArgumentException("frames: " + frames);
+        lookAhead = frames;
+    }
+
+    public synchronized int getLookAhead() {
+        return lookAhead;
     }
 
     public void play() throws JavaLayerException {
         play(Integer.MAX_VALUE);
     }
 
+    /**
+     * Sets the playback mode from the next frame decoded. With a positive
+     * number of milliseconds, the frames are decoded on the thread that
+     * calls <code>play()</code> into a queue that holds that much audio,
+     * and written to the audio device by a separate output thread, which
+     * reports underruns to {@link PlaybackListener#playbackUnderrun(PlaybackEvent)}.
+     *
+     * @param millis The length of the queue in milliseconds, or 0 to
+     *               decode and write each frame on the calling thread.
+     */
+    public synchronized void setDecodeAhead(int millis) {
+        if (millis < 0)
+            throw new IllegalArgumentException("millis: " + millis);
+        decodeAhead = millis;
+    }
+
+    public synchronized int getDecodeAhead() {
+        return decodeAhead;
+    }
+
+    /**
+     * Returns the number of times the output thread ran out of decoded
+     * frames while decoding ahead.
+     */
+    public synchronized int getUnderrunCount() {
+        return buffered != null ? buffered.getUnderruns() : lastUnderruns;
+    }
+
     /**
      * Plays a number of MPEG audio frames.
      *
@@ -83,6 +182,7 @@ public class AdvancedPlayer {
         }
 
         // last frame, ensure all data flushed to the audio device.
+        finishOutput();
         AudioDevice out = audio;
         if (out != null) {
             out.flush();
@@ -107,14 +207,27 @@ public class AdvancedPlayer {
         if (out != null) {
             closed = true;
             audio = null;
+            if (buffered != null) {
+                buffered.close();
+                lastUnderruns = buffered.getUnderruns();
+                buffered = null;
+            }
             // this may fail, so ensure object state is set up before
             // calling this method.
             out.close();
             lastPosition = out.getPosition();
-            try {
-                bitstream.close();
-            } catch (BitstreamException ex) {
+            track.close();
+            if (next != null) {
+                // otherwise closed by the look-ahead thread when done
+                if (next.isDone()) {
+                    try {
+                        next.get().close();
+                    } catch (InterruptedException | ExecutionException ex) {
+                    }
+                }
+                next = null;
             }
+            playlist.clear();
         }
     }
 
@@ -128,24 +241,172 @@ public class AdvancedPlayer {
             AudioDevice out = audio;
             if (out == null) return false;
 
-            Header h = bitstream.readFrame();
-            if (h == null) return false;
+            Track t = track;
+            while (!t.next()) {
+                t = nextTrack();
+                if (t == null) return false;
+            }
+
+            BufferedOutput queue = output(t);
+            if (queue != null) {
+                // blocks while the queue is full, outside the lock so
+                // that close() can stop it
+                if (!queue.write(t.samples, t.offset, t.length)) return false;
+            } else {
+                synchronized (this) {
+                    out = audio;
+                    if (out != null) {
+                        out.write(t.samples, t.offset, t.length);
+                    }
+                }
+            }
+        } catch (RuntimeException ex) {
+            throw new JavaLayerException("Exception decoding audio frame", ex);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the queue to the output thread, started with the first
+     * frame decoded ahead, or null to write to the device directly.
+     */
+    private synchronized BufferedOutput output(Track t) {
+        if ((buffered == null) && (decodeAhead > 0) && (audio != null)) {
+            final AudioDevice dev = audio;
+            // sized on whole frames, the first one may have been trimmed
+            int capacity = BufferedOutput.buffersFor(decodeAhead, t.decoder.getOutputFrequency(),
+                    Math.max(1, t.frameLength));
+            buffered = new BufferedOutput(dev, capacity, t.decoder.getOutputBlockSize()) {
+                protected void underrun(int underruns) {
+                    PlaybackListener l = listener;
+                    if (l != null) l.playbackUnderrun(new PlaybackEvent(AdvancedPlayer.this,
+                            PlaybackEvent.UNDERRUN, dev.getPosition(), underruns));
+                }
+            };
+            buffered.start();
+        }
+        return buffered;
+    }
+
+    /**
+     * Returns the queue to the output thread, or null if not decoding ahead.
+     */
+    synchronized BufferedOutput getBufferedOutput() {
+        return buffered;
+    }
 
-            // sample buffer set when decoder constructed
-            SampleBuffer output = (SampleBuffer) decoder.decodeFrame(h, bitstream);
+    /**
+     * Starts opening the next stream of the playlist, if it is not
+     * already being opened.
+     */
+    private void prepareNext() {
+        FutureTask<Track> task;
+        synchronized (this) {
+            if ((next != null) || closed || playlist.isEmpty()) return;
+            final InputStream in = playlist.poll();
+            final boolean g = gapless;
+            final int frames = lookAhead;
+            task = new FutureTask<Track>(() -> Track.open(in, g, frames)) {
+                protected void done() {
+                    // a track no longer wanted is closed here
+                    try {
+                        Track t = get();
+                        synchronized (AdvancedPlayer.this) {
+                            if (next == this) return;
+                        }
+                        t.close();
+                    } catch (InterruptedException | ExecutionException ex) {
+                    }
+                }
+            };
+            next = task;
+        }
+        Thread thread = new Thread(task, "JLayer look-ahead");
+        thread.setDaemon(true);
+        thread.start();
+    }
 
+    /**
+     * Makes the next track of the playlist the current one.
+     *
+     * @return the track, or null at the end of the playlist.
+     */
+    private Track nextTrack() throws JavaLayerException {
+        FutureTask<Track> task;
+        synchronized (this) {
+            task = next;
+        }
+        if (task == null) return null;
+        Track t;
+        try {
+            t = task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new JavaLayerException("Interrupted opening next track", ex);
+        } catch (ExecutionException ex) {
+            synchronized (this) {
+                if (next == task) next = null;
+            }
+            Throwable cause = ex.getCause();
+            if (cause instanceof JavaLayerException) throw (JavaLayerException) cause;
+            throw new JavaLayerException("Exception opening next track", cause);
+        }
+        Track previous;
+        synchronized (this) {
+            if (next != task) return null; // closed
+            next = null;
+            previous = track;
+            track = t;
+        }
+        previous.close();
+        prepareNext();
+
+        // decoded ahead, the output format is known
+        if ((t.decoder.getOutputFrequency() != decoder.getOutputFrequency())
+                || (t.decoder.getOutputChannels() != decoder.getOutputChannels())) {
+            finishOutput();
+            AudioDevice out;
             synchronized (this) {
                 out = audio;
-                if (out != null) {
-                    out.write(output.getBuffer(), 0, output.getBufferLength());
+                if (out == null) return null;
+            }
+            out.flush();
+            out.close();
+            out = FactoryRegistry.systemRegistry().createAudioDevice();
+            out.open(t.decoder);
+            synchronized (this) {
+                if (closed) {
+                    out.close();
+                    return null;
                 }
+                audio = out;
+                decoder = t.decoder;
             }
+        }
 
-            bitstream.closeFrame();
-        } catch (RuntimeException ex) {
-            throw new JavaLayerException("Exception decoding audio frame", ex);
+        PlaybackListener l = listener;
+        AudioDevice out = audio;
+        if ((l != null) && (out != null)) l.trackStarted(createEvent(out, PlaybackEvent.TRACK_STARTED));
+        return t;
+    }
+
+    /**
+     * Waits for the output thread to write the frames decoded ahead.
+     */
+    private void finishOutput() throws JavaLayerException {
+        BufferedOutput queue;
+        synchronized (this) {
+            queue = buffered;
+        }
+        if (queue != null) {
+            queue.finish();
+            synchronized (this) {
+                if (buffered == queue) {
+                    lastUnderruns = queue.getUnderruns();
+                    buffered = null;
+                }
+            }
         }
-        return true;
     }
 
     /**
@@ -154,10 +415,7 @@ public class AdvancedPlayer {
      * @return false    if there are no more frames to decode, true otherwise.
      */
     protected boolean skipFrame() throws JavaLayerException {
-        Header h = bitstream.readFrame();
-        if (h == null) return false;
-        bitstream.closeFrame();
-        return true;
+        return track.skipFrame();
     }
 
     /**
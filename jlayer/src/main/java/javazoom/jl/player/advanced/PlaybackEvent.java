@@ -28,10 +28,15 @@ package javazoom.jl.player.advanced;
 public class PlaybackEvent {
     public static final int STOPPED = 1;
     public static final int STARTED = 2;
+    /** The output thread ran out of decoded frames. */
+    public static final int UNDERRUN = 3;
+    /** The player started the next track of its playlist. */
+    public static final int TRACK_STARTED = 4;
 
     private AdvancedPlayer source;
     private int frame;
     private int id;
+    private int underruns;
 
     public PlaybackEvent(AdvancedPlayer source, int id, int frame) {
         this.id = id;
@@ -39,6 +44,11 @@ public class PlaybackEvent {
         this.frame = frame;
     }
 
+    public PlaybackEvent(AdvancedPlayer source, int id, int frame, int underruns) {
+        this(source, id, frame);
+        this.underruns = underruns;
+    }
+
     public int getId() {
         return id;
     }
@@ -55,6 +65,13 @@ public class PlaybackEvent {
         this.frame = frame;
     }
 
+    /**
+     * Returns the number of underruns of the player so far.
+     */
+    public int getUnderruns() {
+        return underruns;
+    }
+
     public AdvancedPlayer getSource() {
         return source;
     }
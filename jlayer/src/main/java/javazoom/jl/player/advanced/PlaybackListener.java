@@ -30,4 +30,22 @@ public abstract class PlaybackListener {
 
     public void playbackFinished(PlaybackEvent evt) {
     }
+
+    /**
+     * Called when the player starts decoding the next track of its
+     * playlist.
+     *
+     * @see AdvancedPlayer#enqueue(java.io.InputStream)
+     */
+    public void trackStarted(PlaybackEvent evt) {
+    }
+
+    /**
+     * Called on the output thread each time it runs out of decoded
+     * frames, when the player decodes ahead.
+     *
+     * @see AdvancedPlayer#setDecodeAhead(int)
+     */
+    public void playbackUnderrun(PlaybackEvent evt) {
+    }
 }
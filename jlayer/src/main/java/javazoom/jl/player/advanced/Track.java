@@ -0,0 +1,249 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.player.advanced;
+
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.BitstreamException;
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.DecoderPool;
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.JavaLayerException;
+import javazoom.jl.decoder.SampleBuffer;
+
+
+/**
+ * A track of an <code>AdvancedPlayer</code> playlist: its bitstream and
+ * decoder, and the frames decoded ahead while the previous track plays.
+ * <p>
+ * If the track is played gapless, its Xing/Info frame is not decoded,
+ * and the encoder delay and padding of its LAME tag, plus the delay of
+ * the decoder, are trimmed from the samples, so that the tracks join
+ * sample accurately.
+ */
+final class Track {
+
+    /**
+     * The samples per channel the synthesis adds before the first
+     * sample encoded.
+     */
+    static final int DECODER_DELAY = 529;
+
+    private final Bitstream bitstream;
+
+    final Decoder decoder;
+
+    /**
+     * True if the decoder is returned to the default pool on close().
+     */
+    private final boolean pooled;
+
+    private boolean gapless;
+
+    /**
+     * True once the first header was read.
+     */
+    private boolean started;
+
+    /**
+     * The samples per channel still to drop at the start.
+     */
+    private long skip;
+
+    /**
+     * The samples per channel left to play, or -1 if not known.
+     */
+    private long remaining = -1;
+
+    private Header pending;
+
+    private boolean closed;
+
+    private final ArrayDeque<short[]> ahead = new ArrayDeque<>();
+
+    /**
+     * The samples of the last call of {@link #next()}.
+     */
+    short[] samples;
+    int offset;
+    int length;
+
+    /**
+     * The samples per channel of a whole frame, before any trimming.
+     */
+    int frameLength;
+
+    Track(InputStream in, Decoder decoder, boolean gapless) {
+        this(new Bitstream(in), decoder, false, gapless);
+    }
+
+    private Track(Bitstream bitstream, Decoder decoder, boolean pooled, boolean gapless) {
+        this.bitstream = bitstream;
+        this.decoder = decoder;
+        this.pooled = pooled;
+        this.gapless = gapless;
+    }
+
+    /**
+     * Opens a track with a decoder of the default pool and decodes its
+     * first <code>frames</code> frames, at least one.
+     */
+    static Track open(InputStream in, boolean gapless, int frames) throws JavaLayerException {
+        Bitstream bitstream = new Bitstream(in);
+        Header header = bitstream.readFrame();
+        if (header == null) {
+            bitstream.close();
+            throw new JavaLayerException("no MPEG audio frame");
+        }
+        Track track = new Track(bitstream, DecoderPool.getDefault().borrow(header, null), true, gapless);
+        track.pending = header;
+        try {
+            for (int i = 0; i < Math.max(1, frames) && track.decodeNext(); i++)
+                track.ahead.add(Arrays.copyOfRange(track.samples, track.offset, track.offset + track.length));
+        } catch (JavaLayerException | RuntimeException ex) {
+            track.close();
+            throw ex;
+        }
+        return track;
+    }
+
+    /**
+     * Sets whether delay and padding are trimmed, before the first frame is read.
+     */
+    void setGapless(boolean gapless) {
+        if (!started)
+            this.gapless = gapless;
+    }
+
+    /**
+     * Makes the samples of the next frame available in
+     * <code>samples</code>, <code>offset</code> and <code>length</code>.
+     *
+     * @return false at the end of the track.
+     */
+    boolean next() throws JavaLayerException {
+        short[] frame = ahead.poll();
+        if (frame != null) {
+            samples = frame;
+            offset = 0;
+            length = frame.length;
+            return true;
+        }
+        return decodeNext();
+    }
+
+    private boolean decodeNext() throws JavaLayerException {
+        for (; ; ) {
+            if (remaining == 0)
+                return false;
+            Header h = readHeader();
+            if (h == null)
+                return false;
+            SampleBuffer output = (SampleBuffer) decoder.decodeFrame(h, bitstream);
+            bitstream.closeFrame();
+
+            int channels = decoder.getOutputChannels();
+            int count = output.getBufferLength() / channels;
+            frameLength = count;
+            int start = (int) Math.min(skip, count);
+            skip -= start;
+            count -= start;
+            if (remaining >= 0) {
+                count = (int) Math.min(count, remaining);
+                remaining -= count;
+            }
+            if (count > 0) {
+                samples = output.getBuffer();
+                offset = start * channels;
+                length = count * channels;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Reads the next header. The first one sets up the trimming, and
+     * an info frame is skipped when gapless.
+     */
+    private Header readHeader() throws JavaLayerException {
+        Header h = pending;
+        pending = null;
+        if (h == null)
+            h = bitstream.readFrame();
+        if ((h == null) || started)
+            return h;
+        started = true;
+        if (gapless && h.info_frame()) {
+            int delay = h.encoder_delay(), padding = h.encoder_padding(), frames = h.info_frames();
+            int samplesPerFrame = samplesPerFrame(h);
+            bitstream.closeFrame();
+            if (delay >= 0 && padding >= 0) {
+                skip = delay + DECODER_DELAY;
+                if (frames > 0)
+                    remaining = Math.max(0, (long) frames * samplesPerFrame - delay - padding);
+            }
+            h = bitstream.readFrame();
+        }
+        return h;
+    }
+
+    /**
+     * Skips a frame without decoding it; the start of the track is no
+     * longer trimmed.
+     *
+     * @return false at the end of the track.
+     */
+    boolean skipFrame() throws JavaLayerException {
+        ahead.clear();
+        Header h = pending;
+        pending = null;
+        if (h == null)
+            h = bitstream.readFrame();
+        if (h == null)
+            return false;
+        started = true;
+        bitstream.closeFrame();
+        return true;
+    }
+
+    /**
+     * Closes the bitstream, and returns the decoder to the pool.
+     * Does nothing if already closed.
+     */
+    synchronized void close() {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            bitstream.close();
+        } catch (BitstreamException ex) {
+        }
+        if (pooled)
+            DecoderPool.getDefault().release(decoder);
+    }
+
+    private static int samplesPerFrame(Header h) {
+        if (h.layer() == 1)
+            return 384;
+        return (h.layer() == 3) && (h.version() != Header.MPEG1) ? 576 : 1152;
+    }
+}
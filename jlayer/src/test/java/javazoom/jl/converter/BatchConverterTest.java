@@ -0,0 +1,79 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.converter;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javazoom.jl.testing.MpegFixtures;
+import javazoom.jl.testing.MpegFixtures.Fixture;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * BatchConverter against files converted one at a time by Converter.
+ */
+public class BatchConverterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testSameAsConverter() throws Exception {
+        List<BatchConverter.Job> jobs = new ArrayList<>();
+        for (int copy = 0; copy < 3; copy++) {
+            for (Fixture fixture : Fixture.values()) {
+                Path source = dir.resolve(fixture + "-" + copy + ".mp3");
+                Files.write(source, fixture.generate());
+                jobs.add(new BatchConverter.Job(source.toString(), source + ".wav"));
+            }
+        }
+        jobs.add(new BatchConverter.Job(dir.resolve("missing.mp3").toString(), dir.resolve("missing.wav").toString()));
+
+        AtomicInteger completed = new AtomicInteger();
+        BatchConverter.Summary summary = new BatchConverter(3, 1).convert(jobs,
+                (job, n, total) -> completed.incrementAndGet());
+
+        assertEquals(jobs.size(), completed.get());
+        assertEquals(jobs.size(), summary.getFiles());
+        assertEquals(1, summary.getFailed());
+        assertEquals((long) MpegFixtures.FRAMES * (jobs.size() - 1), summary.getFrames());
+        assertTrue(summary.getRealtimeFactor() > 0);
+
+        for (BatchConverter.Job job : jobs.subList(0, jobs.size() - 1)) {
+            assertNull(job.getException(), job.toString());
+            File expected = new File(job.getDestName() + ".expected");
+            new Converter().convert(job.getSourceName(), expected.getPath(),
+                    new Converter.PrintWriterProgressListener(null, Converter.PrintWriterProgressListener.NO_DETAIL));
+            assertArrayEquals(Files.readAllBytes(expected.toPath()), Files.readAllBytes(Path.of(job.getDestName())), job.toString());
+        }
+        assertNotNull(jobs.get(jobs.size() - 1).getException());
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.converter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+/**
+ * WaveFileWriter output read back with javax.sound.
+ */
+public class WaveFileWriterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testReadBack() throws Exception {
+        Random random = new Random(11);
+        short[] samples = new short[100000];
+        for (int i = 0; i < samples.length; i++)
+            samples[i] = (short) random.nextInt();
+
+        Path file = dir.resolve("out.wav");
+        // an existing, longer file is truncated
+        Files.write(file, new byte[300000]);
+        WaveFileWriter writer = new WaveFileWriter(file, 22050, 2);
+        // chunks of a frame and more than the buffer size
+        writer.write(samples, 0, 2304);
+        writer.write(samples, 2304, 40000);
+        writer.write(samples, 42304, samples.length - 42304);
+        writer.close();
+
+        assertEquals(WaveFileWriter.HEADER_SIZE + samples.length * 2L, Files.size(file));
+        ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(Files.size(file) - 8, header.getInt(4));
+        assertEquals(samples.length * 2, header.getInt(40));
+
+        AudioInputStream in = AudioSystem.getAudioInputStream(file.toFile());
+        AudioFormat format = in.getFormat();
+        assertEquals(22050.0f, format.getSampleRate());
+        assertEquals(2, format.getChannels());
+        assertEquals(16, format.getSampleSizeInBits());
+        assertEquals(samples.length / 2, in.getFrameLength());
+
+        byte[] data = in.readAllBytes();
+        in.close();
+        short[] read = new short[data.length / 2];
+        ByteBuffer.wrap(data).order(format.isBigEndian() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN)
+                .asShortBuffer().get(read);
+        assertArrayEquals(samples, read);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+/**
+ * BitReserve unit test. Reads are checked against the bits written,
+ * taken one at a time, across the wrap of the circular buffer and
+ * through the rewinds LayerIIIDecoder does.
+ */
+public class BitReserveTest {
+
+    /**
+     * Size of the circular buffer, in bytes.
+     */
+    private static final int BUFSIZE = 4096;
+
+    private final byte[] written = new byte[BUFSIZE];
+    private int position;
+
+    private int expectedBits(int n) {
+        int val = 0;
+        for (int i = 0; i < n; i++) {
+            int bit = (position + i) & (BUFSIZE * 8 - 1);
+            val = (val << 1) | ((written[bit >>> 3] >>> (7 - (bit & 7))) & 1);
+        }
+        position = (position + n) & (BUFSIZE * 8 - 1);
+        return val;
+    }
+
+    @Test
+    public void testReadsMatchWrittenBits() {
+        Random random = new Random(0);
+        BitReserve br = new BitReserve();
+        int offset = 0;
+        int total = 0;
+        for (int frame = 0; frame < 200; frame++) {
+            // a frame worth of main data, wrapping around the buffer every few frames
+            for (int i = 0; i < 1000; i++) {
+                int val = random.nextInt(256);
+                br.hputbuf(val);
+                written[offset] = (byte) val;
+                offset = (offset + 1) & (BUFSIZE - 1);
+            }
+            for (int i = 0; i < 300; i++) {
+                int n = random.nextInt(20);
+                assertEquals(expectedBits(n), br.hgetbits(n));
+                assertEquals(expectedBits(1), br.hget1bit());
+                total += n + 1;
+                if (i % 50 == 49) {
+                    int back = random.nextInt(30);
+                    br.rewindNbits(back);
+                    position = (position - back) & (BUFSIZE * 8 - 1);
+                    total -= back;
+                }
+            }
+            assertEquals(expectedBits(32), br.hgetbits(32));
+            total += 32;
+            assertEquals(total, br.hsstell());
+
+            // skip the rest of the frame, with the high bits lost like a read
+            int rest = ((offset << 3) - position) & (BUFSIZE * 8 - 1);
+            expectedBits(rest - 32);
+            assertEquals(expectedBits(32), br.hgetbits(rest));
+            total += rest;
+        }
+        // rewinding the whole buffer only changes the bit count
+        br.rewindNbytes(BUFSIZE);
+        assertEquals(total - BUFSIZE * 8, br.hsstell());
+        br.rewindNbytes(2);
+        position = (position - 16) & (BUFSIZE * 8 - 1);
+        assertEquals(expectedBits(16), br.hgetbits(16));
+        assertEquals(0, br.hgetbits(0));
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import javazoom.jl.testing.MpegFixtures;
+import javazoom.jl.testing.MpegFixtures.Fixture;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+
+/**
+ * Checks that a Bitstream reading from a ByteBuffer decodes exactly like
+ * one reading from an InputStream.
+ */
+public class BitstreamByteBufferTest {
+
+    @ParameterizedTest
+    @EnumSource(Fixture.class)
+    public void testSameOutputAsStream(Fixture fixture) throws Exception {
+        byte[] data = fixture.generate();
+        Bitstream expected = new Bitstream(new ByteArrayInputStream(data));
+        Bitstream actual = new Bitstream(ByteBuffer.wrap(data));
+        Decoder expectedDecoder = new Decoder();
+        Decoder actualDecoder = new Decoder();
+        for (int frame = 0; frame < MpegFixtures.FRAMES; frame++) {
+            Header expectedHeader = expected.readFrame();
+            Header actualHeader = actual.readFrame();
+            assertNotNull(actualHeader, "frame " + frame);
+            assertEquals(expectedHeader.toString(), actualHeader.toString());
+            assertEquals(expectedHeader.vbr(), actualHeader.vbr());
+            SampleBuffer expectedOutput = (SampleBuffer) expectedDecoder.decodeFrame(expectedHeader, expected);
+            SampleBuffer actualOutput = (SampleBuffer) actualDecoder.decodeFrame(actualHeader, actual);
+            assertArrayEquals(expectedOutput.getBuffer(), actualOutput.getBuffer(), "frame " + frame);
+            expected.closeFrame();
+            actual.closeFrame();
+        }
+        assertNull(actual.readFrame());
+    }
+
+    @Test
+    public void testID3v2AndBufferPosition() throws Exception {
+        byte[] frames = Fixture.MPEG1_L3_MONO.generate();
+        byte[] data = new byte[3 + 20 + frames.length];
+        // 3 bytes before the buffer position, then a 10 byte ID3v2 header and 10 bytes of tag
+        data[3] = 'I';
+        data[4] = 'D';
+        data[5] = '3';
+        data[6] = 3;
+        data[12] = 10;
+        System.arraycopy(frames, 0, data, 23, frames.length);
+        ByteBuffer in = ByteBuffer.wrap(data);
+        in.position(3);
+
+        Bitstream stream = new Bitstream(in);
+        assertEquals(3, in.position());
+        assertEquals(20, stream.header_pos());
+        assertEquals(20, stream.getRawID3v2().available());
+        int count = 0;
+        while (stream.readFrame() != null) {
+            stream.closeFrame();
+            count++;
+        }
+        assertEquals(MpegFixtures.FRAMES, count);
+    }
+
+    /**
+     * The tag is copied when asked for or when a frame is read first, or
+     * skipped by a stream that does not keep it.
+     */
+    @Test
+    public void testRawID3v2OnDemand() throws Exception {
+        byte[] frames = Fixture.MPEG1_L3_MONO.generate();
+        byte[] data = new byte[20 + frames.length];
+        data[0] = 'I';
+        data[1] = 'D';
+        data[2] = '3';
+        data[3] = 3;
+        data[9] = 10;
+        data[15] = 42;
+        System.arraycopy(frames, 0, data, 20, frames.length);
+
+        for (boolean tagFirst : new boolean[] {true, false}) {
+            Bitstream stream = new Bitstream(new ByteArrayInputStream(data));
+            Bitstream buffer = new Bitstream(ByteBuffer.wrap(data));
+            if (tagFirst) {
+                assertArrayEquals(Arrays.copyOf(data, 20), stream.getRawID3v2().readAllBytes());
+                assertArrayEquals(Arrays.copyOf(data, 20), buffer.getRawID3v2().readAllBytes());
+            }
+            assertEquals(20, stream.header_pos());
+            assertEquals(frames.length, count(stream));
+            assertEquals(frames.length, count(buffer));
+            if (!tagFirst) {
+                assertArrayEquals(Arrays.copyOf(data, 20), stream.getRawID3v2().readAllBytes());
+                assertArrayEquals(Arrays.copyOf(data, 20), buffer.getRawID3v2().readAllBytes());
+            }
+        }
+
+        Bitstream stream = new Bitstream(new ByteArrayInputStream(data));
+        stream.setKeepRawID3v2(false);
+        assertEquals(frames.length, count(stream));
+        assertNull(stream.getRawID3v2());
+    }
+
+    /**
+     * Returns the number of bytes of the frames up to the end.
+     */
+    private static int count(Bitstream stream) throws Exception {
+        int bytes = 0;
+        Header header;
+        while ((header = stream.readFrame()) != null) {
+            bytes += header.calculate_framesize() + 4;
+            stream.closeFrame();
+        }
+        return bytes;
+    }
+
+    @Test
+    public void testSkipBytes() throws Exception {
+        byte[] data = Fixture.MPEG1_L2_MONO.generate();
+        Bitstream stream = new Bitstream(ByteBuffer.wrap(data));
+        int frameLength = stream.readFrame().calculate_framesize() + 4;
+        stream.closeFrame();
+        assertEquals(10L * frameLength, stream.skipBytes(10L * frameLength));
+        int count = 0;
+        while (stream.readFrame() != null) {
+            stream.closeFrame();
+            count++;
+        }
+        assertEquals(MpegFixtures.FRAMES - 11, count);
+        assertEquals(0, stream.skipBytes(100));
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javazoom.jl.testing.MpegFixtures;
+import javazoom.jl.testing.MpegFixtures.Fixture;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+/**
+ * Synchronization on damaged streams, with junk and false sync words
+ * between the frames.
+ */
+public class BitstreamResyncTest {
+
+    @Test
+    public void testJunkBetweenFrames() throws Exception {
+        byte[] data = Fixture.MPEG1_L3_JOINT_STEREO.generate();
+        MpegFrameIndex index = MpegFrameIndex.scan(new ByteArrayInputStream(data));
+        Random random = new Random(15);
+        ByteArrayOutputStream damaged = new ByteArrayOutputStream();
+        for (int frame = 0; frame < index.frameCount(); frame++) {
+            if (frame % 16 == 0)
+                damaged.write(junk(random, 3000));
+            int start = (int) index.offsetForFrame(frame);
+            int end = frame + 1 < index.frameCount() ? (int) index.offsetForFrame(frame + 1) : data.length;
+            damaged.write(data, start, end - start);
+        }
+        damaged.write(junk(random, 3000));
+
+        List<short[]> expected = decode(new Bitstream(new ByteArrayInputStream(data)));
+        assertEquals(MpegFixtures.FRAMES, expected.size());
+        assertSameFrames(expected, decode(new Bitstream(new ByteArrayInputStream(damaged.toByteArray()))));
+        assertSameFrames(expected, decode(new Bitstream(ByteBuffer.wrap(damaged.toByteArray()))));
+    }
+
+    @Test
+    public void testCrcRejectsFalseSync() throws Exception {
+        int frames = 20;
+        byte[] frame = protectedFrame();
+        byte[] data = new byte[1000 + frames * frame.length];
+        Random random = new Random(16);
+        random.nextBytes(data);
+        // a header one frame length before the first frame passes the
+        // check for the next header, but not the CRC check
+        System.arraycopy(frame, 0, data, 1000 - frame.length, 4);
+        for (int i = 0; i < frames; i++)
+            System.arraycopy(frame, 0, data, 1000 + i * frame.length, frame.length);
+
+        assertEquals(frames, decode(new Bitstream(new ByteArrayInputStream(data))).size());
+        assertEquals(frames, decode(new Bitstream(ByteBuffer.wrap(data))).size());
+    }
+
+    @Test
+    public void testCrcTable() {
+        // CRC-16 with polynomial 0x8005 and initial value 0xFFFF, unreflected
+        Crc16 crc = new Crc16();
+        byte[] check = "123456789".getBytes(StandardCharsets.US_ASCII);
+        crc.add_bytes(check, 0, check.length);
+        assertEquals((short) 0xAEE7, crc.checksum());
+
+        // any split into bit strings gives the same checksum
+        crc.add_bits(0x313233, 24);
+        crc.add_bits(0x1, 3);
+        crc.add_bits(0x14, 5);
+        crc.add_bits(0x35363738, 32);
+        crc.add_bits(0x39, 8);
+        assertEquals((short) 0xAEE7, crc.checksum());
+    }
+
+    /**
+     * Returns a silent, CRC protected MPEG 1 Layer III mono frame.
+     */
+    private static byte[] protectedFrame() {
+        // 128 kbit/s, 44.1 kHz: 417 bytes
+        byte[] frame = new byte[417];
+        frame[0] = (byte) 0xFF;
+        frame[1] = (byte) 0xFA;
+        frame[2] = (byte) 0x90;
+        frame[3] = (byte) 0xC0;
+        Crc16 crc = new Crc16();
+        crc.add_bits(0x90C0, 16);
+        crc.add_bytes(frame, 6, 17);
+        short checksum = crc.checksum();
+        frame[4] = (byte) (checksum >> 8);
+        frame[5] = (byte) checksum;
+        return frame;
+    }
+
+    /**
+     * Random bytes with false headers of MPEG 1 Layer III at 44.1 kHz,
+     * which only the check for the next header rejects: at 32, 128 and
+     * 320 kbit/s, the next header is expected at 104, 417 and 1044 bytes.
+     */
+    private static byte[] junk(Random random, int length) {
+        byte[] junk = new byte[length];
+        random.nextBytes(junk);
+        int[] offsets = {100, 600, 1200};
+        int[] bitrates = {1, 9, 14};
+        for (int n = 0; n < offsets.length; n++) {
+            int i = offsets[n];
+            junk[i] = (byte) 0xFF;
+            junk[i + 1] = (byte) 0xFB;
+            junk[i + 2] = (byte) (bitrates[n] << 4);
+        }
+        return junk;
+    }
+
+    private static List<short[]> decode(Bitstream stream) throws Exception {
+        Decoder decoder = new Decoder();
+        List<short[]> frames = new ArrayList<>();
+        Header header;
+        while ((header = stream.readFrame()) != null) {
+            SampleBuffer output = (SampleBuffer) decoder.decodeFrame(header, stream);
+            short[] samples = new short[output.getBufferLength()];
+            System.arraycopy(output.getBuffer(), 0, samples, 0, samples.length);
+            frames.add(samples);
+            stream.closeFrame();
+        }
+        stream.close();
+        return frames;
+    }
+
+    private static void assertSameFrames(List<short[]> expected, List<short[]> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+            assertArrayEquals(expected.get(i), actual.get(i), "frame " + i);
+    }
+}
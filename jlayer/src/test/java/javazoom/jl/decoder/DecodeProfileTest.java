@@ -0,0 +1,150 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Path;
+import java.util.List;
+
+import javazoom.jl.testing.MpegFixtures;
+import javazoom.jl.testing.MpegFixtures.Fixture;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * DecodeProfile counters and Flight Recorder events.
+ */
+public class DecodeProfileTest {
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    public void disable() {
+        DecodeProfile.setEnabled(false);
+    }
+
+    @Test
+    public void testCounters() throws Exception {
+        byte[] data = Fixture.MPEG1_L3_JOINT_STEREO.generate();
+        Decoder decoder = new Decoder();
+        decode(decoder, data);
+        assertNull(decoder.getProfile());
+
+        DecodeProfile.setEnabled(true);
+        decode(decoder, data);
+        DecodeProfile profile = decoder.getProfile();
+        assertEquals(MpegFixtures.FRAMES, profile.getFrames());
+        assertEquals(data.length, profile.getBytes());
+        assertEquals(0, profile.getResyncs());
+        long stages = 0;
+        for (DecodeProfile.Stage stage : DecodeProfile.Stage.values()) {
+            assertTrue(profile.getStageNanos(stage) > 0, stage.toString());
+            stages += profile.getStageNanos(stage);
+        }
+        assertTrue(stages <= profile.getDecodeNanos());
+        assertTrue(profile.getMicrosPerFrame() > 0);
+
+        // switched off, nothing is counted
+        DecodeProfile.setEnabled(false);
+        DecodeProfile before = profile.copy();
+        decode(decoder, data);
+        assertEquals(before.getFrames(), profile.getFrames());
+        assertEquals(before.getDecodeNanos(), profile.getDecodeNanos());
+
+        decoder.reset();
+        assertEquals(0, profile.getFrames());
+    }
+
+    @Test
+    public void testResyncs() throws Exception {
+        byte[] data = Fixture.MPEG1_L2_MONO.generate();
+        // the first 100 bytes of a frame in the middle are cut, the
+        // decoder skips the rest of it and resyncs on the next
+        Bitstream stream = new Bitstream(new ByteArrayInputStream(data));
+        int offset = 0;
+        while (offset < data.length / 2) {
+            offset += stream.readFrame().framesize + 4;
+            stream.closeFrame();
+        }
+        stream.close();
+        byte[] cut = new byte[data.length - 100];
+        System.arraycopy(data, 0, cut, 0, offset);
+        System.arraycopy(data, offset + 100, cut, offset, cut.length - offset);
+
+        DecodeProfile.setEnabled(true);
+        Decoder decoder = new Decoder();
+        decode(decoder, cut);
+        DecodeProfile profile = decoder.getProfile();
+        assertEquals(MpegFixtures.FRAMES - 1, profile.getFrames());
+        assertEquals(1, profile.getResyncs());
+    }
+
+    @Test
+    public void testEvents() throws Exception {
+        byte[] data = Fixture.MPEG1_L3_MONO.generate();
+        Path file = dir.resolve("decode.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("javazoom.jl.DecodeFrame");
+            recording.enable("javazoom.jl.DecodeStream");
+            recording.start();
+            DecodeProfile.setEnabled(true);
+            Decoder decoder = new Decoder();
+            decode(decoder, data);
+            decoder.getProfile().commitSummary();
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        int frames = 0, streams = 0;
+        for (RecordedEvent event : events) {
+            String name = event.getEventType().getName();
+            if (name.equals("javazoom.jl.DecodeFrame")) {
+                frames++;
+                assertEquals(3, event.getInt("layer"));
+            } else if (name.equals("javazoom.jl.DecodeStream")) {
+                streams++;
+                assertEquals(MpegFixtures.FRAMES, event.getLong("frames"));
+                assertEquals(data.length, event.getLong("bytes"));
+            }
+        }
+        assertEquals(MpegFixtures.FRAMES, frames);
+        assertEquals(1, streams);
+    }
+
+    private static void decode(Decoder decoder, byte[] data) throws Exception {
+        Bitstream stream = new Bitstream(new ByteArrayInputStream(data));
+        Header header;
+        while ((header = stream.readFrame()) != null) {
+            decoder.decodeFrame(header, stream);
+            stream.closeFrame();
+        }
+        stream.close();
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.io.ByteArrayInputStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javazoom.jl.testing.MpegFixtures.Fixture;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+
+/**
+ * Decoder.reset() and DecoderPool: a reused decoder decodes like a new one.
+ */
+public class DecoderPoolTest {
+
+    @Test
+    public void testResetSameOutput() throws Exception {
+        Decoder reused = new Decoder();
+        for (Fixture fixture : new Fixture[] {Fixture.MPEG1_L3_JOINT_STEREO, Fixture.MPEG1_L3_JOINT_STEREO,
+                Fixture.MPEG1_L3_VBR, Fixture.MPEG2_L3_LSF_STEREO, Fixture.MPEG1_L2_MONO, Fixture.MPEG1_L3_MONO}) {
+            byte[] data = fixture.generate();
+            List<short[]> expected = decode(new Decoder(), data);
+            reused.reset();
+            List<short[]> actual = decode(reused, data);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++)
+                assertArrayEquals(expected.get(i), actual.get(i), fixture + " frame " + i);
+        }
+    }
+
+    @Test
+    public void testBorrowRelease() throws Exception {
+        DecoderPool pool = new DecoderPool(2);
+        Header stereo = firstHeader(Fixture.MPEG1_L3_JOINT_STEREO);
+        Header mono = firstHeader(Fixture.MPEG1_L3_MONO);
+        Decoder.Params half = new Decoder.Params();
+        half.setDownsamplingFactor(2);
+
+        Decoder a = pool.borrow(stereo, null);
+        Decoder b = pool.borrow(stereo, null);
+        assertNotSame(a, b);
+        pool.release(a);
+        pool.release(a);
+        assertEquals(1, pool.getIdleCount());
+        assertNotSame(a, pool.borrow(mono, null));
+        assertNotSame(a, pool.borrow(stereo, half));
+        assertSame(a, pool.borrow(stereo, null));
+
+        pool.release(a);
+        pool.release(b);
+        pool.release(pool.borrow(mono, null));
+        assertEquals(3, pool.getIdleCount());
+        pool.release(new Decoder());
+        assertEquals(3, pool.getIdleCount());
+        pool.clear();
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void testReleaseDropsStream() throws Exception {
+        DecoderPool pool = new DecoderPool(1);
+        for (Fixture fixture : new Fixture[] {Fixture.MPEG1_L3_JOINT_STEREO, Fixture.MPEG1_L2_MONO,
+                Fixture.MPEG1_L1_STEREO}) {
+            Bitstream stream = new Bitstream(new ByteArrayInputStream(fixture.generate()));
+            Header header = stream.readFrame();
+            Decoder decoder = pool.borrow(header, null);
+            Obuffer output = new SampleBuffer(header.frequency(), 2);
+            decoder.setOutputBuffer(output);
+            decoder.decodeFrame(header, stream);
+            stream.closeFrame();
+            WeakReference<Bitstream> streamRef = new WeakReference<>(stream);
+            WeakReference<Obuffer> outputRef = new WeakReference<>(output);
+            pool.release(decoder);
+            stream = null;
+            header = null;
+            output = null;
+            for (int i = 0; (i < 50) && ((streamRef.get() != null) || (outputRef.get() != null)); i++) {
+                System.gc();
+                Thread.sleep(10);
+            }
+            assertNull(streamRef.get(), fixture.toString());
+            assertNull(outputRef.get(), fixture.toString());
+            pool.clear();
+        }
+    }
+
+    @Test
+    public void testConcurrentBorrow() throws Exception {
+        DecoderPool pool = new DecoderPool(4);
+        byte[] data = Fixture.MPEG1_L3_JOINT_STEREO.generate();
+        Header header = firstHeader(Fixture.MPEG1_L3_JOINT_STEREO);
+        List<short[]> expected = decode(new Decoder(), data);
+        Set<Decoder> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<short[]>>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                results.add(executor.submit(() -> {
+                    Decoder decoder = pool.borrow(header, null);
+                    synchronized (seen) {
+                        seen.add(decoder);
+                    }
+                    try {
+                        return decode(decoder, data);
+                    } finally {
+                        pool.release(decoder);
+                    }
+                }));
+            }
+            for (Future<List<short[]>> result : results) {
+                List<short[]> actual = result.get();
+                for (int i = 0; i < expected.size(); i++)
+                    assertArrayEquals(expected.get(i), actual.get(i), "frame " + i);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        // at most one decoder per thread at a time
+        assertEquals(seen.size(), pool.getIdleCount());
+    }
+
+    private static Header firstHeader(Fixture fixture) throws Exception {
+        Bitstream stream = new Bitstream(new ByteArrayInputStream(fixture.generate()));
+        Header header = stream.readFrame();
+        stream.close();
+        return header;
+    }
+
+    private static List<short[]> decode(Decoder decoder, byte[] data) throws Exception {
+        Bitstream stream = new Bitstream(new ByteArrayInputStream(data));
+        List<short[]> frames = new ArrayList<>();
+        Header header;
+        while ((header = stream.readFrame()) != null) {
+            SampleBuffer output = (SampleBuffer) decoder.decodeFrame(header, stream);
+            short[] samples = new short[output.getBufferLength()];
+            System.arraycopy(output.getBuffer(), 0, samples, 0, samples.length);
+            frames.add(samples);
+            stream.closeFrame();
+        }
+        stream.close();
+        return frames;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.io.ByteArrayInputStream;
+
+import javazoom.jl.testing.MpegFixtures.Fixture;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+/**
+ * Reduced rate decoding with the downsampling factor of Decoder.Params.
+ */
+public class DownsamplingTest {
+
+    @ParameterizedTest
+    @EnumSource(Fixture.class)
+    public void testOutputRate(Fixture fixture) throws Exception {
+        byte[] data = fixture.generate();
+        for (int factor : new int[] {1, 2, 4}) {
+            Decoder.Params params = new Decoder.Params();
+            params.setDownsamplingFactor(factor);
+            Decoder decoder = new Decoder(params);
+            Bitstream stream = new Bitstream(new ByteArrayInputStream(data));
+            Header header = stream.readFrame();
+            SampleBuffer output = (SampleBuffer) decoder.decodeFrame(header, stream);
+            stream.close();
+
+            assertEquals(header.frequency() / factor, decoder.getOutputFrequency());
+            assertEquals(header.frequency() / factor, output.getSampleFrequency());
+            int samples = fixture.layer() == 1 ? 384 : (fixture.layer() == 2 || header.version() == Header.MPEG1) ? 1152 : 576;
+            assertEquals(samples / factor * fixture.channels(), output.getBufferLength());
+        }
+    }
+
+    @Test
+    public void testInvalidFactor() {
+        assertThrows(IllegalArgumentException.class, () -> new Decoder.Params().setDownsamplingFactor(3));
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Checks the lookup table Huffman decoder against the tree walk.
+ */
+public class HuffcodetabTest {
+
+    @Test
+    public void testLookupMatchesTree() {
+        huffcodetab.initHuff();
+        for (int table = 0; table < huffcodetab.ht.length; table++) {
+            huffcodetab h = huffcodetab.ht[table];
+            // tables 0, 4 and 14 have no codewords
+            if (table == 0 || table == 4 || table == 14) {
+                assertFalse(h.has_lookup());
+                continue;
+            }
+            assertTrue(h.has_lookup(), "table " + table);
+
+            Random random = new Random(table);
+            BitReserve tree = new BitReserve();
+            BitReserve lookup = new BitReserve();
+            for (int i = 0; i < 4096; i++) {
+                int val = random.nextInt(256);
+                tree.hputbuf(val);
+                lookup.hputbuf(val);
+            }
+            int[] x0 = new int[1], y0 = new int[1], v0 = new int[1], w0 = new int[1];
+            int[] x1 = new int[1], y1 = new int[1], v1 = new int[1], w1 = new int[1];
+            for (int i = 0; i < 10000; i++) {
+                huffcodetab.huffman_decoder(h, x0, y0, v0, w0, tree);
+                huffcodetab.huffman_decoder_lookup(h, x1, y1, v1, w1, lookup);
+                String at = "table " + table + " codeword " + i;
+                assertEquals(tree.hsstell(), lookup.hsstell(), at);
+                assertEquals(x0[0], x1[0], at);
+                assertEquals(y0[0], y1[0], at);
+                if (table >= 32) {
+                    assertEquals(v0[0], v1[0], at);
+                    assertEquals(w0[0], w1[0], at);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+
+import javazoom.jl.testing.MpegFixtures.Fixture;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+
+/**
+ * The fused IMDCT and overlap addition of the hybrid filter bank against
+ * inv_mdct() followed by a separate overlap addition.
+ */
+public class ImdctTest {
+
+    @Test
+    public void testSameOutput() throws Exception {
+        Bitstream stream = new Bitstream(new ByteArrayInputStream(Fixture.MPEG1_L3_JOINT_STEREO.generate()));
+        Header header = stream.readFrame();
+        LayerIIIDecoder decoder = new LayerIIIDecoder(stream, header,
+                new SynthesisFilter(0, 32700.0f, null), new SynthesisFilter(1, 32700.0f, null),
+                new SampleBuffer(header.frequency(), 2), OutputChannels.BOTH_CHANNELS);
+        stream.close();
+
+        Random random = new Random(14);
+        float[] xr = new float[576];
+        float[] expected = new float[576];
+        float[] prev = new float[576];
+        float[] expectedPrev = new float[576];
+        float[] in = new float[18];
+        float[] out = new float[36];
+        float[] scratch = new float[36];
+        // consecutive granules, so that the overlap carries over
+        for (int granule = 0; granule < 40; granule++) {
+            int block_type = granule % 4;
+            for (int i = 0; i < 576; i++)
+                xr[i] = (float) (random.nextGaussian() / (1 + i / 18));
+
+            for (int sb18 = 0; sb18 < 576; sb18 += 18) {
+                System.arraycopy(xr, sb18, in, 0, 18);
+                decoder.inv_mdct(in, out, block_type);
+                for (int i = 0; i < 18; i++) {
+                    expected[sb18 + i] = out[i] + expectedPrev[sb18 + i];
+                    expectedPrev[sb18 + i] = out[18 + i];
+                }
+
+                if (block_type == 2)
+                    LayerIIIDecoder.imdct12(xr, prev, sb18, scratch);
+                else
+                    LayerIIIDecoder.imdct36(xr, prev, sb18, LayerIIIDecoder.win[block_type]);
+            }
+
+            assertArrayEquals(expected, xr, "granule " + granule);
+            assertArrayEquals(expectedPrev, prev, "granule " + granule);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javazoom.jl.testing.MpegFixtures;
+import javazoom.jl.testing.MpegFixtures.Fixture;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+
+/**
+ * MpegDurationScanner on the fixture streams, wrapped in ID3v2 and ID3v1 tags.
+ */
+public class MpegDurationScannerTest {
+
+    @TempDir
+    Path dir;
+
+    @ParameterizedTest
+    @EnumSource(Fixture.class)
+    public void testScan(Fixture fixture) throws Exception {
+        byte[] data = fixture.generate();
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        // ID3v2 tag with 100 bytes of padding
+        file.write(new byte[] {'I', 'D', '3', 3, 0, 0, 0, 0, 0, 100});
+        file.write(new byte[100]);
+        file.write(data);
+        byte[] id3v1 = new byte[128];
+        id3v1[0] = 'T';
+        id3v1[1] = 'A';
+        id3v1[2] = 'G';
+        file.write(id3v1);
+        Path path = dir.resolve(fixture + ".mp3");
+        Files.write(path, file.toByteArray());
+
+        MpegDurationScanner.Result result = MpegDurationScanner.scan(path);
+        assertNotNull(result);
+        assertEquals(110, result.getFirstFrameOffset());
+        assertEquals(fixture.isVbr(), result.hasInfoFrame());
+        int frames = MpegFixtures.FRAMES - (fixture.isVbr() ? 1 : 0);
+        assertEquals(frames, result.getFrameCount());
+
+        long samples = (long) frames * fixture.samplesPerFrame();
+        if (fixture.isVbr()) {
+            assertEquals(MpegFixtures.LAME_DELAY, result.getEncoderDelay());
+            assertEquals(MpegFixtures.LAME_PADDING, result.getEncoderPadding());
+            samples -= MpegFixtures.LAME_DELAY + MpegFixtures.LAME_PADDING;
+        } else {
+            assertEquals(-1, result.getEncoderDelay());
+            Header header = new Bitstream(new ByteArrayInputStream(data)).readFrame();
+            // padding slots add up to the nominal bitrate over whole seconds only
+            assertEquals(header.bitrate(), result.getAverageBitrate(), header.bitrate() / 1000.0f);
+        }
+        assertEquals(samples, result.getSampleCount());
+        assertEquals(samples * 1000 / fixture.sampleRate(), result.getDurationMs());
+
+        MpegFrameIndex expected = MpegFrameIndex.scan(new ByteArrayInputStream(data));
+        MpegFrameIndex index = result.getIndex();
+        assertEquals(expected.frameCount(), index.frameCount());
+        for (int frame = 0; frame <= index.frameCount(); frame++)
+            assertEquals(expected.offsetForFrame(frame), index.offsetForFrame(frame), "frame " + frame);
+    }
+}
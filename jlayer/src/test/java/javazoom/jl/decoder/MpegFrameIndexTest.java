@@ -0,0 +1,140 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import javazoom.jl.testing.MpegFixtures;
+import javazoom.jl.testing.MpegFixtures.Fixture;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * MpegFrameIndex unit test, on the generated streams of {@link MpegFixtures}.
+ */
+public class MpegFrameIndexTest {
+
+    @ParameterizedTest
+    @EnumSource(Fixture.class)
+    public void testScanMatchesBitstream(Fixture fixture) throws Exception {
+        byte[] data = fixture.generate();
+        MpegFrameIndex index = MpegFrameIndex.scan(new ByteArrayInputStream(data));
+        assertNotNull(index);
+        assertTrue(index.isExact());
+        assertEquals(MpegFixtures.FRAMES, index.frameCount());
+
+        Bitstream stream = new Bitstream(new ByteArrayInputStream(data));
+        long offset = 0;
+        for (int frame = 0; frame < MpegFixtures.FRAMES; frame++) {
+            Header header = stream.readFrame();
+            assertNotNull(header);
+            assertEquals(offset, index.offsetForFrame(frame), "frame " + frame);
+            assertEquals(frame, index.frameForOffset(offset));
+            offset += header.calculate_framesize() + 4;
+            stream.closeFrame();
+        }
+        assertEquals(offset, index.totalBytes());
+        stream.close();
+    }
+
+    @Test
+    public void testSeekIsBitExact() throws Exception {
+        byte[] data = Fixture.MPEG1_L3_JOINT_STEREO.generate();
+        MpegFrameIndex index = MpegFrameIndex.scan(new ByteArrayInputStream(data));
+        int target = 100;
+
+        short[] expected = null;
+        Bitstream stream = new Bitstream(new ByteArrayInputStream(data));
+        Decoder decoder = new Decoder();
+        for (int frame = 0; frame <= target; frame++) {
+            SampleBuffer output = (SampleBuffer) decoder.decodeFrame(stream.readFrame(), stream);
+            stream.closeFrame();
+            if (frame == target)
+                expected = output.getBuffer().clone();
+        }
+        stream.close();
+
+        // read the first frame, jump to the first priming frame and decode from there
+        int start = target - index.primingFrames(target);
+        stream = new Bitstream(new ByteArrayInputStream(data));
+        decoder = new Decoder();
+        decoder.decodeFrame(stream.readFrame(), stream);
+        stream.closeFrame();
+        stream.skipBytes(index.offsetForFrame(start) - index.offsetForFrame(1));
+        SampleBuffer output = null;
+        for (int frame = start; frame <= target; frame++) {
+            output = (SampleBuffer) decoder.decodeFrame(stream.readFrame(), stream);
+            stream.closeFrame();
+        }
+        stream.close();
+        assertArrayEquals(expected, output.getBuffer());
+    }
+
+    @Test
+    public void testEstimateFromXingToc() throws Exception {
+        byte[] data = Fixture.MPEG1_L3_VBR.generate();
+        Bitstream stream = new Bitstream(new ByteArrayInputStream(data));
+        Header header = stream.readFrame();
+        MpegFrameIndex index = MpegFrameIndex.fromHeader(header, -1);
+        stream.close();
+
+        assertNotNull(index);
+        assertFalse(index.isExact());
+        assertEquals(MpegFixtures.FRAMES, index.frameCount());
+        assertEquals(MpegFrameIndex.scan(new ByteArrayInputStream(data)).totalBytes(), index.totalBytes());
+        assertEquals(index.frameCount(), index.frameForTime(index.totalMs()));
+        assertEquals(100, index.frameForTime(index.timeForFrame(100)));
+    }
+
+    @Test
+    public void testXingWithoutToc() throws Exception {
+        byte[] data = Fixture.MPEG1_L3_VBR.generate();
+        int xing = indexOf(data, "Xing");
+        // TOC flag cleared, the TOC bytes are left in place
+        data[xing + 7] &= ~4;
+        Bitstream stream = new Bitstream(new ByteArrayInputStream(data));
+        Header header = stream.readFrame();
+        stream.close();
+
+        assertTrue(header.vbr());
+        assertEquals(MpegFixtures.FRAMES - 1, header.vbr_frames());
+        assertNull(header.vbr_toc());
+        assertNull(MpegFrameIndex.fromHeader(header, data.length));
+    }
+
+    private static int indexOf(byte[] data, String s) {
+        byte[] b = s.getBytes(StandardCharsets.ISO_8859_1);
+        for (int i = 0; i + b.length <= data.length; i++) {
+            if (Arrays.equals(data, i, i + b.length, b, 0, b.length))
+                return i;
+        }
+        return -1;
+    }
+}
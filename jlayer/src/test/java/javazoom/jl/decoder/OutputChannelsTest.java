@@ -0,0 +1,110 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+
+import javazoom.jl.testing.MpegFixtures.Fixture;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Decoding with the OutputChannels of Decoder.Params, against the samples
+ * decoded with BOTH.
+ */
+public class OutputChannelsTest {
+
+    @ParameterizedTest
+    @EnumSource(Fixture.class)
+    public void testLeftAndRight(Fixture fixture) throws Exception {
+        byte[] data = fixture.generate();
+        short[] both = decode(data, OutputChannels.BOTH);
+        short[] left = decode(data, OutputChannels.LEFT);
+        short[] right = decode(data, OutputChannels.RIGHT);
+
+        if (fixture.channels() == 1) {
+            assertArrayEquals(both, left);
+            assertArrayEquals(both, right);
+        } else {
+            assertArrayEquals(channel(both, 0), left);
+            assertArrayEquals(channel(both, 1), right);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Fixture.class)
+    public void testDownmix(Fixture fixture) throws Exception {
+        byte[] data = fixture.generate();
+        short[] both = decode(data, OutputChannels.BOTH);
+        short[] downmix = decode(data, OutputChannels.DOWNMIX);
+
+        if (fixture.channels() == 1) {
+            assertArrayEquals(both, downmix);
+        } else {
+            short[] left = channel(both, 0), right = channel(both, 1);
+            assertEquals(left.length, downmix.length);
+            // samples are truncated to short before and after mixing,
+            // and clipped channels do not mix to the same sample
+            for (int i = 0; i < downmix.length; i++) {
+                if (Math.abs(left[i]) < 32767 && Math.abs(right[i]) < 32767)
+                    assertTrue(Math.abs((left[i] + right[i]) / 2.0 - downmix[i]) <= 2.0, "sample " + i);
+            }
+        }
+    }
+
+    private static short[] decode(byte[] data, OutputChannels outputChannels) throws Exception {
+        Decoder.Params params = new Decoder.Params();
+        params.setOutputChannels(outputChannels);
+        Decoder decoder = new Decoder(params);
+        Bitstream stream = new Bitstream(new ByteArrayInputStream(data));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        Header header;
+        while ((header = stream.readFrame()) != null) {
+            SampleBuffer output = (SampleBuffer) decoder.decodeFrame(header, stream);
+            for (int i = 0; i < output.getBufferLength(); i++)
+                out.writeShort(output.getBuffer()[i]);
+            stream.closeFrame();
+        }
+        stream.close();
+        if (outputChannels != OutputChannels.BOTH)
+            assertEquals(1, decoder.getOutputChannels());
+
+        ShortBuffer samples = ByteBuffer.wrap(bytes.toByteArray()).asShortBuffer();
+        short[] result = new short[samples.remaining()];
+        samples.get(result);
+        return result;
+    }
+
+    private static short[] channel(short[] interleaved, int channel) {
+        short[] result = new short[interleaved.length / 2];
+        for (int i = 0; i < result.length; i++)
+            result[i] = interleaved[2 * i + channel];
+        return result;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+
+import javazoom.jl.testing.MpegFixtures;
+import javazoom.jl.testing.MpegFixtures.Fixture;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * PeakObuffer against peaks computed from the 16 bit samples of SampleBuffer.
+ */
+public class PeakObufferTest {
+
+    private static final int BUCKET = 1000;
+
+    @ParameterizedTest
+    @EnumSource(Fixture.class)
+    public void testSameAsSampleBuffer(Fixture fixture) throws Exception {
+        byte[] data = fixture.generate();
+        int channels = fixture.channels();
+
+        // reference: min, max and sum of squares per bucket from the shorts
+        int samples = MpegFixtures.FRAMES * fixture.samplesPerFrame();
+        int buckets = (samples + BUCKET - 1) / BUCKET;
+        float[][] min = new float[channels][buckets], max = new float[channels][buckets];
+        double[][] squares = new double[channels][buckets];
+        boolean[][] clipped = new boolean[channels][buckets];
+        for (int ch = 0; ch < channels; ch++) {
+            Arrays.fill(min[ch], Float.POSITIVE_INFINITY);
+            Arrays.fill(max[ch], Float.NEGATIVE_INFINITY);
+        }
+        Decoder decoder = new Decoder();
+        Bitstream stream = new Bitstream(new ByteArrayInputStream(data));
+        int position = 0;
+        Header header;
+        while ((header = stream.readFrame()) != null) {
+            SampleBuffer output = (SampleBuffer) decoder.decodeFrame(header, stream);
+            short[] buffer = output.getBuffer();
+            for (int i = 0; i < output.getBufferLength(); i++) {
+                int ch = i % channels, b = (position + i / channels) / BUCKET;
+                short s = buffer[i];
+                min[ch][b] = Math.min(min[ch][b], s);
+                max[ch][b] = Math.max(max[ch][b], s);
+                squares[ch][b] += (double) s * s;
+                clipped[ch][b] |= s >= 32767 || s <= -32767;
+            }
+            position += output.getBufferLength() / channels;
+            stream.closeFrame();
+        }
+        stream.close();
+
+        PeakObuffer peaks = new PeakObuffer(BUCKET);
+        decoder = new Decoder();
+        decoder.setOutputBuffer(peaks);
+        stream = new Bitstream(new ByteArrayInputStream(data));
+        while ((header = stream.readFrame()) != null) {
+            decoder.decodeFrame(header, stream);
+            stream.closeFrame();
+        }
+        stream.close();
+        peaks.close();
+
+        assertEquals(channels, peaks.getChannelCount());
+        float lsb = 1.0f / 32768;
+        for (int ch = 0; ch < channels; ch++) {
+            assertEquals(buckets, peaks.getBucketCount(ch));
+            float[] pmin = peaks.getMin(ch), pmax = peaks.getMax(ch), prms = peaks.getRms(ch);
+            for (int b = 0; b < buckets; b++) {
+                int n = Math.min(BUCKET, samples - b * BUCKET);
+                float rms = (float) Math.sqrt(squares[ch][b] / n) / 32768;
+                if (clipped[ch][b]) {
+                    assertTrue(pmax[b] >= max[ch][b] / 32768 - lsb || pmin[b] <= min[ch][b] / 32768 + lsb);
+                } else {
+                    // samples are truncated towards zero when converted to short
+                    assertEquals(min[ch][b] / 32768, pmin[b], lsb, "min " + b);
+                    assertEquals(max[ch][b] / 32768, pmax[b], lsb, "max " + b);
+                    assertEquals(rms, prms[b], lsb, "rms " + b);
+                }
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Fixture.class)
+    public void testReducedRate(Fixture fixture) throws Exception {
+        Decoder.Params params = new Decoder.Params();
+        params.setDownsamplingFactor(4);
+        Decoder decoder = new Decoder(params);
+        PeakObuffer peaks = new PeakObuffer(BUCKET);
+        decoder.setOutputBuffer(peaks);
+        Bitstream stream = new Bitstream(new ByteArrayInputStream(fixture.generate()));
+        Header header;
+        while ((header = stream.readFrame()) != null) {
+            decoder.decodeFrame(header, stream);
+            stream.closeFrame();
+        }
+        stream.close();
+        peaks.close();
+
+        int samples = MpegFixtures.FRAMES * fixture.samplesPerFrame() / 4;
+        assertEquals((samples + BUCKET - 1) / BUCKET, peaks.getBucketCount(0));
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * VectorSynthesisFilter against the scalar SynthesisFilter.
+ */
+public class VectorSynthesisFilterTest {
+
+    @Test
+    public void testSelectedByDecoder() {
+        assertTrue(SynthesisFilter.isVectorized());
+        assertTrue(SynthesisFilter.create(0, 32700.0f, null) instanceof VectorSynthesisFilter);
+    }
+
+    @Test
+    public void testSameSamples() {
+        Random random = new Random(7);
+        float[] eq = new float[32];
+        for (int sb = 0; sb < 32; sb++)
+            eq[sb] = 0.5f + random.nextFloat();
+        SynthesisFilter scalar = new SynthesisFilter(0, 32700.0f, eq);
+        SynthesisFilter vector = new VectorSynthesisFilter(0, 32700.0f, eq);
+
+        float[] subbands = new float[32];
+        // more than 16 blocks, for every write position of both v arrays
+        for (int block = 0; block < 100; block++) {
+            for (int sb = 0; sb < 32; sb++)
+                subbands[sb] = (float) (random.nextGaussian() * 0.2 / (1 + sb));
+            scalar.input_samples(subbands);
+            vector.input_samples(subbands);
+            scalar.calculate_pcm_samples(null);
+            vector.calculate_pcm_samples(null);
+            assertArrayEquals(scalar._tmpOut, vector._tmpOut, "block " + block);
+
+            if (block == 50) {
+                scalar.reset();
+                vector.reset();
+            }
+        }
+    }
+}
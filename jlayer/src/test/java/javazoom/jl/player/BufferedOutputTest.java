@@ -0,0 +1,136 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.player;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javazoom.jl.decoder.JavaLayerException;
+import javazoom.jl.testing.MpegFixtures.Fixture;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * BufferedOutput, and Player decoding ahead of the audio device.
+ */
+public class BufferedOutputTest {
+
+    /**
+     * Keeps the samples written.
+     */
+    static class RecordingAudioDevice extends AudioDeviceBase {
+        short[] samples = new short[0];
+        int writes;
+
+        protected synchronized void writeImpl(short[] s, int offs, int len) throws JavaLayerException {
+            short[] a = java.util.Arrays.copyOf(samples, samples.length + len);
+            System.arraycopy(s, offs, a, samples.length, len);
+            samples = a;
+            writes++;
+        }
+
+        public int getPosition() {
+            return 0;
+        }
+    }
+
+    @Test
+    public void testPlayerSameSamples() throws Exception {
+        for (Fixture fixture : new Fixture[] {Fixture.MPEG1_L3_JOINT_STEREO, Fixture.MPEG1_L2_MONO}) {
+            byte[] data = fixture.generate();
+            RecordingAudioDevice direct = new RecordingAudioDevice();
+            new Player(new ByteArrayInputStream(data), direct).play();
+
+            RecordingAudioDevice device = new RecordingAudioDevice();
+            Player player = new Player(new ByteArrayInputStream(data), device);
+            player.setDecodeAhead(200);
+            player.play();
+            assertTrue(player.isComplete());
+            assertEquals(direct.writes, device.writes);
+            assertArrayEquals(direct.samples, device.samples, fixture.toString());
+        }
+    }
+
+    @Test
+    public void testUnderrun() throws Exception {
+        RecordingAudioDevice device = new RecordingAudioDevice();
+        device.open(null);
+        CountDownLatch underrun = new CountDownLatch(1);
+        BufferedOutput output = new BufferedOutput(device, 2, 4) {
+            protected void underrun(int underruns) {
+                underrun.countDown();
+            }
+        };
+        output.start();
+        assertTrue(output.write(new short[] {1, 2, 3}, 0, 3));
+        // not started until the queue is full
+        Thread.sleep(50);
+        assertEquals(0, device.writes);
+        assertTrue(output.write(new short[] {4, 5}, 0, 2));
+        assertTrue(underrun.await(10, TimeUnit.SECONDS));
+        assertEquals(1, output.getUnderruns());
+        assertTrue(output.write(new short[] {0, 6, 7, 8, 9, 10}, 1, 5));
+        output.finish();
+        assertEquals(3, device.writes);
+        assertArrayEquals(new short[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10}, device.samples);
+    }
+
+    @Test
+    public void testCloseUnblocksWrite() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AudioDevice device = new AudioDeviceBase() {
+            protected void writeImpl(short[] s, int offs, int len) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                }
+            }
+
+            public int getPosition() {
+                return 0;
+            }
+        };
+        device.open(null);
+        BufferedOutput output = new BufferedOutput(device, 1, 4);
+        output.start();
+        assertTrue(output.write(new short[4], 0, 4));
+        assertTrue(writing.await(10, TimeUnit.SECONDS));
+
+        // the buffer being written is not free, the next write blocks until closed
+        Thread closer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ex) {
+            }
+            output.close();
+        });
+        closer.start();
+        assertFalse(output.write(new short[4], 0, 4));
+        release.countDown();
+        output.finish();
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.player.advanced;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.SampleBuffer;
+import javazoom.jl.player.AudioDeviceBase;
+import javazoom.jl.player.BufferedOutput;
+import javazoom.jl.testing.MpegFixtures;
+import javazoom.jl.testing.MpegFixtures.Fixture;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+/**
+ * AdvancedPlayer playlists against the tracks decoded one at a time.
+ */
+public class PlaylistTest {
+
+    /**
+     * Keeps the samples written.
+     */
+    static class RecordingAudioDevice extends AudioDeviceBase {
+        short[] samples = new short[0];
+
+        protected synchronized void writeImpl(short[] s, int offs, int len) {
+            short[] a = Arrays.copyOf(samples, samples.length + len);
+            System.arraycopy(s, offs, a, samples.length, len);
+            samples = a;
+        }
+
+        public int getPosition() {
+            return 0;
+        }
+    }
+
+    @Test
+    public void testConcatenated() throws Exception {
+        byte[] first = Fixture.MPEG1_L3_JOINT_STEREO.generate();
+        byte[] second = Fixture.MPEG1_L3_VBR.generate();
+        RecordingAudioDevice device = new RecordingAudioDevice();
+        AdvancedPlayer player = new AdvancedPlayer(new ByteArrayInputStream(first), device);
+        AtomicInteger tracks = new AtomicInteger();
+        player.setPlayBackListener(new PlaybackListener() {
+            public void trackStarted(PlaybackEvent evt) {
+                tracks.incrementAndGet();
+            }
+        });
+        player.enqueue(new ByteArrayInputStream(second));
+        player.enqueue(new ByteArrayInputStream(first));
+        player.play();
+
+        short[] expected = concat(decode(first, false), decode(second, false), decode(first, false));
+        assertEquals(2, tracks.get());
+        assertArrayEquals(expected, device.samples);
+    }
+
+    @Test
+    public void testGapless() throws Exception {
+        byte[] data = Fixture.MPEG1_L3_VBR.generate();
+        short[] all = decode(data, true);
+        int channels = Fixture.MPEG1_L3_VBR.channels();
+        int start = (MpegFixtures.LAME_DELAY + Track.DECODER_DELAY) * channels;
+        int length = ((MpegFixtures.FRAMES - 1) * 1152 - MpegFixtures.LAME_DELAY - MpegFixtures.LAME_PADDING) * channels;
+        short[] track = Arrays.copyOfRange(all, start, start + length);
+
+        for (int lookAhead : new int[] {1, 20}) {
+            RecordingAudioDevice device = new RecordingAudioDevice();
+            AdvancedPlayer player = new AdvancedPlayer(new ByteArrayInputStream(data), device);
+            player.setGapless(true);
+            player.setLookAhead(lookAhead);
+            player.setDecodeAhead(100);
+            player.enqueue(new ByteArrayInputStream(data));
+            player.enqueue(new ByteArrayInputStream(data));
+            player.play();
+            assertArrayEquals(concat(track, track, track), device.samples);
+        }
+    }
+
+    @Test
+    public void testDecodeAheadCapacityGapless() throws Exception {
+        byte[] data = Fixture.MPEG1_L3_VBR.generate();
+        AtomicInteger capacity = new AtomicInteger();
+        AdvancedPlayer[] player = new AdvancedPlayer[1];
+        RecordingAudioDevice device = new RecordingAudioDevice() {
+            protected synchronized void writeImpl(short[] s, int offs, int len) {
+                // the first write waits for the queue to fill
+                if (capacity.get() == 0)
+                    capacity.set(player[0].getBufferedOutput().getCapacity());
+                super.writeImpl(s, offs, len);
+            }
+        };
+        player[0] = new AdvancedPlayer(new ByteArrayInputStream(data), device);
+        player[0].setGapless(true);
+        player[0].setDecodeAhead(100);
+        player[0].play();
+
+        // the first frame is trimmed to a few samples, the queue is not
+        assertEquals(BufferedOutput.buffersFor(100, Fixture.MPEG1_L3_VBR.sampleRate(), 1152), capacity.get());
+    }
+
+    /**
+     * Decodes all frames, or all but the info frame.
+     */
+    private static short[] decode(byte[] data, boolean skipInfo) throws Exception {
+        Bitstream stream = new Bitstream(new ByteArrayInputStream(data));
+        Decoder decoder = new Decoder();
+        short[] samples = new short[0];
+        Header header;
+        boolean first = true;
+        while ((header = stream.readFrame()) != null) {
+            if (!(first && skipInfo && header.info_frame())) {
+                SampleBuffer output = (SampleBuffer) decoder.decodeFrame(header, stream);
+                samples = concat(samples, Arrays.copyOf(output.getBuffer(), output.getBufferLength()));
+            }
+            first = false;
+            stream.closeFrame();
+        }
+        stream.close();
+        return samples;
+    }
+
+    private static short[] concat(short[]... arrays) {
+        short[] all = new short[0];
+        for (short[] a : arrays) {
+            int n = all.length;
+            all = Arrays.copyOf(all, n + a.length);
+            System.arraycopy(a, 0, all, n, a.length);
+        }
+        return all;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+
+/**
+ * The synthesis filter bank with the windowing step computed with
+ * jdk.incubator.vector.
+ * <p>
+ * The scalar filter computes each of the 32 PCM samples as a sum over
+ * 16 values at stride 1 in a row of v. This filter keeps v transposed
+ * as well, so the same sums are computed for several samples at once:
+ * the products are added in the same order, and the samples are the
+ * same as those of the scalar filter.
+ * <p>
+ * Created by {@link SynthesisFilter#create(int, float, float[])} only if
+ * the jdk.incubator.vector module is in the boot layer, i.e. the VM was
+ * started with <code>--add-modules jdk.incubator.vector</code>.
+ */
+final class VectorSynthesisFilter extends SynthesisFilter {
+
+    private static final VectorSpecies<Float> SPECIES =
+            (32 % FloatVector.SPECIES_PREFERRED.length() == 0) ? FloatVector.SPECIES_PREFERRED : FloatVector.SPECIES_128;
+
+    /**
+     * d[] transposed: dt[k * 32 + i] is d16[i][k].
+     */
+    private static float[] dt = null;
+
+    /**
+     * v1 and v2 transposed: vt[j * 32 + i] is v[i * 16 + j].
+     */
+    private final float[] vt1 = new float[512];
+    private final float[] vt2 = new float[512];
+
+    VectorSynthesisFilter(int channelnumber, float factor, float[] eq0) {
+        super(channelnumber, factor, eq0);
+        init_dt();
+    }
+
+    private static synchronized void init_dt() {
+        if (dt == null) {
+            float[] t = new float[512];
+            for (int i = 0; i < 32; i++)
+                for (int k = 0; k < 16; k++)
+                    t[(k << 5) + i] = d16[i][k];
+            dt = t;
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        // called by the super constructor before the fields are set
+        if (vt1 != null) {
+            for (int p = 0; p < 512; p++)
+                vt1[p] = vt2[p] = 0.0f;
+        }
+    }
+
+    /**
+     * Computes the new values and copies the column of v1 and v2 they were
+     * written to into the transposed arrays.
+     */
+    @Override
+    void compute_new_v() {
+        super.compute_new_v();
+
+        final int pos = actual_write_pos;
+        final float[] v, o, vt, ot;
+        if (actual_v == v1) {
+            v = v1;
+            vt = vt1;
+            o = v2;
+            ot = vt2;
+        } else {
+            v = v2;
+            vt = vt2;
+            o = v1;
+            ot = vt1;
+        }
+        final int dest = pos << 5;
+        for (int i = 0, src = pos; i < 32; i++, src += 16) {
+            vt[dest + i] = v[src];
+            ot[dest + i] = o[src];
+        }
+    }
+
+    @Override
+    void compute_pcm_samples(Obuffer buffer) {
+        final int pos = actual_write_pos;
+        final float[] vt = (actual_v == v1) ? vt1 : vt2;
+        final float[] d = dt;
+        final float[] tmpOut = _tmpOut;
+
+        for (int i = 0; i < 32; i += SPECIES.length()) {
+            FloatVector pcm_samples = FloatVector.fromArray(SPECIES, vt, (pos << 5) + i)
+                    .mul(FloatVector.fromArray(SPECIES, d, i));
+            for (int k = 1; k < 16; k++) {
+                int j = (pos - k) & 0xf;
+                pcm_samples = pcm_samples.add(FloatVector.fromArray(SPECIES, vt, (j << 5) + i)
+                        .mul(FloatVector.fromArray(SPECIES, d, (k << 5) + i)));
+            }
+            pcm_samples.mul(scalefactor).intoArray(tmpOut, i);
+        }
+
+        if (buffer != null) {
+            buffer.appendSamples(channel, tmpOut);
+        }
+    }
+}
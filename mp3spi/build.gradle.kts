@@ -6,4 +6,5 @@ dependencies {
     implementation("com.github.albfernandez:juniversalchardet:2.4.0")
     implementation(project(":jlayer"))
     implementation(project(":tritonus:shared"))
+    testImplementation(project(":testing"))
 }
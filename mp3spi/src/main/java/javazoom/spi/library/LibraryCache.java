@@ -0,0 +1,244 @@
+/*
+ * LibraryCache.
+ *
+ * JavaZOOM : mp3spi@javazoom.net
+ *               http://www.javazoom.net
+ *
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.spi.library;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sound.sampled.AudioSystem;
+
+
+/**
+ * The entries of the <code>LibraryScanner</code>, keyed by path and
+ * valid for as long as the size and last modification time of the
+ * file are unchanged.
+ * <p>
+ * The file is a <code>DataOutputStream</code> of a magic number, a
+ * version and the entries; a file that is missing, of another version
+ * or unreadable is ignored and every file of the tree is probed again.
+ * It is written to a temporary file next to it and moved into place,
+ * so a scan that fails leaves the previous cache intact.
+ */
+final class LibraryCache {
+
+    private static final int MAGIC = 0x4a5a4c43; // "JZLC"
+
+    private static final int VERSION = 1;
+
+    private static final int STRING = 0;
+    private static final int BOOLEAN = 1;
+    private static final int INTEGER = 2;
+    private static final int LONG = 3;
+    private static final int FLOAT = 4;
+    private static final int DOUBLE = 5;
+
+    // writeUTF() takes at most 65535 bytes, of up to 3 bytes per char
+    private static final int MAX_STRING = 65535 / 3;
+
+    private final Path file;
+
+    private final Map<Path, LibraryScanner.Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param file The cache file, or <code>null</code> for a cache that
+     *             is neither loaded nor saved.
+     */
+    LibraryCache(Path file) {
+        this.file = file;
+    }
+
+    static boolean isCacheable(Object value) {
+        if (value instanceof String)
+            return ((String) value).length() <= MAX_STRING;
+        return value instanceof Boolean || value instanceof Integer
+                || value instanceof Long || value instanceof Float || value instanceof Double;
+    }
+
+    /**
+     * Returns the entry of a file, or <code>null</code> if there is none
+     * or the file has changed since it was probed.
+     */
+    LibraryScanner.Entry get(Path path, long size, long lastModified) {
+        LibraryScanner.Entry entry = entries.get(path);
+        if (entry == null || entry.getSize() != size || entry.getLastModified() != lastModified)
+            return null;
+        return entry;
+    }
+
+    void put(LibraryScanner.Entry entry) {
+        entries.put(entry.getPath(), entry);
+    }
+
+    /**
+     * Removes the entries below <code>root</code> that are not in <code>seen</code>.
+     */
+    void retain(Path root, Set<Path> seen) {
+        entries.keySet().removeIf(path -> path.startsWith(root) && !seen.contains(path));
+    }
+
+    void load() throws IOException {
+        entries.clear();
+        if (file == null)
+            return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                return;
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                LibraryScanner.Entry entry = readEntry(in);
+                entries.put(entry.getPath(), entry);
+            }
+        } catch (NoSuchFileException ex) {
+            // first scan
+        } catch (IOException | RuntimeException ex) {
+            // truncated or corrupt, rebuilt by this scan
+            entries.clear();
+        }
+    }
+
+    void save() throws IOException {
+        if (file == null)
+            return;
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                // a snapshot, the map is not modified while saving
+                LibraryScanner.Entry[] snapshot = entries.values().toArray(new LibraryScanner.Entry[0]);
+                out.writeInt(snapshot.length);
+                for (LibraryScanner.Entry entry : snapshot)
+                    writeEntry(out, entry);
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static LibraryScanner.Entry readEntry(DataInputStream in) throws IOException {
+        Path path = Paths.get(in.readUTF());
+        long size = in.readLong();
+        long lastModified = in.readLong();
+        if (!in.readBoolean())
+            return new LibraryScanner.Entry(path, size, lastModified, null, null, AudioSystem.NOT_SPECIFIED,
+                    AudioSystem.NOT_SPECIFIED, AudioSystem.NOT_SPECIFIED, AudioSystem.NOT_SPECIFIED,
+                    new LinkedHashMap<>());
+        String type = in.readUTF();
+        String encoding = in.readUTF();
+        float sampleRate = in.readFloat();
+        int channels = in.readInt();
+        long frameLength = in.readLong();
+        int byteLength = in.readInt();
+        int count = in.readInt();
+        Map<String, Object> properties = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String key = in.readUTF();
+            int tag = in.readByte();
+            switch (tag) {
+                case STRING:
+                    properties.put(key, in.readUTF());
+                    break;
+                case BOOLEAN:
+                    properties.put(key, in.readBoolean());
+                    break;
+                case INTEGER:
+                    properties.put(key, in.readInt());
+                    break;
+                case LONG:
+                    properties.put(key, in.readLong());
+                    break;
+                case FLOAT:
+                    properties.put(key, in.readFloat());
+                    break;
+                case DOUBLE:
+                    properties.put(key, in.readDouble());
+                    break;
+                default:
+                    throw new IOException("Unknown property type " + tag);
+            }
+        }
+        return new LibraryScanner.Entry(path, size, lastModified, type, encoding, sampleRate, channels,
+                frameLength, byteLength, properties);
+    }
+
+    private static void writeEntry(DataOutputStream out, LibraryScanner.Entry entry) throws IOException {
+        out.writeUTF(entry.getPath().toString());
+        out.writeLong(entry.getSize());
+        out.writeLong(entry.getLastModified());
+        out.writeBoolean(entry.isAudio());
+        if (!entry.isAudio())
+            return;
+        out.writeUTF(entry.getType());
+        out.writeUTF(entry.getEncoding());
+        out.writeFloat(entry.getSampleRate());
+        out.writeInt(entry.getChannels());
+        out.writeLong(entry.getFrameLength());
+        out.writeInt(entry.getByteLength());
+        Map<String, Object> properties = entry.getProperties();
+        out.writeInt(properties.size());
+        for (Map.Entry<String, Object> e : properties.entrySet()) {
+            out.writeUTF(e.getKey());
+            Object value = e.getValue();
+            if (value instanceof String) {
+                out.writeByte(STRING);
+                out.writeUTF((String) value);
+            } else if (value instanceof Boolean) {
+                out.writeByte(BOOLEAN);
+                out.writeBoolean((Boolean) value);
+            } else if (value instanceof Integer) {
+                out.writeByte(INTEGER);
+                out.writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                out.writeByte(LONG);
+                out.writeLong((Long) value);
+            } else if (value instanceof Float) {
+                out.writeByte(FLOAT);
+                out.writeFloat((Float) value);
+            } else {
+                out.writeByte(DOUBLE);
+                out.writeDouble((Double) value);
+            }
+        }
+    }
+}
@@ -0,0 +1,488 @@
+/*
+ * LibraryScanner.
+ *
+ * JavaZOOM : mp3spi@javazoom.net
+ *               http://www.javazoom.net
+ *
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.spi.library;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+
+/**
+ * The <code>LibraryScanner</code> class reads the audio file format
+ * of every file of a directory tree, in parallel. The tree is walked
+ * on the calling thread and each file is probed with
+ * <code>AudioSystem.getAudioFileFormat()</code> on one of a fixed
+ * number of worker threads, so every installed reader takes part:
+ * MPEG audio files through <code>MpegAudioFileReader</code>, AAC files
+ * through a reader for them if one is on the class path. At most
+ * <code>threads + queueSize</code> files are pending at any time.
+ * <p>
+ * With a cache file set, the entries of a scan are saved when it
+ * completes and loaded by the next one; a file whose size and last
+ * modification time are unchanged is then reported from the cache
+ * without being opened.
+ */
+public class LibraryScanner {
+
+    private final int threads;
+
+    private final int queueSize;
+
+    private PathMatcher filter;
+
+    private Path cacheFile;
+
+    /**
+     * Creates a new library scanner with one worker thread per
+     * available processor.
+     */
+    public LibraryScanner() {
+        this(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threads   The number of files probed at the same time.
+     * @param queueSize The number of files waiting for a worker thread
+     *                  before the walk of the tree blocks.
+     */
+    public LibraryScanner(int threads, int queueSize) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads: " + threads);
+        if (queueSize < 1)
+            throw new IllegalArgumentException("queueSize: " + queueSize);
+        this.threads = threads;
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * Sets the files to scan, or <code>null</code> for all regular files.
+     * Files that do not match are neither probed nor reported.
+     */
+    public void setFilter(PathMatcher filter) {
+        this.filter = filter;
+    }
+
+    public PathMatcher getFilter() {
+        return filter;
+    }
+
+    /**
+     * Sets the file the entries are cached in across scans, or
+     * <code>null</code> to probe every file.
+     */
+    public void setCacheFile(Path cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    public Path getCacheFile() {
+        return cacheFile;
+    }
+
+    /**
+     * Scans all files below a directory and waits for them to complete.
+     * A file that cannot be read does not stop the scan; its entry has
+     * an exception and is not cached. Entries of the cache below
+     * <code>root</code> whose file no longer exists are removed.
+     *
+     * @param root     The directory to scan.
+     * @param listener Notified as each file is scanned, on a worker
+     *                 thread, or on the calling thread for files found
+     *                 in the cache.
+     * @return The counts of the scan.
+     * @throws IOException          if the cache file cannot be written.
+     * @throws InterruptedException if the calling thread is interrupted.
+     *                              Pending files are cancelled and the
+     *                              cache is not written.
+     */
+    public Summary scan(Path root, Listener listener) throws IOException, InterruptedException {
+        if (listener == null)
+            throw new NullPointerException("listener");
+        root = root.toAbsolutePath().normalize();
+        LibraryCache cache = new LibraryCache(cacheFile);
+        cache.load();
+
+        // the semaphore bounds the queue, a worker releases its permit
+        // before taking the next file off the queue
+        int permits = threads + queueSize;
+        Semaphore pending = new Semaphore(permits);
+        Set<Path> seen = ConcurrentHashMap.newKeySet();
+        AtomicInteger cached = new AtomicInteger();
+        AtomicInteger audio = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        boolean[] interrupted = new boolean[1];
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new WorkerFactory());
+        long startTime = System.currentTimeMillis();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (!attrs.isRegularFile() || (filter != null && !filter.matches(file)))
+                        return FileVisitResult.CONTINUE;
+                    seen.add(file);
+                    long size = attrs.size();
+                    long lastModified = attrs.lastModifiedTime().toMillis();
+                    Entry entry = cache.get(file, size, lastModified);
+                    if (entry != null) {
+                        cached.incrementAndGet();
+                        if (entry.isAudio())
+                            audio.incrementAndGet();
+                        listener.fileScanned(entry, true);
+                        return FileVisitResult.CONTINUE;
+                    }
+                    try {
+                        pending.acquire();
+                    } catch (InterruptedException ex) {
+                        interrupted[0] = true;
+                        return FileVisitResult.TERMINATE;
+                    }
+                    executor.execute(() -> {
+                        try {
+                            Entry probed = Entry.probe(file, size, lastModified);
+                            if (probed.getException() != null)
+                                failed.incrementAndGet();
+                            else
+                                cache.put(probed);
+                            if (probed.isAudio())
+                                audio.incrementAndGet();
+                            listener.fileScanned(probed, false);
+                        } finally {
+                            pending.release();
+                        }
+                    });
+                    return FileVisitResult.CONTINUE;
+                }
+
+                public FileVisitResult visitFileFailed(Path file, IOException ex) {
+                    // an unreadable directory or file is reported and skipped
+                    if (filter == null || filter.matches(file)) {
+                        failed.incrementAndGet();
+                        listener.fileScanned(new Entry(file, ex), false);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            if (interrupted[0])
+                throw new InterruptedException();
+            pending.acquire(permits);
+            pending.release(permits);
+        } finally {
+            executor.shutdownNow();
+        }
+        long time = System.currentTimeMillis() - startTime;
+
+        cache.retain(root, seen);
+        cache.save();
+        return new Summary(seen.size(), cached.get(), audio.get(), failed.get(), time);
+    }
+
+    /**
+     * This interface is used by the LibraryScanner to provide
+     * notification of scanned files.
+     */
+    public interface Listener {
+
+        /**
+         * Called once for every file of the tree, in no particular order
+         * and possibly on several threads at the same time.
+         *
+         * @param entry  The format of the file.
+         * @param cached Whether the entry was read from the cache rather
+         *               than from the file.
+         */
+        void fileScanned(Entry entry, boolean cached);
+    }
+
+    /**
+     * The audio file format of one file, or the reason it has none.
+     * Only the properties of type <code>String</code>, <code>Boolean</code>,
+     * <code>Integer</code>, <code>Long</code>, <code>Float</code> and
+     * <code>Double</code> are kept.
+     */
+    public static final class Entry {
+
+        private final Path path;
+
+        private final long size;
+
+        private final long lastModified;
+
+        private final String type;
+
+        private final String encoding;
+
+        private final float sampleRate;
+
+        private final int channels;
+
+        private final long frameLength;
+
+        private final int byteLength;
+
+        private final Map<String, Object> properties;
+
+        private final IOException exception;
+
+        Entry(Path path, long size, long lastModified, String type, String encoding, float sampleRate,
+              int channels, long frameLength, int byteLength, Map<String, Object> properties) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.type = type;
+            this.encoding = encoding;
+            this.sampleRate = sampleRate;
+            this.channels = channels;
+            this.frameLength = frameLength;
+            this.byteLength = byteLength;
+            this.properties = Collections.unmodifiableMap(properties);
+            this.exception = null;
+        }
+
+        Entry(Path path, IOException exception) {
+            this.path = path;
+            this.size = -1;
+            this.lastModified = 0;
+            this.type = null;
+            this.encoding = null;
+            this.sampleRate = AudioSystem.NOT_SPECIFIED;
+            this.channels = AudioSystem.NOT_SPECIFIED;
+            this.frameLength = AudioSystem.NOT_SPECIFIED;
+            this.byteLength = AudioSystem.NOT_SPECIFIED;
+            this.properties = Collections.emptyMap();
+            this.exception = exception;
+        }
+
+        static Entry probe(Path path, long size, long lastModified) {
+            AudioFileFormat format;
+            try {
+                format = AudioSystem.getAudioFileFormat(path.toFile());
+            } catch (UnsupportedAudioFileException | RuntimeException ex) {
+                // some readers fail with unchecked exceptions on files
+                // they do not recognize, such as very short ones
+                return new Entry(path, size, lastModified, null, null, AudioSystem.NOT_SPECIFIED,
+                        AudioSystem.NOT_SPECIFIED, AudioSystem.NOT_SPECIFIED, AudioSystem.NOT_SPECIFIED,
+                        Collections.emptyMap());
+            } catch (IOException ex) {
+                return new Entry(path, ex);
+            }
+            AudioFormat audioFormat = format.getFormat();
+            // the format properties first, the file properties win
+            Map<String, Object> properties = new LinkedHashMap<>();
+            copy(audioFormat.properties(), properties);
+            copy(format.properties(), properties);
+            return new Entry(path, size, lastModified, format.getType().toString(),
+                    audioFormat.getEncoding().toString(), audioFormat.getSampleRate(), audioFormat.getChannels(),
+                    format.getFrameLength(), format.getByteLength(), properties);
+        }
+
+        private static void copy(Map<String, Object> from, Map<String, Object> to) {
+            for (Map.Entry<String, Object> e : from.entrySet()) {
+                if (LibraryCache.isCacheable(e.getValue()))
+                    to.put(e.getKey(), e.getValue());
+            }
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * @return the size of the file in bytes when it was probed.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return the last modification time of the file when it was
+         * probed, in milliseconds since the epoch.
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return whether an installed reader recognized the file.
+         */
+        public boolean isAudio() {
+            return type != null;
+        }
+
+        /**
+         * @return the name of the file type, for example "MP3", or
+         * <code>null</code> if the file is not audio.
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * @return the name of the encoding, for example "MPEG1L3", or
+         * <code>null</code> if the file is not audio.
+         */
+        public String getEncoding() {
+            return encoding;
+        }
+
+        public float getSampleRate() {
+            return sampleRate;
+        }
+
+        public int getChannels() {
+            return channels;
+        }
+
+        public long getFrameLength() {
+            return frameLength;
+        }
+
+        public int getByteLength() {
+            return byteLength;
+        }
+
+        /**
+         * @return the properties of the audio file format and of its
+         * audio format.
+         */
+        public Map<String, Object> getProperties() {
+            return properties;
+        }
+
+        /**
+         * @return the exception that stopped the file from being read, or
+         * <code>null</code>. Entries with an exception are not cached.
+         */
+        public IOException getException() {
+            return exception;
+        }
+
+        public String toString() {
+            if (exception != null)
+                return path + ": " + exception;
+            if (type == null)
+                return path + ": not audio";
+            return path + ": " + type + ", " + encoding + ", " + sampleRate + " Hz, " + channels + " channels";
+        }
+    }
+
+    /**
+     * Counts of a completed scan.
+     */
+    public static class Summary {
+
+        private final int files;
+
+        private final int cached;
+
+        private final int audio;
+
+        private final int failed;
+
+        private final long elapsedMillis;
+
+        Summary(int files, int cached, int audio, int failed, long elapsedMillis) {
+            this.files = files;
+            this.cached = cached;
+            this.audio = audio;
+            this.failed = failed;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public int getFiles() {
+            return files;
+        }
+
+        /**
+         * @return the number of files reported from the cache.
+         */
+        public int getCached() {
+            return cached;
+        }
+
+        /**
+         * @return the number of files an installed reader recognized.
+         */
+        public int getAudio() {
+            return audio;
+        }
+
+        /**
+         * @return the number of files that could not be read.
+         */
+        public int getFailed() {
+            return failed;
+        }
+
+        /**
+         * @return the wall clock time of the scan in milliseconds.
+         */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public double getFilesPerSecond() {
+            return files * 1000.0 / Math.max(elapsedMillis, 1);
+        }
+
+        public String toString() {
+            return String.format("Scanned %d files (%d cached, %d audio, %d failed) in %d ms: %.1f files/s",
+                    files, cached, audio, failed, elapsedMillis, getFilesPerSecond());
+        }
+    }
+
+    private static class WorkerFactory implements ThreadFactory {
+
+        private static final AtomicInteger scan = new AtomicInteger();
+
+        private final int id = scan.incrementAndGet();
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "LibraryScanner-" + id + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
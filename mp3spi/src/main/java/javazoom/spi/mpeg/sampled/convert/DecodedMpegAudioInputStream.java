@@ -35,8 +35,12 @@ import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.AbstractMap;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
 
 
 /**
@@ -57,22 +61,36 @@ public class DecodedMpegAudioInputStream extends TAsynchronousFilteredAudioInput
 
     private DMAISObuffer m_oBuffer;
 
+    private MpegFrameIndex m_frameIndex;
+
+    /**
+     * The profile of the decoder, kept when it is released on close().
+     */
+    private DecodeProfile m_profile;
+
     // Bytes info.
     private long byteslength = -1;
 
-    private long currentByte = 0;
-
     // Frame info.
     private int frameslength = -1;
 
-    private long currentFrame = 0;
+    /*
+     * The position is written by the decoding thread and read by any
+     * other; the fields are volatile so that none of them tears, and
+     * getStats() validates a snapshot of all of them with the lock.
+     */
+    private final StampedLock positionLock = new StampedLock();
+
+    private volatile long currentByte = 0;
 
-    private int currentFramesize = 0;
+    private volatile long currentFrame = 0;
 
-    private int currentBitrate = -1;
+    private volatile int currentFramesize = 0;
+
+    private volatile int currentBitrate = -1;
 
     // Time info.
-    private long currentMicrosecond = 0;
+    private volatile long currentMicrosecond = 0;
 
     // Shoutcast stream info
     private IcyListener shoutlst = null;
@@ -95,28 +113,42 @@ public class DecodedMpegAudioInputStream extends TAsynchronousFilteredAudioInput
         shoutlst = IcyListener.getInstance();
         shoutlst.reset();
         m_bitstream = new Bitstream(inputStream);
-        m_decoder = new Decoder(null);
-        m_equalizer = new Equalizer();
-        m_equalizer_values = new float[32];
-        for (int b = 0; b < m_equalizer.getBandCount(); b++) {
-            m_equalizer_values[b] = m_equalizer.getBand(b);
-        }
-        m_decoder.setEqualizer(m_equalizer);
-        m_oBuffer = new DMAISObuffer(outputFormat.getChannels());
-        m_decoder.setOutputBuffer(m_oBuffer);
+        // the tag is not asked for, its pictures need not be copied
+        m_bitstream.setKeepRawID3v2(false);
         try {
             m_header = m_bitstream.readFrame();
             if ((m_header != null) && (frameslength == -1) && (byteslength > 0))
                 frameslength = m_header.max_number_of_frames((int) byteslength);
+            if (m_header != null)
+                m_frameIndex = MpegFrameIndex.fromHeader(m_header,
+                        byteslength > 0 ? byteslength - m_bitstream.header_pos() : -1);
         } catch (BitstreamException e) {
             TDebug.out("DecodedMpegAudioInputStream : Cannot read first frame : " + e.getMessage());
             byteslength = -1;
         }
-        properties = new HashMap<>();
+        Decoder.Params params = Decoder.getDefaultParams();
+        params.setDownsamplingFactor(
+                MpegFormatConversionProvider.getDownsamplingFactor(outputFormat, inputStream.getFormat()));
+        // decoders are returned to the pool on close()
+        if (m_header != null)
+            m_decoder = DecoderPool.getDefault().borrow(m_header, params);
+        else
+            m_decoder = new Decoder(params);
+        m_equalizer = new Equalizer();
+        m_equalizer_values = new float[32];
+        for (int b = 0; b < m_equalizer.getBandCount(); b++) {
+            m_equalizer_values[b] = m_equalizer.getBand(b);
+        }
+        m_decoder.setEqualizer(m_equalizer);
+        m_oBuffer = new DMAISObuffer(outputFormat.getChannels());
+        m_decoder.setOutputBuffer(m_oBuffer);
     }
 
     /**
-     * Return dynamic properties.
+     * Return dynamic properties. The map is a view: values are read from
+     * the stream, and boxed, when they are looked up. Use
+     * {@link #getStats(MpegStreamStats)} or the primitive getters to poll
+     * the position without allocation.
      *
      * <ul>
      * <li><b>mp3.frame</b> [Long], current frame position.
@@ -135,28 +167,85 @@ public class DecodedMpegAudioInputStream extends TAsynchronousFilteredAudioInput
      * mp3.shoutcast.metadata.StreamUrl=Url info.
      * </ul>
      */
-    public Map<String, Object> properties() {
-        properties.put("mp3.frame", new Long(currentFrame));
-        properties.put("mp3.frame.bitrate", new Integer(currentBitrate));
-        properties.put("mp3.frame.size.bytes", new Integer(currentFramesize));
-        properties.put("mp3.position.byte", new Long(currentByte));
-        properties.put("mp3.position.microseconds", new Long(currentMicrosecond));
-        properties.put("mp3.equalizer", m_equalizer_values);
-        // Optionnal shoutcast stream meta-data.
-        if (shoutlst != null) {
-            String surl = shoutlst.getStreamUrl();
-            String stitle = shoutlst.getStreamTitle();
-            if ((stitle != null) && (stitle.trim().length() > 0))
-                properties.put("mp3.shoutcast.metadata.StreamTitle", stitle);
-            if ((surl != null) && (surl.trim().length() > 0))
-                properties.put("mp3.shoutcast.metadata.StreamUrl", surl);
-        }
+    public synchronized Map<String, Object> properties() {
+        if (properties == null)
+            properties = new PropertiesView();
         return properties;
     }
 
-    public void execute() {
+    /**
+     * Copies the position into <code>stats</code>. All values are of the
+     * same frame, even while another thread is decoding.
+     *
+     * @return <code>stats</code>
+     */
+    public MpegStreamStats getStats(MpegStreamStats stats) {
+        long stamp = positionLock.tryOptimisticRead();
+        stats.set(currentFrame, currentBitrate, currentFramesize, currentByte, currentMicrosecond);
+        if (!positionLock.validate(stamp)) {
+            stamp = positionLock.readLock();
+            try {
+                stats.set(currentFrame, currentBitrate, currentFramesize, currentByte, currentMicrosecond);
+            } finally {
+                positionLock.unlockRead(stamp);
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Returns the number of frames decoded or skipped, <b>mp3.frame</b>.
+     */
+    public long getFrame() {
+        return currentFrame;
+    }
+
+    /**
+     * Returns the bitrate of the current frame, <b>mp3.frame.bitrate</b>.
+     */
+    public int getBitrate() {
+        return currentBitrate;
+    }
+
+    /**
+     * Returns the size in bytes of the current frame, <b>mp3.frame.size.bytes</b>.
+     */
+    public int getFrameSize() {
+        return currentFramesize;
+    }
+
+    /**
+     * Returns the position in bytes in the stream, <b>mp3.position.byte</b>.
+     */
+    public long getBytePosition() {
+        return currentByte;
+    }
+
+    /**
+     * Returns the elapsed microseconds, <b>mp3.position.microseconds</b>.
+     */
+    public long getMicrosecondPosition() {
+        return currentMicrosecond;
+    }
+
+    private void setPosition(long frame, int bitrate, int framesize, long bytes, long microseconds) {
+        long stamp = positionLock.writeLock();
+        currentFrame = frame;
+        currentBitrate = bitrate;
+        currentFramesize = framesize;
+        currentByte = bytes;
+        currentMicrosecond = microseconds;
+        positionLock.unlockWrite(stamp);
+    }
+
+    public synchronized void execute() {
         if (TDebug.TraceAudioConverter)
             TDebug.out("execute() : begin");
+        if (m_decoder == null) {
+            // closed
+            getCircularBuffer().close();
+            return;
+        }
         try {
             // Following line hangs when FrameSize is available in AudioFormat.
             Header header = null;
@@ -173,11 +262,10 @@ public class DecodedMpegAudioInputStream extends TAsynchronousFilteredAudioInput
                 getCircularBuffer().close();
                 return;
             }
-            currentFrame++;
-            currentBitrate = header.bitrate_instant();
-            currentFramesize = header.calculate_framesize();
-            currentByte = currentByte + currentFramesize;
-            currentMicrosecond = (long) (currentFrame * header.ms_per_frame() * 1000.0f);
+            long frame = currentFrame + 1;
+            int framesize = header.calculate_framesize();
+            setPosition(frame, header.bitrate_instant(), framesize, currentByte + framesize,
+                    (long) (frame * header.ms_per_frame() * 1000.0f));
             for (int b = 0; b < m_equalizer_values.length; b++) {
                 m_equalizer.setBand(b, m_equalizer_values[b]);
             }
@@ -201,11 +289,43 @@ public class DecodedMpegAudioInputStream extends TAsynchronousFilteredAudioInput
             TDebug.out("execute() : end");
     }
 
-    public long skip(long bytes) {
+    /**
+     * Returns the frame index used for seeking, or null if none is available.
+     */
+    public MpegFrameIndex getFrameIndex() {
+        return m_frameIndex;
+    }
+
+    /**
+     * Sets the frame index used for seeking, e.g. an exact one built with
+     * {@link MpegFrameIndex#scan(InputStream)}.
+     */
+    public void setFrameIndex(MpegFrameIndex frameIndex) {
+        m_frameIndex = frameIndex;
+    }
+
+    /**
+     * Returns a copy of the decode profile of this stream, or null if no
+     * frame was decoded while profiling was enabled.
+     *
+     * @see DecodeProfile#setEnabled(boolean)
+     */
+    public synchronized DecodeProfile getDecodeProfile() {
+        if (m_decoder == null)
+            return m_profile;
+        DecodeProfile profile = m_decoder.getProfile();
+        return profile != null ? profile.copy() : null;
+    }
+
+    public synchronized long skip(long bytes) {
+        if (m_frameIndex != null) {
+            long offset = m_frameIndex.offsetForFrame((int) currentFrame) + bytes;
+            return seekFrame(m_frameIndex.frameForOffset(offset), true);
+        }
         if ((byteslength > 0) && (frameslength > 0)) {
             float ratio = bytes * 1.0f / byteslength * 1.0f;
             long bytesread = skipFrames((long) (ratio * frameslength));
-            currentByte = currentByte + bytesread;
+            setPosition(currentFrame, currentBitrate, currentFramesize, currentByte + bytesread, currentMicrosecond);
             m_header = null;
             return bytesread;
         } else
@@ -219,7 +339,12 @@ public class DecodedMpegAudioInputStream extends TAsynchronousFilteredAudioInput
      * @param frames
      * @return bytes length skipped matching to frames skipped.
      */
-    public long skipFrames(long frames) {
+    public synchronized long skipFrames(long frames) {
+        if (m_frameIndex != null) {
+            if (m_frameIndex.isExact())
+                return seekFrame((int) Math.min(currentFrame + frames, m_frameIndex.frameCount()), true);
+            return seekFrame((int) Math.min(currentFrame + frames, Integer.MAX_VALUE), false);
+        }
         if (TDebug.TraceAudioConverter)
             TDebug.out("skip(long frames) : begin");
         int framesRead = 0;
@@ -240,17 +365,89 @@ public class DecodedMpegAudioInputStream extends TAsynchronousFilteredAudioInput
         }
         if (TDebug.TraceAudioConverter)
             TDebug.out("skip(long frames) : end");
-        currentFrame = currentFrame + framesRead;
+        setPosition(currentFrame + framesRead, currentBitrate, currentFramesize, currentByte, currentMicrosecond);
         return bytesReads;
     }
 
+    /**
+     * Moves to a frame using the frame index. The few frames in front of the
+     * target are decoded, and their output discarded, to prime the decoder.
+     * The frames before those are either jumped over using the index
+     * offsets, or read header by header when the index is only an estimate
+     * and the exact frame matters.
+     *
+     * @param frame target frame.
+     * @param jump  true to jump over the frames, false to read them.
+     * @return bytes length skipped.
+     */
+    private long seekFrame(int frame, boolean jump) {
+        if (TDebug.TraceAudioConverter)
+            TDebug.out("seekFrame(int frame) : begin");
+        int from = (int) currentFrame;
+        if ((frame <= from) || (m_decoder == null))
+            return 0;
+        int start = Math.max(from, frame - m_frameIndex.primingFrames(frame));
+        // next frame to be read from the bitstream
+        int position = from;
+        try {
+            if (m_header != null) {
+                if (start == from)
+                    m_decoder.decodeFrame(m_header, m_bitstream);
+                m_bitstream.closeFrame();
+                m_oBuffer.reset();
+                m_header = null;
+                position++;
+            }
+            if (start > position && jump) {
+                long offset = m_frameIndex.offsetForFrame(position);
+                long count = m_frameIndex.seekOffset(start) - offset;
+                // the frames not jumped over are read below
+                if (count > 0) {
+                    long skipped = m_bitstream.skipBytes(count);
+                    position = (skipped < count) ? m_frameIndex.frameForOffset(offset + skipped) : start;
+                }
+            }
+            for (; position < start; position++) {
+                if (m_bitstream.readFrame() == null)
+                    break;
+                m_bitstream.closeFrame();
+            }
+            for (; position < frame; position++) {
+                Header header = m_bitstream.readFrame();
+                if (header == null)
+                    break;
+                m_decoder.decodeFrame(header, m_bitstream);
+                m_bitstream.closeFrame();
+                m_oBuffer.reset();
+            }
+        } catch (JavaLayerException e) {
+            if (TDebug.TraceAudioConverter)
+                TDebug.out(e);
+        }
+        long bytesread = m_frameIndex.offsetForFrame(position) - m_frameIndex.offsetForFrame(from);
+        setPosition(position, currentBitrate, currentFramesize, currentByte + bytesread,
+                m_frameIndex.timeForFrame(position) * 1000L);
+        if (TDebug.TraceAudioConverter)
+            TDebug.out("seekFrame(int frame) : end");
+        return bytesread;
+    }
+
     private boolean isBigEndian() {
         return getFormat().isBigEndian();
     }
 
-    public void close() throws IOException {
+    public synchronized void close() throws IOException {
         super.close();
         m_encodedStream.close();
+        if (m_decoder != null) {
+            DecodeProfile profile = m_decoder.getProfile();
+            if (profile != null) {
+                m_profile = profile.copy();
+                m_profile.commitSummary();
+            }
+            DecoderPool.getDefault().release(m_decoder);
+            m_decoder = null;
+        }
     }
 
     private class DMAISObuffer extends Obuffer {
@@ -316,6 +513,69 @@ public class DecodedMpegAudioInputStream extends TAsynchronousFilteredAudioInput
         }
     }
 
+    /**
+     * The properties() map. The position, the equalizer and the Shoutcast
+     * meta data are looked up on every get; other keys are kept as put.
+     */
+    private class PropertiesView extends AbstractMap<String, Object> {
+        private final String[] keys = {"mp3.frame", "mp3.frame.bitrate", "mp3.frame.size.bytes",
+                "mp3.position.byte", "mp3.position.microseconds", "mp3.equalizer",
+                "mp3.shoutcast.metadata.StreamTitle", "mp3.shoutcast.metadata.StreamUrl"};
+
+        private final Map<String, Object> others = new HashMap<>();
+
+        public Object get(Object key) {
+            if (!(key instanceof String))
+                return null;
+            switch ((String) key) {
+                case "mp3.frame":
+                    return currentFrame;
+                case "mp3.frame.bitrate":
+                    return currentBitrate;
+                case "mp3.frame.size.bytes":
+                    return currentFramesize;
+                case "mp3.position.byte":
+                    return currentByte;
+                case "mp3.position.microseconds":
+                    return currentMicrosecond;
+                case "mp3.equalizer":
+                    return m_equalizer_values;
+                // Optionnal shoutcast stream meta-data.
+                case "mp3.shoutcast.metadata.StreamTitle":
+                    return shoutlst != null ? nonBlank(shoutlst.getStreamTitle()) : null;
+                case "mp3.shoutcast.metadata.StreamUrl":
+                    return shoutlst != null ? nonBlank(shoutlst.getStreamUrl()) : null;
+                default:
+                    return others.get(key);
+            }
+        }
+
+        public boolean containsKey(Object key) {
+            return get(key) != null || others.containsKey(key);
+        }
+
+        public Object put(String key, Object value) {
+            return others.put(key, value);
+        }
+
+        /**
+         * Returns the entries of a copy of the map.
+         */
+        public Set<Entry<String, Object>> entrySet() {
+            Map<String, Object> copy = new HashMap<>(others);
+            for (String key : keys) {
+                Object value = get(key);
+                if (value != null)
+                    copy.put(key, value);
+            }
+            return Collections.unmodifiableMap(copy).entrySet();
+        }
+
+        private String nonBlank(String value) {
+            return (value != null) && (value.trim().length() > 0) ? value : null;
+        }
+    }
+
     public void tagParsed(TagParseEvent tpe) {
         System.out.println("TAG:" + tpe.getTag());
     }
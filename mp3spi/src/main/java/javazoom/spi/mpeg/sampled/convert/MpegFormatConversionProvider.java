@@ -31,7 +31,9 @@ import org.tritonus.share.sampled.convert.TEncodingFormatConversionProvider;
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import static javax.sound.sampled.AudioSystem.NOT_SPECIFIED;
 
@@ -77,6 +79,72 @@ public class MpegFormatConversionProvider extends TEncodingFormatConversionProvi
         }
     }
 
+    /**
+     * Returns the PCM formats of the source's channels, also for the
+     * MpegEncoding formats of the file reader, and adds those at 1/2 and
+     * 1/4 of the sample rate of the source, for the reduced rate decoding
+     * of DecodedMpegAudioInputStream.
+     */
+    public AudioFormat[] getTargetFormats(AudioFormat.Encoding targetEncoding, AudioFormat sourceFormat)
+    {
+        AudioFormat[] formats = super.getTargetFormats(targetEncoding, sourceFormat);
+        float sampleRate = sourceFormat.getSampleRate();
+        if (formats.length == 0 && sourceFormat.getEncoding() instanceof MpegEncoding && PCM_SIGNED.equals(targetEncoding))
+        {
+            List<AudioFormat> pcm = new ArrayList<>();
+            for (AudioFormat format : OUTPUT_FORMATS)
+            {
+                if (format.getChannels() == sourceFormat.getChannels())
+                {
+                    pcm.add(new AudioFormat(format.getEncoding(), sampleRate, format.getSampleSizeInBits(),
+                            format.getChannels(), format.getFrameSize(), sampleRate, format.isBigEndian()));
+                }
+            }
+            formats = pcm.toArray(new AudioFormat[0]);
+        }
+        if (formats.length == 0 || sampleRate == NOT_SPECIFIED)
+        {
+            return formats;
+        }
+        List<AudioFormat> result = new ArrayList<>(Arrays.asList(formats));
+        for (AudioFormat format : formats)
+        {
+            if (format.getSampleRate() != sampleRate)
+            {
+                continue;
+            }
+            for (int factor = 2; factor <= 4; factor *= 2)
+            {
+                result.add(new AudioFormat(format.getEncoding(), sampleRate / factor, format.getSampleSizeInBits(),
+                        format.getChannels(), format.getFrameSize(), sampleRate / factor, format.isBigEndian()));
+            }
+        }
+        return result.toArray(new AudioFormat[0]);
+    }
+
+    /**
+     * Returns the factor the sample rate of sourceFormat is divided by
+     * to get the one of targetFormat: 1, or 2 or 4 for the reduced rate
+     * decoding.
+     */
+    static int getDownsamplingFactor(AudioFormat targetFormat, AudioFormat sourceFormat)
+    {
+        float sourceRate = sourceFormat.getSampleRate();
+        float targetRate = targetFormat.getSampleRate();
+        if (sourceRate != NOT_SPECIFIED && targetRate != NOT_SPECIFIED)
+        {
+            if (sourceRate == targetRate * 2)
+            {
+                return 2;
+            }
+            if (sourceRate == targetRate * 4)
+            {
+                return 4;
+            }
+        }
+        return 1;
+    }
+
     public AudioInputStream getAudioInputStream(AudioFormat targetFormat, AudioInputStream audioInputStream)
     {
         if (TDebug.TraceAudioConverter)
@@ -102,6 +170,15 @@ public class MpegFormatConversionProvider extends TEncodingFormatConversionProvi
                     TDebug.out("to: " + targetFormat);
         }
 
+        int factor = getDownsamplingFactor(targetFormat, sourceFormat);
+        if (factor != 1)
+        {
+            // compare as if decoded at the full rate
+            targetFormat = new AudioFormat(targetFormat.getEncoding(), sourceFormat.getSampleRate(),
+                    targetFormat.getSampleSizeInBits(), targetFormat.getChannels(), targetFormat.getFrameSize(),
+                    targetFormat.getFrameRate() == NOT_SPECIFIED ? NOT_SPECIFIED : sourceFormat.getSampleRate(),
+                    targetFormat.isBigEndian());
+        }
         boolean conversion = super.isConversionSupported(targetFormat, sourceFormat);
         if (conversion == false)
         {
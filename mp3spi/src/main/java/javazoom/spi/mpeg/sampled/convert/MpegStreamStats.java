@@ -0,0 +1,95 @@
+/*
+ *   MpegStreamStats.
+ *
+ *   JavaZOOM : mp3spi@javazoom.net
+ *                 http://www.javazoom.net
+ *
+ *-----------------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *------------------------------------------------------------------------
+ */
+
+package javazoom.spi.mpeg.sampled.convert;
+
+
+/**
+ * Position of a {@link DecodedMpegAudioInputStream}, as the primitive
+ * values of its <b>mp3.frame</b>, <b>mp3.frame.bitrate</b>,
+ * <b>mp3.frame.size.bytes</b>, <b>mp3.position.byte</b> and
+ * <b>mp3.position.microseconds</b> properties.
+ * <p>
+ * An instance is filled by
+ * {@link DecodedMpegAudioInputStream#getStats(MpegStreamStats)} with values
+ * of the same frame, and can be reused for every poll.
+ */
+public final class MpegStreamStats {
+    private long frame;
+
+    private int bitrate = -1;
+
+    private int frameSize;
+
+    private long bytePosition;
+
+    private long microsecondPosition;
+
+    void set(long frame, int bitrate, int frameSize, long bytePosition, long microsecondPosition) {
+        this.frame = frame;
+        this.bitrate = bitrate;
+        this.frameSize = frameSize;
+        this.bytePosition = bytePosition;
+        this.microsecondPosition = microsecondPosition;
+    }
+
+    /**
+     * Returns the number of frames decoded or skipped.
+     */
+    public long getFrame() {
+        return frame;
+    }
+
+    /**
+     * Returns the bitrate of the current frame, or -1 before the first one.
+     */
+    public int getBitrate() {
+        return bitrate;
+    }
+
+    /**
+     * Returns the size in bytes of the current frame.
+     */
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    /**
+     * Returns the position in bytes in the stream.
+     */
+    public long getBytePosition() {
+        return bytePosition;
+    }
+
+    /**
+     * Returns the elapsed microseconds.
+     */
+    public long getMicrosecondPosition() {
+        return microsecondPosition;
+    }
+
+    public String toString() {
+        return "frame=" + frame + " bitrate=" + bitrate + " size=" + frameSize
+                + " byte=" + bytePosition + " us=" + microsecondPosition;
+    }
+}
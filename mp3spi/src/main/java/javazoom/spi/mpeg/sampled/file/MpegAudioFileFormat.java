@@ -89,6 +89,7 @@ public class MpegAudioFileFormat extends TAudioFileFormat
      * <li><b>mp3.id3tag.length</b> [String], ID3 tag v2 file length in seconds.
      * <li><b>mp3.id3tag.v2</b> [InputStream], ID3v2 frames.
      * <li><b>mp3.id3tag.v2.version</b> [String], ID3v2 major version (2=v2.2.0, 3=v2.3.0, 4=v2.4.0).
+     * <li><b>mp3.id3tag.v2.attachments</b> [List], ID3v2 pictures and objects, as ID3v2Attachment.
      * <li><b>mp3.shoutcast.metadata.key</b> [String], Shoutcast meta key with matching value.
      * <br>For instance :
      * <br>mp3.shoutcast.metadata.icy-irc=#shoutcast
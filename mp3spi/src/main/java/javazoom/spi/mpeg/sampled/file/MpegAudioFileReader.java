@@ -44,6 +44,8 @@ package javazoom.spi.mpeg.sampled.file;
 
 import javazoom.jl.decoder.Bitstream;
 import javazoom.jl.decoder.Header;
+import javazoom.spi.mpeg.sampled.file.tag.ID3v2Attachment;
+import javazoom.spi.mpeg.sampled.file.tag.ID3v2Parser;
 import javazoom.spi.mpeg.sampled.file.tag.IcyInputStream;
 import javazoom.spi.mpeg.sampled.file.tag.MP3Tag;
 import org.tritonus.share.TDebug;
@@ -53,8 +55,13 @@ import javax.sound.sampled.*;
 import java.io.*;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.AccessControlException;
 import java.util.*;
 
@@ -65,12 +72,29 @@ public class MpegAudioFileReader extends TAudioFileReader {
     public static final String VERSION = "MP3SPI 1.9.12";
     //  private final int SYNC = 0xFFE00000;
     private String weak = null;
+    private String skipRawID3v2 = null;
     private final AudioFormat.Encoding[][] sm_aEncodings = {
             {MpegEncoding.MPEG2L1, MpegEncoding.MPEG2L2, MpegEncoding.MPEG2L3},
             {MpegEncoding.MPEG1L1, MpegEncoding.MPEG1L2, MpegEncoding.MPEG1L3},
             {MpegEncoding.MPEG2DOT5L1, MpegEncoding.MPEG2DOT5L2, MpegEncoding.MPEG2DOT5L3},};
-    public static final int INITAL_READ_LENGTH = 1024 * 1024 * 20; // TODO limitation
-    private static final int MARK_LIMIT = INITAL_READ_LENGTH + 1;
+    /**
+     * @deprecated streams are no longer marked for this length, see {@link #PROBE_LENGTH}.
+     */
+    @Deprecated
+    public static final int INITAL_READ_LENGTH = 1024 * 1024 * 20;
+    /**
+     * Bytes read after the ID3v2 tag, if any, to find the first frame of a
+     * stream. Streams are marked for the tag and these bytes only, or for
+     * these bytes only by getAudioInputStream(), which skips the tag.
+     */
+    public static final int PROBE_LENGTH = 64 * 1024;
+
+    /**
+     * Formats probed by getAudioFileFormat(InputStream), reused by a
+     * following getAudioInputStream() of the same stream if the stream
+     * was not read in between.
+     */
+    private static final Map<InputStream, Probed> probed = Collections.synchronizedMap(new WeakHashMap<>());
 
     private static final String[] id3v1genres;
 
@@ -85,10 +109,11 @@ public class MpegAudioFileReader extends TAudioFileReader {
     }
 
     public MpegAudioFileReader() {
-        super(MARK_LIMIT, true);
+        super(PROBE_LENGTH, true);
         if (TDebug.TraceAudioFileReader) TDebug.out(VERSION);
         try {
             weak = System.getProperty("mp3spi.weak");
+            skipRawID3v2 = System.getProperty("mp3spi.skipRawID3v2");
         } catch (AccessControlException ignored) {
         }
     }
@@ -97,7 +122,54 @@ public class MpegAudioFileReader extends TAudioFileReader {
      * Returns AudioFileFormat from File.
      */
     public AudioFileFormat getAudioFileFormat(File file) throws UnsupportedAudioFileException, IOException {
-        return super.getAudioFileFormat(file);
+        return getAudioFileFormat(file.toPath());
+    }
+
+    /**
+     * Returns AudioFileFormat from a file. The frames of the ID3v2 tag are
+     * parsed from the file, skipping the data of pictures and other
+     * attachments, then the first {@link #PROBE_LENGTH} bytes after the
+     * tag and the ID3v1 tag are read with positional reads; the rest of
+     * the file is not read. The "mp3.id3tag.v2" property is a stream that
+     * reads the tag from the file as it is read, and holds no file open.
+     */
+    public AudioFileFormat getAudioFileFormat(Path path) throws UnsupportedAudioFileException, IOException {
+        if (TDebug.TraceAudioFileReader) TDebug.out("MpegAudioFileReader.getAudioFileFormat(Path): " + path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int id3v2Length = (int) Math.min(size, ID3v2Parser.tagLength(read(channel, 0, (int) Math.min(size, 10))));
+            Map<String, Object> id3v2 = null;
+            if (id3v2Length > 0) {
+                id3v2 = new HashMap<>();
+                id3v2.put("mp3.id3tag.v2", new TagInputStream(path, id3v2Length));
+                // not closed, that would close the channel; not marked, that would buffer the whole tag
+                InputStream frames = new BufferedInputStream(Channels.newInputStream(channel.position(0))) {
+                    @Override
+                    public boolean markSupported() {
+                        return false;
+                    }
+                };
+                parseID3v2Frames(frames, id3v2);
+            }
+            byte[] head = read(channel, id3v2Length, (int) Math.min(size - id3v2Length, PROBE_LENGTH));
+            byte[] id3v1 = null;
+            // may be read in head already, for short files
+            if (size - id3v2Length >= 128)
+                id3v1 = read(channel, size - 128, 128);
+            return getAudioFileFormat(new ByteArrayInputStream(head), size, id3v2Length, id3v2, id3v1);
+        }
+    }
+
+    /**
+     * Reads bytes of a file from a position.
+     */
+    private static byte[] read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException();
+        }
+        return buffer.array();
     }
 
     /**
@@ -125,9 +197,40 @@ public class MpegAudioFileReader extends TAudioFileReader {
     }
 
     /**
-     * Returns AudioFileFormat from inputstream and medialength.
+     * Returns AudioFileFormat from an inputstream, which is reset to where
+     * it was. The format is kept for a following getAudioInputStream() of
+     * the same stream, which uses it if the stream is still there.
+     */
+    public AudioFileFormat getAudioFileFormat(InputStream inputStream) throws UnsupportedAudioFileException, IOException {
+        if (!inputStream.markSupported())
+            return probe(new BufferedInputStream(inputStream));
+        int available = inputStream.available();
+        byte[] head = peek(inputStream, 10);
+        AudioFileFormat audioFileFormat = probe(inputStream);
+        probed.put(inputStream, new Probed(audioFileFormat, head, available));
+        return audioFileFormat;
+    }
+
+    /**
+     * Returns AudioFileFormat from inputstream and medialength. An ID3v2
+     * tag is copied for the "mp3.id3tag.v2" property. If the
+     * mp3spi.skipRawID3v2 system property is set, there is no such
+     * property for streams, and the frames of the tag are parsed as they
+     * are read instead, skipping the data of pictures and other
+     * attachments. The ID3v1 tag is read only if medialength is the
+     * number of bytes available, by skipping to the end of the stream.
      */
     public AudioFileFormat getAudioFileFormat(InputStream inputStream, long mediaLength) throws UnsupportedAudioFileException, IOException {
+        return getAudioFileFormat(inputStream, mediaLength, 0, null, null);
+    }
+
+    /**
+     * Returns AudioFileFormat from inputstream and medialength, with the
+     * last 128 bytes of the media if they were read already. If the ID3v2
+     * tag was parsed already, the stream starts after it and its
+     * properties are given.
+     */
+    private AudioFileFormat getAudioFileFormat(InputStream inputStream, long mediaLength, int id3v2Length, Map<String, Object> id3v2, byte[] id3v1) throws UnsupportedAudioFileException, IOException {
         if (TDebug.TraceAudioFileReader)
             TDebug.out(">MpegAudioFileReader.getAudioFileFormat(InputStream inputStream, long mediaLength): begin");
         Map<String, Object> aff_properties = new HashMap<>();
@@ -161,8 +264,8 @@ public class MpegAudioFileReader extends TAudioFileReader {
                 return super.read(b, off, len);
             }
         };
-        PushbackInputStream pis = new PushbackInputStream(inputStream, MARK_LIMIT);
         byte[] head = new byte[22];
+        PushbackInputStream pis = new PushbackInputStream(inputStream, head.length);
         int r = pis.read(head);
         assert r == head.length : "read header bytes";
         if (TDebug.TraceAudioFileReader) {
@@ -224,8 +327,24 @@ public class MpegAudioFileReader extends TAudioFileReader {
         boolean nVBR;
         AudioFormat.Encoding encoding;
         try {
+            if ((id3v2 == null) && (head[0] == 'I') && (head[1] == 'D') && (head[2] == '3')) {
+                id3v2Length = ID3v2Parser.tagLength(head);
+                id3v2 = new HashMap<>();
+                ProbeInputStream tag = new ProbeInputStream(pis, id3v2Length);
+                if (skipRawID3v2 == null) {
+                    byte[] raw = tag.readNBytes(id3v2Length);
+                    id3v2.put("mp3.id3tag.v2", new ByteArrayInputStream(raw));
+                    parseID3v2(new ByteArrayInputStream(raw), id3v2);
+                } else {
+                    // parsed as it is read, the data of pictures is skipped, not kept
+                    parseID3v2(tag, id3v2);
+                    while (tag.remaining > 0) {
+                        if ((tag.skip(tag.remaining) <= 0) && (tag.read() < 0)) break;
+                    }
+                }
+            }
             Bitstream m_bitstream = new Bitstream(pis);
-            aff_properties.put("mp3.header.pos", m_bitstream.header_pos());
+            aff_properties.put("mp3.header.pos", id3v2Length + m_bitstream.header_pos());
             Header m_header = m_bitstream.readFrame();
             // nVersion = 0 => MPEG2-LSF (Including MPEG2.5), nVersion = 1 => MPEG1
             nVersion = m_header.version();
@@ -262,7 +381,14 @@ public class MpegAudioFileReader extends TAudioFileReader {
             nHeader = m_header.getSyncHeader();
             encoding = sm_aEncodings[nVersion][nLayer - 1];
             aff_properties.put("mp3.version.encoding", encoding.toString());
-            if (mLength != AudioSystem.NOT_SPECIFIED) {
+            if (m_header.info_frames() > 0) {
+                // exact, from the number of frames in the Xing/Info/VBRI header
+                int samplesPerFrame = (nLayer == 1) ? 384 : ((nLayer == 3) && (nVersion != Header.MPEG1)) ? 576 : 1152;
+                long samples = (long) m_header.info_frames() * samplesPerFrame;
+                if ((m_header.encoder_delay() >= 0) && (m_header.encoder_padding() >= 0))
+                    samples = Math.max(0, samples - m_header.encoder_delay() - m_header.encoder_padding());
+                aff_properties.put("duration", samples * 1000000L / nFrequency);
+            } else if (mLength != AudioSystem.NOT_SPECIFIED) {
                 nTotalMS = Math.round(m_header.total_ms(mLength));
                 aff_properties.put("duration", nTotalMS * 1000L);
             }
@@ -270,12 +396,8 @@ public class MpegAudioFileReader extends TAudioFileReader {
             aff_properties.put("mp3.original", m_header.original());
             aff_properties.put("mp3.crc", m_header.checksums());
             aff_properties.put("mp3.padding", m_header.padding());
-            InputStream id3v2 = m_bitstream.getRawID3v2();
-//TDebug.out("id3v2: " + id3v2);
-            if (id3v2 != null) {
-                aff_properties.put("mp3.id3tag.v2", id3v2);
-                parseID3v2Frames(id3v2, aff_properties);
-            }
+            if (id3v2 != null)
+                aff_properties.putAll(id3v2);
             if (TDebug.TraceAudioFileReader) TDebug.out(m_header.toString());
         } catch (Exception e) {
             if (TDebug.TraceAudioFileReader) e.printStackTrace();
@@ -294,33 +416,19 @@ public class MpegAudioFileReader extends TAudioFileReader {
             throw new UnsupportedAudioFileException("not a MPEG stream: wrong sampling rate");
         }
         // Look up for ID3v1 tag
-        if ((size == mediaLength) && (mediaLength != AudioSystem.NOT_SPECIFIED)) {
-            byte[] id3v1 = new byte[128];
+        if ((id3v1 == null) && (size == mediaLength) && (mediaLength != AudioSystem.NOT_SPECIFIED)) {
+            id3v1 = new byte[128];
             @SuppressWarnings("unused")
             long bytesSkipped = inputStream.skip(inputStream.available() - id3v1.length);
             @SuppressWarnings("unused")
             int read = inputStream.read(id3v1, 0, id3v1.length);
+        }
+        if (id3v1 != null) {
             if ((id3v1[0] == 'T') && (id3v1[1] == 'A') && (id3v1[2] == 'G')) {
                 parseID3v1Frames(id3v1, aff_properties);
             }
         } else {
-            if (TDebug.TraceAudioFileReader) TDebug.out("unknown size, maybe not a file: " + inputStream.available());
-            if (inputStream.available() <= INITAL_READ_LENGTH) {
-                InputStream is = new BufferedInputStream(inputStream, inputStream.available());
-                byte[] id3v1 = new byte[128];
-                is.mark(inputStream.available());
-                @SuppressWarnings("unused")
-                long bytesSkipped = is.skip(inputStream.available() - id3v1.length);
-                @SuppressWarnings("unused")
-                int read = is.read(id3v1, 0, id3v1.length);
-                if (TDebug.TraceAudioFileReader)
-                    TDebug.out((char) id3v1[0] + ", " + (char) id3v1[1] + ", " + (char) id3v1[2]);
-                if ((id3v1[0] == 'T') && (id3v1[1] == 'A') && (id3v1[2] == 'G')) {
-                    parseID3v1Frames(id3v1, aff_properties);
-                }
-            } else {
-                if (TDebug.TraceAudioFileReader) TDebug.out("larger than limit 20MB, skip id3v1");
-            }
+            if (TDebug.TraceAudioFileReader) TDebug.out("unknown size, maybe not a file, skip id3v1");
         }
         AudioFormat format = new MpegAudioFormat(encoding, nFrequency, AudioSystem.NOT_SPECIFIED // SampleSizeInBits - The size of a sample
                 , nChannels // Channels - The number of channels
@@ -335,13 +443,17 @@ public class MpegAudioFileReader extends TAudioFileReader {
      */
     public AudioInputStream getAudioInputStream(File file) throws UnsupportedAudioFileException, IOException {
         if (TDebug.TraceAudioFileReader) TDebug.out("getAudioInputStream(File file)");
-        InputStream inputStream = Files.newInputStream(file.toPath());
-        try {
-            return getAudioInputStream(inputStream);
-        } catch (UnsupportedAudioFileException | IOException e) {
-            inputStream.close();
-            throw e;
-        }
+        return getAudioInputStream(file.toPath());
+    }
+
+    /**
+     * Returns AudioInputStream from a file, whose format is read as by
+     * {@link #getAudioFileFormat(Path)}.
+     */
+    public AudioInputStream getAudioInputStream(Path path) throws UnsupportedAudioFileException, IOException {
+        AudioFileFormat audioFileFormat = getAudioFileFormat(path);
+        InputStream inputStream = new BufferedInputStream(Files.newInputStream(path));
+        return new AudioInputStream(inputStream, audioFileFormat.getFormat(), AudioSystem.NOT_SPECIFIED);
     }
 
     /**
@@ -405,11 +517,259 @@ public class MpegAudioFileReader extends TAudioFileReader {
             TDebug.out("MpegAudioFileReader.getAudioInputStream(InputStream inputStream)");
             TDebug.out("inputStream: " + inputStream.getClass().getName() + ", mark: " + inputStream.markSupported());
         }
+        return getAudioInputStream(inputStream, AudioSystem.NOT_SPECIFIED);
+    }
+
+    /**
+     * Return the AudioInputStream from the given InputStream, with the
+     * format probed by a previous getAudioFileFormat() of the stream if
+     * there was one and the stream was not read since. Otherwise an ID3v2
+     * tag is skipped without marking the stream, so that the pictures it
+     * holds are not buffered, and the stream starts after the tag; it is
+     * left there if it is not an MPEG stream.
+     */
+    protected AudioInputStream getAudioInputStream(InputStream inputStream, long lFileLengthInBytes) throws UnsupportedAudioFileException, IOException {
         if (!inputStream.markSupported()) inputStream = new BufferedInputStream(inputStream);
-        if (TDebug.TraceAudioFileReader)
-            TDebug.out("available/limit: " + inputStream.available() + ", " + getMarkLimit());
-        setMarkLimit(Math.min(inputStream.available(), getMarkLimit()));
-        return super.getAudioInputStream(inputStream);
+        Probed p = probed.remove(inputStream);
+        AudioFileFormat audioFileFormat;
+        if ((p != null) && p.isAt(inputStream)) {
+            audioFileFormat = p.format;
+        } else {
+            skip(inputStream, ID3v2Parser.tagLength(peek(inputStream, 10)));
+            audioFileFormat = probe(inputStream);
+        }
+        return new AudioInputStream(inputStream, audioFileFormat.getFormat(), AudioSystem.NOT_SPECIFIED);
+    }
+
+    /**
+     * Reads the format of a stream that supports mark, and resets it. Only
+     * the ID3v2 tag and the next {@link #PROBE_LENGTH} bytes are read, so
+     * an ID3v1 tag at the end of the stream is not.
+     */
+    private AudioFileFormat probe(InputStream inputStream) throws UnsupportedAudioFileException, IOException {
+        int limit = PROBE_LENGTH + ID3v2Parser.tagLength(peek(inputStream, 10));
+        if (TDebug.TraceAudioFileReader) TDebug.out("probe limit: " + limit);
+        inputStream.mark(limit);
+        try {
+            return getAudioFileFormat(new ProbeInputStream(inputStream, limit), AudioSystem.NOT_SPECIFIED);
+        } finally {
+            inputStream.reset();
+        }
+    }
+
+    /**
+     * Reads up to <code>length</code> bytes of a stream that supports mark,
+     * and resets it.
+     */
+    private static byte[] peek(InputStream inputStream, int length) throws IOException {
+        byte[] b = new byte[length];
+        inputStream.mark(length);
+        int read = 0;
+        try {
+            int n;
+            while ((read < length) && ((n = inputStream.read(b, read, length - read)) > 0))
+                read += n;
+        } finally {
+            inputStream.reset();
+        }
+        return (read == length) ? b : Arrays.copyOf(b, read);
+    }
+
+    /**
+     * Skips <code>n</code> bytes of a stream, or up to its end.
+     */
+    private static void skip(InputStream inputStream, long n) throws IOException {
+        while (n > 0) {
+            long s = inputStream.skip(n);
+            if (s <= 0) {
+                if (inputStream.read() < 0) break;
+                s = 1;
+            }
+            n -= s;
+        }
+    }
+
+    /**
+     * A format probed from a stream, with the available bytes and the first
+     * bytes of the stream where it was probed.
+     */
+    private static class Probed {
+        final AudioFileFormat format;
+        private final byte[] head;
+        private final int available;
+
+        Probed(AudioFileFormat format, byte[] head, int available) {
+            this.format = format;
+            this.head = head;
+            this.available = available;
+        }
+
+        /**
+         * Returns true if the stream is where the format was probed.
+         */
+        boolean isAt(InputStream inputStream) throws IOException {
+            return (inputStream.available() == available) && Arrays.equals(peek(inputStream, head.length), head);
+        }
+    }
+
+    /**
+     * Ends a stream after a number of bytes, so that probing never reads
+     * past the mark limit, nor parsing an ID3v2 tag past its end.
+     */
+    private static class ProbeInputStream extends FilterInputStream {
+        private long remaining;
+
+        ProbeInputStream(InputStream in, long limit) {
+            super(in);
+            remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int b = in.read();
+            if (b >= 0) remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) remaining -= n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void mark(int readlimit) {
+            // the stream is marked for probing
+        }
+
+        @Override
+        public void reset() throws IOException {
+            throw new IOException("mark/reset not supported");
+        }
+    }
+
+    /**
+     * The ID3v2 tag at the start of a file. The file is opened for each
+     * read that is not served from the buffer, and closed again, so the
+     * stream holds no file open and need not be closed.
+     */
+    private static class TagInputStream extends InputStream {
+        private static final int BUFFER_SIZE = 8192;
+        private final Path path;
+        private final long length;
+        private byte[] buffer;
+        /** The position in the file of the first byte of the buffer. */
+        private long bufferStart;
+        private int bufferLength;
+        private long position;
+        private long mark;
+
+        TagInputStream(Path path, long length) {
+            this.path = path;
+            this.length = length;
+        }
+
+        /**
+         * Reads from the file at a position, up to the end of the tag.
+         */
+        private int read(long from, byte[] b, int off, int len) throws IOException {
+            ByteBuffer dst = ByteBuffer.wrap(b, off, (int) Math.min(len, length - from));
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                while (dst.hasRemaining()) {
+                    if (channel.read(dst, from + dst.position() - off) < 0)
+                        break;
+                }
+            }
+            return dst.position() - off;
+        }
+
+        private boolean buffered() {
+            return (position >= bufferStart) && (position < bufferStart + bufferLength);
+        }
+
+        /**
+         * Makes the byte at the current position available in the buffer.
+         *
+         * @return false at the end of the file.
+         */
+        private boolean fill() throws IOException {
+            if (buffered()) return true;
+            if (buffer == null) buffer = new byte[(int) Math.min(length, BUFFER_SIZE)];
+            bufferStart = position;
+            bufferLength = read(position, buffer, 0, buffer.length);
+            return bufferLength > 0;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if ((position >= length) || !fill()) return -1;
+            return buffer[(int) (position++ - bufferStart)] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (position >= length) return -1;
+            int n;
+            if ((len >= BUFFER_SIZE) && !buffered()) {
+                // large reads go to the caller's array
+                n = read(position, b, off, len);
+                if (n == 0) return -1;
+            } else {
+                if (!fill()) return -1;
+                n = (int) Math.min(len, bufferStart + bufferLength - position);
+                System.arraycopy(buffer, (int) (position - bufferStart), b, off, n);
+            }
+            position += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            long s = Math.max(0, Math.min(n, length - position));
+            position += s;
+            return s;
+        }
+
+        @Override
+        public int available() {
+            return (int) (length - position);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public void mark(int readlimit) {
+            mark = position;
+        }
+
+        @Override
+        public void reset() {
+            position = mark;
+        }
     }
 
     /**
@@ -471,114 +831,101 @@ public class MpegAudioFileReader extends TAudioFileReader {
 
     /**
      * Parse ID3v2 frames to add album (TALB), title (TIT2), date (TYER), author (TPE1), copyright (TCOP), comment (COMM) ...
+     * The stream is reset to where it was if it supports mark.
      *
      * @param frames
      * @param props
      */
     protected void parseID3v2Frames(InputStream frames, Map<String, Object> props) {
-        if (TDebug.TraceAudioFileReader) TDebug.out("Parsing ID3v2");
-        byte[] bframes = null;
-        int size = -1;
+        boolean mark = frames.markSupported();
+        if (mark) frames.mark(Integer.MAX_VALUE);
         try {
-            size = frames.available();
-            bframes = new byte[size];
-            frames.mark(size);
-            int r = frames.read(bframes);
-            assert r == bframes.length : "read ID3v2 tags";
-            frames.reset();
-        } catch (IOException e) {
-            if (TDebug.TraceAudioFileReader) TDebug.out("Cannot parse ID3v2 :" + e.getMessage());
-        }
-        if (!"ID3".equals(new String(bframes, 0, 3))) {
-            TDebug.out("No ID3v2 header found!");
-            return;
-        }
-        int v2version = bframes[3] & 0xff;
-        props.put("mp3.id3tag.v2.version", String.valueOf(v2version));
-        if (v2version < 2 || v2version > 4) {
-            TDebug.out("Unsupported ID3v2 version " + v2version + "!");
-            return;
+            parseID3v2(frames, props);
+        } finally {
+            if (mark) {
+                try {
+                    frames.reset();
+                } catch (IOException e) {
+                    if (TDebug.TraceAudioFileReader) TDebug.out("Cannot reset ID3v2 :" + e.getMessage());
+                }
+            }
         }
+    }
+
+    /**
+     * Parse ID3v2 frames from a stream positioned at the start of the tag.
+     * Only the frames mapped to properties are read, pictures (APIC) and
+     * other objects (GEOB) are added to "mp3.id3tag.v2.attachments"
+     * without their data.
+     */
+    private void parseID3v2(InputStream frames, Map<String, Object> props) {
+        if (TDebug.TraceAudioFileReader) TDebug.out("Parsing ID3v2");
+        List<ID3v2Attachment> attachments = new ArrayList<>();
         try {
-            if (TDebug.TraceAudioFileReader)
-                TDebug.out("ID3v2 frame dump(" + bframes.length + ")='" + new String(bframes, 0, bframes.length) + "'");
-            // ID3 tags : http://www.unixgods.org/~tilo/ID3/docs/ID3_comparison.html
-            String value;
-            for (int i = 10; i < bframes.length && bframes[i] > 0; i += size) {
-                if (v2version == 3 || v2version == 4) {
-                    // ID3v2.3 & ID3v2.4
-                    String code = new String(bframes, i, 4);
-//                    Debug.println(Level.FINE, "code: " + code);
-                    size = ((bframes[i + 4] << 24) & 0xFF000000 | (bframes[i + 5] << 16) & 0x00FF0000 | (bframes[i + 6] << 8) & 0x0000FF00 | (bframes[i + 7]) & 0x000000FF);
-                    i += 10;
-                    if ((code.equals("TALB")) || (code.equals("TIT2")) || (code.equals("TYER")) ||
-                            (code.equals("TPE1")) || (code.equals("TCOP")) || (code.equals("COMM")) ||
-                            (code.equals("TCON")) || (code.equals("TRCK")) || (code.equals("TPOS")) ||
-                            (code.equals("TDRC")) || (code.equals("TCOM")) || (code.equals("TIT1")) ||
-                            (code.equals("TENC")) || (code.equals("TPUB")) || (code.equals("TPE2")) ||
-                            (code.equals("TLEN"))) {
-                        if (code.equals("COMM"))
-                            value = parseText(bframes, i, size, getSkipForComment(bframes, i, size, 1 + 3));
-                        else value = parseText(bframes, i, size, 1);
-                        if ((value != null) && (value.length() > 0)) {
-                            if (code.equals("TALB")) props.put("album", value);
-                            else if (code.equals("TIT2")) props.put("title", value);
-                            else if (code.equals("TYER")) props.put("date", value);
-                                // ID3v2.4 date fix.
-                            else if (code.equals("TDRC")) props.put("date", value);
-                            else if (code.equals("TPE1")) props.put("author", value);
-                            else if (code.equals("TCOP")) props.put("copyright", value);
-                            else if (code.equals("COMM")) props.put("comment", value);
-                            else if (code.equals("TCON")) props.put("mp3.id3tag.genre", value);
-                            else if (code.equals("TRCK")) props.put("mp3.id3tag.track", value);
-                            else if (code.equals("TPOS")) props.put("mp3.id3tag.disc", value);
-                            else if (code.equals("TCOM")) props.put("mp3.id3tag.composer", value);
-                            else if (code.equals("TIT1")) props.put("mp3.id3tag.grouping", value);
-                            else if (code.equals("TENC")) props.put("mp3.id3tag.encoded", value);
-                            else if (code.equals("TPUB")) props.put("mp3.id3tag.publisher", value);
-                            else if (code.equals("TPE2")) props.put("mp3.id3tag.orchestra", value);
-                            else if (code.equals("TLEN")) props.put("mp3.id3tag.length", value);
-                        }
-                    }
-                } else {
-                    // ID3v2.2
-                    String scode = new String(bframes, i, 3);
-                    size = (0x00000000) + (bframes[i + 3] << 16) + (bframes[i + 4] << 8) + (bframes[i + 5]);
-                    i += 6;
-                    if ((scode.equals("TAL")) || (scode.equals("TT2")) || (scode.equals("TP1")) ||
-                            (scode.equals("TYE")) || (scode.equals("TRK")) || (scode.equals("TPA")) ||
-                            (scode.equals("TCR")) || (scode.equals("TCO")) || (scode.equals("TCM")) ||
-                            (scode.equals("COM")) || (scode.equals("TT1")) || (scode.equals("TEN")) ||
-                            (scode.equals("TPB")) || (scode.equals("TP2")) || (scode.equals("TLE"))) {
-                        if (scode.equals("COM")) value = parseText(bframes, i, size, 5);
-                        else value = parseText(bframes, i, size, 1);
-                        if ((value != null) && (value.length() > 0)) {
-                            if (scode.equals("TAL")) props.put("album", value);
-                            else if (scode.equals("TT2")) props.put("title", value);
-                            else if (scode.equals("TYE")) props.put("date", value);
-                            else if (scode.equals("TP1")) props.put("author", value);
-                            else if (scode.equals("TCR")) props.put("copyright", value);
-                            else if (scode.equals("COM")) props.put("comment", value);
-                            else if (scode.equals("TCO")) props.put("mp3.id3tag.genre", value);
-                            else if (scode.equals("TRK")) props.put("mp3.id3tag.track", value);
-                            else if (scode.equals("TPA")) props.put("mp3.id3tag.disc", value);
-                            else if (scode.equals("TCM")) props.put("mp3.id3tag.composer", value);
-                            else if (scode.equals("TT1")) props.put("mp3.id3tag.grouping", value);
-                            else if (scode.equals("TEN")) props.put("mp3.id3tag.encoded", value);
-                            else if (scode.equals("TPB")) props.put("mp3.id3tag.publisher", value);
-                            else if (scode.equals("TP2")) props.put("mp3.id3tag.orchestra", value);
-                            else if (scode.equals("TLE")) props.put("mp3.id3tag.length", value);
-                        }
+            int v2version = ID3v2Parser.parse(frames, new ID3v2Parser.Handler() {
+                public boolean wants(int id) {
+                    return id3v2Property(id) != null;
+                }
+
+                public void frame(int id, byte[] body) {
+                    if (body.length == 0) return;
+                    try {
+                        String value;
+                        if (id == ID3v2Parser.COMM)
+                            value = parseText(body, 0, body.length, getSkipForComment(body, 0, body.length, 1 + 3));
+                        else value = parseText(body, 0, body.length, 1);
+                        if ((value != null) && (value.length() > 0)) props.put(id3v2Property(id), value);
+                    } catch (RuntimeException e) {
+                        // Ignore parsing errors of a frame.
+                        if (TDebug.TraceAudioFileReader) TDebug.out("Cannot parse ID3v2 frame " + ID3v2Parser.name(id) + " :" + e.getMessage());
                     }
                 }
+
+                public void attachment(ID3v2Attachment attachment) {
+                    attachments.add(attachment);
+                }
+            });
+            if (v2version < 0) {
+                TDebug.out("No ID3v2 header found!");
+                return;
             }
-        } catch (RuntimeException e) {
+            props.put("mp3.id3tag.v2.version", String.valueOf(v2version));
+            if (v2version < 2 || v2version > 4) TDebug.out("Unsupported ID3v2 version " + v2version + "!");
+        } catch (IOException | RuntimeException e) {
             // Ignore all parsing errors.
             if (TDebug.TraceAudioFileReader) TDebug.out("Cannot parse ID3v2 :" + e.getMessage());
         }
+        if (!attachments.isEmpty()) props.put("mp3.id3tag.v2.attachments", Collections.unmodifiableList(attachments));
         if (TDebug.TraceAudioFileReader) TDebug.out("ID3v2 parsed");
     }
 
+    /**
+     * Returns the property of an ID3v2 text frame, or null.
+     * ID3 tags : http://www.unixgods.org/~tilo/ID3/docs/ID3_comparison.html
+     */
+    private static String id3v2Property(int id) {
+        switch (id) {
+            case ID3v2Parser.TALB: return "album";
+            case ID3v2Parser.TIT2: return "title";
+            case ID3v2Parser.TYER:
+            // ID3v2.4 date fix.
+            case ID3v2Parser.TDRC: return "date";
+            case ID3v2Parser.TPE1: return "author";
+            case ID3v2Parser.TCOP: return "copyright";
+            case ID3v2Parser.COMM: return "comment";
+            case ID3v2Parser.TCON: return "mp3.id3tag.genre";
+            case ID3v2Parser.TRCK: return "mp3.id3tag.track";
+            case ID3v2Parser.TPOS: return "mp3.id3tag.disc";
+            case ID3v2Parser.TCOM: return "mp3.id3tag.composer";
+            case ID3v2Parser.TIT1: return "mp3.id3tag.grouping";
+            case ID3v2Parser.TENC: return "mp3.id3tag.encoded";
+            case ID3v2Parser.TPUB: return "mp3.id3tag.publisher";
+            case ID3v2Parser.TPE2: return "mp3.id3tag.orchestra";
+            case ID3v2Parser.TLEN: return "mp3.id3tag.length";
+            default: return null;
+        }
+    }
+
     /**
      *
      */
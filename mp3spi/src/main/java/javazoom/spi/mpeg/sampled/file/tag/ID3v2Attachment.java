@@ -0,0 +1,178 @@
+/*
+ * ID3v2Attachment.
+ *
+ * JavaZOOM : mp3spi@javazoom.net
+ *               http://www.javazoom.net
+ *
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.spi.mpeg.sampled.file.tag;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Objects;
+
+
+/**
+ * A picture (APIC) or an encapsulated object (GEOB) of an ID3v2 tag.
+ * Only its description is held; the data stays in the tag, at
+ * <code>getOffset()</code> from the start of the tag, and is read
+ * on demand.
+ */
+public final class ID3v2Attachment {
+
+    private final String id;
+
+    private final String mimeType;
+
+    private final int pictureType;
+
+    private final String fileName;
+
+    private final String description;
+
+    private final long offset;
+
+    private final long length;
+
+    private final boolean unsynchronised;
+
+    ID3v2Attachment(String id, String mimeType, int pictureType, String fileName, String description,
+                    long offset, long length, boolean unsynchronised) {
+        this.id = id;
+        this.mimeType = mimeType;
+        this.pictureType = pictureType;
+        this.fileName = fileName;
+        this.description = description;
+        this.offset = offset;
+        this.length = length;
+        this.unsynchronised = unsynchronised;
+    }
+
+    /**
+     * @return "APIC" or "GEOB", also for ID3v2.2 PIC and GEO frames.
+     */
+    public String getId() {
+        return id;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * @return the APIC picture type, 3 for the front cover, or -1 for GEOB.
+     */
+    public int getPictureType() {
+        return pictureType;
+    }
+
+    /**
+     * @return the GEOB file name, or <code>null</code> for APIC.
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return the position of the data from the start of the tag.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return the number of bytes of the data as stored, which is more
+     * than the length of the data if it is unsynchronised.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    public boolean isUnsynchronised() {
+        return unsynchronised;
+    }
+
+    /**
+     * Reads the data from a file whose ID3v2 tag starts at offset 0,
+     * without changing the position of the channel.
+     */
+    public byte[] read(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(length));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0)
+                throw new EOFException();
+        }
+        return data(buffer.array());
+    }
+
+    /**
+     * Reads the data from a stream positioned at the start of the tag.
+     */
+    public byte[] read(InputStream tag) throws IOException {
+        long n = offset;
+        while (n > 0) {
+            long s = tag.skip(n);
+            if (s <= 0) {
+                if (tag.read() < 0)
+                    throw new EOFException();
+                s = 1;
+            }
+            n -= s;
+        }
+        byte[] b = new byte[Math.toIntExact(length)];
+        int read = 0;
+        while (read < b.length) {
+            int r = tag.read(b, read, b.length - read);
+            if (r < 0)
+                throw new EOFException();
+            read += r;
+        }
+        return data(b);
+    }
+
+    private byte[] data(byte[] stored) {
+        return unsynchronised ? ID3v2Parser.resynchronise(stored) : stored;
+    }
+
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof ID3v2Attachment))
+            return false;
+        ID3v2Attachment a = (ID3v2Attachment) o;
+        return (pictureType == a.pictureType) && (offset == a.offset) && (length == a.length)
+                && (unsynchronised == a.unsynchronised) && id.equals(a.id) && Objects.equals(mimeType, a.mimeType)
+                && Objects.equals(fileName, a.fileName) && Objects.equals(description, a.description);
+    }
+
+    public int hashCode() {
+        return Objects.hash(id, mimeType, pictureType, fileName, description, offset, length, unsynchronised);
+    }
+
+    public String toString() {
+        return id + " " + mimeType + " '" + description + "' " + length + " bytes at " + offset;
+    }
+}
@@ -0,0 +1,505 @@
+/*
+ * ID3v2Parser.
+ *
+ * JavaZOOM : mp3spi@javazoom.net
+ *               http://www.javazoom.net
+ *
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.spi.mpeg.sampled.file.tag;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * A streaming parser of ID3v2.2, ID3v2.3 and ID3v2.4 tags.
+ * <p>
+ * The frames are read one after the other from the stream. Only the
+ * frames a <code>Handler</code> asks for are read into memory, the
+ * others are skipped. APIC and GEOB frames are reported as
+ * <code>ID3v2Attachment</code> handles, with the position of their
+ * data in the tag instead of the data itself. Unsynchronisation, of
+ * the whole tag or of single frames, and extended headers are handled;
+ * compressed and encrypted frames are skipped.
+ * <p>
+ * Frame ids are packed into an <code>int</code>, first character in the
+ * most significant byte, so that they can be switched on. ID3v2.2 ids
+ * are reported as the ID3v2.3 ids of the same frames.
+ */
+public class ID3v2Parser {
+
+    public static final int TALB = 0x54414C42;
+    public static final int TIT1 = 0x54495431;
+    public static final int TIT2 = 0x54495432;
+    public static final int TYER = 0x54594552;
+    public static final int TDRC = 0x54445243;
+    public static final int TPE1 = 0x54504531;
+    public static final int TPE2 = 0x54504532;
+    public static final int TCOP = 0x54434F50;
+    public static final int TCON = 0x54434F4E;
+    public static final int TRCK = 0x5452434B;
+    public static final int TPOS = 0x54504F53;
+    public static final int TCOM = 0x54434F4D;
+    public static final int TENC = 0x54454E43;
+    public static final int TPUB = 0x54505542;
+    public static final int TLEN = 0x544C454E;
+    public static final int COMM = 0x434F4D4D;
+    public static final int APIC = 0x41504943;
+    public static final int GEOB = 0x47454F42;
+
+    /**
+     * This interface is used by the ID3v2Parser to select the frames
+     * to read and to deliver them.
+     */
+    public interface Handler {
+
+        /**
+         * Returns whether the body of a frame is read and passed to
+         * <code>frame()</code>. Not called for APIC and GEOB frames.
+         */
+        boolean wants(int id);
+
+        /**
+         * Called with the body of a wanted frame, without
+         * unsynchronisation.
+         */
+        void frame(int id, byte[] body);
+
+        /**
+         * Called for each APIC and GEOB frame.
+         */
+        void attachment(ID3v2Attachment attachment);
+    }
+
+    private static final Charset[] CHARSETS = {
+            StandardCharsets.ISO_8859_1, StandardCharsets.UTF_16, StandardCharsets.UTF_16BE, StandardCharsets.UTF_8
+    };
+
+    private final InputStream in;
+
+    private final Handler handler;
+
+    private int version;
+
+    /** The number of bytes read from the tag, as stored. */
+    private long position;
+
+    /** Whether a 0x00 following 0xFF is dropped. */
+    private boolean unsynchronisation;
+
+    private boolean afterFF;
+
+    /**
+     * The rest of the APIC or GEOB frame being read, in bytes as stored
+     * for ID3v2.4 and without unsynchronisation for earlier versions.
+     */
+    private long frameRemaining;
+
+    private ID3v2Parser(InputStream in, Handler handler) {
+        this.in = in;
+        this.handler = handler;
+    }
+
+    /**
+     * Parses the ID3v2 tag at the current position of a stream. The stream
+     * is left after the last frame read, at most at the end of the tag.
+     *
+     * @return the major version of the tag, 2, 3 or 4, or any other
+     * version whose frames were not parsed, or -1 if the stream does not
+     * start with an ID3v2 tag.
+     */
+    public static int parse(InputStream in, Handler handler) throws IOException {
+        return new ID3v2Parser(in, handler).parse();
+    }
+
+    /**
+     * Packs a frame id of 3 or 4 characters into an int.
+     */
+    public static int id(String name) {
+        int id = 0;
+        for (int i = 0; i < name.length(); i++)
+            id = (id << 8) | (name.charAt(i) & 0xff);
+        return id;
+    }
+
+    /**
+     * Unpacks a frame id.
+     */
+    public static String name(int id) {
+        StringBuilder s = new StringBuilder(4);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            int c = (id >>> shift) & 0xff;
+            if (c != 0)
+                s.append((char) c);
+        }
+        return s.toString();
+    }
+
+    /**
+     * Returns the length of an ID3v2 tag, header and footer included, from
+     * its first 10 bytes, or 0 if they are not an ID3v2 header.
+     */
+    public static int tagLength(byte[] header) {
+        if ((header.length < 10) || (header[0] != 'I') || (header[1] != 'D') || (header[2] != '3'))
+            return 0;
+        int length = syncsafe(header, 6) + 10;
+        // footer
+        if ((header[5] & 0x10) != 0)
+            length += 10;
+        return length;
+    }
+
+    private int parse() throws IOException {
+        byte[] header = new byte[10];
+        int n = 0;
+        int r;
+        while ((n < header.length) && ((r = in.read(header, n, header.length - n)) > 0))
+            n += r;
+        position = n;
+        if ((n < header.length) || (header[0] != 'I') || (header[1] != 'D') || (header[2] != '3'))
+            return -1;
+        version = header[3] & 0xff;
+        if (version < 2 || version > 4)
+            return version;
+        int flags = header[5] & 0xff;
+        long end = 10 + syncsafe(header, 6);
+
+        switch (version) {
+            case 2:
+                // ID3v2.2 compression, never defined
+                if ((flags & 0x40) == 0) {
+                    unsynchronisation = (flags & 0x80) != 0;
+                    parseFrames22(end);
+                }
+                break;
+            case 3:
+                unsynchronisation = (flags & 0x80) != 0;
+                if ((flags & 0x40) != 0) {
+                    // extended header, its size does not count itself
+                    skip(int32(readFully(4), 0));
+                }
+                parseFrames23(end);
+                break;
+            default:
+                if ((flags & 0x40) != 0)
+                    skip(syncsafe(readFully(4), 0) - 4);
+                // ID3v2.4 unsynchronises frame by frame, the tag flag applies to all
+                parseFrames24(end, (flags & 0x80) != 0);
+                break;
+        }
+        return version;
+    }
+
+    private void parseFrames22(long end) throws IOException {
+        while (position + 6 <= end) {
+            byte[] header = readFully(6);
+            if (!isFrameId(header, 3))
+                return;
+            int id = id22(((header[0] & 0xff) << 16) | ((header[1] & 0xff) << 8) | (header[2] & 0xff));
+            int size = ((header[3] & 0xff) << 16) | ((header[4] & 0xff) << 8) | (header[5] & 0xff);
+            if (position + size > end)
+                return;
+            frame(id, size);
+        }
+    }
+
+    private void parseFrames23(long end) throws IOException {
+        while (position + 10 <= end) {
+            byte[] header = readFully(10);
+            if (!isFrameId(header, 4))
+                return;
+            int id = int32(header, 0);
+            int size = int32(header, 4);
+            int format = header[9] & 0xff;
+            if ((size < 0) || (position + size > end))
+                return;
+            if ((format & 0xc0) != 0) {
+                // compressed or encrypted
+                skip(size);
+            } else if ((format & 0x20) != 0) {
+                // grouping identity, a frame too small for it is dropped
+                if (size > 0) {
+                    skip(1);
+                    frame(id, size - 1);
+                }
+            } else {
+                frame(id, size);
+            }
+        }
+    }
+
+    private void parseFrames24(long end, boolean unsynchronised) throws IOException {
+        while (position + 10 <= end) {
+            unsynchronisation = false;
+            byte[] header = readFully(10);
+            if (!isFrameId(header, 4))
+                return;
+            int id = int32(header, 0);
+            int size = syncsafe(header, 4);
+            int format = header[9] & 0xff;
+            if (position + size > end)
+                return;
+            long next = position + size;
+            // grouping identity, data length indicator
+            int extra = (((format & 0x40) != 0) ? 1 : 0) + (((format & 0x01) != 0) ? 4 : 0);
+            // compressed or encrypted, or too small for its flags
+            if (((format & 0x0c) == 0) && (size >= extra)) {
+                skip(extra);
+                boolean unsynchronisedFrame = unsynchronised || (format & 0x02) != 0;
+                if ((id == APIC) || (id == GEOB)) {
+                    unsynchronisation = unsynchronisedFrame;
+                    afterFF = false;
+                    frameRemaining = next - position;
+                    attachment(id, unsynchronisedFrame);
+                } else if (handler.wants(id)) {
+                    byte[] body = readFully((int) (next - position));
+                    handler.frame(id, unsynchronisedFrame ? resynchronise(body) : body);
+                }
+            }
+            unsynchronisation = false;
+            skip(next - position);
+        }
+    }
+
+    /**
+     * Reads or skips an ID3v2.2 or ID3v2.3 frame, whose size does not
+     * count the bytes added by unsynchronisation.
+     */
+    private void frame(int id, int size) throws IOException {
+        if ((id == APIC) || (id == GEOB)) {
+            frameRemaining = size;
+            attachment(id, unsynchronisation);
+        } else if (handler.wants(id)) {
+            handler.frame(id, readFully(size));
+        } else {
+            skip(size);
+        }
+    }
+
+    /**
+     * Reads the fields of an APIC or GEOB frame up to its data, which is
+     * reported as an attachment and not read.
+     */
+    private void attachment(int id, boolean unsynchronised) throws IOException {
+        int encoding = frameRead();
+        String mimeType;
+        int pictureType = -1;
+        String fileName = null;
+        if ((version == 2) && (id == APIC)) {
+            // ID3v2.2 PIC, an image format of three characters
+            mimeType = imageType(new String(new byte[]{(byte) frameRead(), (byte) frameRead(), (byte) frameRead()},
+                    StandardCharsets.ISO_8859_1));
+        } else {
+            mimeType = frameString(0);
+        }
+        if (id == APIC)
+            pictureType = frameRead();
+        else
+            fileName = frameString(encoding);
+        String description = frameString(encoding);
+
+        long offset = position;
+        long length;
+        if (version == 4) {
+            // the caller skips to the end of the frame
+            length = Math.max(frameRemaining, 0);
+        } else {
+            skip(Math.max(frameRemaining, 0));
+            length = position - offset;
+        }
+        frameRemaining = 0;
+        handler.attachment(new ID3v2Attachment(name(id), mimeType, pictureType, fileName, description,
+                offset, length, unsynchronised));
+    }
+
+    /**
+     * Reads a byte of the current frame, or returns -1 at its end.
+     */
+    private int frameRead() throws IOException {
+        if (frameRemaining <= 0)
+            return -1;
+        long before = position;
+        int b = read();
+        frameRemaining -= (version == 4) ? position - before : 1;
+        return b;
+    }
+
+    /**
+     * Reads a string of the current frame, up to its terminator.
+     */
+    private String frameString(int encoding) throws IOException {
+        boolean wide = (encoding == 1) || (encoding == 2);
+        ByteArrayOutputStream s = new ByteArrayOutputStream();
+        int b;
+        while ((b = frameRead()) >= 0) {
+            if (wide) {
+                int b2 = frameRead();
+                if (b2 < 0 || (b == 0 && b2 == 0))
+                    break;
+                s.write(b);
+                s.write(b2);
+            } else {
+                if (b == 0)
+                    break;
+                s.write(b);
+            }
+        }
+        Charset charset = (encoding >= 0 && encoding < CHARSETS.length) ? CHARSETS[encoding] : CHARSETS[0];
+        return new String(s.toByteArray(), charset);
+    }
+
+    /**
+     * Reads a byte, dropping the 0x00 following a 0xFF if the tag or
+     * frame is unsynchronised.
+     */
+    private int read() throws IOException {
+        int b = rawRead();
+        if (afterFF && (b == 0))
+            b = rawRead();
+        afterFF = unsynchronisation && (b == 0xff);
+        return b;
+    }
+
+    private int rawRead() throws IOException {
+        int b = in.read();
+        if (b < 0)
+            throw new EOFException();
+        position++;
+        return b;
+    }
+
+    private byte[] readFully(int length) throws IOException {
+        byte[] b = new byte[length];
+        if (unsynchronisation) {
+            for (int i = 0; i < length; i++)
+                b[i] = (byte) read();
+            return b;
+        }
+        int n = 0;
+        while (n < length) {
+            int r = in.read(b, n, length - n);
+            if (r < 0)
+                throw new EOFException();
+            n += r;
+        }
+        position += length;
+        afterFF = false;
+        return b;
+    }
+
+    /**
+     * Skips bytes, counted without unsynchronisation if it is on.
+     */
+    private void skip(long n) throws IOException {
+        if (unsynchronisation) {
+            for (long i = 0; i < n; i++)
+                read();
+            return;
+        }
+        afterFF = false;
+        while (n > 0) {
+            long s = in.skip(n);
+            if (s <= 0) {
+                rawRead();
+                s = 1;
+            } else {
+                position += s;
+            }
+            n -= s;
+        }
+    }
+
+    /**
+     * Removes unsynchronisation from stored bytes.
+     */
+    static byte[] resynchronise(byte[] b) {
+        int n = 0;
+        for (int i = 0; i < b.length; i++) {
+            b[n++] = b[i];
+            if (((b[i] & 0xff) == 0xff) && (i + 1 < b.length) && (b[i + 1] == 0))
+                i++;
+        }
+        if (n == b.length)
+            return b;
+        byte[] r = new byte[n];
+        System.arraycopy(b, 0, r, 0, n);
+        return r;
+    }
+
+    /**
+     * Maps an ID3v2.2 frame id to the ID3v2.3 id of the same frame.
+     */
+    private static int id22(int id) {
+        switch (id) {
+            case 0x54414C: return TALB; // TAL
+            case 0x545431: return TIT1; // TT1
+            case 0x545432: return TIT2; // TT2
+            case 0x545945: return TYER; // TYE
+            case 0x545031: return TPE1; // TP1
+            case 0x545032: return TPE2; // TP2
+            case 0x544352: return TCOP; // TCR
+            case 0x54434F: return TCON; // TCO
+            case 0x54524B: return TRCK; // TRK
+            case 0x545041: return TPOS; // TPA
+            case 0x54434D: return TCOM; // TCM
+            case 0x54454E: return TENC; // TEN
+            case 0x545042: return TPUB; // TPB
+            case 0x544C45: return TLEN; // TLE
+            case 0x434F4D: return COMM; // COM
+            case 0x504943: return APIC; // PIC
+            case 0x47454F: return GEOB; // GEO
+            default: return id;
+        }
+    }
+
+    private static String imageType(String format) {
+        switch (format.toUpperCase()) {
+            case "JPG":
+                return "image/jpeg";
+            case "-->":
+                // a link
+                return format;
+            default:
+                return "image/" + format.toLowerCase();
+        }
+    }
+
+    private static boolean isFrameId(byte[] header, int length) {
+        for (int i = 0; i < length; i++) {
+            int c = header[i];
+            if (!((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')))
+                return false;
+        }
+        return true;
+    }
+
+    private static int int32(byte[] b, int offset) {
+        return ((b[offset] & 0xff) << 24) | ((b[offset + 1] & 0xff) << 16) | ((b[offset + 2] & 0xff) << 8)
+                | (b[offset + 3] & 0xff);
+    }
+
+    private static int syncsafe(byte[] b, int offset) {
+        return ((b[offset] & 0x7f) << 21) | ((b[offset + 1] & 0x7f) << 14) | ((b[offset + 2] & 0x7f) << 7)
+                | (b[offset + 3] & 0x7f);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as published
+ * by the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package javazoom.spi.library;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioSystem;
+
+import javazoom.jl.testing.MpegFixtures.Fixture;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * LibraryScanner over a tree of fixture files, with and without a cache.
+ */
+public class LibraryScannerTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testScan() throws Exception {
+        Path root = dir.resolve("library");
+        Files.createDirectories(root.resolve("a/b"));
+        for (Fixture fixture : Fixture.values())
+            Files.write(root.resolve((fixture.ordinal() % 2 == 0 ? "a" : "a/b") + "/" + fixture + ".mp3"),
+                    fixture.generate());
+        Files.write(root.resolve("cover.txt"), "not audio".getBytes(StandardCharsets.US_ASCII));
+
+        LibraryScanner scanner = new LibraryScanner(3, 2);
+        Map<Path, LibraryScanner.Entry> entries = new ConcurrentHashMap<>();
+        LibraryScanner.Summary summary = scanner.scan(root, (entry, cached) -> entries.put(entry.getPath(), entry));
+        assertEquals(Fixture.values().length + 1, summary.getFiles());
+        assertEquals(Fixture.values().length, summary.getAudio());
+        assertEquals(0, summary.getCached());
+        assertEquals(0, summary.getFailed());
+        assertEquals(summary.getFiles(), entries.size());
+        assertFalse(entries.get(root.resolve("cover.txt").toAbsolutePath()).isAudio());
+
+        for (Fixture fixture : Fixture.values()) {
+            Path path = root.resolve((fixture.ordinal() % 2 == 0 ? "a" : "a/b") + "/" + fixture + ".mp3");
+            LibraryScanner.Entry entry = entries.get(path.toAbsolutePath());
+            assertNotNull(entry, fixture.toString());
+            assertNull(entry.getException());
+            assertEquals(Files.size(path), entry.getSize());
+
+            AudioFileFormat format = AudioSystem.getAudioFileFormat(path.toFile());
+            assertEquals(format.getType().toString(), entry.getType());
+            assertEquals(format.getFormat().getEncoding().toString(), entry.getEncoding());
+            assertEquals(fixture.sampleRate(), entry.getSampleRate());
+            assertEquals(fixture.channels(), entry.getChannels());
+            assertEquals(format.properties().get("duration"), entry.getProperties().get("duration"));
+            assertEquals(format.properties().get("mp3.framesize.bytes"),
+                    entry.getProperties().get("mp3.framesize.bytes"));
+        }
+    }
+
+    @Test
+    void testCache() throws Exception {
+        Path root = dir.resolve("library");
+        Files.createDirectories(root);
+        Path mono = root.resolve("mono.mp3");
+        Path vbr = root.resolve("vbr.mp3");
+        Path l2 = root.resolve("l2.mp3");
+        Files.write(mono, Fixture.MPEG1_L3_MONO.generate());
+        Files.write(vbr, Fixture.MPEG1_L3_VBR.generate());
+        Files.write(l2, Fixture.MPEG1_L2_MONO.generate());
+        Path cache = dir.resolve("cache/library.cache");
+
+        LibraryScanner scanner = new LibraryScanner();
+        scanner.setCacheFile(cache);
+        Map<Path, LibraryScanner.Entry> first = new ConcurrentHashMap<>();
+        assertEquals(0, scanner.scan(root, (entry, cached) -> first.put(entry.getPath(), entry)).getCached());
+        assertTrue(Files.exists(cache));
+
+        // a new scanner with the same cache file opens no file
+        scanner = new LibraryScanner();
+        scanner.setCacheFile(cache);
+        Map<Path, LibraryScanner.Entry> second = new ConcurrentHashMap<>();
+        LibraryScanner.Summary summary = scanner.scan(root, (entry, cached) -> second.put(entry.getPath(), entry));
+        assertEquals(3, summary.getCached());
+        assertEquals(3, summary.getAudio());
+        assertEquals(first.keySet(), second.keySet());
+        for (Path path : first.keySet()) {
+            LibraryScanner.Entry a = first.get(path);
+            LibraryScanner.Entry b = second.get(path);
+            assertEquals(a.getType(), b.getType());
+            assertEquals(a.getEncoding(), b.getEncoding());
+            assertEquals(a.getSampleRate(), b.getSampleRate());
+            assertEquals(a.getChannels(), b.getChannels());
+            assertEquals(a.getFrameLength(), b.getFrameLength());
+            assertEquals(a.getByteLength(), b.getByteLength());
+            assertEquals(a.getProperties(), b.getProperties());
+        }
+
+        // only the modified file is probed again, the deleted one is dropped
+        Files.setLastModifiedTime(mono, FileTime.fromMillis(Files.getLastModifiedTime(mono).toMillis() - 60000));
+        Files.delete(l2);
+        Map<Path, Boolean> third = new ConcurrentHashMap<>();
+        summary = scanner.scan(root, (entry, cached) -> third.put(entry.getPath(), cached));
+        assertEquals(2, summary.getFiles());
+        assertEquals(1, summary.getCached());
+        assertEquals(Boolean.FALSE, third.get(mono.toAbsolutePath()));
+        assertEquals(Boolean.TRUE, third.get(vbr.toAbsolutePath()));
+
+        // a corrupt cache is ignored and rewritten
+        Files.write(cache, new byte[]{'J', 'Z', 'L', 'C', 0, 0, 0, 1, 0, 0, 0, 9});
+        assertEquals(0, scanner.scan(root, (entry, cached) -> { }).getCached());
+        assertEquals(2, scanner.scan(root, (entry, cached) -> { }).getCached());
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as published
+ * by the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package javazoom.spi.mpeg.sampled.convert;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import javazoom.jl.decoder.DecoderPool;
+import javazoom.jl.decoder.MpegFrameIndex;
+import javazoom.jl.testing.MpegFixtures;
+import javazoom.jl.testing.MpegFixtures.Fixture;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Decoders of DecodedMpegAudioInputStream borrowed from the DecoderPool,
+ * and its position statistics.
+ */
+public class DecodedMpegAudioInputStreamTest {
+
+    @Test
+    void testPooledDecoder() throws Exception {
+        DecoderPool.getDefault().clear();
+        byte[] first = decode();
+        assertTrue(DecoderPool.getDefault().getIdleCount() > 0);
+        // decoded again with the decoder returned by the first stream
+        byte[] second = decode();
+        assertArrayEquals(first, second);
+    }
+
+    @Test
+    void testStats() throws Exception {
+        DecodedMpegAudioInputStream out = (DecodedMpegAudioInputStream) open();
+        Map<String, Object> properties = out.properties();
+        MpegStreamStats stats = new MpegStreamStats();
+        assertSame(stats, out.getStats(stats));
+        assertEquals(0, stats.getFrame());
+        assertEquals(-1, stats.getBitrate());
+
+        byte[] buffer = new byte[4096];
+        long bytes = 0;
+        while (out.read(buffer) > 0) {
+            out.getStats(stats);
+            assertTrue(stats.getBytePosition() >= bytes);
+            bytes = stats.getBytePosition();
+            assertEquals(stats.getFrame(), (long) (Long) properties.get("mp3.frame"));
+            assertEquals(stats.getBitrate(), (int) (Integer) properties.get("mp3.frame.bitrate"));
+            assertEquals(stats.getFrameSize(), (int) (Integer) properties.get("mp3.frame.size.bytes"));
+            assertEquals(bytes, (long) (Long) properties.get("mp3.position.byte"));
+            assertEquals(stats.getMicrosecondPosition(), (long) (Long) properties.get("mp3.position.microseconds"));
+        }
+        assertTrue(stats.getFrame() > 0);
+        assertEquals(out.getFrame(), stats.getFrame());
+        assertEquals(out.getBytePosition(), stats.getBytePosition());
+        assertTrue(properties.containsKey("mp3.equalizer"));
+        assertSame(properties, out.properties());
+        out.close();
+    }
+
+    @Test
+    void testSkipPastEnd() throws Exception {
+        byte[] data = Fixture.MPEG1_L3_JOINT_STEREO.generate();
+        MpegFrameIndex index = MpegFrameIndex.scan(new ByteArrayInputStream(data));
+        // the index of the whole stream, over its first half
+        int frames = MpegFixtures.FRAMES / 2;
+        byte[] half = Arrays.copyOf(data, (int) index.offsetForFrame(frames));
+        DecodedMpegAudioInputStream out = (DecodedMpegAudioInputStream) open(new ByteArrayInputStream(half));
+        out.setFrameIndex(index);
+        out.skipFrames(MpegFixtures.FRAMES);
+        assertTrue(out.getFrame() <= frames, "frame " + out.getFrame());
+        assertEquals(index.offsetForFrame((int) out.getFrame()), out.getBytePosition());
+        out.close();
+    }
+
+    private static byte[] decode() throws Exception {
+        AudioInputStream out = open();
+        byte[] data = out.readAllBytes();
+        out.close();
+        return data;
+    }
+
+    private static AudioInputStream open() throws Exception {
+        return open(DecodedMpegAudioInputStreamTest.class.getClassLoader().getResourceAsStream("test2.mp3"));
+    }
+
+    private static AudioInputStream open(InputStream in) throws Exception {
+        AudioInputStream source = AudioSystem.getAudioInputStream(new BufferedInputStream(in));
+        AudioFormat format = source.getFormat();
+        AudioFormat target = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, format.getSampleRate(), 16,
+                format.getChannels(), format.getChannels() * 2, format.getSampleRate(), false);
+        return AudioSystem.getAudioInputStream(target, source);
+    }
+}
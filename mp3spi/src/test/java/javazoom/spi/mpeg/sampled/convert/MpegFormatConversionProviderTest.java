@@ -0,0 +1,79 @@
+/*
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as published
+ * by the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package javazoom.spi.mpeg.sampled.convert;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Reduced rate conversions of MpegFormatConversionProvider.
+ */
+public class MpegFormatConversionProviderTest {
+
+    @Test
+    void testTargetFormats() throws Exception {
+        AudioFormat source = open().getFormat();
+        AudioFormat[] targets = new MpegFormatConversionProvider().getTargetFormats(AudioFormat.Encoding.PCM_SIGNED, source);
+        for (float rate : new float[] {source.getSampleRate(), source.getSampleRate() / 2, source.getSampleRate() / 4}) {
+            boolean found = false;
+            for (AudioFormat target : targets)
+                found |= target.getSampleRate() == rate && target.getChannels() == source.getChannels();
+            assertTrue(found, "rate " + rate);
+        }
+    }
+
+    @Test
+    void testHalfRate() throws Exception {
+        long full = decodedLength(1);
+        long half = decodedLength(2);
+        long quarter = decodedLength(4);
+        assertEquals(full / 2, half);
+        assertEquals(full / 4, quarter);
+    }
+
+    private static AudioInputStream open() throws Exception {
+        InputStream in = MpegFormatConversionProviderTest.class.getClassLoader().getResourceAsStream("test2.mp3");
+        return AudioSystem.getAudioInputStream(new BufferedInputStream(in));
+    }
+
+    private static long decodedLength(int factor) throws Exception {
+        AudioInputStream in = open();
+        AudioFormat source = in.getFormat();
+        float rate = source.getSampleRate() / factor;
+        AudioFormat target = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, rate, 16,
+                source.getChannels(), source.getChannels() * 2, rate, false);
+        AudioInputStream out = AudioSystem.getAudioInputStream(target, in);
+        assertEquals(rate, out.getFormat().getSampleRate());
+        byte[] buffer = new byte[4096];
+        long length = 0;
+        int n;
+        while ((n = out.read(buffer)) > 0)
+            length += n;
+        out.close();
+        return length;
+    }
+}
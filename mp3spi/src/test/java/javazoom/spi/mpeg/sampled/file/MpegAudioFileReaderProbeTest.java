@@ -0,0 +1,229 @@
+/*
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as published
+ * by the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package javazoom.spi.mpeg.sampled.file;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import javazoom.jl.testing.MpegFixtures;
+import javazoom.jl.testing.MpegFixtures.Fixture;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Probing of streams and files by MpegAudioFileReader.
+ */
+public class MpegAudioFileReaderProbeTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testMarkLimit() throws Exception {
+        byte[] mp3 = resource("test2.mp3");
+        // test2.mp3 has a 2233 byte tag, replaced by one with 4 MB of padding
+        int tag = 4 * 1024 * 1024;
+        int audio = mp3.length - 2233;
+        byte[] data = new byte[10 + tag + audio];
+        data[0] = 'I';
+        data[1] = 'D';
+        data[2] = '3';
+        data[3] = 3;
+        data[6] = (byte) ((tag >> 21) & 0x7f);
+        data[7] = (byte) ((tag >> 14) & 0x7f);
+        data[8] = (byte) ((tag >> 7) & 0x7f);
+        data[9] = (byte) (tag & 0x7f);
+        System.arraycopy(mp3, 2233, data, 10 + tag, audio);
+
+        MarkStream in = new MarkStream(data);
+        new MpegAudioFileReader().getAudioFileFormat(in);
+        assertTrue(in.limit <= 10 + tag + MpegAudioFileReader.PROBE_LENGTH, "mark limit " + in.limit);
+        // reset to the start
+        assertEquals(data.length, in.available());
+
+        // the tag is skipped, not marked
+        in = new MarkStream(data);
+        AudioInputStream stream = new MpegAudioFileReader().getAudioInputStream(in);
+        assertEquals(44100.0f, stream.getFormat().getSampleRate());
+        assertEquals(MpegAudioFileReader.PROBE_LENGTH, in.limit);
+        assertEquals(audio, stream.available());
+
+        // no tag
+        in = new MarkStream(Arrays.copyOfRange(data, 10 + tag, data.length));
+        new MpegAudioFileReader().getAudioFileFormat(in);
+        assertEquals(MpegAudioFileReader.PROBE_LENGTH, in.limit);
+        assertEquals(audio, in.available());
+    }
+
+    @Test
+    void testProbedOnce() throws Exception {
+        InputStream in = new BufferedInputStream(new ByteArrayInputStream(resource("test2.mp3")));
+        AudioFileFormat fileFormat = AudioSystem.getAudioFileFormat(in);
+        AudioInputStream stream = AudioSystem.getAudioInputStream(in);
+        assertSame(fileFormat.getFormat(), stream.getFormat());
+        stream.close();
+    }
+
+    @Test
+    void testProbedStreamRead() throws Exception {
+        byte[] mono = Fixture.MPEG1_L3_MONO.generate();
+        byte[] stereo = resource("test2.mp3");
+        byte[] data = Arrays.copyOf(mono, mono.length + stereo.length);
+        System.arraycopy(stereo, 0, data, mono.length, stereo.length);
+        InputStream in = new BufferedInputStream(new ByteArrayInputStream(data));
+        MpegAudioFileReader reader = new MpegAudioFileReader();
+        assertEquals(1, reader.getAudioFileFormat(in).getFormat().getChannels());
+        // read to the second stream since
+        in.skipNBytes(mono.length);
+        AudioInputStream stream = reader.getAudioInputStream(in);
+        assertEquals(2, stream.getFormat().getChannels());
+    }
+
+    @Test
+    void testFile() throws Exception {
+        Path file = dir.resolve("test2.mp3");
+        Files.write(file, resource("test2.mp3"));
+        MpegAudioFileReader reader = new MpegAudioFileReader();
+        Map<String, Object> properties = properties(reader.getAudioFileFormat(file));
+        // through the whole stream, skipped to the ID3v1 tag
+        Map<String, Object> expected;
+        try (InputStream in = Files.newInputStream(file)) {
+            expected = properties(reader.getAudioFileFormat(in, Files.size(file)));
+        }
+        assertEquals(expected, properties);
+        assertEquals("Pop", properties.get("mp3.id3tag.genre"));
+        assertEquals("0", properties.get("mp3.id3tag.track"));
+
+        AudioInputStream stream = reader.getAudioInputStream(file);
+        assertEquals(Files.size(file), stream.available());
+        stream.close();
+    }
+
+    @Test
+    void testShortFileID3v1() throws Exception {
+        byte[] mp3 = resource("test2.mp3");
+        // test2.mp3 has a 2233 byte tag, replaced by an empty 30 byte one, or none
+        byte[] id3v2 = {'I', 'D', '3', 3, 0, 0, 0, 0, 0, 20};
+        byte[] id3v1 = new byte[128];
+        id3v1[0] = 'T';
+        id3v1[1] = 'A';
+        id3v1[2] = 'G';
+        System.arraycopy("V1TITLE".getBytes("ISO-8859-1"), 0, id3v1, 3, 7);
+        for (int[] lengths : new int[][] {{30, 20 * 1024}, {0, 65 * 1024 + 512}}) {
+            int tag = lengths[0];
+            byte[] data = new byte[lengths[1]];
+            System.arraycopy(id3v2, 0, data, 0, Math.min(tag, id3v2.length));
+            System.arraycopy(mp3, 2233, data, tag, data.length - tag - 128);
+            System.arraycopy(id3v1, 0, data, data.length - 128, 128);
+            Path file = dir.resolve("short.mp3");
+            Files.write(file, data);
+            AudioFileFormat format = new MpegAudioFileReader().getAudioFileFormat(file.toFile());
+            assertEquals("V1TITLE", format.properties().get("title"), "ID3v2 tag of " + tag);
+        }
+    }
+
+    @Test
+    void testTagStream() throws Exception {
+        byte[] mp3 = resource("test2.mp3");
+        Path file = dir.resolve("test2.mp3");
+        Files.write(file, mp3);
+        AudioFileFormat format = new MpegAudioFileReader().getAudioFileFormat(file);
+        InputStream tag = (InputStream) format.properties().get("mp3.id3tag.v2");
+        // test2.mp3 has a 2233 byte tag
+        assertEquals(2233, tag.available());
+        assertTrue(tag.markSupported());
+        assertEquals(mp3[0], tag.read());
+        tag.mark(0);
+        byte[] b = new byte[3000];
+        assertEquals(2232, tag.readNBytes(b, 0, b.length));
+        assertArrayEquals(Arrays.copyOfRange(mp3, 1, 2233), Arrays.copyOf(b, 2232));
+        assertEquals(-1, tag.read());
+        tag.reset();
+        assertEquals(100, tag.skip(100));
+        assertEquals(mp3[101], (byte) tag.read());
+    }
+
+    @Test
+    void testVbrDuration() throws Exception {
+        Path file = dir.resolve("vbr.mp3");
+        Files.write(file, Fixture.MPEG1_L3_VBR.generate());
+        AudioFileFormat format = new MpegAudioFileReader().getAudioFileFormat(file);
+        long samples = (MpegFixtures.FRAMES - 1) * 1152L - MpegFixtures.LAME_DELAY - MpegFixtures.LAME_PADDING;
+        long duration = (long) (samples * 1000000L / format.getFormat().getSampleRate());
+        assertEquals(duration, format.properties().get("duration"));
+    }
+
+    @Test
+    void testInfoDuration() throws Exception {
+        // test2.mp3 is CBR with a LAME Info header: 384 frames, 441000 samples
+        Path file = dir.resolve("test2.mp3");
+        Files.write(file, resource("test2.mp3"));
+        MpegAudioFileReader reader = new MpegAudioFileReader();
+        assertEquals(10000000L, reader.getAudioFileFormat(file).properties().get("duration"));
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            assertEquals(10000000L, reader.getAudioFileFormat(in).properties().get("duration"));
+        }
+    }
+
+    /**
+     * Returns the properties, less the ID3v2 stream.
+     */
+    private static Map<String, Object> properties(AudioFileFormat format) {
+        Map<String, Object> properties = new HashMap<>(format.properties());
+        assertTrue(properties.remove("mp3.id3tag.v2") instanceof InputStream);
+        return properties;
+    }
+
+    private static byte[] resource(String name) throws Exception {
+        try (InputStream in = MpegAudioFileReaderProbeTest.class.getClassLoader().getResourceAsStream(name)) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Records the largest mark limit.
+     */
+    private static class MarkStream extends BufferedInputStream {
+        int limit;
+
+        MarkStream(byte[] data) {
+            super(new ByteArrayInputStream(data));
+        }
+
+        @Override
+        public synchronized void mark(int readlimit) {
+            limit = Math.max(limit, readlimit);
+            super.mark(readlimit);
+        }
+    }
+}
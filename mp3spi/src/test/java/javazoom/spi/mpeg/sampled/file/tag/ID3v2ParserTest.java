@@ -0,0 +1,362 @@
+/*
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as published
+ * by the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package javazoom.spi.mpeg.sampled.file.tag;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.sound.sampled.AudioFileFormat;
+
+import javazoom.jl.testing.MpegFixtures.Fixture;
+import javazoom.spi.mpeg.sampled.file.MpegAudioFileReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * ID3v2Parser on tags of each version, with unsynchronisation,
+ * extended headers and attachments.
+ */
+public class ID3v2ParserTest {
+
+    @TempDir
+    Path dir;
+
+    /** Picture data with many 0xFF bytes, some followed by 0x00. */
+    private static byte[] picture(int length) {
+        byte[] data = new byte[length];
+        new Random(7).nextBytes(data);
+        for (int i = 0; i < length; i += 5)
+            data[i] = (byte) 0xff;
+        for (int i = 1; i < length; i += 10)
+            data[i] = 0;
+        data[length - 1] = (byte) 0xff;
+        return data;
+    }
+
+    private static byte[] unsynchronise(byte[] b) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte x : b) {
+            out.write(x);
+            if ((x & 0xff) == 0xff)
+                out.write(0);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] syncsafe(int n) {
+        return new byte[]{(byte) ((n >> 21) & 0x7f), (byte) ((n >> 14) & 0x7f), (byte) ((n >> 7) & 0x7f), (byte) (n & 0x7f)};
+    }
+
+    private static byte[] int32(int n) {
+        return new byte[]{(byte) (n >> 24), (byte) (n >> 16), (byte) (n >> 8), (byte) n};
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] p : parts)
+            out.write(p, 0, p.length);
+        return out.toByteArray();
+    }
+
+    private static byte[] text(String s) {
+        return concat(new byte[]{3}, s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] latin1(String s) {
+        return concat(new byte[]{0}, s.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static byte[] apic(String description, byte[] data) {
+        return concat(new byte[]{0}, "image/png\0".getBytes(StandardCharsets.ISO_8859_1), new byte[]{3},
+                (description + "\0").getBytes(StandardCharsets.ISO_8859_1), data);
+    }
+
+    private static byte[] frame23(String id, byte[] body) {
+        return concat(id.getBytes(StandardCharsets.ISO_8859_1), int32(body.length), new byte[2], body);
+    }
+
+    private static byte[] frame24(String id, int format, byte[] body) {
+        return concat(id.getBytes(StandardCharsets.ISO_8859_1), syncsafe(body.length), new byte[]{0, (byte) format}, body);
+    }
+
+    private static byte[] tag(int version, int flags, byte[] frames) {
+        return concat(new byte[]{'I', 'D', '3', (byte) version, 0, (byte) flags}, syncsafe(frames.length), frames);
+    }
+
+    private static class Collector implements ID3v2Parser.Handler {
+        final Map<String, String> frames = new HashMap<>();
+        final List<String> asked = new ArrayList<>();
+        final List<ID3v2Attachment> attachments = new ArrayList<>();
+
+        public boolean wants(int id) {
+            asked.add(ID3v2Parser.name(id));
+            return id == ID3v2Parser.TIT2 || id == ID3v2Parser.TALB;
+        }
+
+        public void frame(int id, byte[] body) {
+            frames.put(ID3v2Parser.name(id), new String(body, 1, body.length - 1,
+                    body[0] == 0 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8));
+        }
+
+        public void attachment(ID3v2Attachment attachment) {
+            attachments.add(attachment);
+        }
+    }
+
+    @Test
+    void testFrameIds() {
+        assertEquals(ID3v2Parser.TALB, ID3v2Parser.id("TALB"));
+        assertEquals(ID3v2Parser.COMM, ID3v2Parser.id("COMM"));
+        assertEquals("APIC", ID3v2Parser.name(ID3v2Parser.APIC));
+        assertEquals("TT2", ID3v2Parser.name(ID3v2Parser.id("TT2")));
+    }
+
+    @Test
+    void testUnsynchronisedTag23() throws Exception {
+        byte[] data = picture(100000);
+        // the extended header of 6 bytes, then the frames, unsynchronised as a whole
+        byte[] frames = concat(int32(6), new byte[6],
+                frame23("TIT2", latin1("Title ÿ")),
+                frame23("TPE1", text("Artist")),
+                frame23("APIC", apic("cover", data)),
+                frame23("TALB", text("Album")),
+                new byte[64]);
+        byte[] tag = tag(3, 0x80 | 0x40, unsynchronise(frames));
+
+        Collector collector = new Collector();
+        assertEquals(3, ID3v2Parser.parse(new ByteArrayInputStream(tag), collector));
+        assertEquals("Title ÿ", collector.frames.get("TIT2"));
+        assertEquals("Album", collector.frames.get("TALB"));
+        assertEquals(2, collector.frames.size());
+        assertFalse(collector.asked.contains("APIC"));
+
+        assertEquals(1, collector.attachments.size());
+        ID3v2Attachment picture = collector.attachments.get(0);
+        assertEquals("APIC", picture.getId());
+        assertEquals("image/png", picture.getMimeType());
+        assertEquals(3, picture.getPictureType());
+        assertEquals("cover", picture.getDescription());
+        assertTrue(picture.isUnsynchronised());
+        assertTrue(picture.getLength() > data.length);
+        assertArrayEquals(data, picture.read(new ByteArrayInputStream(tag)));
+    }
+
+    @Test
+    void testUnsynchronisedFrame24() throws Exception {
+        byte[] data = picture(5000);
+        byte[] object = picture(300);
+        // UTF-16 strings with byte order marks
+        byte[] geob = concat(new byte[]{1}, "application/octet-stream\0".getBytes(StandardCharsets.ISO_8859_1),
+                new byte[]{(byte) 0xff, (byte) 0xfe}, "a.bin\0".getBytes(StandardCharsets.UTF_16LE),
+                new byte[]{(byte) 0xff, (byte) 0xfe}, "thing\0".getBytes(StandardCharsets.UTF_16LE), object);
+        byte[] apic = unsynchronise(apic("", data));
+        byte[] frames = concat(
+                // the data length indicator and unsynchronisation flags
+                frame24("APIC", 0x03, concat(syncsafe(data.length), apic)),
+                frame24("TIT2", 0x02, unsynchronise(latin1("ÿÿ"))),
+                // a frame with a group byte
+                frame24("TALB", 0x40, concat(new byte[]{7}, text("Album"))),
+                frame24("GEOB", 0, geob));
+        byte[] tag = tag(4, 0, frames);
+
+        Collector collector = new Collector();
+        assertEquals(4, ID3v2Parser.parse(new ByteArrayInputStream(tag), collector));
+        assertEquals("ÿÿ", collector.frames.get("TIT2"));
+        assertEquals("Album", collector.frames.get("TALB"));
+        assertEquals(2, collector.attachments.size());
+
+        ID3v2Attachment picture = collector.attachments.get(0);
+        assertTrue(picture.isUnsynchronised());
+        assertEquals("", picture.getDescription());
+        assertArrayEquals(data, picture.read(new ByteArrayInputStream(tag)));
+
+        ID3v2Attachment geobAttachment = collector.attachments.get(1);
+        assertEquals("GEOB", geobAttachment.getId());
+        assertEquals("application/octet-stream", geobAttachment.getMimeType());
+        assertEquals("a.bin", geobAttachment.getFileName());
+        assertEquals("thing", geobAttachment.getDescription());
+        assertEquals(-1, geobAttachment.getPictureType());
+        assertFalse(geobAttachment.isUnsynchronised());
+        assertEquals(object.length, geobAttachment.getLength());
+        assertArrayEquals(object, geobAttachment.read(new ByteArrayInputStream(tag)));
+    }
+
+    @Test
+    void testTag22() throws Exception {
+        byte[] data = picture(1000);
+        byte[] pic = concat(new byte[]{0}, "JPG".getBytes(StandardCharsets.ISO_8859_1), new byte[]{3, 0}, data);
+        byte[] frames = concat(
+                "TT2".getBytes(StandardCharsets.ISO_8859_1), new byte[]{0, 0, 6}, text("Title"),
+                "PIC".getBytes(StandardCharsets.ISO_8859_1), new byte[]{0, (byte) (pic.length >> 8), (byte) pic.length}, pic);
+        byte[] tag = tag(2, 0, frames);
+
+        Collector collector = new Collector();
+        assertEquals(2, ID3v2Parser.parse(new ByteArrayInputStream(tag), collector));
+        assertEquals("Title", collector.frames.get("TIT2"));
+        assertEquals(1, collector.attachments.size());
+        ID3v2Attachment picture = collector.attachments.get(0);
+        assertEquals("APIC", picture.getId());
+        assertEquals("image/jpeg", picture.getMimeType());
+        assertArrayEquals(data, picture.read(new ByteArrayInputStream(tag)));
+    }
+
+    @Test
+    void testNoTag() throws Exception {
+        Collector collector = new Collector();
+        assertEquals(-1, ID3v2Parser.parse(new ByteArrayInputStream(Fixture.MPEG1_L3_MONO.generate()), collector));
+        assertTrue(collector.asked.isEmpty());
+    }
+
+    /**
+     * A file with a large picture: the picture is not read while probing,
+     * and the file and stream paths agree.
+     */
+    @Test
+    void testLargePicture() throws Exception {
+        byte[] data = picture(4 * 1024 * 1024);
+        byte[] tag = tag(3, 0, concat(
+                frame23("TIT2", text("Title")),
+                frame23("APIC", apic("front", data)),
+                new byte[100]));
+        Path file = dir.resolve("picture.mp3");
+        Files.write(file, concat(tag, Fixture.MPEG1_L3_JOINT_STEREO.generate()));
+
+        MpegAudioFileReader reader = new MpegAudioFileReader();
+        AudioFileFormat format = reader.getAudioFileFormat(file);
+        Map<String, Object> properties = format.properties();
+        assertEquals("Title", properties.get("title"));
+        assertEquals("3", properties.get("mp3.id3tag.v2.version"));
+        assertEquals(tag.length, properties.get("mp3.header.pos"));
+
+        @SuppressWarnings("unchecked")
+        List<ID3v2Attachment> attachments = (List<ID3v2Attachment>) properties.get("mp3.id3tag.v2.attachments");
+        assertEquals(1, attachments.size());
+        ID3v2Attachment picture = attachments.get(0);
+        assertEquals("front", picture.getDescription());
+        assertEquals(data.length, picture.getLength());
+        try (FileChannel channel = FileChannel.open(file)) {
+            assertArrayEquals(data, picture.read(channel));
+        }
+        try (InputStream in = (InputStream) properties.get("mp3.id3tag.v2")) {
+            assertArrayEquals(tag, in.readAllBytes());
+        }
+
+        try (InputStream in = Files.newInputStream(file)) {
+            AudioFileFormat streamFormat = reader.getAudioFileFormat(in, Files.size(file));
+            assertEquals("Title", streamFormat.properties().get("title"));
+            assertEquals(attachments, streamFormat.properties().get("mp3.id3tag.v2.attachments"));
+            assertArrayEquals(tag, ((InputStream) streamFormat.properties().get("mp3.id3tag.v2")).readAllBytes());
+        }
+
+        // streams without the raw tag
+        System.setProperty("mp3spi.skipRawID3v2", "true");
+        try {
+            reader = new MpegAudioFileReader();
+        } finally {
+            System.clearProperty("mp3spi.skipRawID3v2");
+        }
+        long[] read = new long[1];
+        try (InputStream in = new FilterInputStream(Files.newInputStream(file)) {
+            public int read() throws IOException {
+                read[0]++;
+                return super.read();
+            }
+
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                read[0] += Math.max(n, 0);
+                return n;
+            }
+        }) {
+            AudioFileFormat streamFormat = reader.getAudioFileFormat(in, Files.size(file));
+            assertEquals("Title", streamFormat.properties().get("title"));
+            assertEquals(tag.length, streamFormat.properties().get("mp3.header.pos"));
+            assertEquals(attachments, streamFormat.properties().get("mp3.id3tag.v2.attachments"));
+            assertNull(streamFormat.properties().get("mp3.id3tag.v2"));
+        }
+        // the picture is skipped, not read
+        assertTrue(read[0] < data.length, read[0] + " bytes read");
+
+        // a probed stream is reset to the start of the tag
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            reader.getAudioFileFormat(in);
+            assertArrayEquals(data, picture.read(in));
+        }
+    }
+
+    @Test
+    void testTruncatedTag() throws Exception {
+        byte[] tag = tag(3, 0, concat(frame23("TIT2", text("Title")), frame23("APIC", apic("x", picture(1000)))));
+        Collector collector = new Collector();
+        try {
+            ID3v2Parser.parse(new ByteArrayInputStream(tag, 0, 40), collector);
+        } catch (IOException e) {
+            // the end of the stream within the picture header
+        }
+        assertEquals("Title", collector.frames.get("TIT2"));
+        assertNull(collector.frames.get("TALB"));
+    }
+
+    @Test
+    void testFramesSmallerThanFlags23() throws Exception {
+        // grouping identity flag on frames of 0 bytes
+        byte[] tag = tag(3, 0, concat(
+                "TIT2".getBytes(StandardCharsets.ISO_8859_1), int32(0), new byte[]{0, 0x20},
+                "APIC".getBytes(StandardCharsets.ISO_8859_1), int32(0), new byte[]{0, 0x20},
+                frame23("TALB", text("Album"))));
+        Collector collector = new Collector();
+        assertEquals(3, ID3v2Parser.parse(new ByteArrayInputStream(tag), collector));
+        assertNull(collector.frames.get("TIT2"));
+        assertEquals("Album", collector.frames.get("TALB"));
+        assertEquals(0, collector.attachments.size());
+    }
+
+    @Test
+    void testFramesSmallerThanFlags24() throws Exception {
+        // data length indicator, and grouping identity, on frames too small for them
+        byte[] tag = tag(4, 0, concat(
+                frame24("TIT2", 0x01, new byte[3]),
+                frame24("TIT2", 0x41, new byte[4]),
+                frame24("APIC", 0x01, new byte[2]),
+                frame24("TALB", 0, text("Album"))));
+        Collector collector = new Collector();
+        assertEquals(4, ID3v2Parser.parse(new ByteArrayInputStream(tag), collector));
+        assertNull(collector.frames.get("TIT2"));
+        assertEquals("Album", collector.frames.get("TALB"));
+        assertEquals(0, collector.attachments.size());
+    }
+}
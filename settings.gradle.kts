@@ -12,6 +12,7 @@ dependencyResolutionManagement {
 //include(":jaad:applications")
 //include(":jaad:core")
 //include(":jlayer")
+//include(":benchmarks")
 //include(":mp3spi")
 //include(":testing")
 include(":tritonus:shared")
\ No newline at end of file
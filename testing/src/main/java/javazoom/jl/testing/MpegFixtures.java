@@ -0,0 +1,323 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.testing;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+
+/**
+ * Deterministic, synthetic MPEG audio streams for benchmarks and tests.
+ * <p>
+ * Frames carry valid headers and side information; the payload is
+ * filled from a seeded {@link Random}, so running Huffman decoding over it
+ * samples each table's own code length distribution. The output is not
+ * meant to sound like anything, only to drive every decoder stage the way
+ * real content does, and to be byte-for-byte identical on every run.
+ */
+public final class MpegFixtures {
+
+    private MpegFixtures() {
+    }
+
+    /** Number of frames in every fixture, including the VBR info frame. */
+    public static final int FRAMES = 256;
+
+    /** Encoder delay written into the LAME tag of {@link Fixture#MPEG1_L3_VBR}. */
+    public static final int LAME_DELAY = 576;
+
+    /** Encoder padding written into the LAME tag of {@link Fixture#MPEG1_L3_VBR}. */
+    public static final int LAME_PADDING = 1104;
+
+    private static final int MPEG1 = 3, MPEG2 = 2, MPEG25 = 0;
+    private static final int STEREO = 0, JOINT_STEREO = 1, SINGLE_CHANNEL = 3;
+
+    /** Fixture streams. */
+    public enum Fixture {
+        MPEG1_L3_MONO(MPEG1, 3, SINGLE_CHANNEL, 0, 9),
+        MPEG1_L3_JOINT_STEREO(MPEG1, 3, JOINT_STEREO, 0, 11),
+        MPEG2_L3_LSF_STEREO(MPEG2, 3, JOINT_STEREO, 0, 8),
+        MPEG25_L3_LSF_MONO(MPEG25, 3, SINGLE_CHANNEL, 2, 4),
+        MPEG1_L3_VBR(MPEG1, 3, JOINT_STEREO, 0, -1),
+        MPEG1_L2_MONO(MPEG1, 2, SINGLE_CHANNEL, 1, 10),
+        MPEG1_L1_STEREO(MPEG1, 1, STEREO, 1, 12);
+
+        final int version, layer, mode, frequencyIndex, bitrateIndex;
+
+        Fixture(int version, int layer, int mode, int frequencyIndex, int bitrateIndex) {
+            this.version = version;
+            this.layer = layer;
+            this.mode = mode;
+            this.frequencyIndex = frequencyIndex;
+            this.bitrateIndex = bitrateIndex;
+        }
+
+        public int layer() {
+            return layer;
+        }
+
+        public int channels() {
+            return mode == SINGLE_CHANNEL ? 1 : 2;
+        }
+
+        public int sampleRate() {
+            return FREQUENCIES[version][frequencyIndex];
+        }
+
+        public int samplesPerFrame() {
+            return layer == 1 ? 384 : (layer == 3 && version != MPEG1) ? 576 : 1152;
+        }
+
+        /** Whether the first frame is a Xing/LAME info frame. */
+        public boolean isVbr() {
+            return bitrateIndex < 0;
+        }
+
+        /** Generates the stream; the same fixture always yields the same bytes. */
+        public byte[] generate() {
+            return MpegFixtures.generate(this);
+        }
+    }
+
+    private static final int[][] FREQUENCIES = {
+            {11025, 12000, 8000},  // MPEG 2.5
+            {},
+            {22050, 24000, 16000}, // MPEG 2
+            {44100, 48000, 32000}  // MPEG 1
+    };
+
+    // kbit/s, [lsf][layer - 1][index]
+    private static final int[][][] BITRATES = {
+            {{0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+             {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+             {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320}},
+            {{0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+             {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160},
+             {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}}
+    };
+
+    // Huffman tables 4 and 14 are not defined by the standard.
+    private static final int[] TABLES = {
+            1, 2, 3, 5, 6, 7, 8, 9, 10, 11, 12, 13, 15,
+            16, 17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31
+    };
+
+    private static final int LAME_TAG_BYTES = 36;
+
+    static byte[] generate(Fixture f) {
+        Random random = new Random(0x6a4c6179L ^ f.ordinal());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int[] offsets = new int[FRAMES];
+        int rest = 0;
+        int first = 0;
+        if (f.isVbr()) {
+            // placeholder, rewritten once frame offsets are known
+            out.write(new byte[frameSize(f, 9, 0)], 0, frameSize(f, 9, 0));
+            first = 1;
+        }
+        for (int i = first; i < FRAMES; i++) {
+            int bitrateIndex = f.isVbr() ? 5 + random.nextInt(10) : f.bitrateIndex;
+            int slot = f.layer == 1 ? 12 : (f.layer == 3 && f.version != MPEG1) ? 72 : 144;
+            int numerator = slot * BITRATES[f.version == MPEG1 ? 0 : 1][f.layer - 1][bitrateIndex] * 1000;
+            rest += numerator % f.sampleRate();
+            int padding = 0;
+            if (rest >= f.sampleRate()) {
+                rest -= f.sampleRate();
+                padding = 1;
+            }
+            offsets[i] = out.size();
+            byte[] frame = f.layer == 3 ? layer3Frame(f, bitrateIndex, padding, random)
+                    : f.layer == 2 ? layer2Frame(f, bitrateIndex, padding, random)
+                    : layer1Frame(f, bitrateIndex, padding, random);
+            out.write(frame, 0, frame.length);
+        }
+        byte[] stream = out.toByteArray();
+        if (f.isVbr()) {
+            byte[] info = infoFrame(f, offsets, stream.length);
+            System.arraycopy(info, 0, stream, 0, info.length);
+        }
+        return stream;
+    }
+
+    private static int frameSize(Fixture f, int bitrateIndex, int padding) {
+        int bitrate = BITRATES[f.version == MPEG1 ? 0 : 1][f.layer - 1][bitrateIndex] * 1000;
+        if (f.layer == 1)
+            return (12 * bitrate / f.sampleRate() + padding) * 4;
+        int slot = (f.layer == 3 && f.version != MPEG1) ? 72 : 144;
+        return slot * bitrate / f.sampleRate() + padding;
+    }
+
+    private static int sideInfoSize(Fixture f) {
+        if (f.version == MPEG1)
+            return f.channels() == 1 ? 17 : 32;
+        return f.channels() == 1 ? 9 : 17;
+    }
+
+    private static void header(BitWriter w, Fixture f, int bitrateIndex, int padding, int modeExtension) {
+        w.write(0x7ff, 11);
+        w.write(f.version, 2);
+        w.write(4 - f.layer, 2);
+        w.write(1, 1); // no CRC
+        w.write(bitrateIndex, 4);
+        w.write(f.frequencyIndex, 2);
+        w.write(padding, 1);
+        w.write(0, 1);
+        w.write(f.mode, 2);
+        w.write(modeExtension, 2);
+        w.write(0, 1);
+        w.write(1, 1); // original
+        w.write(0, 2);
+    }
+
+    private static byte[] layer3Frame(Fixture f, int bitrateIndex, int padding, Random random) {
+        int size = frameSize(f, bitrateIndex, padding);
+        BitWriter w = new BitWriter(size);
+        int modeExtension = f.mode == JOINT_STEREO ? random.nextInt(4) : 0;
+        header(w, f, bitrateIndex, padding, modeExtension);
+
+        int channels = f.channels();
+        int granules = f.version == MPEG1 ? 2 : 1;
+        int mainBits = (size - 4 - sideInfoSize(f)) * 8;
+        int part2_3_length = Math.min(4095, mainBits / (granules * channels));
+
+        if (f.version == MPEG1) {
+            w.write(0, 9); // main_data_begin
+            w.write(0, channels == 1 ? 5 : 3);
+            for (int ch = 0; ch < channels; ch++)
+                w.write(random.nextInt(16), 4); // scfsi
+        } else {
+            w.write(0, 8);
+            w.write(0, channels == 1 ? 1 : 2);
+        }
+        for (int gr = 0; gr < granules; gr++) {
+            for (int ch = 0; ch < channels; ch++) {
+                w.write(part2_3_length, 12);
+                int lo = part2_3_length / 24, hi = part2_3_length / 12;
+                w.write(Math.min(288, lo + random.nextInt(hi - lo + 1)), 9);
+                w.write(100 + random.nextInt(40), 8); // global_gain
+                if (f.version == MPEG1)
+                    w.write(random.nextInt(16), 4);
+                else
+                    w.write(random.nextInt(400), 9); // no preflag, like most encoders
+                boolean windowSwitching = random.nextInt(5) == 0;
+                w.write(windowSwitching ? 1 : 0, 1);
+                if (windowSwitching) {
+                    w.write(1 + random.nextInt(3), 2); // block_type
+                    w.write(0, 1); // mixed blocks, which encoders do not emit
+                    for (int i = 0; i < 2; i++)
+                        w.write(TABLES[random.nextInt(TABLES.length)], 5);
+                    for (int i = 0; i < 3; i++)
+                        w.write(random.nextInt(8), 3);
+                } else {
+                    for (int i = 0; i < 3; i++)
+                        w.write(TABLES[random.nextInt(TABLES.length)], 5);
+                    w.write(random.nextInt(16), 4);
+                    w.write(random.nextInt(8), 3);
+                }
+                if (f.version == MPEG1) {
+                    w.write(random.nextInt(2), 1); // preflag
+                    w.write(random.nextInt(2), 1);
+                } else {
+                    // keeps 5 bit intensity scale factors within range
+                    w.write(0, 1);
+                }
+                w.write(random.nextInt(2), 1);
+            }
+        }
+        w.fillRandom(random);
+        return w.bytes();
+    }
+
+    private static byte[] layer2Frame(Fixture f, int bitrateIndex, int padding, Random random) {
+        BitWriter w = new BitWriter(frameSize(f, bitrateIndex, padding));
+        header(w, f, bitrateIndex, padding, 0);
+        // Out of range group codes are clamped by the single channel decoder.
+        w.fillRandom(random);
+        return w.bytes();
+    }
+
+    private static byte[] layer1Frame(Fixture f, int bitrateIndex, int padding, Random random) {
+        BitWriter w = new BitWriter(frameSize(f, bitrateIndex, padding));
+        header(w, f, bitrateIndex, padding, 0);
+        // Allocation 15 is forbidden.
+        for (int i = 0; i < 32 * f.channels(); i++)
+            w.write(random.nextInt(15), 4);
+        w.fillRandom(random);
+        return w.bytes();
+    }
+
+    private static byte[] infoFrame(Fixture f, int[] offsets, int length) {
+        int size = frameSize(f, 9, 0);
+        BitWriter w = new BitWriter(size);
+        header(w, f, 9, 0, 0);
+        for (int i = 0; i < sideInfoSize(f); i++)
+            w.write(0, 8);
+        w.ascii("Xing");
+        w.write(0x0f, 32); // frames, bytes, TOC, quality
+        w.write(FRAMES - 1, 32);
+        w.write(length, 32);
+        for (int i = 0; i < 100; i++) {
+            int frame = 1 + (FRAMES - 1) * i / 100;
+            w.write(Math.min(255, (int) (256L * offsets[frame] / length)), 8);
+        }
+        w.write(50, 32);
+        w.ascii("LAME3.100");
+        w.write(0, 8 * 12); // revision, lowpass, replay gain, flags, bitrate
+        w.write(LAME_DELAY, 12);
+        w.write(LAME_PADDING, 12);
+        w.write(0, 8 * (LAME_TAG_BYTES - 24));
+        return w.bytes();
+    }
+
+    /**
+     * MSB first bit writer over a fixed size frame.
+     */
+    private static final class BitWriter {
+        private final byte[] buffer;
+        private int bit;
+
+        BitWriter(int size) {
+            buffer = new byte[size];
+        }
+
+        void write(int value, int bits) {
+            for (int i = bits - 1; i >= 0; i--) {
+                if (i < 32 && ((value >>> i) & 1) != 0)
+                    buffer[bit >>> 3] |= (byte) (0x80 >>> (bit & 7));
+                bit++;
+            }
+        }
+
+        void ascii(String s) {
+            for (int i = 0; i < s.length(); i++)
+                write(s.charAt(i), 8);
+        }
+
+        void fillRandom(Random random) {
+            bit = (bit + 7) & ~7;
+            for (int i = bit >>> 3; i < buffer.length; i++)
+                buffer[i] = (byte) random.nextInt(256);
+            bit = buffer.length * 8;
+        }
+
+        byte[] bytes() {
+            return buffer;
+        }
+    }
+}